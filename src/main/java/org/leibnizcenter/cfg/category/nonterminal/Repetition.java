@@ -0,0 +1,92 @@
+package org.leibnizcenter.cfg.category.nonterminal;
+
+/**
+ * <p>
+ * A non-terminal that stands for one or more (<code>X+</code>) or zero or more (<code>X*</code>) repetitions of another
+ * non-terminal. {@link org.leibnizcenter.cfg.grammar.Grammar.Builder} adds the rules for a repetition when it first
+ * occurs in a right hand side:
+ * </p>
+ * <pre>
+ * X+ → X     (1 - p)    X* → X     (p (1 - p))
+ *                       X* → ε     (1 - p)
+ * </pre>
+ * <p>
+ * where p is the probability of one more repetition. The rule <code>X → X</code> is a
+ * {@link org.leibnizcenter.cfg.rule.RepetitionRule}, whose completed state loops back to itself on every further X,
+ * multiplying by p. So the chart stays linear in the number of repetitions, and Viterbi parse trees put all
+ * repetitions directly under a single node. If X itself derives the empty string, the loop is replaced by the
+ * left-recursive rules <code>X+ → X+ X (p)</code> or <code>X* → X* X (p)</code>, with the same probabilities.
+ * </p>
+ * <p>
+ * The name of a repetition does not include p, so a grammar can use only one p for each <code>X+</code> and each
+ * <code>X*</code>.
+ * </p>
+ * Immutable.
+ */
+public final class Repetition extends NonTerminal {
+    /**
+     * Probability of one more repetition, if none is given
+     */
+    public static final double DEFAULT_CONTINUE_PROBABILITY = 0.5;
+
+    public final NonTerminal repeated;
+    public final boolean allowEmpty;
+    public final double continueProbability;
+
+    /**
+     * @param repeated            Category to repeat
+     * @param allowEmpty          Whether zero repetitions are allowed
+     * @param continueProbability Probability of one more repetition, strictly between 0 and 1
+     */
+    public Repetition(final NonTerminal repeated, final boolean allowEmpty, final double continueProbability) {
+        super(repeated.name + (allowEmpty ? '*' : '+'));
+        if (!(continueProbability > 0.0 && continueProbability < 1.0))
+            throw new IllegalArgumentException("Probability of repetition must lie strictly between 0 and 1, but was " + continueProbability);
+        this.repeated = repeated;
+        this.allowEmpty = allowEmpty;
+        this.continueProbability = continueProbability;
+    }
+
+    /**
+     * @return <code>X+</code>
+     */
+    public static Repetition oneOrMore(final NonTerminal X) {
+        return new Repetition(X, false, DEFAULT_CONTINUE_PROBABILITY);
+    }
+
+    public static Repetition oneOrMore(final NonTerminal X, final double continueProbability) {
+        return new Repetition(X, false, continueProbability);
+    }
+
+    /**
+     * @return <code>X*</code>
+     */
+    public static Repetition zeroOrMore(final NonTerminal X) {
+        return new Repetition(X, true, DEFAULT_CONTINUE_PROBABILITY);
+    }
+
+    public static Repetition zeroOrMore(final NonTerminal X, final double continueProbability) {
+        return new Repetition(X, true, continueProbability);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final Repetition that = (Repetition) o;
+
+        return allowEmpty == that.allowEmpty
+                && Double.compare(that.continueProbability, continueProbability) == 0
+                && repeated.equals(that.repeated);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = repeated.hashCode();
+        result = 31 * result + (allowEmpty ? 1 : 0);
+        final long temp = Double.doubleToLongBits(continueProbability);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        return result;
+    }
+}
@@ -0,0 +1,227 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.errors.IssueRequest;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Parses large corpora with one sentence per line, in the same JSON lines format as the batch mode of
+ * {@link CommandLine}.
+ * </p>
+ * <p>
+ * The input file is memory-mapped in windows, which are cut into work units at line boundaries. Workers tokenize
+ * sentences straight from the mapped bytes (tokens are separated by ASCII whitespace and decoded as UTF-8), so no
+ * line strings are created. Output is written in input order through a buffered channel. Only a fixed number of work
+ * units is in flight at any time, so heap usage depends on the unit size and number of threads, not on the size of
+ * the corpus.
+ * </p>
+ */
+public class BulkParser {
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+    private static final int DEFAULT_UNIT_SIZE = 1 << 20;
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final Parser<String> parser;
+    private final NonTerminal goal;
+    private final ParseOptions<String> parseOptions;
+    private final int threads;
+    private final int windowSize;
+    private final int unitSize;
+
+    public BulkParser(final Parser<String> parser, final NonTerminal goal, final ParseOptions<String> parseOptions, final int threads) {
+        this(parser, goal, parseOptions, threads, DEFAULT_WINDOW_SIZE, DEFAULT_UNIT_SIZE);
+    }
+
+    /**
+     * @param windowSize Number of bytes to map at once. No line may be longer than this.
+     * @param unitSize   Approximate number of bytes that one worker parses at once
+     */
+    public BulkParser(final Parser<String> parser,
+                      final NonTerminal goal,
+                      final ParseOptions<String> parseOptions,
+                      final int threads,
+                      final int windowSize,
+                      final int unitSize) {
+        if (threads < 1) throw new IllegalArgumentException("Need at least one thread");
+        if (unitSize < 1 || windowSize < unitSize)
+            throw new IllegalArgumentException("Window size must be at least unit size, but got " + windowSize + " < " + unitSize);
+        this.parser = parser;
+        this.goal = goal;
+        this.parseOptions = parseOptions;
+        this.threads = threads;
+        this.windowSize = windowSize;
+        this.unitSize = unitSize;
+    }
+
+    /**
+     * Parses every line of given file and writes the results to given output file, which is overwritten
+     *
+     * @return Number of sentences parsed
+     */
+    public long parse(final Path input, final Path output) throws IOException, InterruptedException {
+        try (final FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             final FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return parse(in, out);
+        }
+    }
+
+    /**
+     * Parses every line of given file and writes the results to given channel
+     *
+     * @return Number of sentences parsed
+     */
+    public long parse(final FileChannel in, final WritableByteChannel out) throws IOException, InterruptedException {
+        final ExecutorService workers = Executors.newFixedThreadPool(threads);
+        final Deque<Future<List<String>>> inFlight = new ArrayDeque<>();
+        final Output output = new Output(out);
+        try {
+            final long size = in.size();
+            long position = 0;
+            while (position < size) {
+                final int length = (int) Math.min(windowSize, size - position);
+                final MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                final boolean lastWindow = position + length == size;
+                final int end = lastWindow ? length : lastNewline(window, length) + 1;
+                if (end <= 0)
+                    throw new IllegalArgumentException("Line at byte " + position + " is longer than the window size of " + windowSize + " bytes");
+
+                int unitStart = 0;
+                while (unitStart < end) {
+                    int unitEnd = Math.min(unitStart + unitSize, end);
+                    if (unitEnd < end) unitEnd = nextNewline(window, unitEnd - 1, end) + 1;
+                    final ByteBuffer unit = slice(window, unitStart, unitEnd);
+                    inFlight.add(workers.submit(() -> parseUnit(unit)));
+                    if (inFlight.size() >= threads * 2) output.write(getResult(inFlight.poll()));
+                    unitStart = unitEnd;
+                }
+                position += end;
+            }
+            while (!inFlight.isEmpty()) output.write(getResult(inFlight.poll()));
+            output.flush();
+        } finally {
+            workers.shutdownNow();
+        }
+        return output.lineNumber;
+    }
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final int from, final int to) {
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.limit(to);
+        duplicate.position(from);
+        return duplicate.slice();
+    }
+
+    /**
+     * @return Index of the last newline in the first <code>length</code> bytes, or -1 if there is none
+     */
+    private static int lastNewline(final ByteBuffer buffer, final int length) {
+        for (int i = length - 1; i >= 0; i--) if (buffer.get(i) == '\n') return i;
+        return -1;
+    }
+
+    /**
+     * @return Index of the first newline at or after given index and before <code>end</code>, or
+     * <code>end - 1</code> if there is none, which happens for an unterminated last line
+     */
+    private static int nextNewline(final ByteBuffer buffer, final int from, final int end) {
+        for (int i = from; i < end; i++) if (buffer.get(i) == '\n') return i;
+        return end - 1;
+    }
+
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    private static <V> V getResult(final Future<V> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            // parseUnit catches all parse errors, so this is a bug
+            throw new IssueRequest("Worker failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * @return For every line in given unit, the JSON fields of its parse
+     */
+    private List<String> parseUnit(final ByteBuffer unit) {
+        final List<String> results = new ArrayList<>();
+        final List<Token<String>> sentence = new ArrayList<>();
+        byte[] token = new byte[64];
+        int tokenLength = 0;
+        final int limit = unit.limit();
+        for (int i = 0; i <= limit; i++) {
+            // Treat the end of the unit as a newline, unless the unit already ends in one
+            final byte b = i < limit ? unit.get(i) : (byte) '\n';
+            if (b == '\n' || isWhitespace(b)) {
+                if (tokenLength > 0) {
+                    sentence.add(new Token<>(new String(token, 0, tokenLength, StandardCharsets.UTF_8)));
+                    tokenLength = 0;
+                }
+                if (b == '\n' && (i < limit || unit.get(limit - 1) != '\n')) {
+                    results.add(JsonLines.parse(parser, goal, parseOptions, new ArrayList<>(sentence)));
+                    sentence.clear();
+                }
+            } else {
+                if (tokenLength == token.length) {
+                    final byte[] longer = new byte[token.length * 2];
+                    System.arraycopy(token, 0, longer, 0, tokenLength);
+                    token = longer;
+                }
+                token[tokenLength++] = b;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Writes JSON lines to a channel through a byte buffer, numbering the lines
+     */
+    private static class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        long lineNumber = 0;
+
+        Output(final WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(final List<String> fields) throws IOException {
+            for (final String field : fields) {
+                final byte[] bytes = (JsonLines.line(lineNumber++, field) + '\n').getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > buffer.remaining()) flush();
+                if (bytes.length > buffer.capacity()) writeFully(ByteBuffer.wrap(bytes));
+                else buffer.put(bytes);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(final ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * <p>
+ * Caches the results of a {@link Parser} for sentences that are parsed repeatedly. Results are keyed by goal and
+ * token sequence, and evicted in least-recently-used order when either the number of entries or their total weight
+ * exceeds its bound. A probability weighs 1, and a parse tree weighs 1 plus its number of nodes.
+ * </p>
+ * <p>
+ * Only parses without {@link org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions} are cached, because
+ * callbacks may have side effects or change scores. Cached parse trees are shared between callers and must not be
+ * modified. Instances are thread-safe; sentences are parsed outside the lock, so two threads that miss on the same
+ * sentence at the same time may both parse it.
+ * </p>
+ */
+public class CachingParser<T> {
+    public final Parser<T> parser;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<Key<T>, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxEntries Maximum number of cached results
+     * @param maxWeight  Maximum total weight of cached results
+     */
+    public CachingParser(final Parser<T> parser, final int maxEntries, final long maxWeight) {
+        if (maxEntries < 0 || maxWeight < 0) throw new IllegalArgumentException("Bounds must not be negative");
+        this.parser = parser;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @see Parser#recognize(NonTerminal, Iterable)
+     */
+    public double recognize(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        final Key<T> key = new Key<>(Kind.PROBABILITY, goal, tokens);
+        final Object cached = get(key);
+        if (cached != null) return (Double) cached;
+
+        final double probability = parser.recognize(goal, key.tokens);
+        put(key, probability, 1);
+        return probability;
+    }
+
+    /**
+     * @see Parser#getViterbiParseWithScore(NonTerminal, Iterable)
+     */
+    public ParseTreeWithScore getViterbiParseWithScore(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        final Key<T> key = new Key<>(Kind.VITERBI_PARSE, goal, tokens);
+        final Object cached = get(key);
+        if (cached != null) return (ParseTreeWithScore) cached;
+
+        final ParseTreeWithScore parse = parser.getViterbiParseWithScore(goal, key.tokens);
+        put(key, parse, 1 + countNodes(parse.parseTree));
+        return parse;
+    }
+
+    /**
+     * @see Parser#getViterbiParse(NonTerminal, Iterable)
+     */
+    public ParseTree getViterbiParse(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        return getViterbiParseWithScore(goal, tokens).parseTree;
+    }
+
+    private static long countNodes(final ParseTree tree) {
+        long count = 1;
+        if (tree.children != null) for (final ParseTree child : tree.children) count += countNodes(child);
+        return count;
+    }
+
+    private synchronized Object get(final Key<T> key) {
+        final Entry entry = cache.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        } else {
+            hits++;
+            return entry.value;
+        }
+    }
+
+    private synchronized void put(final Key<T> key, final Object value, final long entryWeight) {
+        if (entryWeight > maxWeight || maxEntries == 0) return;
+        final Entry previous = cache.put(key, new Entry(value, entryWeight));
+        if (previous != null) weight -= previous.weight;
+        weight += entryWeight;
+
+        final Iterator<Entry> eldest = cache.values().iterator();
+        while (cache.size() > maxEntries || weight > maxWeight) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        weight = 0;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    private enum Kind {
+        PROBABILITY, VITERBI_PARSE
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long weight;
+
+        Entry(final Object value, final long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Goal and a copy of the token sequence. The hash is computed once, as a polynomial rolling hash over the
+     * tokens; equality compares all tokens.
+     */
+    private static final class Key<T> {
+        final Kind kind;
+        final NonTerminal goal;
+        final List<Token<T>> tokens;
+        private final int hash;
+
+        Key(final Kind kind, final NonTerminal goal, final Iterable<Token<T>> tokens) {
+            this.kind = kind;
+            this.goal = goal;
+            this.tokens = new ArrayList<>();
+            int hash = 31 * kind.ordinal() + goal.hashCode();
+            for (final Token<T> token : tokens) {
+                this.tokens.add(token);
+                hash = 31 * hash + token.hashCode();
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key<?> key = (Key<?>) o;
+            return hash == key.hash && kind == key.kind && goal.equals(key.goal) && tokens.equals(key.tokens);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -4,16 +4,22 @@ import org.leibnizcenter.cfg.category.Category;
 import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
 import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
 import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
+import org.leibnizcenter.cfg.errors.IssueRequest;
 import org.leibnizcenter.cfg.grammar.Grammar;
 import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
 
-import java.io.IOException;
+import java.io.*;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -28,16 +34,32 @@ public class CommandLine {
             "\nA grammar file looks something like this:" + '\n' +
             "S -> NP VP" + '\n' +
             "NP -> i" + '\n' +
-            "VP -> eat" + '\n';
+            "VP -> eat" + '\n' +
+            "\nTo parse many sentences with the same grammar, pass -batch with a file that contains one sentence per line, or -batch - to read from stdin." + '\n' +
+            "Every sentence is written to stdout as one line of JSON, in input order. Use -threads to set the number of worker threads." + '\n' +
+            "With -o, the results are written to the given file instead, and an input file is memory-mapped." + '\n' +
+            "\nFor example: java parser.jar -i grammar.cfg -goal S -threads 4 -batch sentences.txt" + '\n';
     private static final String OPTION_GOAL = "goal";
     private static final String OPTION_SCAN_MODE = "scanmode";
     private static final String INPUT_FILE = "i";
+    private static final String OPTION_BATCH = "batch";
+    private static final String OPTION_THREADS = "threads";
+    private static final String OPTION_OUTPUT = "o";
+    private static final String STDIN = "-";
+    /**
+     * Report throughput every this many sentences
+     */
+    private static final int REPORT_INTERVAL = 10000;
 
     /**
      * -i grammar.cfg -goal S
      */
-    public static void main(final String[] args) {
+    public static void main(final String[] args) throws IOException, InterruptedException {
         final HandleArguments arguments = new HandleArguments(args).invoke();
+        if (arguments.batchInput != null) {
+            runBatch(arguments);
+            return;
+        }
         final ParseTreeWithScore parse = new Parser<>(arguments.getGrammar())
                 .getViterbiParseWithScore(
                         arguments.getGoal(),
@@ -49,6 +71,91 @@ public class CommandLine {
         System.out.println(parse.parseTree);
     }
 
+    private static void runBatch(final HandleArguments arguments) throws IOException, InterruptedException {
+        final Parser<String> parser = new Parser<>(arguments.getGrammar());
+        final ParseOptions<String> parseOptions = new ParseOptions.Builder<String>().withScanMode(arguments.scanMode).build();
+        if (arguments.output != null && !STDIN.equals(arguments.batchInput)) {
+            final long start = System.nanoTime();
+            final long count = new BulkParser(parser, arguments.getGoal(), parseOptions, arguments.threads)
+                    .parse(Paths.get(arguments.batchInput), Paths.get(arguments.output));
+            reportThroughput(System.err, count, start);
+            return;
+        }
+        final OutputStream outputStream = arguments.output != null
+                ? Files.newOutputStream(Paths.get(arguments.output))
+                : new FileOutputStream(FileDescriptor.out);
+        final PrintStream out = new PrintStream(new BufferedOutputStream(outputStream), false, "UTF-8");
+        try (final BufferedReader in = STDIN.equals(arguments.batchInput)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(arguments.batchInput), StandardCharsets.UTF_8)) {
+            parseLines(parser, arguments.getGoal(), parseOptions, in, out, System.err, arguments.threads);
+        } finally {
+            if (arguments.output != null) out.close();
+            else out.flush();
+        }
+    }
+
+    /**
+     * Parses every line of given input as a sentence of whitespace-separated tokens, on a pool of worker threads,
+     * and writes the results as JSON lines in input order. Only a bounded number of sentences is in flight at any
+     * time, so the input is never buffered in memory as a whole.
+     *
+     * @param report Receives throughput reports, may be null
+     * @return Number of sentences parsed
+     */
+    static long parseLines(final Parser<String> parser,
+                           final NonTerminal goal,
+                           final ParseOptions<String> parseOptions,
+                           final BufferedReader in,
+                           final PrintStream out,
+                           final PrintStream report,
+                           final int threads) throws IOException, InterruptedException {
+        final ExecutorService workers = Executors.newFixedThreadPool(threads);
+        final Deque<Future<String>> inFlight = new ArrayDeque<>();
+        final int window = threads * 4;
+        final long start = System.nanoTime();
+        long count = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                final long lineNumber = count++;
+                final String sentence = line;
+                inFlight.add(workers.submit(() -> parseLine(parser, goal, parseOptions, lineNumber, sentence)));
+                if (inFlight.size() >= window) out.println(getResult(inFlight.poll()));
+                if (report != null && count % REPORT_INTERVAL == 0) reportThroughput(report, count, start);
+            }
+            while (!inFlight.isEmpty()) out.println(getResult(inFlight.poll()));
+        } finally {
+            workers.shutdownNow();
+        }
+        if (report != null) reportThroughput(report, count, start);
+        return count;
+    }
+
+    private static String getResult(final Future<String> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            // parseLine catches everything, so this is a bug
+            throw new IssueRequest("Worker failed: " + e.getCause());
+        }
+    }
+
+    private static void reportThroughput(final PrintStream report, final long count, final long start) {
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        report.println(String.format(Locale.ROOT, "Parsed %d sentences in %.1f s (%.1f sentences/s)", count, seconds, count / Math.max(seconds, 1e-9)));
+    }
+
+    private static String parseLine(final Parser<String> parser,
+                                    final NonTerminal goal,
+                                    final ParseOptions<String> parseOptions,
+                                    final long lineNumber,
+                                    final String line) {
+        final String trimmed = line.trim();
+        final List<Token<String>> tokens = trimmed.isEmpty() ? Collections.emptyList() : Tokens.tokenize(trimmed);
+        return JsonLines.line(lineNumber, JsonLines.parse(parser, goal, parseOptions, tokens));
+    }
+
 
     private static class HandleArguments {
         final private String[] args;
@@ -56,6 +163,9 @@ public class CommandLine {
         private Grammar<String> grammar;
         private NonTerminal goal;
         private ScanMode scanMode;
+        private String batchInput;
+        private String output;
+        private int threads;
 
         HandleArguments(final String... args) {
             this.args = args;
@@ -88,6 +198,7 @@ public class CommandLine {
             setInputFile(options);
             setGoal(options);
             setParseMode(options);
+            setBatchOptions(options);
 
             return this;
         }
@@ -104,7 +215,9 @@ public class CommandLine {
                         case INPUT_FILE:
                         case OPTION_GOAL:
                         case OPTION_SCAN_MODE:
-                        case "o":
+                        case OPTION_BATCH:
+                        case OPTION_THREADS:
+                        case OPTION_OUTPUT:
                             lastOption = i + 1;
                             options.put(option, args[i + 1].trim());
                         default:
@@ -114,7 +227,8 @@ public class CommandLine {
             }
 
             tokens = Arrays.copyOfRange(args, lastOption + 1, args.length);
-            if (tokens.length <= 0) throw new IllegalArgumentException("No tokens specified. \n" + USAGE);
+            if (tokens.length <= 0 && !options.containsKey(OPTION_BATCH))
+                throw new IllegalArgumentException("No tokens specified. \n" + USAGE);
             return options;
         }
 
@@ -123,6 +237,17 @@ public class CommandLine {
             this.scanMode = ScanMode.fromString(scanMode);
         }
 
+        private void setBatchOptions(final Map<String, String> options) {
+            batchInput = options.get(OPTION_BATCH);
+            output = options.get(OPTION_OUTPUT);
+            try {
+                threads = Integer.parseInt(options.getOrDefault(OPTION_THREADS, String.valueOf(Runtime.getRuntime().availableProcessors())));
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException("Number of threads must be a number. \n" + USAGE);
+            }
+            if (threads < 1) throw new IllegalArgumentException("Need at least one thread. \n" + USAGE);
+        }
+
         private void setInputFile(final Map<String, String> options) {
             if (!options.containsKey(INPUT_FILE)) {
                 throw new IllegalArgumentException("No input file specified. \n" + USAGE);
@@ -15,6 +15,7 @@ public class DeferredStateScoreComputations {
     public final Map<State, ExpressionWrapper> states;
     public final TObjectDoubleMap<State> statesDouble = new TObjectDoubleHashMap<>(50, 0.5F, Double.NaN);
     private final ExpressionSemiring semiring;
+    private long nodeCount = 0;
 
     public DeferredStateScoreComputations(final Grammar grammar) {
         this.states = new HashMap<>();
@@ -63,5 +64,14 @@ public class DeferredStateScoreComputations {
             current.setExpression(this.semiring.plus(addValue, current.getLiteral()));
 
         this.states.put(s, current);
+        // One product and one sum
+        nodeCount += 2;
+    }
+
+    /**
+     * @return Number of expression nodes built so far
+     */
+    public long getNodeCount() {
+        return nodeCount;
     }
 }
@@ -0,0 +1,88 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.List;
+
+/**
+ * Formats parse results as lines of JSON, for the batch modes of {@link CommandLine} and {@link BulkParser}
+ */
+final class JsonLines {
+    private JsonLines() {
+    }
+
+    /**
+     * @return <code>{"line":lineNumber,fields}</code>
+     */
+    static String line(final long lineNumber, final String fields) {
+        return "{\"line\":" + lineNumber + ',' + fields + '}';
+    }
+
+    /**
+     * Parses given sentence
+     *
+     * @return The Viterbi probability and tree as JSON object fields, or an error field if the sentence could not be parsed
+     */
+    static String parse(final Parser<String> parser,
+                        final NonTerminal goal,
+                        final ParseOptions<String> parseOptions,
+                        final List<Token<String>> tokens) {
+        final StringBuilder json = new StringBuilder();
+        try {
+            final ParseTreeWithScore parse = parser.getViterbiParseWithScore(goal, tokens, parseOptions);
+            json.append("\"probability\":").append(parse.score.getProbability()).append(",\"tree\":");
+            appendJson(json, parse.parseTree);
+        } catch (final RuntimeException e) {
+            json.append("\"probability\":0.0,\"tree\":null,\"error\":");
+            appendJson(json, String.valueOf(e.getMessage()));
+        }
+        return json.toString();
+    }
+
+    private static void appendJson(final StringBuilder json, final ParseTree tree) {
+        json.append("{\"category\":");
+        appendJson(json, tree.category.toString());
+        if (tree instanceof ParseTree.Leaf) {
+            json.append(",\"token\":");
+            appendJson(json, String.valueOf(((ParseTree.Leaf<?>) tree).token));
+        } else if (tree.children != null) {
+            json.append(",\"children\":[");
+            for (int i = 0; i < tree.children.size(); i++) {
+                if (i > 0) json.append(',');
+                appendJson(json, tree.children.get(i));
+            }
+            json.append(']');
+        }
+        json.append('}');
+    }
+
+    private static void appendJson(final StringBuilder json, final String string) {
+        json.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,47 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseBudget;
+import org.leibnizcenter.cfg.earleyparser.chart.Chart;
+
+/**
+ * Thrown when a parse exceeds its {@link ParseBudget}. Carries statistics about the parse at the moment it was
+ * aborted, and the chart, which is complete up to and including {@link #lastCompletePosition}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class ParseBudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public final Reason reason;
+    /**
+     * Last position that was fully predicted, scanned and completed before the parse was aborted
+     */
+    public final int lastCompletePosition;
+    public final int stateCount;
+    /**
+     * Number of expression nodes built while completing the position that was being completed, or 0
+     */
+    public final long expressionNodeCount;
+    public final long elapsedNanos;
+    public final transient Chart<?> chart;
+
+    public ParseBudgetExceededException(final Reason reason,
+                                        final int lastCompletePosition,
+                                        final int stateCount,
+                                        final long expressionNodeCount,
+                                        final long elapsedNanos,
+                                        final Chart<?> chart) {
+        super("Parse budget exceeded (" + reason + ") after position " + lastCompletePosition
+                + ", with " + stateCount + " states, " + expressionNodeCount + " expression nodes and "
+                + (elapsedNanos / 1000000) + " ms");
+        this.reason = reason;
+        this.lastCompletePosition = lastCompletePosition;
+        this.stateCount = stateCount;
+        this.expressionNodeCount = expressionNodeCount;
+        this.elapsedNanos = elapsedNanos;
+        this.chart = chart;
+    }
+
+    public enum Reason {
+        MAX_STATES, MAX_EXPRESSION_NODES, TIMEOUT, CANCELLED
+    }
+}
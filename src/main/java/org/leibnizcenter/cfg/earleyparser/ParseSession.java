@@ -0,0 +1,165 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseProgressListener;
+import org.leibnizcenter.cfg.earleyparser.chart.ChartWithInputPosition;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * Parses tokens as they arrive, for input that is not available as an {@link Iterable} up front. Tokens are
+ * queued by the caller and parsed on an {@link Executor}, one at a time and in order, so the caller never waits for
+ * chart work unless the queue is full.
+ * </p>
+ * <p>
+ * The queue has a fixed capacity, which provides backpressure: when parsing falls behind, {@link #offer(Token)}
+ * returns false and {@link #submit(Token)} blocks until there is room again. Note that submitting from a thread of
+ * the executor itself can deadlock if the executor has no other threads to parse on.
+ * </p>
+ * <p>
+ * After {@link #close()}, {@link #getResult()} completes with the chart once all queued tokens are parsed, or
+ * completes exceptionally as soon as parsing a token fails. If the executor rejects the work of parsing queued tokens,
+ * for example because it is shut down, the result completes exceptionally with the
+ * {@link RejectedExecutionException}, which is also thrown to the caller that queued the token or closed the session.
+ * </p>
+ */
+public class ParseSession<T> {
+    private final ChartWithInputPosition<T> chart;
+    private final Executor executor;
+    private final ParseProgressListener<T> listener;
+    private final BlockingQueue<Token<T>> pending;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final CompletableFuture<ChartWithInputPosition<T>> result = new CompletableFuture<>();
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity Maximum number of tokens that are waiting to be parsed
+     * @param listener Called after every token, may be null
+     */
+    public ParseSession(final Grammar<T> grammar,
+                        final NonTerminal goal,
+                        final ParseOptions<T> parseOptions,
+                        final Executor executor,
+                        final int capacity,
+                        final ParseProgressListener<T> listener) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive, but was " + capacity);
+        this.chart = new ChartWithInputPosition<>(grammar, goal, parseOptions);
+        this.executor = executor;
+        this.listener = listener;
+        this.pending = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Queues given token if there is room, without blocking
+     *
+     * @return false if the queue is full or the session has failed, in which case the token is not parsed
+     * @throws IllegalStateException when the session is closed
+     */
+    public boolean offer(final Token<T> token) {
+        ensureOpen();
+        if (result.isDone() || !pending.offer(token)) return false;
+        if (failedWhileQueueing()) return false;
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Queues given token, waiting for room if necessary
+     *
+     * @return false if the session has failed, in which case the token is not parsed
+     * @throws IllegalStateException when the session is closed
+     */
+    public boolean submit(final Token<T> token) throws InterruptedException {
+        ensureOpen();
+        if (result.isDone()) return false;
+        pending.put(token);
+        if (failedWhileQueueing()) return false;
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * The session may have failed while a token was being queued, after the queue was cleared, so that the token
+     * would never be parsed. Clears the queue again in that case.
+     *
+     * @return Whether the session has failed
+     */
+    private boolean failedWhileQueueing() {
+        if (!result.isDone()) return false;
+        pending.clear();
+        return true;
+    }
+
+    /**
+     * Signals that no more tokens will be passed. The {@link #getResult() result} completes when all queued tokens
+     * are parsed.
+     */
+    public void close() {
+        closed = true;
+        scheduleDrain();
+    }
+
+    /**
+     * @return Future of the chart after all tokens are parsed
+     */
+    public CompletableFuture<ChartWithInputPosition<T>> getResult() {
+        return result;
+    }
+
+    /**
+     * @return Number of tokens that are waiting to be parsed
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Session is closed");
+    }
+
+    private void scheduleDrain() {
+        if (!result.isDone() && draining.compareAndSet(false, true)) try {
+            executor.execute(this::drain);
+        } catch (final RejectedExecutionException e) {
+            // Nothing will parse the queued tokens, so fail the session and make room for callers waiting in submit()
+            result.completeExceptionally(e);
+            pending.clear();
+            draining.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Parses queued tokens until the queue is empty. Only one drain runs at a time, so tokens are parsed in order.
+     */
+    private void drain() {
+        try {
+            while (!result.isDone()) {
+                final Token<T> token = pending.poll();
+                if (token != null) {
+                    chart.next(token);
+                    if (listener != null) listener.onToken(chart.tokenIndex - 1, token, chart);
+                } else if (closed) {
+                    result.complete(chart);
+                } else {
+                    draining.set(false);
+                    // Stop, unless a token or close() arrived after polling and nobody else started draining
+                    if ((pending.isEmpty() && !closed) || !draining.compareAndSet(false, true)) return;
+                }
+            }
+        } catch (final Throwable e) {
+            result.completeExceptionally(e);
+        }
+        pending.clear();
+        draining.set(false);
+    }
+}
@@ -1,21 +1,35 @@
 package org.leibnizcenter.cfg.earleyparser;
 
+import org.leibnizcenter.cfg.algebra.semiring.dbl.ExpressionSemiring;
 import org.leibnizcenter.cfg.category.Category;
 import org.leibnizcenter.cfg.category.nonterminal.NonLexicalToken;
 import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.nonterminal.Repetition;
 import org.leibnizcenter.cfg.category.terminal.Terminal;
 import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseProgressListener;
 import org.leibnizcenter.cfg.earleyparser.callbacks.ScanProbability;
 import org.leibnizcenter.cfg.earleyparser.chart.Chart;
 import org.leibnizcenter.cfg.earleyparser.chart.ChartWithInputPosition;
 import org.leibnizcenter.cfg.earleyparser.chart.state.ScannedToken;
 import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.earleyparser.chart.statesets.ChartCapacity;
 import org.leibnizcenter.cfg.earleyparser.chart.statesets.StateSets;
+import org.leibnizcenter.cfg.earleyparser.recognizer.BooleanRecognizer;
+import org.leibnizcenter.cfg.earleyparser.repair.RepairCosts;
+import org.leibnizcenter.cfg.earleyparser.repair.RepairToken;
+import org.leibnizcenter.cfg.earleyparser.repair.RepairedParse;
+import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
 import org.leibnizcenter.cfg.errors.IssueRequest;
 import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.grammar.NullProbabilities;
 import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.TokenAlternatives;
+import org.leibnizcenter.cfg.token.TokenLattice;
+import org.leibnizcenter.cfg.token.TokenWithCategories;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.concurrent.Executor;
 
 import static org.leibnizcenter.cfg.util.Collections2.isFilled;
 
@@ -26,12 +40,27 @@ import static org.leibnizcenter.cfg.util.Collections2.isFilled;
  * Created by Maarten on 31-7-2016.
  */
 @SuppressWarnings({"WeakerAccess", "unused"})
-public class Parser<T> {
+public class Parser<T> implements ProbabilisticParser<T> {
+    /**
+     * Charts get at most this many states per position up front, however large the grammar
+     */
+    private static final int MAX_INITIAL_STATES_PER_POSITION = 64;
+
     private final Grammar<T> grammar;
+    private BooleanRecognizer<T> booleanRecognizer;
+    /**
+     * Learns how large charts for this grammar tend to get, so that they can be sized for their input
+     */
+    private final ChartCapacity.Estimator capacityEstimator;
 
 
     public Parser(final Grammar<T> grammar) {
         this.grammar = grammar;
+        this.capacityEstimator = new ChartCapacity.Estimator(Math.min(MAX_INITIAL_STATES_PER_POSITION, Math.max(1, grammar.size())));
+    }
+
+    public Grammar<T> getGrammar() {
+        return grammar;
     }
 
     /**
@@ -162,7 +191,7 @@ public class Parser<T> {
                 final int position = state.position;
 
                 final int previousDotPosition = state.ruleDotPosition + state.ruleStartPosition == state.position ? state.ruleDotPosition - 1 : state.ruleDotPosition;
-                final State state1 = State.create(
+                final State state1 = chart.stateSets.getCanonical(
                         state.position - 1,
                         state.ruleStartPosition,
                         previousDotPosition,
@@ -186,7 +215,9 @@ public class Parser<T> {
                 // let \'a = \, call
                 final int position = state.position;
 
-                final State preScanState = State.create(
+                // Tokens in a lattice may span more than one position, so we follow the Viterbi back-pointer if there is one
+                final State.ViterbiScore viterbi = chart.getViterbiScore(state);
+                final State preScanState = viterbi != null && isPreScanState(viterbi.origin, state) ? viterbi.origin : chart.stateSets.getCanonical(
                         state.position - 1,
                         state.ruleStartPosition,
                         state.ruleDotPosition - 1,
@@ -208,11 +239,21 @@ public class Parser<T> {
                 // Completed state that led to the current state
                 final State origin = viterbi.origin;
 
-                // Recurse for predecessor state (before the completion happened)
-                final State predecessor = State.create(
+                if (isBeforeNullable(origin, state)) {
+                    // The dot was moved over a category that derives the empty string
+                    final ParseTree T = getViterbiParse(origin, chart);
+                    addChild(T, getViterbiNullParse((NonTerminal) prefixEnd, chart.grammar.nullProbabilities));
+                    return T;
+                }
+
+                // Recurse for predecessor state (before the completion happened). A repetition that did not start
+                // with this completion was already completed before it.
+                final State predecessor = chart.stateSets.getCanonical(
                         origin.ruleStartPosition,
                         state.ruleStartPosition,
-                        state.ruleDotPosition - 1,
+                        state.isRepeating() && origin.ruleStartPosition != state.ruleStartPosition
+                                ? state.ruleDotPosition
+                                : state.ruleDotPosition - 1,
                         state.rule
                 );
                 final ParseTree T = getViterbiParse(
@@ -221,12 +262,52 @@ public class Parser<T> {
                 // Recurse for completed state
                 final ParseTree Tprime = getViterbiParse(origin, chart);
 
-                T.addRightMost(Tprime);
+                addChild(T, Tprime);
                 return T;
             }
         }
     }
 
+    /**
+     * Adds given child as right-most child of given parent, or just its children if both are the same
+     * {@link Repetition}. That happens for a repetition of a non-terminal that derives the empty string, which gets
+     * left-recursive rules instead of a {@link org.leibnizcenter.cfg.rule.RepetitionRule looping rule}, so that it
+     * ends up in a flat list as well.
+     */
+    public static void addChild(final ParseTree parent, final ParseTree child) {
+        if (child.category instanceof Repetition && child.category.equals(parent.category))
+            for (final ParseTree grandChild : child.getChildren()) parent.addRightMost(grandChild);
+        else
+            parent.addRightMost(child);
+    }
+
+    /**
+     * @return Whether given origin is the same state as given state, but with the dot one category earlier
+     */
+    private static boolean isBeforeNullable(final State origin, final State state) {
+        return origin.position == state.position
+                && origin.ruleStartPosition == state.ruleStartPosition
+                && origin.ruleDotPosition == state.ruleDotPosition - 1
+                && origin.rule.equals(state.rule);
+    }
+
+    /**
+     * @return Most probable derivation of the empty string from given non-terminal
+     */
+    public static ParseTree getViterbiNullParse(final NonTerminal X, final NullProbabilities nullProbabilities) {
+        final ParseTree T = new ParseTree.NonLeaf(X);
+        for (final Category Y : nullProbabilities.getViterbiRule(X).right)
+            T.addRightMost(getViterbiNullParse((NonTerminal) Y, nullProbabilities));
+        return T;
+    }
+
+    private static boolean isPreScanState(final State origin, final State scanned) {
+        return origin != null
+                && origin.rule.equals(scanned.rule)
+                && origin.ruleStartPosition == scanned.ruleStartPosition
+                && origin.ruleDotPosition == scanned.ruleDotPosition - 1;
+    }
+
     /**
      * Parses the given list of tokens and returns he parse probability
      *
@@ -244,22 +325,79 @@ public class Parser<T> {
      * @param goal   Goal category, typically S for Sentence
      * @param tokens list of tokens to parse
      * @return Probability that given string of tokens matches given non-terminal with given grammar
+     * @throws IllegalArgumentException If the options only keep Viterbi scores
      */
     public double recognize(final NonTerminal goal,
                             final Iterable<Token<T>> tokens,
                             @SuppressWarnings("SameParameterValue") final ParseOptions<T> callbacks) {
         final ChartWithInputPosition<T> parse = parseAndCountTokens(goal, tokens, callbacks);
-        final Collection<State> completedStates = parse.chart.stateSets.completedStates.getCompletedStates(parse.chartIndex, Category.START);
+        return getProbability(parse.chart, parse.chartIndex);
+    }
+
+    /**
+     * Parses the given lattice and returns the probability of all paths through the lattice, weighted by the
+     * probabilities of their edges.
+     *
+     * @param goal    Goal category, typically S for Sentence
+     * @param lattice lattice of token hypotheses to parse
+     * @return Probability that the lattice matches given non-terminal with given grammar
+     */
+    public double recognize(final NonTerminal goal, final TokenLattice<T> lattice) {
+        return getProbability(parse(goal, lattice, null), lattice.getFinalNode());
+    }
+
+    /**
+     * @param goal      Goal category, typically S for Sentence
+     * @param positions weighted token alternatives for every input position
+     * @return Probability of all combinations of alternatives, weighted by the probabilities of the alternatives
+     */
+    public double recognizeAlternatives(final NonTerminal goal, final Iterable<TokenAlternatives<T>> positions) {
+        final ChartWithInputPosition<T> parse = parseAlternatives(goal, positions, null);
+        return getProbability(parse.chart, parse.chartIndex);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the chart only keeps Viterbi scores, because then its forward scores are
+     *                                  the probability of the best derivation rather than of all derivations
+     */
+    double getProbability(final Chart<T> chart, final int position) {
+        if (chart.stateSets.viterbiOnly)
+            throw new IllegalArgumentException("Can not compute the probability of the input from a chart that only keeps Viterbi scores. Use getViterbiParseWithScore instead.");
+        final Collection<State> completedStates = chart.stateSets.completedStates.getCompletedStates(position, Category.START);
         if (isFilled(completedStates)) {
             if (completedStates.size() > 1)
                 throw new IssueRequest("Multiple final states found. This is likely an error.");
             return completedStates.stream().mapToDouble(finalState ->
                     grammar.semiring.toProbability(
-                            parse.chart.getForwardScore(finalState)
+                            chart.getForwardScore(finalState)
                     )).sum();
         } else return 0.0;
     }
 
+    /**
+     * Decides whether the given list of tokens is in the language of the goal category, without computing
+     * probabilities. This is much cheaper than {@link #recognize(NonTerminal, Iterable)}. Error rules are ignored.
+     *
+     * @param goal   Goal category, typically S for Sentence
+     * @param tokens list of tokens to parse
+     * @return Whether the tokens can be derived from given goal
+     */
+    public boolean accepts(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        return getBooleanRecognizer().accepts(goal, tokens);
+    }
+
+    /**
+     * Like {@link #accepts(NonTerminal, Iterable)}, but also returns the length of the longest viable prefix of the input
+     */
+    public BooleanRecognizer.Result recognizeBoolean(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        return getBooleanRecognizer().recognize(goal, tokens);
+    }
+
+    private synchronized BooleanRecognizer<T> getBooleanRecognizer() {
+        if (booleanRecognizer == null) booleanRecognizer = new BooleanRecognizer<>(grammar);
+        return booleanRecognizer;
+    }
+
     public Chart<T> parse(final NonTerminal S,
                           final Iterable<Token<T>> tokens) {
         return parse(S, tokens, (ScanProbability<T>) null);
@@ -286,19 +424,183 @@ public class Parser<T> {
         return getViterbiParseWithScore(S, tokens, null);
     }
 
+    /**
+     * @param callbacks Parse options. If these have a {@link org.leibnizcenter.cfg.earleyparser.callbacks.ParseBudget}
+     *                  that allows partial results, and the parse exceeds it, the Viterbi parse of the longest prefix
+     *                  of the input that was parsed within the budget is returned instead.
+     * @throws ParseBudgetExceededException If the parse exceeds its budget, and there is no partial result to return
+     */
     public ParseTreeWithScore getViterbiParseWithScore(
             final NonTerminal S,
             final Iterable<Token<T>> tokens,
             final ParseOptions<T> callbacks) {
-        final ChartWithInputPosition<T> chart = parseAndCountTokens(S, tokens, callbacks);
-        final StateSets<T> stateSets = chart.chart.stateSets;
-        final Collection<State> completedStates = stateSets.completedStates.getCompletedStates(chart.chartIndex, Category.START);
+        if (callbacks != null && callbacks.scanMode == ScanMode.REPAIR) {
+            final List<Token<T>> tokenList = new ArrayList<>();
+            tokens.forEach(tokenList::add);
+            final RepairedParse<T> repaired = getRepairedParse(S, tokenList, callbacks);
+            if (repaired == null) throw new RuntimeException("Could not repair sentence with goal " + S);
+            return repaired.parse;
+        }
+        final ChartWithInputPosition<T> chart;
+        try {
+            chart = parseAndCountTokens(S, tokens, callbacks);
+        } catch (final ParseBudgetExceededException e) {
+            if (!callbacks.budget.returnPartialResult) throw e;
+            final ParseTreeWithScore partial = getPartialViterbiParseWithScore(S, e);
+            if (partial == null) throw e;
+            return partial;
+        }
+        return getViterbiParseWithScore(S, chart.chart, chart.chartIndex);
+    }
+
+    /**
+     * @return The Viterbi parse of the longest prefix of the input that was parsed before the parse exceeded its
+     * budget, or null if no prefix matches given goal
+     */
+    ParseTreeWithScore getPartialViterbiParseWithScore(final NonTerminal S, final ParseBudgetExceededException e) {
+        @SuppressWarnings("unchecked") final Chart<T> partialChart = (Chart<T>) e.chart;
+        for (int position = e.lastCompletePosition; position >= 0; position--)
+            if (!partialChart.stateSets.completedStates.getCompletedStates(position, Category.START).isEmpty())
+                return getViterbiParseWithScore(S, partialChart, position);
+        return null;
+    }
+
+    /**
+     * @param S       Goal category, typically S for Sentence
+     * @param lattice lattice of token hypotheses to parse
+     * @param options Parse options. Callbacks and scan probabilities are not used for lattices; edge probabilities
+     *                take the place of scan probabilities.
+     * @return The most likely parse tree over all paths through the lattice, with its probability (including the
+     * probabilities of the edges it consists of)
+     */
+    public ParseTreeWithScore getViterbiParseWithScore(
+            final NonTerminal S,
+            final TokenLattice<T> lattice,
+            final ParseOptions<T> options) {
+        return getViterbiParseWithScore(S, parse(S, lattice, options), lattice.getFinalNode());
+    }
+
+    /**
+     * @param S         Goal category, typically S for Sentence
+     * @param positions weighted token alternatives for every input position
+     * @param options   Parse options. The probabilities of the alternatives take the place of scan probabilities.
+     * @return The most likely parse tree over all combinations of alternatives, containing the chosen alternatives,
+     * with its probability (including the probabilities of the chosen alternatives)
+     */
+    public ParseTreeWithScore getViterbiParseWithScoreOfAlternatives(
+            final NonTerminal S,
+            final Iterable<TokenAlternatives<T>> positions,
+            final ParseOptions<T> options) {
+        final ChartWithInputPosition<T> chart = parseAlternatives(S, positions, options);
+        return getViterbiParseWithScore(S, chart.chart, chart.chartIndex);
+    }
+
+    /**
+     * <p>
+     * Finds the most likely parse of given tokens after repairing them with weighted insertions, deletions and
+     * substitutions of tokens, in a single pass over one chart, in the style of Aho &amp; Peterson's error-correcting
+     * parser.
+     * </p>
+     * <p>
+     * Chart positions are pairs of an input position and the number of edits made so far, so no repair makes more
+     * than {@link RepairCosts#maxEdits} edits, and the chart is that many times larger than for the plain input.
+     * Insertions scan any terminal without consuming input, deletions skip input tokens before scanning the next one,
+     * and substitutions scan an input token as a terminal that it does not have. Like edges in a
+     * {@link TokenLattice}, these are weighted by their probability.
+     * </p>
+     *
+     * @param S       Goal category, typically S for Sentence
+     * @param tokens  Input tokens
+     * @param options Parse options, whose {@link ParseOptions#repairCosts} are used. Callbacks and scan probabilities
+     *                are not used.
+     * @return The most likely repaired parse, or null if no repair within the edit bound matches the goal
+     */
+    public RepairedParse<T> getRepairedParse(final NonTerminal S,
+                                             final List<Token<T>> tokens,
+                                             final ParseOptions<T> options) {
+        final RepairCosts costs = options == null || options.repairCosts == null ? RepairCosts.DEFAULT : options.repairCosts;
+        final int n = tokens.size();
+        final int maxEdits = costs.maxEdits;
+        final int layers = maxEdits + 1;
+        final ExpressionSemiring sr = grammar.semiring;
+        final Set<Terminal<T>> anyTerminal = new HashSet<>(grammar.terminals);
+        //noinspection SuspiciousMethodCalls
+        anyTerminal.remove(NonLexicalToken.INSTANCE);
+
+        final Chart<T> chart = new Chart<>(grammar, options, capacityEstimator.forPositions((n + 1) * layers));
+        chart.addInitialState(S);
+
+        // Node (position, edits) is numbered position * layers + edits, which orders the nodes topologically
+        for (int node = 0; node < (n + 1) * layers; node++) {
+            if (node > 0) chart.complete(node);
+            final int position = node / layers;
+            final int edits = node % layers;
+            chart.predict(node);
+
+            if (edits < maxEdits && costs.insertionProbability > 0.0) chart.scan(
+                    node,
+                    node + 1,
+                    new TokenWithCategories<>(RepairToken.insertion(position), anyTerminal),
+                    sr.fromProbability(costs.insertionProbability)
+            );
+            for (int deleted = 0; position + deleted < n && edits + deleted <= maxEdits; deleted++) {
+                final double deletionProbability = Math.pow(costs.deletionProbability, deleted);
+                if (deletionProbability <= 0.0) break;
+                final int consumed = position + deleted;
+                final int next = (consumed + 1) * layers + edits + deleted;
+                final Token<T> token = tokens.get(consumed);
+                final Set<Terminal<T>> categories = grammar.getCategories(token);
+                if (isFilled(categories)) chart.scan(
+                        node,
+                        next,
+                        new TokenWithCategories<>(RepairToken.match(token, position, consumed), categories),
+                        sr.fromProbability(deletionProbability)
+                );
+                if (edits + deleted < maxEdits && costs.substitutionProbability > 0.0) {
+                    final Set<Terminal<T>> otherCategories = new HashSet<>(anyTerminal);
+                    if (categories != null) otherCategories.removeAll(categories);
+                    if (!otherCategories.isEmpty()) chart.scan(
+                            node,
+                            next + 1,
+                            new TokenWithCategories<>(RepairToken.substitution(token, position, consumed), otherCategories),
+                            sr.fromProbability(deletionProbability * costs.substitutionProbability)
+                    );
+                }
+            }
+        }
+
+        // Tokens after the end of the parse are deleted
+        int bestNode = -1;
+        int bestEnd = -1;
+        double bestProbability = 0.0;
+        for (int end = Math.max(0, n - maxEdits); end <= n; end++)
+            for (int edits = 0; edits + n - end <= maxEdits; edits++) {
+                final int node = end * layers + edits;
+                final Collection<State> completed = chart.stateSets.completedStates.getCompletedStates(node, Category.START);
+                if (completed.isEmpty()) continue;
+                final double probability = chart.getViterbiScore(completed.iterator().next()).getProbability()
+                        * Math.pow(costs.deletionProbability, n - end);
+                if (probability > bestProbability) {
+                    bestNode = node;
+                    bestEnd = end;
+                    bestProbability = probability;
+                }
+            }
+        if (bestNode < 0) return null;
+
+        final ParseTreeWithScore parse = getViterbiParseWithScore(S, chart, bestNode);
+        return new RepairedParse<>(parse, RepairedParse.readEdits(parse.parseTree, tokens, bestEnd), bestProbability);
+    }
+
+    ParseTreeWithScore getViterbiParseWithScore(final NonTerminal S, final Chart<T> chart, final int position) {
+        final StateSets<T> stateSets = chart.stateSets;
+        final Collection<State> completedStates = stateSets.completedStates.getCompletedStates(position, Category.START);
 
         IssueRequest.ensure(completedStates.size() <= 1, "Found more than one Viterbi parse. This is a bug.");
         if (completedStates.isEmpty()) throw new RuntimeException("Could not parse sentence with goal " + S);
 
         final State state = completedStates.iterator().next();
-        return new ParseTreeWithScore(getViterbiParse(state, chart.chart), chart.chart.getViterbiScore(state), grammar.semiring);
+        return new ParseTreeWithScore(getViterbiParse(state, chart), chart.getViterbiScore(state), grammar.semiring);
     }
 
     public Chart<T> parse(final NonTerminal S,
@@ -322,14 +624,52 @@ public class Parser<T> {
         ).chart;
     }
 
+    /**
+     * Parses all paths through given lattice in one chart, in which chart positions are lattice nodes. Edges with
+     * tokens that are not in the lexicon are ignored.
+     *
+     * @param S            Goal category, typically S for Sentence
+     * @param lattice      lattice of token hypotheses to parse
+     * @param parseOptions Parse options. Callbacks and scan probabilities are not used for lattices; edge
+     *                     probabilities take the place of scan probabilities.
+     * @return Chart in which {@link TokenLattice#getFinalNode() the final node} holds the completed parses
+     */
+    public Chart<T> parse(final NonTerminal S,
+                          final TokenLattice<T> lattice,
+                          final ParseOptions<T> parseOptions) {
+        final Chart<T> chart = new Chart<>(grammar, parseOptions, capacityEstimator.forPositions(lattice.getFinalNode() + 1));
+        chart.addInitialState(S);
+
+        // Nodes are topologically ordered, so all tokens that end in a node are scanned before we get to it
+        for (int node = 0; node <= lattice.getFinalNode(); node++) {
+            if (node > 0) chart.complete(node);
+            final List<TokenLattice.Edge<T>> edges = lattice.getOutgoing(node);
+            if (!edges.isEmpty()) {
+                chart.predict(node);
+                for (final TokenLattice.Edge<T> edge : edges) {
+                    final Set<Terminal<T>> categories = grammar.getCategories(edge.token);
+                    if (isFilled(categories)) chart.scan(
+                            node,
+                            edge.to,
+                            new TokenWithCategories<>(edge.token, categories),
+                            grammar.semiring.fromProbability(edge.probability)
+                    );
+                }
+            }
+        }
+        capacityEstimator.record(lattice.getFinalNode() + 1, chart.stateSets.size());
+        return chart;
+    }
+
     public ChartWithInputPosition<T> parseAndCountTokens(final NonTerminal S,
                                                          final Iterable<Token<T>> tokens,
                                                          final ParseOptions<T> parseOptions) {
-        final ChartWithInputPosition<T> completeChart = new ChartWithInputPosition<>(grammar, S, parseOptions);
+        final ChartWithInputPosition<T> completeChart = new ChartWithInputPosition<>(grammar, S, parseOptions, getCapacity(tokens));
 
         for (final Token<T> t : tokens) {
             completeChart.next(t);
         }
+        capacityEstimator.record(completeChart.chartIndex + 1, completeChart.chart.stateSets.size());
 
         //Set<State> completed = chart.getCompletedStates(i, Category.START);
         //if (completed.size() > 1) throw new Error("This is a bug");
@@ -337,4 +677,44 @@ public class Parser<T> {
         return completeChart;
     }
 
+    /**
+     * Starts parsing tokens that arrive one by one, on given executor
+     *
+     * @param capacity Maximum number of tokens that may wait to be parsed before {@link ParseSession#offer(Token)}
+     *                 starts refusing tokens
+     * @param listener Called after every parsed token, may be null
+     * @see ParseSession
+     */
+    public ParseSession<T> openSession(final NonTerminal S,
+                                       final ParseOptions<T> parseOptions,
+                                       final Executor executor,
+                                       final int capacity,
+                                       final ParseProgressListener<T> listener) {
+        return new ParseSession<>(grammar, S, parseOptions, executor, capacity, listener);
+    }
+
+    /**
+     * Parses a sequence of positions that each have several weighted token alternatives, scanning all alternatives
+     * for a position in one pass.
+     *
+     * @see ChartWithInputPosition#next(TokenAlternatives)
+     */
+    public ChartWithInputPosition<T> parseAlternatives(final NonTerminal S,
+                                                      final Iterable<TokenAlternatives<T>> positions,
+                                                      final ParseOptions<T> parseOptions) {
+        final ChartWithInputPosition<T> completeChart = new ChartWithInputPosition<>(grammar, S, parseOptions, getCapacity(positions));
+        for (final TokenAlternatives<T> alternatives : positions) completeChart.next(alternatives);
+        capacityEstimator.record(completeChart.chartIndex + 1, completeChart.chart.stateSets.size());
+        return completeChart;
+    }
+
+    /**
+     * @return Expected capacity of a chart for given input, which is sized from its length if that is known
+     */
+    private ChartCapacity getCapacity(final Iterable<?> input) {
+        return capacityEstimator.forPositions(input instanceof Collection
+                ? ((Collection<?>) input).size() + 1
+                : ChartCapacity.DEFAULT.positions);
+    }
+
 }
@@ -0,0 +1,206 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseBudget;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.chart.ChartWithInputPosition;
+import org.leibnizcenter.cfg.earleyparser.repair.RepairedParse;
+import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Parses a batch of sentences, parsing every prefix that sentences have in common only once.
+ * </p>
+ * <p>
+ * A {@link ParseBudget} applies to every sentence on its own: a chart restarts its clock when it is forked, and a
+ * sentence that exceeds the budget only affects the results of that sentence and the sentences it is a prefix of.
+ * </p>
+ * <p>
+ * The sentences are put in a trie of tokens, which is walked depth-first with one chart per branch. Where the trie
+ * branches, the chart is {@link ChartWithInputPosition#fork() forked} for every continuation, which shares the chart
+ * positions of the prefix instead of copying them. Results are the same as those of parsing every sentence
+ * independently.
+ * </p>
+ * In {@link ScanMode#SYNCHRONIZE} mode, charts can not be forked, so every sentence is parsed independently. In
+ * {@link ScanMode#REPAIR} mode, sentences are not parsed token by token at all, so only
+ * {@link #getViterbiParsesWithScore(NonTerminal, List, ParseOptions)} supports it, by repairing every sentence
+ * independently.
+ */
+public class PrefixSharingParser<T> {
+    public final Parser<T> parser;
+
+    public PrefixSharingParser(final Parser<T> parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @return For every sentence, the probability that it matches given goal
+     * @see Parser#recognize(NonTerminal, Iterable)
+     */
+    public double[] recognize(final NonTerminal goal, final List<? extends List<Token<T>>> sentences) {
+        final List<Double> probabilities = parse(goal, sentences, null,
+                chart -> parser.getProbability(chart.chart, chart.chartIndex));
+        final double[] result = new double[probabilities.size()];
+        for (int i = 0; i < result.length; i++) result[i] = probabilities.get(i);
+        return result;
+    }
+
+    /**
+     * @return For every sentence, the Viterbi parse with its score, or null if the sentence does not match given goal
+     * (or, in {@link ScanMode#REPAIR} mode, can not be repaired). If parsing a sentence exceeds the {@link ParseBudget},
+     * its result is the Viterbi parse of the longest prefix that was parsed when the budget
+     * {@link ParseBudget#returnPartialResult allows partial results}, and null otherwise. Repairs have no partial
+     * result.
+     * @see Parser#getViterbiParseWithScore(NonTerminal, Iterable, ParseOptions)
+     */
+    public List<ParseTreeWithScore> getViterbiParsesWithScore(final NonTerminal goal,
+                                                              final List<? extends List<Token<T>>> sentences,
+                                                              final ParseOptions<T> parseOptions) {
+        if (parseOptions != null && parseOptions.scanMode == ScanMode.REPAIR) {
+            final List<ParseTreeWithScore> results = new ArrayList<>(sentences.size());
+            for (final List<Token<T>> sentence : sentences) {
+                RepairedParse<T> repaired;
+                try {
+                    repaired = parser.getRepairedParse(goal, new ArrayList<>(sentence), parseOptions);
+                } catch (final ParseBudgetExceededException e) {
+                    repaired = null;
+                }
+                results.add(repaired == null ? null : repaired.parse);
+            }
+            return results;
+        }
+        return parse(goal, sentences, parseOptions, chart ->
+                        chart.chart.stateSets.completedStates.getCompletedStates(chart.chartIndex, Category.START).isEmpty()
+                                ? null
+                                : parser.getViterbiParseWithScore(goal, chart.chart, chart.chartIndex),
+                exceeded -> parseOptions.budget.returnPartialResult
+                        ? parser.getPartialViterbiParseWithScore(goal, exceeded)
+                        : null);
+    }
+
+    /**
+     * Parses all sentences, sharing common prefixes. Sentences that exceed the {@link ParseBudget} get null as result.
+     *
+     * @see #parse(NonTerminal, List, ParseOptions, Function, Function)
+     */
+    public <R> List<R> parse(final NonTerminal goal,
+                             final List<? extends List<Token<T>>> sentences,
+                             final ParseOptions<T> parseOptions,
+                             final Function<ChartWithInputPosition<T>, R> result) {
+        return parse(goal, sentences, parseOptions, result, exceeded -> null);
+    }
+
+    /**
+     * Parses all sentences, sharing common prefixes
+     *
+     * @param result         Computes the result for a sentence from its chart. It is called in no particular order, and
+     *                       must not modify the chart.
+     * @param budgetExceeded Computes the result for a sentence whose parse exceeded the {@link ParseBudget}, which is
+     *                       also the result of all longer sentences that start with that sentence.
+     * @return Results, in the order of the given sentences
+     * @throws IllegalArgumentException In {@link ScanMode#REPAIR} mode, which does not build a chart per sentence
+     */
+    public <R> List<R> parse(final NonTerminal goal,
+                             final List<? extends List<Token<T>>> sentences,
+                             final ParseOptions<T> parseOptions,
+                             final Function<ChartWithInputPosition<T>, R> result,
+                             final Function<ParseBudgetExceededException, R> budgetExceeded) {
+        if (parseOptions != null && parseOptions.scanMode == ScanMode.REPAIR)
+            throw new IllegalArgumentException("Can not parse sentences token by token in " + ScanMode.REPAIR + " mode. Use getViterbiParsesWithScore or Parser#getRepairedParse instead.");
+        final List<R> results = new ArrayList<>(Collections.nCopies(sentences.size(), null));
+        if (parseOptions != null && parseOptions.scanMode == ScanMode.SYNCHRONIZE) {
+            for (int i = 0; i < sentences.size(); i++)
+                try {
+                    results.set(i, result.apply(parser.parseAndCountTokens(goal, sentences.get(i), parseOptions)));
+                } catch (final ParseBudgetExceededException e) {
+                    results.set(i, budgetExceeded.apply(e));
+                }
+            return results;
+        }
+
+        final Node<T> root = new Node<>();
+        for (int i = 0; i < sentences.size(); i++) {
+            Node<T> node = root;
+            for (final Token<T> token : sentences.get(i)) node = node.children.computeIfAbsent(token, ignored -> new Node<>());
+            node.sentences.add(i);
+        }
+
+        final Deque<Branch<T>> toVisit = new ArrayDeque<>();
+        try {
+            toVisit.push(new Branch<>(root, new ChartWithInputPosition<>(parser.getGrammar(), goal, parseOptions), null, false));
+        } catch (final ParseBudgetExceededException e) {
+            setResults(root, budgetExceeded.apply(e), results);
+            return results;
+        }
+        while (!toVisit.isEmpty()) {
+            final Branch<T> branch = toVisit.pop();
+            final ChartWithInputPosition<T> chart = branch.chart;
+            final Node<T> node = branch.node;
+            // Siblings were parsed since this chart was forked, which should not count towards its budget
+            if (branch.isFork) chart.chart.restartClock();
+            if (branch.token != null) try {
+                chart.next(branch.token);
+            } catch (final ParseBudgetExceededException e) {
+                setResults(node, budgetExceeded.apply(e), results);
+                continue;
+            }
+
+            if (!node.sentences.isEmpty()) {
+                final R sentenceResult = result.apply(chart);
+                for (final int sentence : node.sentences) results.set(sentence, sentenceResult);
+            }
+
+            // Fork for all continuations but one before extending the chart, which the last continuation reuses
+            final Iterator<Map.Entry<Token<T>, Node<T>>> children = node.children.entrySet().iterator();
+            while (children.hasNext()) {
+                final Map.Entry<Token<T>, Node<T>> child = children.next();
+                final boolean isFork = children.hasNext();
+                toVisit.push(new Branch<>(child.getValue(), isFork ? chart.fork() : chart, child.getKey(), isFork));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Sets the result of all sentences that end in given node or below it
+     */
+    private static <T, R> void setResults(final Node<T> node, final R result, final List<R> results) {
+        final Deque<Node<T>> toVisit = new ArrayDeque<>();
+        toVisit.push(node);
+        while (!toVisit.isEmpty()) {
+            final Node<T> next = toVisit.pop();
+            for (final int sentence : next.sentences) results.set(sentence, result);
+            next.children.values().forEach(toVisit::push);
+        }
+    }
+
+    private static final class Node<T> {
+        final Map<Token<T>, Node<T>> children = new LinkedHashMap<>();
+        final List<Integer> sentences = new ArrayList<>(1);
+    }
+
+    /**
+     * A chart that is to be extended with the token that leads to given node
+     */
+    private static final class Branch<T> {
+        final Node<T> node;
+        final ChartWithInputPosition<T> chart;
+        final Token<T> token;
+        /**
+         * Whether the chart was forked for this branch, rather than being the chart of the parent branch
+         */
+        final boolean isFork;
+
+        Branch(final Node<T> node, final ChartWithInputPosition<T> chart, final Token<T> token, final boolean isFork) {
+            this.node = node;
+            this.chart = chart;
+            this.token = token;
+            this.isFork = isFork;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.token.Token;
+
+/**
+ * Computes the probability of strings under a probabilistic grammar, and their most probable parse. {@link Parser}
+ * keeps one Earley state per dotted rule and origin, and
+ * {@link org.leibnizcenter.cfg.earleyparser.recognizer.LR0Parser} keeps states of an LR(0) automaton. Both compute
+ * the same probabilities and Viterbi scores, but when more than one parse has the highest probability, they may
+ * return different ones of those.
+ * <p>
+ * {@link org.leibnizcenter.cfg.earleyparser.recognizer.LR0Parser} ignores error rules and does not take
+ * {@link org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions}, so it has no callbacks, scan modes or budgets,
+ * and a token that is not in the lexicon ends its parse.
+ * </p>
+ */
+public interface ProbabilisticParser<T> {
+    /**
+     * @param goal   Goal category, typically S for Sentence
+     * @param tokens list of tokens to parse
+     * @return Probability that given string of tokens matches given non-terminal
+     */
+    double recognize(NonTerminal goal, Iterable<Token<T>> tokens);
+
+    /**
+     * @param goal   Goal category, typically S for Sentence
+     * @param tokens list of tokens to parse
+     * @return The most probable parse tree of given tokens, with its probability
+     * @throws RuntimeException If the tokens do not match given non-terminal
+     */
+    ParseTreeWithScore getViterbiParseWithScore(NonTerminal goal, Iterable<Token<T>> tokens);
+}
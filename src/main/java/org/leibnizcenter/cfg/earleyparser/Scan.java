@@ -43,11 +43,14 @@ public final class Scan {
         return Double.isNaN(scanProbability) ? previousInner : sr.times(previousInner, scanProbability);
     }
 
-    @Deprecated
+    /**
+     * A scanned state along with its scores, computed before it is added to the chart
+     */
     public static class Delta<T> {
         public final State preScanState;
         public final double postScanForward;
         public final double postScanInner;
+        public final double postScanViterbi;
         public final State nextState;
         public final Token<T> token;
 
@@ -55,16 +58,33 @@ public final class Scan {
                 final Token<T> token, final State preScanState,
                 final double postScanForward,
                 final double postScanInner,
+                final double postScanViterbi,
                 final Rule nextRule,
                 final int nextPosition,
                 final int nextRuleStart,
                 final int nextDot
+        ) {
+            this(token, preScanState, postScanForward, postScanInner, postScanViterbi, State.create(nextPosition, nextRuleStart, nextDot, nextRule));
+        }
+
+        /**
+         * @param postScanViterbi Viterbi score of the scanned state: the Viterbi score of the pre-scan state times the
+         *                        scan probability. This differs from the inner score, which sums over all derivations.
+         * @param nextState Scanned state, preferably the canonical instance from the chart if it already exists
+         */
+        public Delta(
+                final Token<T> token, final State preScanState,
+                final double postScanForward,
+                final double postScanInner,
+                final double postScanViterbi,
+                final State nextState
         ) {
             this.preScanState = preScanState;
             this.postScanForward = postScanForward;
             this.postScanInner = postScanInner;
+            this.postScanViterbi = postScanViterbi;
             this.token = token;
-            this.nextState = State.create(nextPosition, nextRuleStart, nextDot, nextRule);
+            this.nextState = nextState;
         }
     }
 }
@@ -0,0 +1,13 @@
+package org.leibnizcenter.cfg.earleyparser.callbacks;
+
+import org.leibnizcenter.cfg.earleyparser.scan.Diagnostics;
+import org.leibnizcenter.cfg.token.Token;
+
+/**
+ * Called for every token that is not in the lexicon, right after it has been recorded in the
+ * {@link Diagnostics} of the chart
+ */
+@FunctionalInterface
+public interface DiagnosticListener<T> {
+    void onDiagnostic(int tokenIndex, int chartIndex, Diagnostics.Kind kind, Token<T> token);
+}
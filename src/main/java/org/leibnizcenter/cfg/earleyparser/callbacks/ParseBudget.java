@@ -0,0 +1,105 @@
+package org.leibnizcenter.cfg.earleyparser.callbacks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>
+ * Limits on the resources that a single parse may use. When a limit is exceeded, the parse is aborted with a
+ * {@link org.leibnizcenter.cfg.earleyparser.ParseBudgetExceededException}.
+ * </p>
+ * <p>
+ * The limits are checked inside the predict, scan and complete loops. State and expression node counts are checked
+ * every time; the clock and the cancellation token are checked at the start of every step and every
+ * {@link #CLOCK_CHECK_INTERVAL} states after that, so a parse may run slightly over its time limit.
+ * </p>
+ */
+public class ParseBudget {
+    /**
+     * Number of budget checks between two reads of the clock and the cancellation token. Must be a power of two.
+     */
+    public static final int CLOCK_CHECK_INTERVAL = 256;
+
+    /**
+     * Maximum number of states in the chart
+     */
+    public final int maxStates;
+    /**
+     * Maximum number of sum and product nodes that completing a single position may build for forward and inner
+     * scores
+     */
+    public final long maxExpressionNodes;
+    /**
+     * Maximum wall-clock time of the parse in nanoseconds, counted from the creation of its chart. A forked chart
+     * counts from the moment it was forked.
+     */
+    public final long timeoutNanos;
+    /**
+     * Returns true when the parse should stop. May be null.
+     */
+    public final BooleanSupplier cancelled;
+    /**
+     * Whether {@link org.leibnizcenter.cfg.earleyparser.Parser#getViterbiParseWithScore} should return the Viterbi
+     * parse of the longest prefix that was parsed within the budget, instead of throwing
+     */
+    public final boolean returnPartialResult;
+
+    public ParseBudget(final int maxStates,
+                       final long maxExpressionNodes,
+                       final long timeoutNanos,
+                       final BooleanSupplier cancelled,
+                       final boolean returnPartialResult) {
+        if (maxStates < 0 || maxExpressionNodes < 0 || timeoutNanos < 0)
+            throw new IllegalArgumentException("Limits must not be negative");
+        this.maxStates = maxStates;
+        this.maxExpressionNodes = maxExpressionNodes;
+        this.timeoutNanos = timeoutNanos;
+        this.cancelled = cancelled;
+        this.returnPartialResult = returnPartialResult;
+    }
+
+    public static class Builder {
+        private int maxStates = Integer.MAX_VALUE;
+        private long maxExpressionNodes = Long.MAX_VALUE;
+        private long timeoutNanos = Long.MAX_VALUE;
+        private BooleanSupplier cancelled;
+        private boolean returnPartialResult = false;
+
+        public Builder withMaxStates(final int maxStates) {
+            this.maxStates = maxStates;
+            return this;
+        }
+
+        public Builder withMaxExpressionNodes(final long maxExpressionNodes) {
+            this.maxExpressionNodes = maxExpressionNodes;
+            return this;
+        }
+
+        public Builder withTimeout(final long timeout, final TimeUnit unit) {
+            this.timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * @param cancelled Polled during the parse, which is aborted as soon as it returns true
+         */
+        public Builder withCancellation(final BooleanSupplier cancelled) {
+            this.cancelled = cancelled;
+            return this;
+        }
+
+        public Builder withCancellation(final AtomicBoolean cancelled) {
+            return withCancellation(cancelled::get);
+        }
+
+        public Builder returnPartialResult() {
+            this.returnPartialResult = true;
+            return this;
+        }
+
+        public ParseBudget build() {
+            return new ParseBudget(maxStates, maxExpressionNodes, timeoutNanos, cancelled, returnPartialResult);
+        }
+    }
+}
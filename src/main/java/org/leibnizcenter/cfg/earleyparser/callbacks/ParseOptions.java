@@ -1,6 +1,7 @@
 package org.leibnizcenter.cfg.earleyparser.callbacks;
 
 import org.leibnizcenter.cfg.earleyparser.chart.Chart;
+import org.leibnizcenter.cfg.earleyparser.repair.RepairCosts;
 import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
 import org.leibnizcenter.cfg.token.TokenWithCategories;
 
@@ -23,10 +24,24 @@ public class ParseOptions<T> {
     public final ParseCallback<T> onPreComplete;
     public final ParseCallback<T> onPostComplete;
     public final ScanMode scanMode;
-
-//    public final boolean parallelizePredict;
-//    public final boolean parallelizeScan;
-//    public final boolean parallelizeComplete;
+    /**
+     * Only compute Viterbi scores (max-product), skipping forward and inner scores (sum-product).
+     * Charts parsed this way can only be used for Viterbi parsing.
+     */
+    public final boolean viterbiOnly;
+
+    /**
+     * Resource limits for a single parse, or null for no limits
+     */
+    public final ParseBudget budget;
+    /**
+     * Edit costs for {@link ScanMode#REPAIR}, or null for {@link RepairCosts#DEFAULT}
+     */
+    public final RepairCosts repairCosts;
+    /**
+     * Called for every token that is not in the lexicon, or null
+     */
+    public final DiagnosticListener<T> onDiagnostic;
 
     public ParseOptions(
             final ScanProbability<T> scanProbability,
@@ -39,11 +54,32 @@ public class ParseOptions<T> {
             final ParseCallback<T> onPreScan,
             final ParseCallback<T> onPreComplete,
 
-            final ScanMode scanMode/*,
+            final ScanMode scanMode
+    ) {
+        this(scanProbability, onPostPredict, onPostScan, onPostComplete, onPrePredict, onPreScan, onPreComplete, scanMode, false, null, null, null);
+    }
+
+    /**
+     * Used by {@link Builder}, which is the only way to set options beyond those of the public constructor
+     */
+    private ParseOptions(
+            final ScanProbability<T> scanProbability,
+
+            final ParseCallback<T> onPostPredict,
+            final ParseCallback<T> onPostScan,
+            final ParseCallback<T> onPostComplete,
+
+            final ParseCallback<T> onPrePredict,
+            final ParseCallback<T> onPreScan,
+            final ParseCallback<T> onPreComplete,
+
+            final ScanMode scanMode,
+            final boolean viterbiOnly,
+
+            final ParseBudget budget,
+            final RepairCosts repairCosts,
 
-            boolean parallelizePredict,
-            boolean parallelizeScan,
-            boolean parallelizeComplete*/
+            final DiagnosticListener<T> onDiagnostic
     ) {
         this.scanProbability = scanProbability;
 
@@ -56,10 +92,11 @@ public class ParseOptions<T> {
         this.onPreComplete = onPreComplete;
 
         this.scanMode = scanMode;
+        this.viterbiOnly = viterbiOnly;
 
-//        this.parallelizePredict = parallelizePredict;
-//        this.parallelizeScan = parallelizeScan;
-//        this.parallelizeComplete = parallelizeComplete;
+        this.budget = budget;
+        this.repairCosts = repairCosts;
+        this.onDiagnostic = onDiagnostic;
     }
 
     public void onPredict(final int i, final TokenWithCategories<T> token, final Chart<T> chart) {
@@ -75,15 +112,15 @@ public class ParseOptions<T> {
     }
 
     public void beforePredict(final int i, final TokenWithCategories<T> token, final Chart<T> chart) {
-        if (this.onPrePredict != null) onPostComplete.on(i, token, chart);
+        if (this.onPrePredict != null) onPrePredict.on(i, token, chart);
     }
 
     public void beforeScan(final int i, final TokenWithCategories<T> token, final Chart<T> chart) {
-        if (this.onPreScan != null) onPostComplete.on(i, token, chart);
+        if (this.onPreScan != null) onPreScan.on(i, token, chart);
     }
 
     public void beforeComplete(final int i, final TokenWithCategories<T> token, final Chart<T> chart) {
-        if (this.onPreComplete != null) onPostComplete.on(i, token, chart);
+        if (this.onPreComplete != null) onPreComplete.on(i, token, chart);
     }
 
 
@@ -99,9 +136,10 @@ public class ParseOptions<T> {
         private ParseCallback<T> onPreComplete;
 
         private ScanMode scanMode;
-//        private boolean parallelizePredict = false;
-//        private boolean parallelizeScan = false;
-//        private boolean parallelizeComplete = false;
+        private boolean viterbiOnly = false;
+        private ParseBudget budget;
+        private RepairCosts repairCosts;
+        private DiagnosticListener<T> onDiagnostic;
 
         public Builder<T> withScanProbability(final ScanProbability<T> scanProbability) {
             this.scanProbability = scanProbability;
@@ -149,6 +187,16 @@ public class ParseOptions<T> {
             return this;
         }
 
+        /**
+         * Only keep Viterbi scores and back-pointers, which is all we need for finding the most likely parse tree.
+         * Forward and inner scores are not computed, so the resulting chart can not be used for computing the
+         * probability of the input.
+         */
+        public Builder<T> viterbiOnly() {
+            this.viterbiOnly = true;
+            return this;
+        }
+
         public ParseOptions<T> build() {
             return new ParseOptions<>(
                     scanProbability,
@@ -158,23 +206,36 @@ public class ParseOptions<T> {
                     onPrePredict,
                     onPreScan,
                     onPreComplete,
-                    scanMode
+                    scanMode,
+                    viterbiOnly,
+                    budget,
+                    repairCosts,
+                    onDiagnostic
             );
         }
 
-//        public Builder<T> parallelizeScan() {
-//            this.parallelizeScan = true;
-//            return this;
-//        }
-//
-//        public Builder<T> parallelizePredict() {
-//            this.parallelizePredict = true;
-//            return this;
-//        }
-//
-//        public Builder<T> parallelizeComplete() {
-//            this.parallelizeComplete = true;
-//            return this;
-//        }
+        /**
+         * Abort parses that exceed given budget
+         */
+        public Builder<T> withBudget(final ParseBudget budget) {
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * Edit costs for {@link ScanMode#REPAIR}
+         */
+        public Builder<T> withRepairCosts(final RepairCosts repairCosts) {
+            this.repairCosts = repairCosts;
+            return this;
+        }
+
+        /**
+         * Be notified of every token that is not in the lexicon
+         */
+        public Builder<T> onDiagnostic(final DiagnosticListener<T> onDiagnostic) {
+            this.onDiagnostic = onDiagnostic;
+            return this;
+        }
     }
 }
@@ -0,0 +1,13 @@
+package org.leibnizcenter.cfg.earleyparser.callbacks;
+
+import org.leibnizcenter.cfg.earleyparser.chart.ChartWithInputPosition;
+import org.leibnizcenter.cfg.token.Token;
+
+/**
+ * Called by a {@link org.leibnizcenter.cfg.earleyparser.ParseSession} after every token that has been parsed, on the
+ * thread that parsed it
+ */
+@FunctionalInterface
+public interface ParseProgressListener<T> {
+    void onToken(int tokenIndex, Token<T> token, ChartWithInputPosition<T> chart);
+}
@@ -9,20 +9,27 @@ import org.leibnizcenter.cfg.category.terminal.Terminal;
 import org.leibnizcenter.cfg.earleyparser.Complete;
 import org.leibnizcenter.cfg.earleyparser.DeferredStateScoreComputations;
 import org.leibnizcenter.cfg.earleyparser.ExpressionWrapper;
+import org.leibnizcenter.cfg.earleyparser.ParseBudgetExceededException;
+import org.leibnizcenter.cfg.earleyparser.Predict;
 import org.leibnizcenter.cfg.earleyparser.Scan;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseBudget;
 import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
 import org.leibnizcenter.cfg.earleyparser.callbacks.ScanProbability;
 import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.earleyparser.chart.statesets.ChartCapacity;
 import org.leibnizcenter.cfg.earleyparser.chart.statesets.StateSets;
 import org.leibnizcenter.cfg.errors.Bug;
 import org.leibnizcenter.cfg.errors.IssueRequest;
 import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.grammar.NullProbabilities;
+import org.leibnizcenter.cfg.grammar.ScoresAsSemiringElements;
+import org.leibnizcenter.cfg.grammar.UnknownWordModel;
+import org.leibnizcenter.cfg.rule.RepetitionRule;
 import org.leibnizcenter.cfg.rule.Rule;
+import org.leibnizcenter.cfg.token.TokenAlternatives;
 import org.leibnizcenter.cfg.token.TokenWithCategories;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 import static org.leibnizcenter.cfg.errors.IssueRequest.ensure;
 import static org.leibnizcenter.cfg.util.Collections2.emptyIfNull;
@@ -33,6 +40,12 @@ public class Chart<T> {
     public final StateSets<T> stateSets;
     public final Grammar<T> grammar;
     public final ParseOptions<T> parseOptions;
+    /**
+     * Time from which the {@link ParseBudget#timeoutNanos timeout} is counted: when this chart was created or forked,
+     * or when its clock was last {@link #restartClock() restarted}
+     */
+    private long startNanos;
+    private int budgetChecks = 0;
 
     /**
      * Creates a new chart, initializing its internal data structure.
@@ -43,36 +56,130 @@ public class Chart<T> {
 
     public Chart(final Grammar<T> grammar, final ParseOptions<T> parseOptions
     ) {
-        this.stateSets = new StateSets<>(grammar);
+        this(grammar, parseOptions, ChartCapacity.DEFAULT);
+    }
+
+    /**
+     * @param capacity Expected size of this chart, used to size its indexes up front
+     */
+    public Chart(final Grammar<T> grammar, final ParseOptions<T> parseOptions, final ChartCapacity capacity) {
         this.grammar = grammar;
         this.parseOptions = parseOptions == null ? new ParseOptions.Builder<T>().build() : parseOptions;
+        this.stateSets = new StateSets<>(grammar, this.parseOptions.viterbiOnly, capacity);
+        this.startNanos = System.nanoTime();
+    }
+
+    private Chart(final Chart<T> parent, final int position) {
+        this.grammar = parent.grammar;
+        this.parseOptions = parent.parseOptions;
+        this.stateSets = parent.stateSets.fork(position);
+        this.startNanos = System.nanoTime();
     }
 
     private static boolean newViterbiIsBetter(final State.ViterbiScore viterbiScore, final double newViterbiScore) {
         return viterbiScore == null || viterbiScore.semiring.compare(viterbiScore.probabilityAsSemiringElement, newViterbiScore) < 0;
     }
 
+    /**
+     * Advances given state over given completed state, and then over the nullable categories that follow
+     *
+     * @param completerInnerScores Container for the inner scores that completed states use to complete other states
+     * @return The last state that was reached, which is the only one that may be completed
+     */
     private State completeNoViterbi(final int position,
                                     final DeferredStateScoreComputations addInnerScores,
                                     final DeferredStateScoreComputations addForwardScores,
+                                    final DeferredStateScoreComputations completerInnerScores,
                                     final State stateToAdvance,
-                                    final State completedState, final Resolvable completedInner) {
+                                    final State completedState,
+                                    final double unitStarScore,
+                                    final Resolvable completedInner) {
+        final ExpressionSemiring semiring = stateSets.grammar.semiring;
+        final NullProbabilities nullProbabilities = stateSets.grammar.nullProbabilities;
 
         final ExpressionWrapper prevInner = addInnerScores.getOrCreate(stateToAdvance, stateSets.innerScores.get(stateToAdvance));
         final ExpressionWrapper prevForward = addForwardScores.getOrCreate(stateToAdvance, stateSets.forwardScores.get(stateToAdvance));
 
         // Make i: X_k → lZ·m
-        final State nextState = State.create(position, stateToAdvance, stateToAdvance.advanceDot());
-
-        final Category Z = stateToAdvance.getActiveCategory();
-        final NonTerminal Yl = completedState.rule.left;
-        final double unitStarScore = stateSets.grammar.getUnitStarScore(Z, Yl);
+        State nextState = stateSets.getCanonical(position, stateToAdvance.ruleStartPosition, stateToAdvance.advanceDot(), stateToAdvance.rule);
 
         if (completedState.ruleStartPosition != stateToAdvance.position) throw new Bug("Index failed. This is a bug.");
 
-        addForwardScores.plusProductOf(nextState, stateSets.grammar.semiring, unitStarScore, prevForward, completedInner);
-        addInnerScores.plusProductOf(nextState, stateSets.grammar.semiring, unitStarScore, prevInner, completedInner);
-        return nextState;
+        // If nothing precedes Z, this completion acts like a unit production, which R*(Z =*> Y) already accounts for
+        // in the states that the result would complete
+        final boolean isUnitCompletion = stateToAdvance.position == stateToAdvance.ruleStartPosition;
+        double factor = semiring.times(unitStarScore, getContinueScore(stateToAdvance));
+        while (true) {
+            // Scanning may already have reached the state by moving the dot over nullable categories, so start from
+            // those scores, whether this completion comes before or after the state itself completes others
+            addForwardScores.getOrCreate(nextState, stateSets.forwardScores.get(nextState));
+            addInnerScores.getOrCreate(nextState, stateSets.innerScores.get(nextState));
+            completerInnerScores.getOrCreate(nextState, stateSets.innerScores.get(nextState));
+            addForwardScores.plusProductOf(nextState, semiring, factor, prevForward, completedInner);
+            addInnerScores.plusProductOf(nextState, semiring, factor, prevInner, completedInner);
+            if (!isUnitCompletion && completerInnerScores != addInnerScores)
+                completerInnerScores.plusProductOf(nextState, semiring, factor, prevInner, completedInner);
+
+            // Make i: X_k → lZm'·m'' for nullable m'
+            if (nextState.isCompleted() || !nullProbabilities.isNullable(nextState.getActiveCategory())) return nextState;
+            factor = semiring.times(factor, nullProbabilities.getScore(nextState.getActiveCategory()));
+            nextState = stateSets.getCanonical(position, nextState.ruleStartPosition, nextState.advanceDot(), nextState.rule);
+        }
+    }
+
+    /**
+     * @return Score for moving the dot of given state over its active category: one, except for a
+     * {@link State#isRepeating() completed repetition}, for which it is the probability of one more repetition
+     */
+    private double getContinueScore(final State state) {
+        return state.isRepeating()
+                ? ((RepetitionRule) state.rule).continueProbabilityAsSemiringElement
+                : grammar.semiring.one();
+    }
+
+    /**
+     * Aborts the parse if it exceeds its {@link ParseBudget}. Cheap enough to call for every state: the clock and the
+     * cancellation token are only read every {@link ParseBudget#CLOCK_CHECK_INTERVAL} calls.
+     *
+     * @param lastCompletePosition Last position that is fully parsed
+     * @param expressionNodes      Number of expression nodes built for the position that is being completed
+     */
+    private void checkBudget(final int lastCompletePosition, final long expressionNodes) {
+        final ParseBudget budget = parseOptions.budget;
+        if (budget == null) return;
+        if (stateSets.size() > budget.maxStates)
+            throw budgetExceeded(ParseBudgetExceededException.Reason.MAX_STATES, lastCompletePosition, expressionNodes);
+        if (expressionNodes > budget.maxExpressionNodes)
+            throw budgetExceeded(ParseBudgetExceededException.Reason.MAX_EXPRESSION_NODES, lastCompletePosition, expressionNodes);
+        if ((++budgetChecks & (ParseBudget.CLOCK_CHECK_INTERVAL - 1)) == 0) checkClock(lastCompletePosition);
+    }
+
+    /**
+     * Aborts the parse if it is cancelled or has run out of time
+     */
+    private void checkClock(final int lastCompletePosition) {
+        final ParseBudget budget = parseOptions.budget;
+        if (budget == null) return;
+        if (budget.cancelled != null && budget.cancelled.getAsBoolean())
+            throw budgetExceeded(ParseBudgetExceededException.Reason.CANCELLED, lastCompletePosition, 0);
+        if (System.nanoTime() - startNanos > budget.timeoutNanos)
+            throw budgetExceeded(ParseBudgetExceededException.Reason.TIMEOUT, lastCompletePosition, 0);
+    }
+
+    /**
+     * Counts the {@link ParseBudget#timeoutNanos timeout} from now on, for example when a chart that was forked
+     * earlier is about to be extended
+     */
+    public void restartClock() {
+        startNanos = System.nanoTime();
+        budgetChecks = 0;
+    }
+
+    private ParseBudgetExceededException budgetExceeded(final ParseBudgetExceededException.Reason reason,
+                                                        final int lastCompletePosition,
+                                                        final long expressionNodes) {
+        return new ParseBudgetExceededException(reason, lastCompletePosition, stateSets.size(), expressionNodes,
+                System.nanoTime() - startNanos, this);
     }
 
     /**
@@ -96,9 +203,11 @@ public class Chart<T> {
 
     void addState(final State state, final double forward, final double inner) {
         stateSets.getOrCreate(state);
-        stateSets.innerScores.put(state, inner);
-        stateSets.forwardScores.put(state, forward);
-        if (stateSets.viterbiScores.get(state) == null)
+        if (!stateSets.viterbiOnly) {
+            stateSets.innerScores.put(state, inner);
+            stateSets.forwardScores.put(state, forward);
+        }
+        if (stateSets.getViterbiScore(state) == null)
             stateSets.setViterbiScore(new State.ViterbiScore(grammar.semiring.one(), null, state, grammar.semiring));
     }
 
@@ -107,25 +216,41 @@ public class Chart<T> {
         return stateSets.getStates(index);
     }
 
+    /**
+     * @return Forward score of given state. If this chart only keeps Viterbi scores, returns the Viterbi score instead.
+     */
     public double getForwardScore(final State s) {
-        return stateSets.forwardScores.get(s);
+        return stateSets.viterbiOnly ? getViterbiScoreOrZero(s) : stateSets.forwardScores.get(s);
     }
 
+    /**
+     * @return Inner score of given state. If this chart only keeps Viterbi scores, returns the Viterbi score instead.
+     */
     @SuppressWarnings("unused")
     public double getInnerScore(final State s) {
-        return stateSets.innerScores.get(s);
+        return stateSets.viterbiOnly ? getViterbiScoreOrZero(s) : stateSets.innerScores.get(s);
+    }
+
+    /**
+     * @return Viterbi score of given state, or zero if it has none
+     */
+    public double getViterbiScoreOrZero(final State s) {
+        final State.ViterbiScore viterbiScore = stateSets.getViterbiScore(s);
+        return viterbiScore == null ? grammar.semiring.zero() : viterbiScore.probabilityAsSemiringElement;
     }
 
     public State.ViterbiScore getViterbiScore(final State s) {
-        return stateSets.viterbiScores.get(s);
+        return stateSets.getViterbiScore(s);
     }
 
     @SuppressWarnings("WeakerAccess")
     public void addInitialState(final Category goal) {
         final ExpressionSemiring sr = grammar.semiring;
-        addState(new State(Rule.create(sr, 1.0, Category.START, goal), 0),
+        final State initial = new State(Rule.create(sr, 1.0, Category.START, goal), 0);
+        addState(initial,
                 sr.one(),
                 sr.one());
+        stateSets.addNullableSuccessors(stateSets.get(initial), sr.one(), sr.one(), sr.one());
     }
 
 
@@ -146,71 +271,42 @@ public class Chart<T> {
      *
      * @param index The token index to make predictions at.
      */
-    void predict(final int index) {
+    public void predict(final int index) {
+        checkClock(index);
         // O(|stateset(i)|) = O(|grammar|): For all states <code>i: X<sub>k</sub> → λ·Zμ</code>...
         final Set<State> activeOnNonTerminals = stateSets.activeStates.getActiveOnNonTerminals(index);
         if (activeOnNonTerminals != null && activeOnNonTerminals.size() > 0) {
             assert activeOnNonTerminals.stream()
                     .noneMatch(p -> p.position != index); // all on position == index
             // Copy set to avoid concurrent modification
-            new HashSet<>(activeOnNonTerminals).forEach(this::predictStatesForState);
+            final List<State> predecessors = new ArrayList<>(activeOnNonTerminals);
+            for (final State predecessor : predecessors) {
+                predictStatesForState(predecessor);
+                checkBudget(index, 0);
+            }
         }
-
-        // Streamy:
-//            (false ? activeOnNonTerminalsCp.parallelStream() : activeOnNonTerminalsCp.stream())
-//                    // For all productions Y → v such that R(Z =*L> Y) is nonzero
-//                    .flatMap(grammar::streamNonZeroLeftStarRulesWithPrecedingState)
-//                    // we predict state <code>i: Y<sub>i</sub> → ·v</code>
-//                    .map(statePredecessor_Y_to_v -> {
-//                        final State statePredecessor = statePredecessor_Y_to_v.getKey();
-//                        final Rule Y_to_v = statePredecessor_Y_to_v.getv();
-//
-//                        final Category Z = statePredecessor.getActiveCategory();
-//                        //noinspection SuspiciousNameCombination
-//                        final Category Y = Y_to_v.left;
-//
-//                        final double prevForward = stateSets.forwardScores.get(statePredecessor);
-//
-//                        // γ' = P(Y → v)
-//                        final double Y_to_vProbability = Y_to_v.getScore();
-//
-//                        // α' = α * R(Z =*L> Y) * P(Y → v)
-//                        final double fw = grammar.semiring.times(prevForward, grammar.semiring.times(grammar.getLeftStarScore(Z, Y), Y_to_vProbability));
-//
-//                        State state = State.create(index, index, 0, Y_to_v);
-//                        boolean isNew = !stateSets.contains(state);
-//                        return new Predict.Delta(isNew, state, Y_to_vProbability, fw, statePredecessor);
-//                    })
-//
-//            // Now that we've calculated the scores, add to chart...
-//                    .sequential()
-//
-//                    .forEach(stateSets::setScores);
-
-
     }
 
     public void predictError(final Collection<State> justScannedErrors) {
         justScannedErrors.forEach(justScannedErrorState -> {
-            final double prevForward = stateSets.forwardScores.get(justScannedErrorState);
-            final double prevInner = stateSets.innerScores.get(justScannedErrorState);
+            final double prevForward = getForwardScore(justScannedErrorState);
+            final double prevInner = getInnerScore(justScannedErrorState);
 
 
-            final State predictedState = State.create(
+            final State predictedState = stateSets.getOrCreate(
                     justScannedErrorState.position,
                     justScannedErrorState.ruleStartPosition,
                     justScannedErrorState.ruleDotPosition - 1,
                     justScannedErrorState.rule
             );
-
-            //boolean isNewState =
-            stateSets.addIfNew(predictedState);
             //todo
 //            assert isNewState || (stateSets.innerScores.get(predicted) == ruleProbability || stateSets.innerScores.get(predicted) == grammar.semiring.zero());
 
             stateSets.setViterbiScore(new State.ViterbiScore(prevInner, justScannedErrorState, predictedState, grammar.semiring));
-            stateSets.forwardScores.increment(predictedState, prevForward);
-            stateSets.innerScores.put(predictedState, prevInner);
+            if (!stateSets.viterbiOnly) {
+                stateSets.forwardScores.increment(predictedState, prevForward);
+                stateSets.innerScores.put(predictedState, prevInner);
+            }
         });
     }
 
@@ -222,34 +318,46 @@ public class Chart<T> {
     }
 
     private void predictStatesForRule(final State statePredecessor, final Category activeOnPredecessor, final Rule Y_to_v) {
+        final Predict.Delta prediction = getPrediction(statePredecessor, activeOnPredecessor, Y_to_v);
+        addPredictedStateToChart(statePredecessor, prediction.Y_to_vProbability, prediction.fw, prediction.predicted);
+    }
+
+    /**
+     * Computes a prediction without changing the chart
+     */
+    private Predict.Delta getPrediction(final State statePredecessor, final Category activeOnPredecessor, final Rule Y_to_v) {
         // we predict state <code>i: Y<sub>i</sub> → ·v</code>
-        final double prevForward = stateSets.forwardScores.get(statePredecessor);
 
         // γ' = P(Y → v)
         final double Y_to_vProbability = Y_to_v.probabilityAsSemiringElement;
 
-        // α' = α * R(Z =*L> Y) * P(Y → v)
-        final double newForward = grammar.semiring.times(
-                prevForward,
+        // α' = α * R(Z =*L> Y) * P(Y → v). A repetition may go on after its first repetition, so its forward score
+        // takes the probability of the first repetition instead of P(Y → v), and a completed repetition predicts
+        // with the probability that one more repetition follows.
+        final double newForward = stateSets.viterbiOnly ? Double.NaN : grammar.semiring.times(
+                grammar.semiring.times(stateSets.forwardScores.get(statePredecessor), getContinueScore(statePredecessor)),
                 grammar.getLeftStarScore(activeOnPredecessor, Y_to_v.left),
-                Y_to_vProbability
+                Y_to_v instanceof RepetitionRule ? ((RepetitionRule) Y_to_v).startProbabilityAsSemiringElement : Y_to_vProbability
         );
 
-        final State predicted = State.create(statePredecessor.position, statePredecessor.position, 0, Y_to_v);
-
-        addPredictedStateToChart(statePredecessor, Y_to_vProbability, newForward, predicted);
+        final State predicted = stateSets.getCanonical(statePredecessor.position, statePredecessor.position, 0, Y_to_v);
+        return new Predict.Delta(false, predicted, Y_to_vProbability, newForward, statePredecessor);
     }
 
-    public void addPredictedStateToChart(final State statePredecessor, final double inner, final double forward, final State predicted) {
-//        boolean isNewState =
-        stateSets.addIfNew(predicted);
+    public void addPredictedStateToChart(final State statePredecessor, final double inner, final double forward, final State probe) {
+        final boolean isNew = !stateSets.contains(probe);
+        final State predicted = stateSets.getOrCreate(probe);
 
         //todo
         //assert isNewState || (stateSets.innerScores.get(predicted) == inner || stateSets.innerScores.get(predicted) == grammar.semiring.zero());
 
         stateSets.setViterbiScore(new State.ViterbiScore(inner, statePredecessor, predicted, grammar.semiring));
-        stateSets.forwardScores.increment(predicted, forward);
-        stateSets.innerScores.put(predicted, inner);
+        if (!stateSets.viterbiOnly) {
+            stateSets.forwardScores.increment(predicted, forward);
+            stateSets.innerScores.put(predicted, inner);
+        }
+        // The inner score of a predicted state does not depend on its predecessor, so it is only added once
+        stateSets.addNullableSuccessors(predicted, forward, isNew ? inner : grammar.semiring.zero(), inner);
     }
 
     public void scan(final int i, final TokenWithCategories<T> token) {
@@ -275,40 +383,160 @@ public class Chart<T> {
             final ScanProbability<T> scanProbability
     ) {
         ensure(tokenWithCategories != null, "null token at chart index " + chartPosition + '.');
+        checkClock(chartPosition);
         /*
          * Get all states that are active on a terminal
          *   O(|stateset(i)|) = O(|grammar|): For all states <code>i: X<sub>k</sub> → λ·tμ</code>, where t is a terminal that matches the given token...
          */
-        final ExpressionSemiring semiring = grammar.semiring;
-        for (final Terminal<T> activeTerminalType : emptyIfNull(tokenWithCategories.categories)) {
+        final List<Terminal<T>> terminals = new ArrayList<>();
+        final List<State> preScanStates = new ArrayList<>();
+        for (final Terminal<T> activeTerminalType : emptyIfNull(tokenWithCategories.categories))
             for (final State preScanState : stateSets.activeStates.getActiveOn(chartPosition, activeTerminalType)) {
-                final double scanProb = Scan.getScanProb(scanProbability, tokenWithCategories, chartPosition);
-
-                final double previousForward = stateSets.forwardScores.get(preScanState);
-                final double previousInner = stateSets.innerScores.get(preScanState);
-                final boolean isKleeneContinuation = activeTerminalType instanceof KleeneClosure
-                        && preScanState.position > (preScanState.ruleDotPosition + preScanState.ruleStartPosition);
-                final double newInner = isKleeneContinuation
-                        ? semiring.times(previousInner, preScanState.rule.probabilityAsSemiringElement)
-                        : previousInner;
-                // todo should we update forwardscore as well for continuations? yes:
-                final double newForward = isKleeneContinuation
-                        ? semiring.times(previousForward, preScanState.rule.probabilityAsSemiringElement)
-                        : previousForward;
-                final double postScanForward = Scan.calculateForwardScore(scanProb, semiring, newForward);
-                final double postScanInner = Scan.calculateInnerScore(scanProb, semiring, newInner);
-
-                // After we have calculated the delta, mutate the chart
-                stateSets.createStateAndSetScores(
+                terminals.add(activeTerminalType);
+                preScanStates.add(preScanState);
+            }
+
+        for (int j = 0; j < preScanStates.size(); j++) {
+            addScannedState(getScannedState(chartPosition, tokenWithCategories, scanProbability, terminals.get(j), preScanStates.get(j)));
+            checkBudget(chartPosition, 0);
+        }
+    }
+
+    private void addScannedState(final Scan.Delta<T> scanned) {
+        // After we have calculated the delta, mutate the chart
+        stateSets.createStateAndSetScores(
+                scanned.token,
+                scanned.preScanState,
+                scanned.postScanForward,
+                scanned.postScanInner,
+                scanned.postScanViterbi,
+                scanned.nextState
+        );
+    }
+
+    /**
+     * Computes the state that results from scanning given token, without changing the chart
+     */
+    private Scan.Delta<T> getScannedState(final int chartPosition,
+                                          final TokenWithCategories<T> tokenWithCategories,
+                                          final ScanProbability<T> scanProbability,
+                                          final Terminal<T> activeTerminalType,
+                                          final State preScanState) {
+        final ExpressionSemiring semiring = grammar.semiring;
+        final double scanProb = Scan.getScanProb(scanProbability, tokenWithCategories, chartPosition);
+
+        // In Viterbi-only mode we never use the forward score, and the Viterbi score takes the place of the inner score
+        final double previousForward = stateSets.viterbiOnly ? Double.NaN : stateSets.forwardScores.get(preScanState);
+        final double previousInner = getInnerScore(preScanState);
+        final double previousViterbi = getViterbiScoreOrZero(preScanState);
+        final boolean isKleeneContinuation = activeTerminalType instanceof KleeneClosure
+                && preScanState.position > (preScanState.ruleDotPosition + preScanState.ruleStartPosition);
+        final double newInner = isKleeneContinuation
+                ? semiring.times(previousInner, preScanState.rule.probabilityAsSemiringElement)
+                : previousInner;
+        final double newViterbi = isKleeneContinuation
+                ? semiring.times(previousViterbi, preScanState.rule.probabilityAsSemiringElement)
+                : previousViterbi;
+        // todo should we update forwardscore as well for continuations? yes:
+        final double newForward = isKleeneContinuation
+                ? semiring.times(previousForward, preScanState.rule.probabilityAsSemiringElement)
+                : previousForward;
+
+        /* Create the state <code>i+1: X<sub>k</sub> → λt·μ</code>. Note that this state is unique for each preScanState */
+        return new Scan.Delta<>(
+                tokenWithCategories.token,
+                preScanState,
+                Scan.calculateForwardScore(scanProb, semiring, newForward),
+                Scan.calculateInnerScore(scanProb, semiring, newInner),
+                Scan.calculateInnerScore(scanProb, semiring, newViterbi),
+                stateSets.getCanonical(chartPosition + 1, preScanState.ruleStartPosition, preScanState.advanceDot(), preScanState.rule)
+        );
+    }
+
+    /**
+     * Scans a token that spans from one position to another, like an edge in a {@link org.leibnizcenter.cfg.token.TokenLattice}.
+     * Unlike {@link #scan(int, TokenWithCategories)}, the resulting states may already exist because other edges
+     * end in the same position, so their scores are summed and the best one is kept as Viterbi score.
+     *
+     * @param fromPosition        Position where the token starts
+     * @param toPosition          Position where the token ends
+     * @param tokenWithCategories The token that was scanned
+     * @param weight              Probability of the token, as a semiring element
+     */
+    public void scan(
+            final int fromPosition,
+            final int toPosition,
+            final TokenWithCategories<T> tokenWithCategories,
+            final double weight
+    ) {
+        ensure(tokenWithCategories != null, "null token at chart index " + fromPosition + '.');
+        ensure(toPosition > fromPosition, "Token must end after it starts, but got " + fromPosition + " → " + toPosition);
+        final ExpressionSemiring semiring = grammar.semiring;
+        for (final Terminal<T> activeTerminalType : emptyIfNull(tokenWithCategories.categories))
+            for (final State preScanState : stateSets.activeStates.getActiveOn(fromPosition, activeTerminalType)) {
+                final double postScanForward = stateSets.viterbiOnly ? Double.NaN : semiring.times(stateSets.forwardScores.get(preScanState), weight);
+                final double postScanInner = stateSets.viterbiOnly ? Double.NaN : semiring.times(stateSets.innerScores.get(preScanState), weight);
+                final double postScanViterbi = semiring.times(stateSets.getViterbiScoreDbl(preScanState), weight);
+                stateSets.addScannedState(
                         tokenWithCategories.token,
                         preScanState,
                         postScanForward,
                         postScanInner,
-                        /* Create the state <code>i+1: X<sub>k</sub> → λt·μ</code>. Note that this state is unique for each preScanState */
-                        State.create(chartPosition + 1, preScanState.ruleStartPosition, preScanState.advanceDot(), preScanState.rule)
+                        postScanViterbi,
+                        stateSets.getCanonical(toPosition, preScanState.ruleStartPosition, preScanState.advanceDot(), preScanState.rule)
                 );
+                checkBudget(fromPosition, 0);
+            }
+    }
+
+    /**
+     * Scans all alternatives for the token at given position, like {@link #scan(int, TokenAlternatives)}, and passes
+     * given token to the scan callbacks
+     *
+     * @param token Token to pass to the callbacks, typically the most likely alternative that is in the lexicon
+     */
+    public void scan(final int position, final TokenAlternatives<T> alternatives, final TokenWithCategories<T> token) {
+        if (parseOptions != null) parseOptions.beforeScan(position, token, this);
+
+        scan(position, alternatives);
+
+        if (parseOptions != null) parseOptions.onScan(position, token, this);
+    }
+
+    /**
+     * Scans all alternatives for the token at given position in one pass, from given position into the next one. The
+     * probability of each alternative is multiplied into the scores of the states that scan it, and the Viterbi score
+     * of a scanned state remembers which alternative it was scanned with. Alternatives that are not in the lexicon are
+     * ignored. The probabilities of the alternatives take the place of {@link ScanProbability scan probabilities}. No
+     * callbacks are called; use {@link #scan(int, TokenAlternatives, TokenWithCategories)} for that.
+     *
+     * @return Whether any of the alternatives is in the lexicon
+     */
+    public boolean scan(final int position, final TokenAlternatives<T> alternatives) {
+        boolean scannedAny = false;
+        for (final TokenAlternatives.Alternative<T> alternative : alternatives.getAlternatives()) {
+            final Set<Terminal<T>> categories = grammar.getCategories(alternative.token);
+            if (isFilled(categories)) {
+                scan(position, position + 1, new TokenWithCategories<>(alternative.token, categories), grammar.semiring.fromProbability(alternative.probability));
+                scannedAny = true;
             }
         }
+        return scannedAny;
+    }
+
+    /**
+     * Scans a token that is not in the lexicon as each of the terminals that were guessed for it, from given position
+     * into the next one. The probability of each guessed terminal is multiplied into the scores of the states that
+     * scan it, and takes the place of the {@link ScanProbability scan probability}.
+     */
+    public void scan(final int position, final TokenWithCategories<T> token, final UnknownWordModel.Guess<T> guess) {
+        if (parseOptions != null) parseOptions.beforeScan(position, token, this);
+        checkClock(position);
+
+        for (int i = 0; i < guess.size(); i++)
+            scan(position, position + 1, new TokenWithCategories<>(token.token, Collections.singleton(guess.getTerminal(i))), guess.getWeight(i));
+
+        if (parseOptions != null) parseOptions.onScan(position, token, this);
     }
 
     double getScanProbability(final int tokenPosition, final TokenWithCategories<T> tokenWithCategories, final ScanProbability<T> scanProbability) {
@@ -329,10 +557,11 @@ public class Chart<T> {
                         // After we have calculated everything, we mutate the chart
                         tokenWithCategories.token,
                         preScanState,
-                        stateSets.forwardScores.get(preScanState),
-                        stateSets.innerScores.get(preScanState),
+                        getForwardScore(preScanState),
+                        getInnerScore(preScanState),
+                        getViterbiScoreOrZero(preScanState),
                     /* Create the state <code>i+1: X<sub>k</sub> → λt·μ</code>. Note that this state is unique for each preScanState */
-                        State.create(tokenPosition + 1, preScanState.ruleStartPosition, preScanState.ruleDotPosition, preScanState.rule)
+                        stateSets.getCanonical(tokenPosition + 1, preScanState.ruleStartPosition, preScanState.ruleDotPosition, preScanState.rule)
                 ));
     }
 
@@ -344,6 +573,10 @@ public class Chart<T> {
      * @param newCompletedStates Completed states to use for deducing what states to proceed
      * @param addForwardScores   Container / helper for adding to forward score expressions
      * @param addInnerScores     Container / helper for adding to inner score expressions
+     * @param completerInnerScores Container for the inner scores of completed states, leaving out the completions that
+     *                           act like unit productions. The same as <code>addInnerScores</code> if the grammar
+     *                           has no nullable categories and no repetitions, because then only unit productions
+     *                           complete like that.
      *                           //     * @param completedStatesAlreadyHandled The completed states that we don't want to reiterate.
      *                           //     * @param computationsForward           Container for forward score expressions. Probably superfluous.
      *                           //     * @param computationsInner             Container for inner score expressions. Probably superfluous.
@@ -351,7 +584,8 @@ public class Chart<T> {
     private void completeNoViterbi(final int position,
                                    Collection<State> newCompletedStates,
                                    final DeferredStateScoreComputations addForwardScores,
-                                   final DeferredStateScoreComputations addInnerScores) {
+                                   final DeferredStateScoreComputations addInnerScores,
+                                   final DeferredStateScoreComputations completerInnerScores) {
         if (newCompletedStates == null || newCompletedStates.size() <= 0)
             return;
         while (newCompletedStates.size() > 0) {
@@ -364,23 +598,33 @@ public class Chart<T> {
                 //  such that the R*(Z =*> Y) is nonzero
                 //  and Y → v is not a unit production
 
-                final Collection<State> statesActive = stateSets.activeStates.getStatesActiveOnNonTerminalWithNonZeroUnitStarScoreToY(
-                        completedState.ruleStartPosition,
-                        completedState.rule.left);
-                if (isFilled(statesActive)) for (final State stateToAdvance : statesActive) {
-                    final State newState = completeNoViterbi(position,
-                            addInnerScores,
-                            addForwardScores,
-                            stateToAdvance,
-                            completedState,
-                            addInnerScores.getOrCreate(completedState, stateSets.innerScores.get(completedState)));
-
-                    // If this is a new completed state that is no unit production, make a note of it it
-                    // because we want to recursively call *complete* on these states
-                    if (((newState.rule.isPassive(newState.ruleDotPosition)/*isCompleted*/
-                            && !newState.rule.isUnitProduction()
-                            && !stateSets.contains(newState)))) {
-                        nextCompletedStates.add(newState);
+                //  Z is looked up from Y in the reverse unit-star relation, which also holds R*(Z =*> Y)
+                final ScoresAsSemiringElements unitStar = stateSets.grammar.unitStarScores;
+                final int Y = unitStar.indexOf(completedState.rule.left);
+                if (Y < 0) return;
+                for (int i = unitStar.reverseStart(Y), end = unitStar.reverseEnd(Y); i < end; i++) {
+                    final Set<State> statesActive = stateSets.activeStates.getStatesActiveOnNonTerminal(
+                            unitStar.getReverseFrom(i),
+                            completedState.ruleStartPosition,
+                            position);
+                    if (isFilled(statesActive)) for (final State stateToAdvance : statesActive) {
+                        final State newState = completeNoViterbi(position,
+                                addInnerScores,
+                                addForwardScores,
+                                completerInnerScores,
+                                stateToAdvance,
+                                completedState,
+                                unitStar.getReverseScore(i),
+                                completerInnerScores.getOrCreate(completedState, stateSets.innerScores.get(completedState)));
+
+                        // If this is a new completed state that is no unit production (or did not complete like one),
+                        // make a note of it it because we want to recursively call *complete* on these states
+                        if (((newState.rule.isPassive(newState.ruleDotPosition)/*isCompleted*/
+                                && stateToAdvance.position != stateToAdvance.ruleStartPosition
+                                && !stateSets.contains(newState)))) {
+                            nextCompletedStates.add(newState);
+                        }
+                        checkBudget(position - 1, addForwardScores.getNodeCount() + addInnerScores.getNodeCount());
                     }
                 }
             });
@@ -403,20 +647,25 @@ public class Chart<T> {
         while (completedStates.size() > 0) {
             final Set<State> nextSetOfCompletedStates = new HashSet<>();
             for (final State completedState : completedStates) {
-                if (stateSets.viterbiScores.get(completedState) == null)
+                if (stateSets.getViterbiScore(completedState) == null)
                     throw new IssueRequest("Expected Viterbi score to be set on completed state.");
 
                 //Get all states in j <= i, such that <code>j: X<sub>k</sub> →  λ·Yμ</code>
                 final Set<State> statesToAdvance = stateSets.activeStates.getStatesActiveOnNonTerminal(completedState.rule.left, completedState.ruleStartPosition, completedState.position);
                 if (statesToAdvance != null && statesToAdvance.size() > 0) {
                     for (final State stateToAdvance : statesToAdvance) {
-                        final Complete.ViterbiDelta d = computeViterbiForState(completedState, stateSets.viterbiScores.get(completedState).probabilityAsSemiringElement, stateToAdvance);
+                        final Complete.ViterbiDelta d = computeViterbiForState(completedState, stateSets.getViterbiScore(completedState).probabilityAsSemiringElement, stateToAdvance);
                         if (d != null) {
                             stateSets.processDelta(d);
                             if (d.isNewCompletedState()) {
                                 nextSetOfCompletedStates.add(d.resultingState);
                             }
+                            if (d.newViterbiScore != null) {
+                                final State improved = advanceViterbiOverNullables(d.resultingState, d.newViterbiScore.probabilityAsSemiringElement);
+                                if (improved != null) nextSetOfCompletedStates.add(improved);
+                            }
                         }
+                        checkBudget(completedState.position - 1, 0);
                     }
                 }
             }
@@ -424,17 +673,41 @@ public class Chart<T> {
         }
     }
 
+    /**
+     * Moves the dot of given state over the nullable categories that follow it, keeping the Viterbi score of every
+     * state that is reached if it is better than the one it had
+     *
+     * @return The completed state that was reached, if its Viterbi score improved, or else null
+     */
+    private State advanceViterbiOverNullables(final State state, final double viterbi) {
+        final NullProbabilities nullProbabilities = grammar.nullProbabilities;
+        State previous = state;
+        double score = viterbi;
+        while (!previous.isCompleted() && nullProbabilities.isNullable(previous.getActiveCategory())) {
+            score = grammar.semiring.times(score, nullProbabilities.getViterbiScore(previous.getActiveCategory()));
+            final State next = stateSets.getOrCreate(
+                    stateSets.getCanonical(previous.position, previous.ruleStartPosition, previous.advanceDot(), previous.rule)
+            );
+            if (!newViterbiIsBetter(stateSets.getViterbiScore(next), score)) return null;
+            stateSets.setViterbiScore(new State.ViterbiScore(score, previous, next, grammar.semiring));
+            if (next.isCompleted()) return next;
+            previous = next;
+        }
+        return null;
+    }
+
     private Complete.ViterbiDelta computeViterbiForState(final State completedState, final double completedViterbi, final State stateToAdvance) {
-        final State resultingState = State.create(completedState.position, stateToAdvance.ruleStartPosition, stateToAdvance.advanceDot(), stateToAdvance.rule);
+        final State resultingState = stateSets.getCanonical(completedState.position, stateToAdvance.ruleStartPosition, stateToAdvance.advanceDot(), stateToAdvance.rule);
         if (stateToAdvance.position > resultingState.position || stateToAdvance.position != completedState.ruleStartPosition)
             throw new IssueRequest("Index failed. This is a bug.");
         final double oldViterbiScore = stateSets.getViterbiScoreDbl(stateToAdvance);
         assert Double.isFinite(oldViterbiScore);
         final double newViterbiScore = grammar.semiring.times(
                 completedViterbi,
-                oldViterbiScore); // must be set
+                oldViterbiScore, // must be set
+                getContinueScore(stateToAdvance));
 
-        final boolean newViterbiIsBetter = newViterbiIsBetter(stateSets.viterbiScores.get(resultingState), newViterbiScore);
+        final boolean newViterbiIsBetter = newViterbiIsBetter(stateSets.getViterbiScore(resultingState), newViterbiScore);
         final State.ViterbiScore newViterbiScore_ = newViterbiIsBetter ? new State.ViterbiScore(
                 newViterbiScore,
                 completedState,
@@ -464,28 +737,34 @@ public class Chart<T> {
     ) {
         final DeferredStateScoreComputations addForwardScores = new DeferredStateScoreComputations(grammar);
         final DeferredStateScoreComputations addInnerScores = new DeferredStateScoreComputations(grammar);
+        // A completed repetition X+ → X· is reached both like a unit production and by looping, so it needs the
+        // separate completer scores just as states after nullable categories do
+        final DeferredStateScoreComputations completerInnerScores = grammar.nullProbabilities.isEmpty() && !grammar.hasRepetitionRules
+                ? addInnerScores
+                : new DeferredStateScoreComputations(grammar);
 
         completeNoViterbi(
                 i,
                 stateSets.completedStates.getCompletedStatesThatAreNotUnitProductions(i),
                 addForwardScores,
-                addInnerScores
+                addInnerScores,
+                completerInnerScores
         );
 
-        // Resolve and set forward & inner scores
-        addForwardScores.states.forEach((s, score) ->
-                stateSets.forwardScores.put(
-                        stateSets.getOrCreate(s),
-                        score.resolveFinal()
-                )
-        );
+        // Resolve and set forward & inner scores. States at earlier positions were only read, so they are left alone.
+        addForwardScores.states.forEach((s, score) -> {
+            if (s.position == i) stateSets.forwardScores.put(
+                    stateSets.getOrCreate(s),
+                    score.resolveFinal()
+            );
+        });
 
-        addInnerScores.states.forEach((s, score) ->
-                stateSets.innerScores.put(
-                        stateSets.getOrCreate(s),
-                        score.resolveFinal()
-                )
-        );
+        addInnerScores.states.forEach((s, score) -> {
+            if (s.position == i) stateSets.innerScores.put(
+                    stateSets.getOrCreate(s),
+                    score.resolveFinal()
+            );
+        });
     }
 
     public void complete(final int i, final TokenWithCategories<T> token) {
@@ -494,13 +773,48 @@ public class Chart<T> {
         if (parseOptions != null) parseOptions.beforeComplete(i, token, chart);
 
 
-        final Set<State> completedStates = new HashSet<>(chart.stateSets.completedStates.getCompletedStates(i + 1));
-        completeNoViterbi(i + 1);
-        computeViterbiScoresForCompletedStates(completedStates);
+        complete(i + 1);
 
         if (parseOptions != null) parseOptions.onComplete(i, token, chart);
     }
 
+    /**
+     * Makes all completions at given position, without calling any callbacks.
+     *
+     * @param position Position to complete states at. Note that {@link #complete(int, TokenWithCategories)} takes the
+     *                 position of the token that was scanned instead.
+     */
+    public void complete(final int position) {
+        checkClock(position - 1);
+        final Set<State> completedStates = new HashSet<>(stateSets.completedStates.getCompletedStates(position));
+        // The Viterbi pass adds all states that the full pass would add, so we can skip the sum-product computations
+        if (!stateSets.viterbiOnly) completeNoViterbi(position);
+        computeViterbiScoresForCompletedStates(completedStates);
+    }
+
+    /**
+     * Creates a chart that shares all positions before given position with this chart, and that can be extended
+     * independently of this chart. The fork counts its {@link ParseBudget#timeoutNanos timeout} from the moment it is
+     * created.
+     *
+     * @param position Position to fork at, typically the last position that was completed
+     * @see StateSets#fork(int)
+     */
+    public Chart<T> fork(final int position) {
+        return new Chart<>(this, position);
+    }
+
+    /**
+     * Resets this chart to the state it was in just after completing given position, before predicting anything at
+     * that position.
+     *
+     * @param position Position to truncate to
+     * @see StateSets#truncate(int)
+     */
+    public void truncate(final int position) {
+        stateSets.truncate(position);
+    }
+
     @SuppressWarnings("WeakerAccess")
     public int getJustCompletedErrorRulesCount(final int index) {
         return stateSets.completedStates.getCompletedErrorRulesCount(index);
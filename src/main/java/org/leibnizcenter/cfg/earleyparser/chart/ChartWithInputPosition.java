@@ -2,15 +2,23 @@ package org.leibnizcenter.cfg.earleyparser.chart;
 
 import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
 import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.DiagnosticListener;
 import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.chart.statesets.ChartCapacity;
 import org.leibnizcenter.cfg.earleyparser.parsemode.PanicMode;
 import org.leibnizcenter.cfg.earleyparser.parsemode.ParsingMode;
+import org.leibnizcenter.cfg.earleyparser.scan.Diagnostics;
 import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
 import org.leibnizcenter.cfg.earleyparser.scan.TokenNotInLexiconException;
 import org.leibnizcenter.cfg.grammar.Grammar;
 import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.TokenAlternatives;
+import org.leibnizcenter.cfg.token.TokenWithCategories;
+import org.leibnizcenter.cfg.util.Collections2;
+import org.leibnizcenter.cfg.util.ForkableList;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -24,12 +32,17 @@ import static org.leibnizcenter.cfg.util.Collections2.nullOrEmpty;
 public class ChartWithInputPosition<T> {
     public final Chart<T> chart;
     /**
-     * Parsing errors encountered along the way
+     * Tokens that were not in the lexicon, and how they were handled
      */
-    public final List<Throwable> incidents = new ArrayList<>();
+    public final Diagnostics diagnostics;
     // These two could be different because we might drop tokens
     private final Grammar<T> grammar;
     final private ScanMode strategy;
+    private final DiagnosticListener<T> diagnosticListener;
+    /**
+     * Token that aborted the parse in {@link ScanMode#STRICT} mode, which is not part of {@link #tokens}
+     */
+    private Token<T> rejected = null;
     /**
      * End position for chart (may be lower than tokenIndex necause some tokens may be ignored)
      */
@@ -40,15 +53,53 @@ public class ChartWithInputPosition<T> {
     public int tokenIndex = 0;
     public ParsingMode parsingMode = ParsingMode.NORMAL;
 
-    private List<Token<T>> tokensPassed = new ArrayList<>();
+    private final ForkableList<Token<T>> tokensPassed;
+    /**
+     * Error recovery state for {@link ScanMode#SYNCHRONIZE}
+     */
+    private final PanicMode<T> panicMode = new PanicMode<>();
+    /**
+     * All tokens passed to {@link #next(Token)}, by token index
+     */
+    private final ForkableList<Token<T>> tokens;
+    /**
+     * For every token index, the chart index just before that token was processed
+     */
+    private final ForkableList<Integer> chartIndexBeforeToken;
+    /**
+     * For every token index, the alternatives passed to {@link #next(TokenAlternatives)}, or null if a single token
+     * was passed
+     */
+    private final ForkableList<TokenAlternatives<T>> alternatives;
+    /**
+     * Tokens before this index are shared with a fork, so this chart can not be truncated to before it
+     */
+    private int frozenBeforeToken = 0;
 
     public ChartWithInputPosition(
             final Grammar<T> grammar,
             final NonTerminal goal,
             final ParseOptions<T> parseOptions) {
+        this(grammar, goal, parseOptions, ChartCapacity.DEFAULT);
+    }
+
+    /**
+     * @param capacity Expected size of the chart, used to size its indexes up front
+     */
+    public ChartWithInputPosition(
+            final Grammar<T> grammar,
+            final NonTerminal goal,
+            final ParseOptions<T> parseOptions,
+            final ChartCapacity capacity) {
         this.grammar = grammar;
         strategy = parseOptions == null || parseOptions.scanMode == null ? ScanMode.STRICT : parseOptions.scanMode;
-        chart = new Chart<>(grammar, parseOptions);
+        diagnosticListener = parseOptions == null ? null : parseOptions.onDiagnostic;
+        diagnostics = new Diagnostics();
+        chart = new Chart<>(grammar, parseOptions, capacity);
+        tokensPassed = new ForkableList<>();
+        tokens = new ForkableList<>();
+        chartIndexBeforeToken = new ForkableList<>();
+        alternatives = new ForkableList<>();
 
         // Initial state
         chart.addInitialState(goal);
@@ -61,24 +112,57 @@ public class ChartWithInputPosition<T> {
 //         */
     }
 
+    private ChartWithInputPosition(final ChartWithInputPosition<T> parent) {
+        this.grammar = parent.grammar;
+        this.strategy = parent.strategy;
+        this.diagnosticListener = parent.diagnosticListener;
+        this.chart = parent.chart.fork(parent.chartIndex);
+        this.chartIndex = parent.chartIndex;
+        this.tokenIndex = parent.tokenIndex;
+        this.parsingMode = parent.parsingMode;
+        this.diagnostics = parent.diagnostics.fork();
+        this.tokensPassed = parent.tokensPassed.fork();
+        this.tokens = parent.tokens.fork();
+        this.chartIndexBeforeToken = parent.chartIndexBeforeToken.fork();
+        this.alternatives = parent.alternatives.fork();
+    }
+
+    /**
+     * Creates a copy of this chart that can be fed tokens independently. The copy shares all chart positions before
+     * the current one and all tokens passed so far with this chart, and only copies the states at the current
+     * position, so forking does not depend on the length of the input.
+     * <p>
+     * This chart can still be extended after forking, but it can not be {@link #truncate(int) truncated} to before the
+     * position at which it was forked.
+     *
+     * @throws UnsupportedOperationException when parsing in {@link ScanMode#SYNCHRONIZE} mode, because error recovery
+     *                                       may change earlier positions in the chart
+     */
+    public ChartWithInputPosition<T> fork() {
+        if (strategy == ScanMode.SYNCHRONIZE)
+            throw new UnsupportedOperationException("Can not fork charts that are parsed in " + ScanMode.SYNCHRONIZE + " mode");
+        frozenBeforeToken = tokenIndex;
+        return new ChartWithInputPosition<>(this);
+    }
+
 
+    /**
+     * @throws UnsupportedOperationException when parsing in {@link ScanMode#REPAIR} mode, which needs all tokens at once
+     */
     public void next(final Token<T> t) {
+        if (strategy == ScanMode.REPAIR)
+            throw new UnsupportedOperationException("Can not parse token by token in " + ScanMode.REPAIR + " mode");
+        final int chartIndexBefore = chartIndex;
         final Set<Terminal<T>> categories = grammar.getCategories(t);
 
 //            final Set<Terminal<T>> categories = determineCategoriesForToken(grammar, callbacks, indexForTokenList, t);
 
-        if (nullOrEmpty(categories)) {
-            final TokenNotInLexiconException notInLexiconException = new TokenNotInLexiconException(t, tokenIndex, chartIndex);
-            incidents.add(notInLexiconException);
-            // if (callbacks == null) throw notInLexiconException;
-        }
-
         switch (strategy) {
             case SYNCHRONIZE:
                 final boolean justEnteringPanicMode = parsingMode != PANIC_MODE && nullOrEmpty(categories);
                 if (justEnteringPanicMode) {
                     parsingMode = PANIC_MODE;
-                    PanicMode.proceedAllStatesThatWereActiveOnError(chart, chartIndex, tokensPassed);
+                    panicMode.proceedAllStatesThatWereActiveOnError(chart, chartIndex, tokensPassed);
                 } else {
                     parsingMode = PANIC_MODE.equals(parsingMode) ? PANIC_MODE : ParsingMode.NORMAL;
                 }
@@ -92,18 +176,203 @@ public class ChartWithInputPosition<T> {
             case WILDCARD:
                 parsingMode = ParsingMode.WILDCARD;
                 break;
+            case SIGNATURE:
+                parsingMode = ParsingMode.SIGNATURE;
+                break;
             default:
                 parsingMode = ParsingMode.NORMAL;
                 break;
         }
+        final boolean unknown = nullOrEmpty(categories);
+        if (unknown && parsingMode == ParsingMode.STRICT) report(t, chartIndexBefore, Diagnostics.Kind.REJECTED);
         chartIndex = parsingMode.processToken(chart, chartIndex, t, categories);
+        if (unknown && parsingMode != ParsingMode.STRICT) report(t, chartIndexBefore, getKind(chartIndexBefore));
         addIfAbsent(tokensPassed, chartIndex, t);
 
         if (PANIC_MODE.equals(parsingMode) && chart.getJustCompletedErrorRulesCount(chartIndex) > 0) {
             parsingMode = NORMAL;
         }
+        tokens.add(t);
+        chartIndexBeforeToken.add(chartIndexBefore);
+        alternatives.add(null);
         tokenIndex++;
     }
 
+    /**
+     * Parses several weighted alternatives for the next token in one pass, as described in
+     * {@link Chart#scan(int, TokenAlternatives)}. Callbacks are passed the most likely alternative that is in the
+     * lexicon. If none of the alternatives is in the lexicon, the most likely one is handled like an unknown
+     * {@link #next(Token) token}.
+     *
+     * @throws UnsupportedOperationException when parsing in {@link ScanMode#SYNCHRONIZE} or {@link ScanMode#REPAIR} mode
+     */
+    public void next(final TokenAlternatives<T> tokenAlternatives) {
+        if (strategy == ScanMode.SYNCHRONIZE || strategy == ScanMode.REPAIR)
+            throw new UnsupportedOperationException("Can not parse token alternatives in " + strategy + " mode");
+        final int chartIndexBefore = chartIndex;
+        final Token<T> mostLikely = tokenAlternatives.getMostLikely().token;
+
+        TokenWithCategories<T> mostLikelyInLexicon = null;
+        double bestProbability = -1.0;
+        for (final TokenAlternatives.Alternative<T> alternative : tokenAlternatives.getAlternatives()) {
+            final Set<Terminal<T>> categories = grammar.getCategories(alternative.token);
+            if (!nullOrEmpty(categories) && alternative.probability > bestProbability) {
+                mostLikelyInLexicon = new TokenWithCategories<>(alternative.token, categories);
+                bestProbability = alternative.probability;
+            }
+        }
+
+        switch (strategy) {
+            case STRICT:
+                parsingMode = ParsingMode.STRICT;
+                break;
+            case DROP:
+                parsingMode = ParsingMode.DROP;
+                break;
+            case WILDCARD:
+                parsingMode = ParsingMode.WILDCARD;
+                break;
+            case SIGNATURE:
+                parsingMode = ParsingMode.SIGNATURE;
+                break;
+            default:
+                parsingMode = ParsingMode.NORMAL;
+                break;
+        }
+        if (mostLikelyInLexicon == null) {
+            if (parsingMode == ParsingMode.STRICT) report(mostLikely, chartIndexBefore, Diagnostics.Kind.REJECTED);
+            chartIndex = parsingMode.processToken(chart, chartIndex, mostLikely, null);
+            if (parsingMode != ParsingMode.STRICT) report(mostLikely, chartIndexBefore, getKind(chartIndexBefore));
+        } else {
+            chart.predict(chartIndex, mostLikelyInLexicon);
+            chart.scan(chartIndex, tokenAlternatives, mostLikelyInLexicon);
+            chart.complete(chartIndex, mostLikelyInLexicon);
+            chartIndex++;
+        }
+        addIfAbsent(tokensPassed, chartIndex, mostLikely);
+
+        tokens.add(mostLikely);
+        chartIndexBeforeToken.add(chartIndexBefore);
+        alternatives.add(tokenAlternatives);
+        tokenIndex++;
+    }
+
+    /**
+     * Records that the token at the current token index was not in the lexicon
+     */
+    private void report(final Token<T> token, final int chartIndexBefore, final Diagnostics.Kind kind) {
+        diagnostics.add(tokenIndex, chartIndexBefore, kind);
+        if (kind == Diagnostics.Kind.REJECTED) rejected = token;
+        if (diagnosticListener != null) diagnosticListener.onDiagnostic(tokenIndex, chartIndexBefore, kind, token);
+    }
+
+    /**
+     * @return How the current parsing mode handled a token that was not in the lexicon
+     */
+    private Diagnostics.Kind getKind(final int chartIndexBefore) {
+        if (chartIndex == chartIndexBefore) return Diagnostics.Kind.DROPPED;
+        switch (parsingMode) {
+            case WILDCARD:
+                return Diagnostics.Kind.WILDCARD;
+            case SIGNATURE:
+                return Diagnostics.Kind.GUESSED;
+            case PANIC_MODE:
+                return Diagnostics.Kind.SYNCHRONIZED;
+            default:
+                return Diagnostics.Kind.DROPPED;
+        }
+    }
+
+    /**
+     * Creates an exception for every token that was not in the lexicon. The exceptions are only created when this
+     * method is called; while parsing, {@link #diagnostics} only keeps compact records.
+     *
+     * @return Parsing errors encountered along the way
+     */
+    public List<Throwable> getIncidents() {
+        final List<Throwable> incidents = new ArrayList<>(diagnostics.size());
+        for (int i = 0; i < diagnostics.size(); i++) {
+            final int index = diagnostics.getTokenIndex(i);
+            final Token<T> token = index < tokens.size() ? tokens.get(index) : rejected;
+            incidents.add(new TokenNotInLexiconException(token, index, diagnostics.getChartIndex(i)));
+        }
+        return incidents;
+    }
+
+    /**
+     * @return All tokens passed so far. For {@link #next(TokenAlternatives) token alternatives}, this is the most
+     * likely alternative.
+     */
+    public List<Token<T>> getTokens() {
+        return Collections.unmodifiableList(tokens);
+    }
+
+    /**
+     * Resets the chart to the state it was in just before the token at given index was passed. Runs in time
+     * proportional to the size of the part of the chart that is thrown away.
+     *
+     * @param newTokenIndex Number of tokens to keep
+     * @throws UnsupportedOperationException when parsing in {@link ScanMode#SYNCHRONIZE} mode, because error recovery
+     *                                       may change earlier positions in the chart
+     * @throws IllegalStateException         when given token was passed before this chart was {@link #fork() forked}
+     */
+    public void truncate(final int newTokenIndex) {
+        if (strategy == ScanMode.SYNCHRONIZE)
+            throw new UnsupportedOperationException("Can not truncate charts that are parsed in " + ScanMode.SYNCHRONIZE + " mode");
+        if (newTokenIndex < 0 || newTokenIndex > tokenIndex)
+            throw new IndexOutOfBoundsException("Can not truncate to token " + newTokenIndex + ", have " + tokenIndex + " tokens");
+        if (newTokenIndex == tokenIndex) return;
+        if (newTokenIndex < frozenBeforeToken)
+            throw new IllegalStateException("Can not truncate to token " + newTokenIndex + ", because tokens before " + frozenBeforeToken + " are shared with a fork");
+
+        chartIndex = chartIndexBeforeToken.get(newTokenIndex);
+        chart.truncate(chartIndex);
+
+        Collections2.truncate(tokens, newTokenIndex);
+        Collections2.truncate(chartIndexBeforeToken, newTokenIndex);
+        Collections2.truncate(alternatives, newTokenIndex);
+        Collections2.truncate(tokensPassed, chartIndex + 1);
+        diagnostics.truncate(newTokenIndex);
+        tokenIndex = newTokenIndex;
+        parsingMode = ParsingMode.NORMAL;
+    }
+
+    /**
+     * Replaces the token at given index, re-parsing only the tokens from that index on
+     */
+    public void replace(final int index, final Token<T> token) {
+        edit(index, 1, Collections.singletonList(token));
+    }
+
+    /**
+     * Inserts a token before given index, re-parsing only the tokens from that index on
+     */
+    public void insert(final int index, final Token<T> token) {
+        edit(index, 0, Collections.singletonList(token));
+    }
+
+    /**
+     * Deletes the token at given index, re-parsing only the tokens from that index on
+     */
+    public void delete(final int index) {
+        edit(index, 1, Collections.emptyList());
+    }
+
+    /**
+     * Replaces <code>deleteCount</code> tokens starting at given index with given tokens. The chart is {@link #truncate(int) truncated}
+     * to given index, after which the new tokens and the tokens following the deleted ones are parsed again.
+     */
+    public void edit(final int index, final int deleteCount, final List<Token<T>> insert) {
+        if (index < 0 || deleteCount < 0 || index + deleteCount > tokenIndex)
+            throw new IndexOutOfBoundsException("Can not delete tokens [" + index + ", " + (index + deleteCount) + "), have " + tokenIndex + " tokens");
+        final List<Token<T>> suffix = new ArrayList<>(tokens.subList(index + deleteCount, tokenIndex));
+        final List<TokenAlternatives<T>> suffixAlternatives = new ArrayList<>(alternatives.subList(index + deleteCount, tokenIndex));
+        truncate(index);
+        insert.forEach(this::next);
+        for (int i = 0; i < suffix.size(); i++)
+            if (suffixAlternatives.get(i) == null) next(suffix.get(i));
+            else next(suffixAlternatives.get(i));
+    }
+
 
 }
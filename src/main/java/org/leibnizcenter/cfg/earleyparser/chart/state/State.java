@@ -96,7 +96,15 @@ public class State {
     }
 
     public boolean isActive() {
-        return !isCompleted();
+        return getActiveCategory() != null;
+    }
+
+    /**
+     * @return Whether this is a completed {@link org.leibnizcenter.cfg.rule.RepetitionRule repetition}
+     * <code>X+ → X·</code>, which is active on one more X as well
+     */
+    public boolean isRepeating() {
+        return isCompleted() && isActive();
     }
 
     /**
@@ -109,7 +117,8 @@ public class State {
     }
 
     /**
-     * Return dot position advanced by <code>1</code>, or errors if out of bounds.
+     * Return dot position advanced by <code>1</code>, or errors if out of bounds. The dot of a
+     * {@link #isRepeating() repeating} state stays where it is.
      *
      * @throws IndexOutOfBoundsException If the dotted rule's dot position
      *                                   is already at the end of its right side.
@@ -118,7 +127,7 @@ public class State {
         final int position = (ruleDotPosition);
         if (position < 0 || position > rule.right.length) throw new IndexOutOfBoundsException(
                 "illegal position: " + position);
-        return position + 1;
+        return isRepeating() ? position : position + 1;
     }
 
     @Override
@@ -140,6 +149,13 @@ public class State {
     }
 
     private int computeHashCode() {
+        return hashCode(rule, position, ruleStartPosition, ruleDotPosition);
+    }
+
+    /**
+     * @return Hash code of the state with given fields, without creating it
+     */
+    public static int hashCode(final Rule rule, final int position, final int ruleStartPosition, final int ruleDotPosition) {
         int result = rule.hashCode();
         result = 31 * result + ruleStartPosition;
         result = 31 * result + ruleDotPosition;
@@ -7,6 +7,7 @@ import org.leibnizcenter.cfg.category.terminal.Terminal;
 import org.leibnizcenter.cfg.earleyparser.chart.state.State;
 import org.leibnizcenter.cfg.errors.IssueRequest;
 import org.leibnizcenter.cfg.grammar.ScoresAsSemiringElements;
+import org.leibnizcenter.cfg.util.Collections2;
 import org.leibnizcenter.cfg.util.MyMultimap;
 
 import java.util.*;
@@ -20,35 +21,65 @@ import static org.leibnizcenter.cfg.util.Collections2.*;
  * Created by maarten on 18-1-17.
  */
 public class ActiveStates<T> {
-    private final List<Set<State>> statesActiveOnNonTerminals = new ArrayList<>(500);
-    private final List<MyMultimap<NonTerminal, State>> nonTerminalActiveAtIWithNonZeroUnitStarToY = new ArrayList<>(500);
-    private final List<Map<Terminal<T>, Set<State>>> statesActiveOnTerminals = new ArrayList<>(500);
-    private final Map<NonTerminal, List<Set<State>>> statesActiveOnNonTerminal = new HashMap<>(500);
+    /*
+     * Indexes by position hold position i at index i - base
+     */
+    private final List<Set<State>> statesActiveOnNonTerminals;
+    private final List<Map<Terminal<T>, Set<State>>> statesActiveOnTerminals;
+    private final Map<NonTerminal, List<Set<State>>> statesActiveOnNonTerminal = new HashMap<>();
     private final MyMultimap<Integer, State> justScannedError = new MyMultimap<>(); // todo int
-    public final Collection<State> activeOnNonLexicalToken = new HashSet<>();
+    /**
+     * States that are active on the {@link NonLexicalToken error symbol}, by position
+     */
+    private final List<Set<State>> activeOnNonLexicalToken;
+    /**
+     * Index that holds all positions before {@link #base}, or null
+     */
+    private final ActiveStates<T> parent;
+    private final int base;
+
+    public ActiveStates() {
+        this(ChartCapacity.DEFAULT.positions);
+    }
+
+    /**
+     * @param expectedPositions Expected number of positions in the chart
+     */
+    public ActiveStates(final int expectedPositions) {
+        this(null, 0, expectedPositions);
+    }
 
     /**
-     * Runs in O(1).
+     * @param parent Index to look up positions before <code>base</code> in
+     * @param base   First position that is kept in this index
      */
-    @SuppressWarnings("WeakerAccess")
-    public Collection<State> getStatesActiveOnNonTerminalWithNonZeroUnitStarScoreToY(final int j, final NonTerminal cat) {
-        return j < nonTerminalActiveAtIWithNonZeroUnitStarToY.size()
-                ? nonTerminalActiveAtIWithNonZeroUnitStarToY.get(j).get(cat) : null;
+    ActiveStates(final ActiveStates<T> parent, final int base) {
+        this(parent, base, ChartCapacity.DEFAULT.positions);
+    }
+
+    private ActiveStates(final ActiveStates<T> parent, final int base, final int expectedPositions) {
+        this.parent = parent;
+        this.base = base;
+        this.statesActiveOnNonTerminals = new ArrayList<>(expectedPositions);
+        this.statesActiveOnTerminals = new ArrayList<>(expectedPositions);
+        this.activeOnNonLexicalToken = new ArrayList<>(expectedPositions);
     }
 
     public Set<State> getStatesActiveOnNonTerminal(final NonTerminal nonTerminal, final int position, final int beforeOrOnPosition) {
+        if (position < base) return parent.getStatesActiveOnNonTerminal(nonTerminal, position, beforeOrOnPosition);
         // stateToAdvance.position <= beforeOrOnPosition;
         if (position <= beforeOrOnPosition) {
             final List<Set<State>> statesActiveOnPosition = statesActiveOnNonTerminal.get(nonTerminal);
-            if (statesActiveOnPosition != null && statesActiveOnPosition.size() > position)
-                return statesActiveOnPosition.get(position);
+            if (statesActiveOnPosition != null && statesActiveOnPosition.size() > position - base)
+                return statesActiveOnPosition.get(position - base);
         }
         return null;
     }
 
     public Set<State> getActiveOnNonTerminals(final int index) {
+        if (index < base) return parent.getActiveOnNonTerminals(index);
         //if (!statesActiveOnNonTerminals.containsKey(index)) statesActiveOnNonTerminals.put(index, new HashSet<>());
-        return getOrInitEmptySet(statesActiveOnNonTerminals, index);
+        return getOrInitEmptySet(statesActiveOnNonTerminals, index - base);
     }
 
     /**
@@ -60,7 +91,8 @@ public class ActiveStates<T> {
      */
     @SuppressWarnings("SuspiciousMethodCalls")
     public Collection<State> getActiveOn(final int position, final Terminal<?> terminal) {
-        final Map<Terminal<T>, Set<State>> map = getOrInitEmptyMap(statesActiveOnTerminals, position);
+        if (position < base) return parent.getActiveOn(position, terminal);
+        final Map<Terminal<T>, Set<State>> map = getOrInitEmptyMap(statesActiveOnTerminals, position - base);
         final Set<State> t = map.get(terminal);
         return t != null ? t : Collections.emptySet();
     }
@@ -75,7 +107,7 @@ public class ActiveStates<T> {
     private void addStateToActiveOnTerminal(final int position, final Terminal<T> activeCategory, final State state) {
         if (!activeCategory.equals(state.getActiveCategory()))
             throw new IssueRequest("Given category was not the same category on which the state was active. This is a bug.");
-        final Map<Terminal<T>, Set<State>> terminalSetMap = getOrInitEmptyMap(statesActiveOnTerminals, position);
+        final Map<Terminal<T>, Set<State>> terminalSetMap = getOrInitEmptyMap(statesActiveOnTerminals, position - base);
         if (!terminalSetMap.containsKey(activeCategory))
             terminalSetMap.put(activeCategory, new HashSet<>());
         terminalSetMap.get(activeCategory).add(state);
@@ -94,50 +126,73 @@ public class ActiveStates<T> {
                 ? statesActiveOnNonTerminal.get(activeCategory)
                 : new ArrayList<>(50);
 
-        final Set<State> s = getOrInitEmptySet(mapForCategory, position);
+        final Set<State> s = getOrInitEmptySet(mapForCategory, position - base);
         s.add(state);
         statesActiveOnNonTerminal.putIfAbsent(activeCategory, mapForCategory);
     }
 
-
-    /**
-     * Runs in O(1)
-     *
-     * @param state State to add
-     */
-    private void addToNonTerminalActiveAtIWithNonZeroUnitStarToY(
-            final State state,
-            final int position,
-            final NonTerminal Y) {
-        add(nonTerminalActiveAtIWithNonZeroUnitStarToY, position, Y, state);
-    }
-
     /**
-     * Runs in O(N) for N is the number of NonTerminals with non-zero unit-star score on active category, which is bounded by the total number of non-terminals
+     * Runs in O(1). States that are active on a non-terminal Z are only indexed on Z: completion finds them
+     * through the {@link ScoresAsSemiringElements#getReverseFrom(int) reverse unit-star relation} of the completed
+     * category.
      */
-    void addIfActive(
-            final int position,
-            final State state,
-            final ScoresAsSemiringElements unitStar) {
+    void addIfActive(final int position, final State state) {
         if (state.isActive()) {
             if (state.ruleDotPosition > 0 && state.rule.right.length > 0 && state.rule.right[state.ruleDotPosition - 1] instanceof NonLexicalToken) {
                 justScannedError.put(position, state);
             }
             final Category activeCategory = state.getActiveCategory();
             if (activeCategory instanceof NonLexicalToken) {
-                activeOnNonLexicalToken.add(state);
+                StateSets.add(activeOnNonLexicalToken, position - base, state);
             }
             if (activeCategory instanceof NonTerminal) {
                 addToStatesActiveOnNonTerminal(state);
-                StateSets.add(statesActiveOnNonTerminals, position, state);
-                final Collection<NonTerminal> scores = unitStar.getNonZeroNonTerminals((NonTerminal) activeCategory);
-                scores.forEach(Y -> addToNonTerminalActiveAtIWithNonZeroUnitStarToY(state, position, Y));
+                StateSets.add(statesActiveOnNonTerminals, position - base, state);
             } else if (activeCategory instanceof Terminal)  //noinspection unchecked
                 addStateToActiveOnTerminal(position, (Terminal<T>) activeCategory, state);
             else throw new IssueRequest("Neither Terminal nor NonToken...?");
         }
     }
 
+    /**
+     * Runs in O(1)
+     */
+    void remove(final State state) {
+        if (state.isActive()) {
+            if (state.ruleDotPosition > 0 && state.rule.right[state.ruleDotPosition - 1] instanceof NonLexicalToken)
+                justScannedError.remove(state.position, state);
+            final int index = state.position - base;
+            final Category activeCategory = state.getActiveCategory();
+            if (activeCategory instanceof NonLexicalToken && activeOnNonLexicalToken.size() > index && activeOnNonLexicalToken.get(index) != null)
+                activeOnNonLexicalToken.get(index).remove(state);
+            if (activeCategory instanceof NonTerminal) {
+                final List<Set<State>> forCategory = statesActiveOnNonTerminal.get(activeCategory);
+                if (forCategory != null && forCategory.size() > index && forCategory.get(index) != null)
+                    forCategory.get(index).remove(state);
+                if (statesActiveOnNonTerminals.size() > index && statesActiveOnNonTerminals.get(index) != null)
+                    statesActiveOnNonTerminals.get(index).remove(state);
+            } else if (activeCategory instanceof Terminal) {
+                if (statesActiveOnTerminals.size() > index && statesActiveOnTerminals.get(index) != null) {
+                    final Set<State> activeOnTerminal = statesActiveOnTerminals.get(index).get(activeCategory);
+                    if (activeOnTerminal != null) activeOnTerminal.remove(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets about all positions after given position. States at those positions must already be {@link #remove removed}
+     * from the indexes that are not organized by position. Runs in O(N + P) for N the number of non-terminals and P
+     * the number of removed positions.
+     */
+    void truncate(final int position) {
+        final int size = position - base + 1;
+        Collections2.truncate(statesActiveOnNonTerminals, size);
+        Collections2.truncate(statesActiveOnTerminals, size);
+        Collections2.truncate(activeOnNonLexicalToken, size);
+        statesActiveOnNonTerminal.values().forEach(byPosition -> Collections2.truncate(byPosition, size));
+    }
+
 //    public Stream<? extends StateInformationTriple> streamAllStatesToAdvance(final StateInformationTriple completedState) {
 //        final State state = completedState.completedState;
 //        final Collection<State> statesActive = getStatesActiveOnNonTerminalWithNonZeroUnitStarScoreToY(state.ruleStartPosition, state.rule.left);
@@ -151,7 +206,18 @@ public class ActiveStates<T> {
 //                );
 //    }
 
+    /**
+     * Runs in O(1)
+     *
+     * @return States at given position that are active on the {@link NonLexicalToken error symbol}, or null
+     */
+    public Set<State> getActiveOnNonLexicalToken(final int position) {
+        if (position < base) return parent.getActiveOnNonLexicalToken(position);
+        return position - base < activeOnNonLexicalToken.size() ? activeOnNonLexicalToken.get(position - base) : null;
+    }
+
     public Collection<State> getJustScannedError(final int position) {
+        if (position < base) return parent.getJustScannedError(position);
         return justScannedError.get(position);
     }
 
@@ -0,0 +1,85 @@
+package org.leibnizcenter.cfg.earleyparser.chart.statesets;
+
+/**
+ * <p>
+ * Expected size of a chart, used to size its indexes when they are created. Most inputs are short, so indexes that
+ * are sized for long inputs cost more to set up and throw away than parsing itself. Indexes still grow when the
+ * expectation is too low.
+ * </p>
+ * Immutable.
+ */
+public final class ChartCapacity {
+    /**
+     * For when the length of the input is not known in advance
+     */
+    public static final ChartCapacity DEFAULT = new ChartCapacity(16, 256);
+    private static final int MIN_STATES = 16;
+
+    /**
+     * Expected number of positions
+     */
+    public final int positions;
+    /**
+     * Expected total number of states
+     */
+    public final int states;
+
+    public ChartCapacity(final int positions, final int states) {
+        if (positions < 1 || states < 1)
+            throw new IllegalArgumentException("Capacity must be positive, but got " + positions + " positions and " + states + " states");
+        this.positions = positions;
+        this.states = states;
+    }
+
+    /**
+     * @param positions         Number of positions in the chart, which is the number of tokens plus one
+     * @param statesPerPosition Expected number of states per position
+     */
+    public static ChartCapacity forPositions(final int positions, final double statesPerPosition) {
+        final int p = Math.max(1, positions);
+        return new ChartCapacity(p, (int) Math.max(MIN_STATES, Math.min(Integer.MAX_VALUE / 2, Math.ceil(p * statesPerPosition))));
+    }
+
+    @Override
+    public String toString() {
+        return "ChartCapacity{positions=" + positions + ", states=" + states + '}';
+    }
+
+    /**
+     * Learns the number of states per position from earlier parses with the same grammar, as a running average. Safe
+     * to share between threads: updates that race may be lost, which only makes the estimate a bit less accurate.
+     */
+    public static final class Estimator {
+        /**
+         * Weight of a new parse in the running average
+         */
+        private static final double ALPHA = 0.2;
+        private volatile double statesPerPosition;
+
+        /**
+         * @param initialStatesPerPosition Estimate to use before any parse has been recorded
+         */
+        public Estimator(final double initialStatesPerPosition) {
+            this.statesPerPosition = initialStatesPerPosition;
+        }
+
+        public double getStatesPerPosition() {
+            return statesPerPosition;
+        }
+
+        /**
+         * @return Expected capacity for a chart with given number of positions
+         */
+        public ChartCapacity forPositions(final int positions) {
+            return ChartCapacity.forPositions(positions, statesPerPosition);
+        }
+
+        /**
+         * Records the size of a finished chart
+         */
+        public void record(final int positions, final int states) {
+            if (positions < 1) return;
+            statesPerPosition = (1.0 - ALPHA) * statesPerPosition + ALPHA * ((double) states / positions);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
 import org.leibnizcenter.cfg.earleyparser.chart.state.State;
 
 import org.leibnizcenter.cfg.rule.Rule;
+import org.leibnizcenter.cfg.util.Collections2;
 import org.leibnizcenter.cfg.util.MyMultimap;
 
 import java.util.*;
@@ -16,24 +17,61 @@ import static org.leibnizcenter.cfg.util.Collections2.*;
  * Created by maarten on 18-1-17.
  */
 public class CompletedStates {
-    private final List<Set<State>> completedStates = new ArrayList<>(500);
-    private final List<MyMultimap<NonTerminal, State>> completedStatesFor = new ArrayList<>(500);
-    private final List<Set<State>> completedStatesThatAreNotUnitProductions = new ArrayList<>(500);
+    /*
+     * Indexes by position hold position i at index i - base
+     */
+    private final List<Set<State>> completedStates;
+    private final List<MyMultimap<NonTerminal, State>> completedStatesFor;
+    private final List<Set<State>> completedStatesThatAreNotUnitProductions;
     private final List<List<Rule>> justCompletedErrorRulesCount = new ArrayList<>();
+    /**
+     * Index that holds all positions before {@link #base}, or null
+     */
+    private final CompletedStates parent;
+    private final int base;
+
+    public CompletedStates() {
+        this(ChartCapacity.DEFAULT.positions);
+    }
+
+    /**
+     * @param expectedPositions Expected number of positions in the chart
+     */
+    public CompletedStates(final int expectedPositions) {
+        this(null, 0, expectedPositions);
+    }
+
+    /**
+     * @param parent Index to look up positions before <code>base</code> in
+     * @param base   First position that is kept in this index
+     */
+    CompletedStates(final CompletedStates parent, final int base) {
+        this(parent, base, ChartCapacity.DEFAULT.positions);
+    }
+
+    private CompletedStates(final CompletedStates parent, final int base, final int expectedPositions) {
+        this.parent = parent;
+        this.base = base;
+        this.completedStates = new ArrayList<>(expectedPositions);
+        this.completedStatesFor = new ArrayList<>(expectedPositions);
+        this.completedStatesThatAreNotUnitProductions = new ArrayList<>(expectedPositions);
+    }
 
     private MyMultimap<NonTerminal, State> getMapFromLeftHandSide(final int position) {
-        return getOrInitEmptyMultimap(completedStatesFor, position);
+        return getOrInitEmptyMultimap(completedStatesFor, position - base);
     }
 
     private Set<State> getCompletedStates(final int index, final boolean allowUnitProductions) {
-        return getOrInitEmptySet(allowUnitProductions ? completedStates : completedStatesThatAreNotUnitProductions, index);
+        return getOrInitEmptySet(allowUnitProductions ? completedStates : completedStatesThatAreNotUnitProductions, index - base);
     }
 
     public Set<State> getCompletedStates(final int index) {
+        if (index < base) return parent.getCompletedStates(index);
         return getCompletedStates(index, true);
     }
 
     public Set<State> getCompletedStatesThatAreNotUnitProductions(final int index) {
+        if (index < base) return parent.getCompletedStatesThatAreNotUnitProductions(index);
         return getCompletedStates(index, false);
     }
 
@@ -42,9 +80,9 @@ public class CompletedStates {
      */
     void addIfCompleted(final State state) {
         if (state.isCompleted()) {
-            StateSets.add(completedStates, state.position, state);
+            StateSets.add(completedStates, state.position - base, state);
             if (!state.rule.isUnitProduction())
-                StateSets.add(completedStatesThatAreNotUnitProductions, state.position, state);
+                StateSets.add(completedStatesThatAreNotUnitProductions, state.position - base, state);
             addToCompletedStatesFor(state);
             if (state.rule.isErrorRule) {
                 addCompletedErrorRule(state.position, state.rule);
@@ -52,7 +90,38 @@ public class CompletedStates {
         }
     }
 
+    /**
+     * Runs in O(1)
+     */
+    void remove(final State state) {
+        if (state.isCompleted()) {
+            final int index = state.position - base;
+            final Set<State> completed = getSafe(completedStates, index);
+            if (completed != null) completed.remove(state);
+            final Set<State> notUnitProductions = getSafe(completedStatesThatAreNotUnitProductions, index);
+            if (notUnitProductions != null) notUnitProductions.remove(state);
+            final MyMultimap<NonTerminal, State> forLeft = getSafe(completedStatesFor, index);
+            if (forLeft != null) forLeft.remove(state.rule.left, state);
+            if (state.rule.isErrorRule) {
+                final List<Rule> errorRules = getSafe(justCompletedErrorRulesCount, index);
+                if (errorRules != null) errorRules.remove(state.rule);
+            }
+        }
+    }
+
+    /**
+     * Forgets about all positions after given position. Runs in time proportional to the number of removed positions.
+     */
+    void truncate(final int position) {
+        final int size = position - base + 1;
+        Collections2.truncate(completedStates, size);
+        Collections2.truncate(completedStatesFor, size);
+        Collections2.truncate(completedStatesThatAreNotUnitProductions, size);
+        Collections2.truncate(justCompletedErrorRulesCount, size);
+    }
+
     public Collection<State> getCompletedStates(final int i, final NonTerminal s) {
+        if (i < base) return parent.getCompletedStates(i, s);
 
         final MyMultimap<NonTerminal, State> m = this.getMapFromLeftHandSide(i);
         if (m.containsKey(s)) return m.get(s);
@@ -65,8 +134,7 @@ public class CompletedStates {
      * @param state State to add
      */
     private void addToCompletedStatesFor(final State state) {
-        final int index = state.position;
-        add(completedStatesFor, index, state.rule.left, state);
+        add(completedStatesFor, state.position - base, state.rule.left, state);
     }
 
     private static <T> T getSafe(final List<T> list, final int index) {
@@ -74,15 +142,16 @@ public class CompletedStates {
     }
 
     public int getCompletedErrorRulesCount(final int index) {
-        if (index >= justCompletedErrorRulesCount.size()) return 0;
-        final List<Rule> rules = justCompletedErrorRulesCount.get(index);
+        if (index < base) return parent.getCompletedErrorRulesCount(index);
+        if (index - base >= justCompletedErrorRulesCount.size()) return 0;
+        final List<Rule> rules = justCompletedErrorRulesCount.get(index - base);
         if (rules == null) return 0;
         return rules.size();
     }
 
     private int addCompletedErrorRule(final int index, final Rule rule) {
         final int prev = getCompletedErrorRulesCount(index);
-        addSafe(getOrInitEmptyList(justCompletedErrorRulesCount, index), index, rule);
+        addSafe(getOrInitEmptyList(justCompletedErrorRulesCount, index - base), index, rule);
         return prev;
     }
 }
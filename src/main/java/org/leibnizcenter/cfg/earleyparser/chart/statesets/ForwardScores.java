@@ -8,17 +8,45 @@ import org.leibnizcenter.cfg.grammar.Grammar;
 
 public class ForwardScores {
     private final DblSemiring semiring;
-    private final TObjectDoubleMap<State> forwardScores;
+    /**
+     * Created on the first write, because charts that only keep Viterbi scores never need it
+     */
+    private TObjectDoubleMap<State> forwardScores = null;
+    private final int expectedSize;
+    /**
+     * Scores for all states before {@link #base}, or null
+     */
+    private final ForwardScores parent;
+    private final int base;
 //    private final Map<State, Atom> forwardScoresAtom = new HashMap<>(500);
 //    private final AtomFactory atoms;
 //    private final Atom zeroA;
 
-    ForwardScores(final Grammar grammar) {
+    ForwardScores(final Grammar<?> grammar) {
+        this(grammar, ChartCapacity.DEFAULT.states);
+    }
+
+    /**
+     * @param expectedSize Expected number of states
+     */
+    ForwardScores(final Grammar<?> grammar, final int expectedSize) {
         this.semiring = grammar.semiring;
 //        this.atoms = grammar.atoms;
-        final double zero = semiring.zero();
 //        zeroA = atoms.getAtom(zero);
-        this.forwardScores = new TObjectDoubleHashMap<>(500, 0.5F, zero);
+        this.expectedSize = expectedSize;
+        this.parent = null;
+        this.base = 0;
+    }
+
+    /**
+     * @param parent Scores to look up states before <code>base</code> in
+     * @param base   First position that is kept in this map
+     */
+    ForwardScores(final ForwardScores parent, final int base) {
+        this.semiring = parent.semiring;
+        this.expectedSize = 50;
+        this.parent = parent;
+        this.base = base;
     }
 
 
@@ -29,22 +57,31 @@ public class ForwardScores {
      * @return forward score so far
      */
     public double get(final State s) {
-        return forwardScores.get(s);
+        if (s.position < base) return parent.get(s);
+        return forwardScores == null ? semiring.zero() : forwardScores.get(s);
     }
 
     /**
      * Runs in O(1).
      */
     public void put(final State state, final double score) {
+        if (forwardScores == null) forwardScores = new TObjectDoubleHashMap<>(expectedSize, 0.5F, semiring.zero());
         forwardScores.put(state, score);
 //        forwardScoresAtom.put(state, atoms.getAtom(score));
     }
 
+    /**
+     * Runs in O(1).
+     */
+    void remove(final State state) {
+        if (forwardScores != null) forwardScores.remove(state);
+    }
+
     /**
      * Runs in O(1).
      */
     public void increment(final State state, final double increment) {
-        final double newForwardScore = semiring.plus(forwardScores.get(state)/*default zero*/, increment);
+        final double newForwardScore = semiring.plus(forwardScores == null ? semiring.zero() : forwardScores.get(state)/*default zero*/, increment);
         put(state, newForwardScore);
     }
 
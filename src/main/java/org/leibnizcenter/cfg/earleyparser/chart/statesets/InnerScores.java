@@ -7,24 +7,56 @@ import org.leibnizcenter.cfg.earleyparser.Atom;
 import org.leibnizcenter.cfg.earleyparser.chart.state.State;
 import org.leibnizcenter.cfg.grammar.AtomFactory;
 
-import java.util.HashMap;
-import java.util.Map;
 
 public class InnerScores {
     public final DblSemiring semiring;
-    private final TObjectDoubleMap<State> innerScores;
-    private final Map<State,Atom> innerScoresAtom=new HashMap<>(500);
-    private final AtomFactory atoms;
+    /**
+     * Created on the first write, because charts that only keep Viterbi scores never need it
+     */
+    private TObjectDoubleMap<State> innerScores = null;
+    private final int expectedSize;
+    /**
+     * Atoms for the scores of this chart. Forks have their own, because they may be parsed on another thread.
+     */
+    private final AtomFactory atoms = new AtomFactory();
+    /**
+     * Scores for all states before {@link #base}, or null
+     */
+    private final InnerScores parent;
+    private final int base;
+
+    InnerScores(final DblSemiring semiring) {
+        this(semiring, ChartCapacity.DEFAULT.states);
+    }
 
-    InnerScores(final DblSemiring semiring, final AtomFactory atoms) {
+    /**
+     * @param expectedSize Expected number of states
+     */
+    InnerScores(final DblSemiring semiring, final int expectedSize) {
         this.semiring=semiring;
-        this.atoms=atoms;
-        this.innerScores = new TObjectDoubleHashMap<>(500, 0.5F, semiring.zero());
+        this.expectedSize = expectedSize;
+        this.parent = null;
+        this.base = 0;
+    }
+
+    /**
+     * @param parent Scores to look up states before <code>base</code> in
+     * @param base   First position that is kept in this map
+     */
+    InnerScores(final InnerScores parent, final int base) {
+        this.semiring = parent.semiring;
+        this.expectedSize = 50;
+        this.parent = parent;
+        this.base = base;
     }
 
     public void put(final State s, final double probability) {
+        if (innerScores == null) innerScores = new TObjectDoubleHashMap<>(expectedSize, 0.5F, semiring.zero());
         innerScores.put(s, probability);
-        innerScoresAtom.put(s, atoms.getAtom(probability));
+    }
+
+    void remove(final State s) {
+        if (innerScores != null) innerScores.remove(s);
     }
 
     /**
@@ -34,7 +66,8 @@ public class InnerScores {
      * @return inner score so far
      */
     public double get(final State state) {
-        return innerScores.get(state);
+        if (state.position < base) return parent.get(state);
+        return innerScores == null ? semiring.zero() : innerScores.get(state);
     }
 
     /**
@@ -44,6 +77,11 @@ public class InnerScores {
      * @return inner score so far
      */
     public Atom getAtom(final State state) {
-        return innerScoresAtom.get(state);
+        return contains(state) ? atoms.getAtom(get(state)) : null;
+    }
+
+    private boolean contains(final State state) {
+        if (state.position < base) return parent.contains(state);
+        return innerScores != null && innerScores.containsKey(state);
     }
 }
@@ -1,11 +1,16 @@
 package org.leibnizcenter.cfg.earleyparser.chart.statesets;
 
 import org.leibnizcenter.cfg.algebra.semiring.dbl.DblSemiring;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
 import org.leibnizcenter.cfg.earleyparser.Complete;
 import org.leibnizcenter.cfg.earleyparser.Scan;
 import org.leibnizcenter.cfg.earleyparser.chart.state.ScannedToken;
 import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.errors.IssueRequest;
 import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.grammar.NullProbabilities;
+import org.leibnizcenter.cfg.rule.Rule;
 import org.leibnizcenter.cfg.token.Token;
 import org.leibnizcenter.cfg.util.Collections2;
 
@@ -38,21 +43,128 @@ public class StateSets<T> {
      * a certain non-terminal X
      */
     public final InnerScores innerScores;
-    public final Map<State, State.ViterbiScore> viterbiScores = new HashMap<>(500);
-    public final CompletedStates completedStates = new CompletedStates();
-    public final ActiveStates<T> activeStates = new ActiveStates<>();
+    public final CompletedStates completedStates;
+    public final ActiveStates<T> activeStates;
     public final Grammar<T> grammar;
-    private final Set<State> states = new HashSet<>(500);
-    private final List<Set<State>> byIndex = new ArrayList<>(500);
-    private final Map<State, ScannedToken<T>> scannedTokens = new HashMap<>(50);
-    private final List<Token<T>> scannedTokensAtPosition = new ArrayList<>(50);
+    /**
+     * Whether only Viterbi scores are kept, in which case forward and inner scores are never set
+     */
+    public final boolean viterbiOnly;
+    /**
+     * Canonical instances of all states from {@link #base} on
+     */
+    private final StateTable states;
+    /**
+     * States by position, from {@link #base} on: the states at position <code>i</code> are at index <code>i - base</code>
+     */
+    private final List<Set<State>> byIndex;
+    /**
+     * The token that was scanned into each position from {@link #base} on, at index <code>position - base</code>. A scanned state is identified by its position, and the scanned
+     * category follows from its rule and dot position, so no object is kept per scanned state.
+     */
+    private final List<Token<T>> scannedTokensAtPosition;
+    /**
+     * Scanned tokens of states whose token differs from the one in {@link #scannedTokensAtPosition}, which only happens
+     * when several tokens end in the same position, like in a {@link org.leibnizcenter.cfg.token.TokenLattice} or with
+     * {@link org.leibnizcenter.cfg.token.TokenAlternatives}
+     */
+    private final Map<State, Token<T>> scannedTokenExceptions = new HashMap<>();
+    private final Map<State, State.ViterbiScore> viterbiScores;
+    /**
+     * State sets that hold all positions before {@link #base}, or null if this is not a {@link #fork(int) fork}
+     */
+    private final StateSets<T> parent;
+    private final int base;
+    /**
+     * Number of states in {@link #parent} before {@link #base}
+     */
+    private final int parentStateCount;
+    /**
+     * Positions before this one are shared with forks, and may not change anymore
+     */
+    private int frozenBefore = 0;
 
 
     public StateSets(final Grammar<T> grammar) {
+        this(grammar, false);
+    }
+
+    public StateSets(final Grammar<T> grammar, final boolean viterbiOnly) {
+        this(grammar, viterbiOnly, ChartCapacity.DEFAULT);
+    }
+
+    /**
+     * @param capacity Expected size of the chart, used to size indexes up front
+     */
+    public StateSets(final Grammar<T> grammar, final boolean viterbiOnly, final ChartCapacity capacity) {
         this.grammar = grammar;
+        this.viterbiOnly = viterbiOnly;
         final DblSemiring semiring = grammar.semiring;
-        this.forwardScores = new ForwardScores(grammar);
-        this.innerScores = new InnerScores(semiring, grammar.atoms);
+        this.forwardScores = new ForwardScores(grammar, capacity.states);
+        this.innerScores = new InnerScores(semiring, capacity.states);
+        this.completedStates = new CompletedStates(capacity.positions);
+        this.activeStates = new ActiveStates<>(capacity.positions);
+        this.states = new StateTable(capacity.states);
+        this.byIndex = new ArrayList<>(capacity.positions);
+        this.scannedTokensAtPosition = new ArrayList<>(capacity.positions);
+        this.viterbiScores = new HashMap<>(2 * capacity.states);
+        this.parent = null;
+        this.base = 0;
+        this.parentStateCount = 0;
+    }
+
+    /**
+     * Creates a fork that shares all positions before <code>base</code> with given parent, and copies position
+     * <code>base</code>.
+     */
+    private StateSets(final StateSets<T> parent, final int base) {
+        this.grammar = parent.grammar;
+        this.viterbiOnly = parent.viterbiOnly;
+        this.forwardScores = new ForwardScores(parent.forwardScores, base);
+        this.innerScores = new InnerScores(parent.innerScores, base);
+        this.completedStates = new CompletedStates(parent.completedStates, base);
+        this.activeStates = new ActiveStates<>(parent.activeStates, base);
+        this.parent = parent;
+        this.base = base;
+        this.parentStateCount = parent.countStatesBefore(base);
+        this.states = new StateTable();
+        this.byIndex = new ArrayList<>(ChartCapacity.DEFAULT.positions);
+        this.scannedTokensAtPosition = new ArrayList<>(ChartCapacity.DEFAULT.positions);
+        this.viterbiScores = new HashMap<>();
+
+        final Set<State> statesAtBase = parent.getStatesOrNull(base);
+        final Token<T> scannedTokenAtBase = parent.getScannedToken(base);
+        if (scannedTokenAtBase != null) scannedTokensAtPosition.add(scannedTokenAtBase);
+        if (statesAtBase != null) for (final State state : statesAtBase) {
+            getOrCreate(state);
+            final Token<T> scannedTokenException = parent.scannedTokenExceptions.get(state);
+            if (scannedTokenException != null) scannedTokenExceptions.put(state, scannedTokenException);
+            if (!viterbiOnly) {
+                forwardScores.put(state, parent.forwardScores.get(state));
+                innerScores.put(state, parent.innerScores.get(state));
+            }
+            final State.ViterbiScore viterbiScore = parent.getViterbiScore(state);
+            if (viterbiScore != null) setViterbiScore(viterbiScore);
+        }
+    }
+
+    /**
+     * Creates state sets that share all positions before given position with this one, and that can be extended
+     * independently from this one. The states at given position are copied, so the cost of forking is proportional
+     * to the number of states at and after that position rather than to the size of the chart. When forking at the
+     * end of the chart, this is bounded by the size of the grammar.
+     * <p>
+     * After forking, this object may no longer change at positions before given position; it can be extended or
+     * {@link #truncate(int) truncated} back to given position.
+     *
+     * @param position Position to fork at, typically the current end of the chart
+     * @return State sets that contain the same states up to and including given position
+     */
+    public StateSets<T> fork(final int position) {
+        if (position < base)
+            throw new IllegalArgumentException("Can not fork at position " + position + ", because this is a fork from position " + base);
+        frozenBefore = Math.max(frozenBefore, position);
+        return new StateSets<>(this, position);
     }
 
 
@@ -68,17 +180,56 @@ public class StateSets<T> {
      * Adds state if it does not exist yet
      *
      * @param scannedToken The token that was scanned to create this state
-     * @return State specified by parameter. May or may not be in the state table. If not, it is added.
+     * @return The canonical instance of given state: the one in the state table if it exists, or else given state, which is added.
      */
     public State getOrCreate(final State state, final Token<T> scannedToken) {
-        if (contains(state)) {
-            return state;
+        final State existing = get(state);
+        if (existing != null) {
+            return existing;
         } else {
             addState(state, scannedToken);
             return state;
         }
     }
 
+    /**
+     * Looks up a state on its fields, without allocating anything if it exists
+     *
+     * @return The state in the chart with given fields, or null if there is none
+     */
+    public State get(final int position, final int ruleStart, final int dotPosition, final Rule rule) {
+        if (position < base) return parent.get(position, ruleStart, dotPosition, rule);
+        return states.get(position, ruleStart, dotPosition, rule);
+    }
+
+    /**
+     * @return The canonical instance of given state, or null if it is not in the chart
+     */
+    public State get(final State state) {
+        return get(state.position, state.ruleStartPosition, state.ruleDotPosition, state.rule);
+    }
+
+    /**
+     * Use this instead of {@link State#create(int, int, int, Rule)} to probe the chart, so that no new state is allocated
+     * if it already exists.
+     *
+     * @return The state in the chart with given fields, or else a new state that is not added to the chart
+     */
+    public State getCanonical(final int position, final int ruleStart, final int dotPosition, final Rule rule) {
+        final State existing = get(position, ruleStart, dotPosition, rule);
+        return existing != null ? existing : State.create(position, ruleStart, dotPosition, rule);
+    }
+
+    /**
+     * Looks up a state on its fields, and adds it if it does not exist yet. Only allocates if the state is new.
+     *
+     * @return The canonical state with given fields
+     */
+    public State getOrCreate(final int position, final int ruleStart, final int dotPosition, final Rule rule) {
+        final State existing = get(position, ruleStart, dotPosition, rule);
+        return existing != null ? existing : getOrCreate(State.create(position, ruleStart, dotPosition, rule));
+    }
+
     /**
      * Runs in O(N) for N is the number of NonTerminals with non-zero unit-star score on active category, which is bounded by the total number of non-terminals
      *
@@ -86,32 +237,44 @@ public class StateSets<T> {
      */
     private void addState(final State state, final Token<T> scannedToken) {
         final int index = state.position;
+        ensureMutable(index);
 
         states.add(state);
-        add(byIndex, index, state);
+        add(byIndex, index - base, state);
 //        if (state.position>0 && state.rule.right.length>0 && state.rule.right[state.position-1] instanceof NonLexicalToken) {
 //            // Just scanned <NonLexicalToken>
 //            incrementCompletedErrorRulesCount(state.position);
 //        }
         completedStates.addIfCompleted(state);
-        activeStates.addIfActive(index, state, grammar.unitStarScores);
-        if (scannedToken != null) {
-            final ScannedToken<T> eScannedToken = new ScannedToken<>(
-                    scannedToken,
-                    state.rule,
-                    state.ruleDotPosition
-            );
-            scannedTokens.put(state, eScannedToken);
-
-            if (!containsKey(scannedTokensAtPosition, index))
-                addSafe(scannedTokensAtPosition, index, eScannedToken.scannedToken);
-            else assert scannedTokensAtPosition.get(index).equals(eScannedToken.scannedToken);
+        activeStates.addIfActive(index, state);
+        if (scannedToken != null) setScannedToken(state, scannedToken);
+    }
 
-        }
+    /**
+     * Remembers that given token was scanned to create given state. Only stores anything for the state itself if the
+     * token differs from the token that was scanned into its position before.
+     */
+    private void setScannedToken(final State state, final Token<T> scannedToken) {
+        final int index = state.position - base;
+        if (!containsKey(scannedTokensAtPosition, index)) {
+            addSafe(scannedTokensAtPosition, index, scannedToken);
+            scannedTokenExceptions.remove(state);
+        } else if (scannedTokensAtPosition.get(index).equals(scannedToken)) scannedTokenExceptions.remove(state);
+        else scannedTokenExceptions.put(state, scannedToken);
     }
 
     public Set<State> getStates(final int index) {
-        return byIndex.get(index);
+        if (index < base) return parent.getStates(index);
+        return byIndex.get(index - base);
+    }
+
+    private Set<State> getStatesOrNull(final int index) {
+        if (index < base) return parent.getStatesOrNull(index);
+        return index - base < byIndex.size() ? byIndex.get(index - base) : null;
+    }
+
+    private void ensureMutable(final int position) {
+        if (position < base) throw new IssueRequest("Tried to change position " + position + " in a fork from position " + base + ". This is a bug.");
     }
 
     /**
@@ -128,18 +291,43 @@ public class StateSets<T> {
 
 
     public int countStates() {
-        return byIndex.stream().filter(Objects::nonNull)
-                .mapToInt(Set::size).sum();
+        return size();
+    }
+
+    /**
+     * Runs in O(1), unlike {@link #countStates()}
+     *
+     * @return Total number of states
+     */
+    public int size() {
+        return parentStateCount + states.size();
+    }
+
+    /**
+     * Runs in time proportional to the number of positions from given position on, which is O(1) at the end of the
+     * chart
+     *
+     * @param position Position from {@link #base} on
+     * @return Number of states before given position
+     */
+    private int countStatesBefore(final int position) {
+        int count = size();
+        for (int i = position - base; i < byIndex.size(); i++) {
+            final Set<State> statesAtIndex = byIndex.get(i);
+            if (statesAtIndex != null) count -= statesAtIndex.size();
+        }
+        return count;
     }
 
     public boolean contains(final State s) {
-        return states.contains(s);
+        return get(s) != null;
     }
 
     public void createStateAndSetScores(
             final Token<T> token, final State preScanState,
             final double postScanForward,
             final double postScanInner,
+            final double postScanViterbi,
             final State nextState
     ) {
         Objects.requireNonNull(token);
@@ -152,50 +340,190 @@ public class StateSets<T> {
 //                        throw new IssueRequest("Tried to scan same state twice. This is a bug.");
 //                    else checkNoNewStatesAreDoubles.put(postScanState, postScanState);
 
-        // Set forward score
-        forwardScores.put(postScanState, postScanForward);
-        // Set inner score
-        innerScores.put(postScanState, postScanInner);
-        // Set Viterbi score
-        setViterbiScore(new State.ViterbiScore(postScanInner, preScanState, postScanState, sr));
+        if (!viterbiOnly) {
+            // Set forward score
+            forwardScores.put(postScanState, postScanForward);
+            // Set inner score
+            innerScores.put(postScanState, postScanInner);
+        }
+        // Set Viterbi score from the best derivation of the pre-scan state, not from the sum over all of them
+        setViterbiScore(new State.ViterbiScore(postScanViterbi, preScanState, postScanState, sr));
+        addNullableSuccessors(postScanState, postScanForward, postScanInner, postScanViterbi);
+    }
+
+    /**
+     * Adds a scanned state, or adds to its scores if it already exists. The Viterbi score and scanned token are only
+     * replaced if the new Viterbi score is better.
+     */
+    public void addScannedState(
+            final Token<T> token, final State preScanState,
+            final double postScanForward,
+            final double postScanInner,
+            final double postScanViterbi,
+            final State nextState
+    ) {
+        Objects.requireNonNull(token);
+        final DblSemiring sr = this.grammar.semiring;
+        final State existing = get(nextState);
+        final boolean isNew = existing == null;
+        final State state = isNew ? getOrCreate(nextState) : existing;
+        if (!viterbiOnly) {
+            forwardScores.increment(state, postScanForward);
+            innerScores.put(state, isNew ? postScanInner : sr.plus(innerScores.get(state), postScanInner));
+        }
+        final State.ViterbiScore viterbiScore = getViterbiScore(state);
+        if (viterbiScore == null || sr.compare(viterbiScore.probabilityAsSemiringElement, postScanViterbi) < 0) {
+            setViterbiScore(new State.ViterbiScore(postScanViterbi, preScanState, state, sr));
+            setScannedToken(state, token);
+        }
+        addNullableSuccessors(state, postScanForward, postScanInner, postScanViterbi);
+    }
+
+    /**
+     * Moves the dot of given state over the nullable categories that follow it, one at a time, and adds the resulting
+     * states with the scores of given state times the probability of deriving the empty string. Forward and inner
+     * scores are added to existing ones, and the Viterbi score is kept if it is better. A completed state with an empty
+     * span is not added, except for the goal: the states that it would complete already account for it through the
+     * left-corner and unit-production relations of the grammar.
+     *
+     * @param state   State that was just added, or to which given scores were just added
+     * @param forward Forward score that was added to given state
+     * @param inner   Inner score that was added to given state
+     * @param viterbi Viterbi score of given state
+     */
+    public void addNullableSuccessors(final State state, final double forward, final double inner, final double viterbi) {
+        final NullProbabilities nullProbabilities = grammar.nullProbabilities;
+        if (nullProbabilities.isEmpty()) return;
+        final DblSemiring sr = grammar.semiring;
+        State previous = state;
+        double fw = forward, in = inner, vit = viterbi;
+        while (!previous.isCompleted() && nullProbabilities.isNullable(previous.getActiveCategory())) {
+            final Category Z = previous.getActiveCategory();
+            final State next = getCanonical(previous.position, previous.ruleStartPosition, previous.advanceDot(), previous.rule);
+            if (next.isCompleted() && next.ruleStartPosition == next.position && !Category.START.equals(next.rule.left))
+                return;
+
+            final State added = getOrCreate(next);
+            if (!viterbiOnly) {
+                fw = sr.times(fw, nullProbabilities.getScore(Z));
+                in = sr.times(in, nullProbabilities.getScore(Z));
+                forwardScores.increment(added, fw);
+                innerScores.put(added, sr.plus(innerScores.get(added), in));
+            }
+            vit = sr.times(vit, nullProbabilities.getViterbiScore(Z));
+            final State.ViterbiScore viterbiScore = getViterbiScore(added);
+            if (viterbiScore == null || sr.compare(viterbiScore.probabilityAsSemiringElement, vit) < 0)
+                setViterbiScore(new State.ViterbiScore(vit, previous, added, sr));
+            previous = added;
+        }
     }
 
     @Deprecated
     public void createStateAndSetScores(final Scan.Delta<T> score) {
-        createStateAndSetScores(score.token, score.preScanState, score.postScanForward, score.postScanInner, score.nextState);
+        createStateAndSetScores(score.token, score.preScanState, score.postScanForward, score.postScanInner, score.postScanViterbi, score.nextState);
     }
 
     public void setViterbiScore(final State.ViterbiScore viterbiScore) {
+        ensureMutable(viterbiScore.resultingState.position);
         this.viterbiScores.put(viterbiScore.resultingState, viterbiScore);
     }
 
+    /**
+     * @return Viterbi score for given state, or null if it has none
+     */
+    public State.ViterbiScore getViterbiScore(final State s) {
+        if (s.position < base) return parent.getViterbiScore(s);
+        return viterbiScores.get(s);
+    }
+
     public double getViterbiScoreDbl(final State s) {
-        final State.ViterbiScore viterbiScore = viterbiScores.get(s);
+        final State.ViterbiScore viterbiScore = getViterbiScore(s);
         if (viterbiScore == null) return Double.NaN;
         return viterbiScore.probabilityAsSemiringElement;
     }
 
+    /**
+     * Creates the scanned token for a state from the token at its position, and the category before its dot
+     *
+     * @return Token that was scanned to create given state, or null if given state was not created by scanning
+     */
     public ScannedToken<T> getScannedToken(final State state) {
-        return scannedTokens.get(state);
+        if (state.position < base) return parent.getScannedToken(state);
+        if (state.ruleDotPosition <= 0 || !(state.rule.right[state.ruleDotPosition - 1] instanceof Terminal)) return null;
+        final Token<T> exception = scannedTokenExceptions.get(state);
+        if (exception != null) return new ScannedToken<>(exception, state.rule, state.ruleDotPosition);
+        final Token<T> token = getScannedToken(state.position);
+        return token == null ? null : new ScannedToken<>(token, state.rule, state.ruleDotPosition);
     }
 
     public Token<T> getScannedToken(final int pos) {
-        return scannedTokensAtPosition.get(pos);
+        if (pos < base) return parent.getScannedToken(pos);
+        return containsKey(scannedTokensAtPosition, pos - base) ? scannedTokensAtPosition.get(pos - base) : null;
     }
 
 
+    /**
+     * @return The canonical instance of given state: the one in the state table if it exists, or else given state, which is added.
+     */
     public State getOrCreate(final State state) {
-        if (contains(state)) {
-            return state;
+        final State existing = get(state);
+        if (existing != null) {
+            return existing;
         } else {
+            ensureMutable(state.position);
             states.add(state);
-            add(byIndex, state.position, state);
+            add(byIndex, state.position - base, state);
             completedStates.addIfCompleted(state);
-            activeStates.addIfActive(state.position, state, grammar.unitStarScores);
+            activeStates.addIfActive(state.position, state);
             return state;
         }
     }
 
+    /**
+     * Removes all states after given position, and all states that were predicted at given position, so that this
+     * index is in the state it was in just after scanning and completing up to given position. Runs in time proportional
+     * to the number of removed states.
+     *
+     * @param position Position to truncate to
+     */
+    public void truncate(final int position) {
+        if (position < frozenBefore)
+            throw new IllegalStateException("Can not truncate to position " + position + ", because positions before " + frozenBefore + " are shared with a fork");
+        if (position < base)
+            throw new IllegalArgumentException("Can not truncate to position " + position + ", because this is a fork from position " + base);
+        final int index = position - base;
+        for (int i = byIndex.size() - 1; i > index; i--) {
+            final Set<State> statesAtIndex = byIndex.get(i);
+            if (statesAtIndex != null) statesAtIndex.forEach(this::remove);
+        }
+        Collections2.truncate(byIndex, index + 1);
+        Collections2.truncate(scannedTokensAtPosition, index + 1);
+        completedStates.truncate(position);
+        activeStates.truncate(position);
+
+        if (index < byIndex.size() && byIndex.get(index) != null) {
+            final Set<State> statesAtPosition = byIndex.get(index);
+            final List<State> predicted = new ArrayList<>();
+            for (final State state : statesAtPosition)
+                if (state.ruleStartPosition == position && !Category.START.equals(state.rule.left)) predicted.add(state);
+            predicted.forEach(this::remove);
+            statesAtPosition.removeAll(predicted);
+        }
+    }
+
+    /**
+     * Removes state from all indexes and score maps, except from {@link #byIndex}
+     */
+    private void remove(final State state) {
+        states.remove(state);
+        completedStates.remove(state);
+        activeStates.remove(state);
+        forwardScores.remove(state);
+        innerScores.remove(state);
+        viterbiScores.remove(state);
+        scannedTokenExceptions.remove(state);
+    }
+
     public void processDelta(final Complete.ViterbiDelta delta) {
         // Add new states to chart
         if (delta.isNewState) addIfNew(delta.resultingState);
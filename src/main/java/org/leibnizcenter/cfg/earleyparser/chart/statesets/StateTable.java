@@ -0,0 +1,116 @@
+package org.leibnizcenter.cfg.earleyparser.chart.statesets;
+
+import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.rule.Rule;
+
+/**
+ * Hash set of the canonical instances of states, which can be probed on the fields of a state, so looking up
+ * a state that already exists does not allocate a new one. Uses open addressing with linear probing.
+ */
+final class StateTable {
+    private static final int MIN_CAPACITY = 16;
+
+    private State[] table;
+    private int size = 0;
+
+    StateTable() {
+        this(ChartCapacity.DEFAULT.states);
+    }
+
+    /**
+     * @param expectedSize Number of states that is expected to be added, so that the table does not need to grow
+     */
+    StateTable(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize && capacity < (1 << 30)) capacity <<= 1;
+        table = new State[capacity];
+    }
+
+    private static int indexFor(final int hashCode, final int mask) {
+        // Spread the high bits, because positions only change the low bits of the hash code
+        return (hashCode ^ (hashCode >>> 16)) & mask;
+    }
+
+    private static boolean matches(final State state, final int position, final int ruleStart, final int dot, final Rule rule) {
+        return state.position == position
+                && state.ruleStartPosition == ruleStart
+                && state.ruleDotPosition == dot
+                && (state.rule == rule || state.rule.equals(rule));
+    }
+
+    /**
+     * @return The state with given fields, or null if there is none
+     */
+    State get(final int position, final int ruleStart, final int dot, final Rule rule) {
+        final int mask = table.length - 1;
+        for (int i = indexFor(State.hashCode(rule, position, ruleStart, dot), mask); ; i = (i + 1) & mask) {
+            final State state = table[i];
+            if (state == null) return null;
+            if (matches(state, position, ruleStart, dot, rule)) return state;
+        }
+    }
+
+    /**
+     * @return The state that is equal to given state, or null if there is none
+     */
+    State get(final State state) {
+        return get(state.position, state.ruleStartPosition, state.ruleDotPosition, state.rule);
+    }
+
+    /**
+     * Adds given state, unless an equal one exists
+     *
+     * @return The canonical state: the one that existed, or else given state
+     */
+    State add(final State state) {
+        final State existing = get(state);
+        if (existing != null) return existing;
+        if (2 * (size + 1) > table.length) resize(table.length * 2);
+        insert(table, state);
+        size++;
+        return state;
+    }
+
+    private static void insert(final State[] table, final State state) {
+        final int mask = table.length - 1;
+        int i = indexFor(state.hashCode(), mask);
+        while (table[i] != null) i = (i + 1) & mask;
+        table[i] = state;
+    }
+
+    private void resize(final int capacity) {
+        final State[] newTable = new State[capacity];
+        for (final State state : table) if (state != null) insert(newTable, state);
+        table = newTable;
+    }
+
+    /**
+     * @return Whether a state equal to given state was removed
+     */
+    boolean remove(final State state) {
+        final int mask = table.length - 1;
+        int i = indexFor(state.hashCode(), mask);
+        while (table[i] != null && !matches(table[i], state.position, state.ruleStartPosition, state.ruleDotPosition, state.rule))
+            i = (i + 1) & mask;
+        if (table[i] == null) return false;
+
+        // Shift back the states that follow in the same cluster, so that probes do not stop at the gap
+        table[i] = null;
+        size--;
+        for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            final State moved = table[j];
+            final int home = indexFor(moved.hashCode(), mask);
+            // Move if the gap lies cyclically between the home slot of the state and its current slot
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                table[i] = moved;
+                table[j] = null;
+                i = j;
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+}
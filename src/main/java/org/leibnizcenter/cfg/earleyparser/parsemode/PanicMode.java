@@ -9,83 +9,106 @@ import org.leibnizcenter.cfg.earleyparser.chart.state.State;
 import org.leibnizcenter.cfg.token.Token;
 import org.leibnizcenter.cfg.token.TokenWithCategories;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import java.util.stream.IntStream;
+import java.util.*;
+
+/**
+ * Error recovery for {@link org.leibnizcenter.cfg.earleyparser.scan.ScanMode#SYNCHRONIZE}: when the parser enters
+ * panic mode, every state that is active on the {@link NonLexicalToken error symbol} is advanced over all tokens that
+ * were passed since that state was created.
+ * <p>
+ * Roots are collected once per position, when panic mode is first entered after the chart has moved past that
+ * position, and kept for later. For every root, the position up to which it has been advanced and the product of the
+ * scan probabilities of the tokens it skipped so far are remembered, so that entering panic mode again only advances
+ * roots over the tokens that were passed since the last time. A single instance should be used for one chart, which
+ * may not be truncated or forked.
+ */
+public class PanicMode<T> {
+    /**
+     * For every position before {@link #collectedUntil}, the states that were active on the error symbol there
+     */
+    private final List<List<State>> rootsByPosition = new ArrayList<>();
+    /**
+     * For every state that is active on the error symbol, the last position it has been advanced to
+     */
+    private final Map<State, Integer> advancedUntil = new HashMap<>();
+    /**
+     * For every state that is active on the error symbol, the product of the scan probabilities of the tokens it has
+     * been advanced over, if there is a {@link ScanProbability}
+     */
+    private final Map<State, Double> scanProbabilityUntil = new HashMap<>();
+    /**
+     * Number of positions for which roots have been collected
+     */
+    private int collectedUntil = 0;
+
+    public void proceedAllStatesThatWereActiveOnError(final Chart<T> chart,
+                                                      final int chartIndex,
+                                                      final List<Token<T>> tokensPassed) {
+        // Collect roots of new positions before changing the chart, because advancing them may make new states active
+        // on error
+        for (; collectedUntil < chartIndex; collectedUntil++) {
+            final Set<State> activeOnError = chart.stateSets.activeStates.getActiveOnNonLexicalToken(collectedUntil);
+            rootsByPosition.add(activeOnError == null ? Collections.emptyList() : new ArrayList<>(activeOnError));
+        }
 
-public class PanicMode {
-    public static <T> void proceedAllStatesThatWereActiveOnError(final Chart<T> chart,
-                                                                 final int chartIndex,
-                                                                 final List<Token<T>> tokensPassed) {
         final ExpressionSemiring sr = chart.grammar.semiring;
-        new HashSet<>(chart.stateSets.activeStates.activeOnNonLexicalToken)
-                .stream().sequential()
-                .filter(s -> s.comesBefore(chartIndex))
-                .forEachOrdered(rootStateActiveOnError -> {
-                            final double rootForward = chart.getForwardScore(rootStateActiveOnError);
-                            final double rootInner = chart.getInnerScore(rootStateActiveOnError);
+        final ScanProbability<T> scanProbability = chart.parseOptions == null ? null : chart.parseOptions.scanProbability;
+        // Later roots come first, so that where roots advance into the same state, the root that has skipped the most
+        // tokens sets its score.
+        for (int rootPosition = rootsByPosition.size() - 1; rootPosition >= 0; rootPosition--)
+            for (final State rootStateActiveOnError : rootsByPosition.get(rootPosition)) {
+                final int advancedFrom = advancedUntil.getOrDefault(rootStateActiveOnError, rootStateActiveOnError.position);
+                if (advancedFrom >= chartIndex) continue;
+                advancedUntil.put(rootStateActiveOnError, chartIndex);
 
-                            IntStream.range(rootStateActiveOnError.position + 1, chartIndex + 1)
-                                    .forEach(position -> {
-                                        final State preScanState = State.create(
-                                                position,
-                                                rootStateActiveOnError.ruleStartPosition,
-                                                rootStateActiveOnError.ruleDotPosition,
-                                                rootStateActiveOnError.rule
-                                        );
+                final double rootForward = chart.getForwardScore(rootStateActiveOnError);
+                final double rootInner = chart.getInnerScore(rootStateActiveOnError);
+                final double rootViterbi = chart.getViterbiScoreOrZero(rootStateActiveOnError);
+                double scanProbPow = scanProbability == null
+                        ? Double.NaN
+                        : scanProbabilityUntil.getOrDefault(rootStateActiveOnError, sr.one());
 
-                                        final int numberOfScannedTokens = position - rootStateActiveOnError.position;
-                                        final double ruleProv = rootStateActiveOnError.rule.probabilityAsSemiringElement;
-                                        final double newInner = sr.times(rootInner, sr.pow(ruleProv, numberOfScannedTokens - 1));
-                                        final double newForward = sr.times(rootForward, newInner);
+                for (int position = advancedFrom + 1; position <= chartIndex; position++) {
+                    final State preScanState = chart.stateSets.getCanonical(
+                            position,
+                            rootStateActiveOnError.ruleStartPosition,
+                            rootStateActiveOnError.ruleDotPosition,
+                            rootStateActiveOnError.rule
+                    );
 
-                                        chart.addPredictedStateToChart(rootStateActiveOnError, newInner, newForward, preScanState);
+                    final int numberOfScannedTokens = position - rootStateActiveOnError.position;
+                    final double ruleProv = rootStateActiveOnError.rule.probabilityAsSemiringElement;
+                    final double newInner = sr.times(rootInner, sr.pow(ruleProv, numberOfScannedTokens - 1));
+                    final double newViterbi = sr.times(rootViterbi, sr.pow(ruleProv, numberOfScannedTokens - 1));
+                    final double newForward = sr.times(rootForward, newInner);
 
-                                        final Token<T> token = tokensPassed.get(position);
+                    chart.addPredictedStateToChart(rootStateActiveOnError, newInner, newForward, preScanState);
 
-                                        if (position <= chartIndex) {
-                                            final double scanProbPow = determineScanProbabilityOfMultipleTokens(
-                                                    chart,
-                                                    rootStateActiveOnError.position,
-                                                    position,
-                                                    sr,
-                                                    token
-                                            );
+                    // The token that took the chart to this position was scanned as an error at the position before
+                    final Token<T> token = tokensPassed.get(position);
+                    if (scanProbability != null) scanProbPow = sr.times(scanProbPow, getErrorScanProbability(scanProbability, token, position - 1));
 
-                                            chart.stateSets.createStateAndSetScores(
-                                                    token,
-                                                    rootStateActiveOnError,
-                                                    Scan.calculateForwardScore(scanProbPow, sr, newForward),
-                                                    Scan.calculateInnerScore(scanProbPow, sr, newInner),
-                                                    State.create(position, preScanState.ruleStartPosition, preScanState.advanceDot(), preScanState.rule)
-                                            );
-                                        }
-                                    });
-                        }
-                );
+                    chart.stateSets.createStateAndSetScores(
+                            token,
+                            rootStateActiveOnError,
+                            Scan.calculateForwardScore(scanProbPow, sr, newForward),
+                            Scan.calculateInnerScore(scanProbPow, sr, newInner),
+                            Scan.calculateInnerScore(scanProbPow, sr, newViterbi),
+                            chart.stateSets.getCanonical(position, preScanState.ruleStartPosition, preScanState.advanceDot(), preScanState.rule)
+                    );
+                }
+                if (scanProbability != null) scanProbabilityUntil.put(rootStateActiveOnError, scanProbPow);
+            }
     }
 
-    private static <T> double determineScanProbabilityOfMultipleTokens(final Chart<T> chart,
-                                                                       final int startPositionInclusive,
-                                                                       final int endPositionInclusive,
-                                                                       final ExpressionSemiring sr,
-                                                                       final Token<T> token) {
-        final ScanProbability<T> scanProbability = chart.parseOptions.scanProbability;
-        double scanProbPow = Double.NaN;
-        if (scanProbability != null) {
-            //noinspection unchecked
-            final double scanProbAtPosition = Scan.getScanProb(
-                    scanProbability,
-                    new TokenWithCategories<>(token, Collections.singleton(NonLexicalToken.INSTANCE)),
-                    endPositionInclusive
-            );
-            //noinspection unchecked
-            scanProbPow = IntStream.range(startPositionInclusive, endPositionInclusive)
-                    .mapToDouble(p -> Scan.getScanProb(scanProbability,
-                            new TokenWithCategories<>(token, Collections.singleton(NonLexicalToken.INSTANCE)), p))
-                    .reduce(scanProbAtPosition, sr::times);
-        }
-        return scanProbPow;
+    private static <T> double getErrorScanProbability(final ScanProbability<T> scanProbability,
+                                                      final Token<T> token,
+                                                      final int position) {
+        //noinspection unchecked
+        return Scan.getScanProb(
+                scanProbability,
+                new TokenWithCategories<>(token, Collections.singleton(NonLexicalToken.INSTANCE)),
+                position
+        );
     }
 }
@@ -5,6 +5,7 @@ import org.leibnizcenter.cfg.category.terminal.Terminal;
 import org.leibnizcenter.cfg.earleyparser.chart.Chart;
 import org.leibnizcenter.cfg.earleyparser.chart.state.State;
 import org.leibnizcenter.cfg.earleyparser.scan.TokenNotInLexiconException;
+import org.leibnizcenter.cfg.grammar.UnknownWordModel;
 import org.leibnizcenter.cfg.token.Token;
 import org.leibnizcenter.cfg.token.TokenWithCategories;
 
@@ -15,7 +16,7 @@ import java.util.Set;
 import static org.leibnizcenter.cfg.util.Collections2.nullOrEmpty;
 
 public enum ParsingMode {
-    NORMAL, PANIC_MODE, WILDCARD, DROP, STRICT;
+    NORMAL, PANIC_MODE, WILDCARD, SIGNATURE, DROP, STRICT;
 
     private static <T> int processTokenNormal(final Chart<T> chart, int indexForChart, final Token<T> t, final Set<Terminal<T>> categories) {
         if (!nullOrEmpty(categories)) {
@@ -47,6 +48,24 @@ public enum ParsingMode {
                 : processTokenNormal(chart, indexForChart, t, categories);
     }
 
+    /**
+     * Scans a token that is not in the lexicon as the terminals that the unknown word model of the grammar guesses
+     * for it, weighted by their probabilities, or drops it if there is no guess
+     */
+    private static <T> int processTokenSignature(final Chart<T> chart, final int indexForChart, final Token<T> t, final Set<Terminal<T>> categories) {
+        if (!nullOrEmpty(categories)) return processTokenNormal(chart, indexForChart, t, categories);
+
+        final UnknownWordModel<T> unknownWordModel = chart.grammar.unknownWordModel;
+        final UnknownWordModel.Guess<T> guess = unknownWordModel == null ? null : unknownWordModel.guess(t);
+        if (guess == null) return indexForChart;
+
+        final TokenWithCategories<T> token = new TokenWithCategories<>(t, guess.categories);
+        chart.predict(indexForChart, token);
+        chart.scan(indexForChart, token, guess);
+        chart.complete(indexForChart, token);
+        return indexForChart + 1;
+    }
+
     private static <T> int processTokenPanicMode(final Chart<T> chart, final int indexForChart, final Token<T> t, Set<Terminal<T>> categories) {
         //if (!Collections2.nullOrEmpty(categories)) {
 
@@ -87,6 +106,8 @@ public enum ParsingMode {
                 return processTokenPanicMode(chart, indexForChart, t, categories);
             case WILDCARD:
                 return processTokenWildcard(chart, indexForChart, t, categories);
+            case SIGNATURE:
+                return processTokenSignature(chart, indexForChart, t, categories);
             case DROP:
                 return processTokenDrop(chart, indexForChart, t, categories);
             case STRICT:
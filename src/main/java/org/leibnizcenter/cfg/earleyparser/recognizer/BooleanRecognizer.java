@@ -0,0 +1,210 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.leibnizcenter.cfg.earleyparser.recognizer.DottedItems.*;
+
+/**
+ * Earley recognizer that only decides whether a string is in the language of a grammar, without computing any
+ * probabilities or parse trees.
+ *
+ * Every state set is represented as one bitset over {@link DottedItems dotted item ids} per origin position, so that
+ * predict, scan and complete are OR operations on pre-computed bitsets rather than operations on individual states.
+ * Error rules are ignored.
+ *
+ * {@link RecognizerCompiler} generates subclasses with the tables of a fixed grammar built in.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class BooleanRecognizer<T> implements Recognizer<T> {
+    private final Grammar<T> grammar;
+    private final DottedItems<T> items;
+
+    public BooleanRecognizer(final Grammar<T> grammar) {
+        this.grammar = grammar;
+        this.items = new DottedItems<>(grammar);
+    }
+
+    /**
+     * For recognizers generated by {@link RecognizerCompiler}, which pass the pre-computed tables of their grammar and
+     * override {@link #getActiveOn(Token)}
+     *
+     * @param nonTerminals Names of the non-terminals of the grammar
+     * @param tables       Encoded tables of the grammar, as written by {@link RecognizerCompiler}
+     */
+    @SuppressWarnings("WeakerAccess")
+    protected BooleanRecognizer(final String[] nonTerminals, final String[] tables) {
+        this.grammar = null;
+        this.items = new DottedItems<>(nonTerminals, tables);
+    }
+
+    /**
+     * @return The bitsets written by {@link RecognizerCompiler}, for generated recognizers
+     */
+    @SuppressWarnings("WeakerAccess")
+    protected static long[][] decodeBitsets(final String[] encoded, final int words) {
+        return new TableCodec.Reader(encoded).readRows(words);
+    }
+
+    /**
+     * @return The union of given bitsets, which may be given mask itself or given bits itself. Mask may be null.
+     */
+    @SuppressWarnings("WeakerAccess")
+    protected static long[] union(final long[] mask, final long[] bits) {
+        if (mask == null) return bits;
+        final long[] union = mask.clone();
+        or(union, bits);
+        return union;
+    }
+
+    @Override
+    public Result recognize(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        final int goalIndex = items.getIndex(goal);
+        if (goalIndex < 0) return new Result(false, 0);
+
+        // chart.get(i)[k] holds all items at position i that started at position k, or null if there are none
+        final List<long[][]> chart = new ArrayList<>();
+        final long[][] initial = new long[1][];
+        initial[0] = items.predictClosure[goalIndex].clone();
+        chart.add(initial);
+
+        int position = 0;
+        for (final Token<T> token : tokens) {
+            final long[][] next = scan(chart.get(position), getActiveOn(token));
+            if (next == null) return new Result(false, position);
+
+            position++;
+            chart.add(next);
+            complete(chart, position);
+            predict(next, position);
+        }
+
+        final long[] fromStart = chart.get(position)[0];
+        return new Result(fromStart != null && intersects(fromStart, items.completedFor[goalIndex]), position);
+    }
+
+    @Override
+    public boolean accepts(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        return recognize(goal, tokens).accepted;
+    }
+
+    /**
+     * @return All items that are active on a terminal that matches given token, or null if there are none. The
+     * result is only read.
+     */
+    @SuppressWarnings("WeakerAccess")
+    protected long[] getActiveOn(final Token<T> token) {
+        return items.getActiveOn(grammar.getCategories(token));
+    }
+
+    /**
+     * @return The items at the next position, or null if no item could scan the token
+     */
+    private long[][] scan(final long[][] current, final long[] activeOnToken) {
+        if (activeOnToken == null) return null;
+
+        // Position i+1 has one more possible origin: the predictions made at i+1 itself
+        final long[][] next = new long[current.length + 1][];
+        boolean scannedAny = false;
+        for (int origin = 0; origin < current.length; origin++)
+            if (current[origin] != null) {
+                final long[] advanced = new long[items.words];
+                if (advanceInto(advanced, current[origin], activeOnToken)) {
+                    items.advanceOverNullables(advanced);
+                    next[origin] = advanced;
+                    scannedAny = true;
+                }
+            }
+        return scannedAny ? next : null;
+    }
+
+    /**
+     * Complete all items at given position, handling origins from right to left so that every completion only
+     * feeds into origins that are still to be handled (or the current origin, for which we iterate to a fixpoint).
+     */
+    private void complete(final List<long[][]> chart, final int position) {
+        final long[][] sets = chart.get(position);
+        final boolean[] handledLhs = new boolean[items.completedFor.length];
+        for (int origin = position - 1; origin >= 0; origin--) {
+            if (sets[origin] == null) continue;
+            final long[][] atOrigin = chart.get(origin);
+            Arrays.fill(handledLhs, false);
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                final long[] completedHere = sets[origin];
+                for (int w = 0; w < items.words; w++) {
+                    long bits = completedHere[w] & items.completed[w];
+                    while (bits != 0L) {
+                        final int item = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        final int lhs = items.lhs[item];
+                        if (handledLhs[lhs]) continue;
+                        handledLhs[lhs] = true;
+                        changed = true;
+                        // Advance all items at the origin that are active on the completed non-terminal, where
+                        // repetitions loop back into the same item
+                        for (int k = 0; k < atOrigin.length; k++)
+                            if (atOrigin[k] != null && (intersects(atOrigin[k], items.activeOnNonTerminal[lhs])
+                                    || intersects(atOrigin[k], items.repeatingOn[lhs]))) {
+                                if (sets[k] == null) sets[k] = new long[items.words];
+                                advanceInto(sets[k], atOrigin[k], items.activeOnNonTerminal[lhs]);
+                                keepInto(sets[k], atOrigin[k], items.repeatingOn[lhs]);
+                                items.advanceOverNullables(sets[k]);
+                            }
+                    }
+                }
+            }
+        }
+    }
+
+    private void predict(final long[][] sets, final int position) {
+        final boolean[] predicted = new boolean[items.predictClosure.length];
+        long[] predictions = null;
+        for (final long[] set : sets)
+            if (set != null) for (int w = 0; w < items.words; w++) {
+                long bits = set[w] & items.activeOnAnyNonTerminal[w];
+                while (bits != 0L) {
+                    final int item = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    final int y = items.activeNonTerminal[item];
+                    if (!predicted[y]) {
+                        predicted[y] = true;
+                        if (predictions == null) predictions = new long[items.words];
+                        or(predictions, items.predictClosure[y]);
+                    }
+                }
+            }
+        sets[position] = predictions;
+    }
+
+    /**
+     * Outcome of recognizing a string
+     */
+    public static class Result {
+        /**
+         * Whether the whole string is in the language
+         */
+        public final boolean accepted;
+        /**
+         * Length of the longest prefix of the input that is a prefix of some string in the language
+         */
+        public final int longestViablePrefix;
+
+        Result(final boolean accepted, final int longestViablePrefix) {
+            this.accepted = accepted;
+            this.longestViablePrefix = longestViablePrefix;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{accepted=" + accepted + ", longestViablePrefix=" + longestViablePrefix + '}';
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonLexicalToken;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.rule.RepetitionRule;
+import org.leibnizcenter.cfg.rule.Rule;
+
+import java.util.*;
+
+/**
+ * Numbers all dotted items <code>X → λ·μ</code> of a grammar and pre-computes the bitsets that the
+ * {@link BooleanRecognizer} combines with word-parallel operations.
+ *
+ * The items of a rule get consecutive ids, so advancing the dot of all items in a set is a left shift by one bit.
+ * Error rules are left out, because they only make sense for error recovery. Items that are active on a nullable
+ * non-terminal are advanced over it right away, so ε-rules never need to be predicted or completed. The completed item
+ * <code>X+ → X·</code> of a {@link RepetitionRule} is active on X as well, and moving the dot over X leads back to it.
+ */
+final class DottedItems<T> {
+    /**
+     * Number of 64-bit words in each bitset
+     */
+    final int words;
+    /**
+     * For every item, the index of the non-terminal left of the arrow
+     */
+    final int[] lhs;
+    /**
+     * For every item, the index of the non-terminal after the dot, or -1 if there is none
+     */
+    final int[] activeNonTerminal;
+    /**
+     * All items of the form <code>X → λ·</code>
+     */
+    final long[] completed;
+    /**
+     * All items of the form <code>X → λ·Yμ</code> where Y is a non-terminal
+     */
+    final long[] activeOnAnyNonTerminal;
+    /**
+     * All items of the form <code>X → λ·Yμ</code> where Y is a non-terminal that derives the empty string
+     */
+    final long[] activeOnNullable;
+    /**
+     * For every non-terminal Z, all items <code>Y → ·v</code> such that Z =*L> Y, and the items that follow from
+     * those by moving the dot over nullable non-terminals
+     */
+    final long[][] predictClosure;
+    /**
+     * For every non-terminal Y, all items <code>X → λ·Yμ</code>
+     */
+    final long[][] activeOnNonTerminal;
+    /**
+     * For every non-terminal Y, all completed repetitions <code>Y+ → Y·</code> and <code>Y* → Y·</code>, which stay
+     * the same item when the dot moves over Y
+     */
+    final long[][] repeatingOn;
+    /**
+     * For every non-terminal X, all items <code>X → λ·</code>
+     */
+    final long[][] completedFor;
+
+    private final Map<NonTerminal, Integer> nonTerminalIndex = new HashMap<>();
+    private final Map<Terminal<T>, long[]> activeOnTerminal = new HashMap<>();
+
+    DottedItems(final Grammar<T> grammar) {
+        final List<Rule> rules = new ArrayList<>();
+        for (final Rule rule : grammar.getAllRules())
+            if (!rule.isErrorRule) {
+                rules.add(rule);
+                indexOf(rule.left);
+                for (final Category c : rule.right) if (c instanceof NonTerminal) indexOf((NonTerminal) c);
+            }
+
+        int itemCount = 0;
+        for (final Rule rule : rules) itemCount += rule.right.length + 1;
+        this.words = Math.max(1, (itemCount + 63) >>> 6);
+
+        final int nonTerminalCount = nonTerminalIndex.size();
+        this.lhs = new int[itemCount];
+        this.activeNonTerminal = new int[itemCount];
+        this.completed = new long[words];
+        this.activeOnAnyNonTerminal = new long[words];
+        this.activeOnNullable = new long[words];
+        this.activeOnNonTerminal = new long[nonTerminalCount][words];
+        this.repeatingOn = new long[nonTerminalCount][words];
+        this.completedFor = new long[nonTerminalCount][words];
+        final long[][] ruleStarts = new long[nonTerminalCount][words];
+        final List<Set<Integer>> leftCorners = new ArrayList<>(nonTerminalCount);
+        for (int i = 0; i < nonTerminalCount; i++) leftCorners.add(new HashSet<>());
+
+        int item = 0;
+        for (final Rule rule : rules) {
+            final int left = nonTerminalIndex.get(rule.left);
+            set(ruleStarts[left], item);
+            // A non-terminal is a left corner if everything before it derives the empty string
+            for (int i = 0; i < rule.right.length && rule.right[i] instanceof NonTerminal; i++) {
+                leftCorners.get(left).add(nonTerminalIndex.get((NonTerminal) rule.right[i]));
+                if (!grammar.nullProbabilities.isNullable(rule.right[i])) break;
+            }
+
+            for (int dot = 0; dot <= rule.right.length; dot++, item++) {
+                lhs[item] = left;
+                activeNonTerminal[item] = -1;
+                if (dot == rule.right.length) {
+                    set(completed, item);
+                    set(completedFor[left], item);
+                    if (rule instanceof RepetitionRule) {
+                        final int y = nonTerminalIndex.get(rule.right[0]);
+                        activeNonTerminal[item] = y;
+                        set(activeOnAnyNonTerminal, item);
+                        set(repeatingOn[y], item);
+                    }
+                } else {
+                    final Category active = rule.right[dot];
+                    if (active instanceof NonTerminal) {
+                        final int y = nonTerminalIndex.get(active);
+                        activeNonTerminal[item] = y;
+                        set(activeOnAnyNonTerminal, item);
+                        set(activeOnNonTerminal[y], item);
+                        if (grammar.nullProbabilities.isNullable(active)) set(activeOnNullable, item);
+                    } else if (active instanceof Terminal && !(active instanceof NonLexicalToken)) {
+                        // Terminals in a Grammar<T> match tokens of type T
+                        @SuppressWarnings("unchecked") final Terminal<T> terminal = (Terminal<T>) active;
+                        set(activeOnTerminal.computeIfAbsent(terminal, ignored -> new long[words]), item);
+                    }
+                }
+            }
+        }
+
+        this.predictClosure = new long[nonTerminalCount][];
+        for (int z = 0; z < nonTerminalCount; z++) {
+            final long[] closure = new long[words];
+            final boolean[] visited = new boolean[nonTerminalCount];
+            final Deque<Integer> toVisit = new ArrayDeque<>();
+            toVisit.push(z);
+            visited[z] = true;
+            while (!toVisit.isEmpty()) {
+                final int y = toVisit.pop();
+                or(closure, ruleStarts[y]);
+                for (final int corner : leftCorners.get(y))
+                    if (!visited[corner]) {
+                        visited[corner] = true;
+                        toVisit.push(corner);
+                    }
+            }
+            advanceOverNullables(closure);
+            predictClosure[z] = closure;
+        }
+    }
+
+    /**
+     * Restores the tables that {@link RecognizerCompiler} wrote for some grammar with {@link #write(TableCodec.Writer)}.
+     * Terminals are matched by the generated code, so none are registered here.
+     *
+     * @param nonTerminals Names of the non-terminals, in order of their index
+     */
+    DottedItems(final String[] nonTerminals, final String[] tables) {
+        for (final String name : nonTerminals) indexOf(NonTerminal.of(name));
+        final TableCodec.Reader reader = new TableCodec.Reader(tables);
+        this.words = reader.readInt();
+        this.lhs = reader.readInts();
+        this.activeNonTerminal = reader.readInts();
+        this.completed = reader.readBits(words);
+        this.activeOnAnyNonTerminal = reader.readBits(words);
+        this.activeOnNullable = reader.readBits(words);
+        this.predictClosure = reader.readRows(words);
+        this.activeOnNonTerminal = reader.readRows(words);
+        this.repeatingOn = reader.readRows(words);
+        this.completedFor = reader.readRows(words);
+    }
+
+    void write(final TableCodec.Writer writer) {
+        writer.write(words);
+        writer.write(lhs);
+        writer.write(activeNonTerminal);
+        writer.write(completed);
+        writer.write(activeOnAnyNonTerminal);
+        writer.write(activeOnNullable);
+        writer.write(predictClosure);
+        writer.write(activeOnNonTerminal);
+        writer.write(repeatingOn);
+        writer.write(completedFor);
+    }
+
+    /**
+     * Adds all items that follow from the items in given set by moving the dot over nullable non-terminals
+     */
+    void advanceOverNullables(final long[] bits) {
+        long[] frontier = null;
+        for (int w = 0; w < words; w++)
+            if ((bits[w] & activeOnNullable[w]) != 0L) {
+                frontier = new long[words];
+                break;
+            }
+        if (frontier == null) return;
+
+        for (int w = 0; w < words; w++) frontier[w] = bits[w] & activeOnNullable[w];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            long carry = 0L;
+            for (int w = 0; w < words; w++) {
+                final long advanced = (frontier[w] << 1) | carry;
+                carry = frontier[w] >>> 63;
+                final long added = advanced & ~bits[w];
+                bits[w] |= added;
+                frontier[w] = added & activeOnNullable[w];
+                changed |= added != 0L;
+            }
+        }
+    }
+
+    static void set(final long[] bits, final int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    static void or(final long[] target, final long[] bits) {
+        for (int w = 0; w < target.length; w++) target[w] |= bits[w];
+    }
+
+    static boolean intersects(final long[] a, final long[] b) {
+        for (int w = 0; w < a.length; w++) if ((a[w] & b[w]) != 0L) return true;
+        return false;
+    }
+
+    static boolean isEmpty(final long[] bits) {
+        for (final long word : bits) if (word != 0L) return false;
+        return true;
+    }
+
+    /**
+     * target |= (items & mask) << 1, which advances the dot over the symbol that mask is active on
+     *
+     * @return whether any item was advanced
+     */
+    static boolean advanceInto(final long[] target, final long[] items, final long[] mask) {
+        long carry = 0L;
+        long any = 0L;
+        for (int w = 0; w < target.length; w++) {
+            final long active = items[w] & mask[w];
+            final long advanced = (active << 1) | carry;
+            carry = active >>> 63;
+            target[w] |= advanced;
+            any |= advanced;
+        }
+        return any != 0L;
+    }
+
+    /**
+     * target |= items &amp; mask, which keeps the items that mask is active on without moving their dot
+     *
+     * @return whether any item was kept
+     */
+    static boolean keepInto(final long[] target, final long[] items, final long[] mask) {
+        long any = 0L;
+        for (int w = 0; w < target.length; w++) {
+            final long kept = items[w] & mask[w];
+            target[w] |= kept;
+            any |= kept;
+        }
+        return any != 0L;
+    }
+
+    private int indexOf(final NonTerminal nonTerminal) {
+        return nonTerminalIndex.computeIfAbsent(nonTerminal, ignored -> nonTerminalIndex.size());
+    }
+
+    /**
+     * @return Index of given non-terminal, or -1 if it does not occur in the grammar
+     */
+    int getIndex(final NonTerminal nonTerminal) {
+        final Integer index = nonTerminalIndex.get(nonTerminal);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return All non-terminals, in order of their index
+     */
+    NonTerminal[] getNonTerminals() {
+        final NonTerminal[] nonTerminals = new NonTerminal[nonTerminalIndex.size()];
+        nonTerminalIndex.forEach((nonTerminal, i) -> nonTerminals[i] = nonTerminal);
+        return nonTerminals;
+    }
+
+    /**
+     * @return For every terminal, all items that are active on it
+     */
+    Map<Terminal<T>, long[]> getActiveOnTerminal() {
+        return Collections.unmodifiableMap(activeOnTerminal);
+    }
+
+    /**
+     * @return All items that are active on one of the given terminals, or null if there are none
+     */
+    long[] getActiveOn(final Collection<Terminal<T>> terminals) {
+        long[] mask = null;
+        if (terminals != null) for (final Terminal<T> terminal : terminals) {
+            final long[] activeOn = activeOnTerminal.get(terminal);
+            if (activeOn != null) {
+                if (mask == null) mask = new long[words];
+                or(mask, activeOn);
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,328 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonLexicalToken;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.rule.RepetitionRule;
+import org.leibnizcenter.cfg.rule.Rule;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Split ε-DFA of a grammar, after Aycock and Horspool, "Practical Earley Parsing" (2002). Every state is a set of
+ * dotted rules that all start at the same position, so that one chart entry <code>(state, origin)</code> stands for
+ * all of them.
+ * </p>
+ * <p>
+ * The LR(0) closure of a set of items is split in two states: the <em>kernel</em> state holds the items themselves,
+ * and the <em>non-kernel</em> state holds the items that they predict, which start at the current position. Both
+ * states also hold the items that follow from their items by moving the dot over nullable non-terminals, so ε-rules
+ * never need to be predicted or completed. The kernel state links to its non-kernel state by an ε-transition.
+ * </p>
+ * Error rules are left out, because they only make sense for error recovery. All states are built up front, so
+ * instances are immutable. {@link LR0Recognizer} only follows the transitions between states, while {@link LR0Parser}
+ * also reads the items of every state, to keep scores per item.
+ */
+final class LR0Automaton<T> {
+    /**
+     * For every state, its non-kernel successor, or -1 if it has none
+     */
+    final int[] epsilon;
+    /**
+     * For every state, the indices of the non-terminals of the items of the form <code>X → λ·</code> in it
+     */
+    final int[][] completed;
+    /**
+     * For every state and non-terminal, the state that follows by moving the dot over that non-terminal, or -1
+     */
+    final int[][] gotoNonTerminal;
+    /**
+     * For every state, its items in ascending order. An item and the item after it are adjacent if both are in the
+     * state.
+     */
+    final int[][] items;
+
+    private final Map<NonTerminal, Integer> nonTerminalIndex = new HashMap<>();
+    /**
+     * For every state, the states that follow by moving the dot over a terminal
+     */
+    private final List<Map<Terminal<T>, Integer>> gotoTerminal = new ArrayList<>();
+    /**
+     * For every non-terminal, the non-kernel state that predicts it
+     */
+    private final int[] predicting;
+
+    // Dotted items, numbered consecutively per rule
+    private final List<Rule> rules = new ArrayList<>();
+    private final int[] itemRule;
+    private final int[] itemDot;
+    private final int[] ruleStart;
+    /**
+     * For every item, the index of the non-terminal it is active on, or -1
+     */
+    private final int[] itemActiveNonTerminal;
+    /**
+     * For every rule, the index of the non-terminal on its left side
+     */
+    private final int[] ruleLeft;
+    private final Map<Rule, Integer> ruleIndex = new HashMap<>();
+    private final Map<NonTerminal, List<Integer>> rulesFor = new HashMap<>();
+    private final Set<Category> nullable = new HashSet<>();
+
+    LR0Automaton(final Grammar<T> grammar) {
+        for (final Rule rule : grammar.getAllRules())
+            if (!rule.isErrorRule) {
+                rulesFor.computeIfAbsent(rule.left, ignored -> new ArrayList<>()).add(rules.size());
+                ruleIndex.put(rule, rules.size());
+                rules.add(rule);
+                indexOf(rule.left);
+                for (final Category c : rule.right) if (c instanceof NonTerminal) indexOf((NonTerminal) c);
+            }
+        for (final NonTerminal nonTerminal : nonTerminalIndex.keySet())
+            if (grammar.nullProbabilities.isNullable(nonTerminal)) nullable.add(nonTerminal);
+
+        ruleStart = new int[rules.size()];
+        ruleLeft = new int[rules.size()];
+        int itemCount = 0;
+        for (int r = 0; r < rules.size(); r++) {
+            ruleStart[r] = itemCount;
+            ruleLeft[r] = nonTerminalIndex.get(rules.get(r).left);
+            itemCount += rules.get(r).right.length + 1;
+        }
+        itemRule = new int[itemCount];
+        itemDot = new int[itemCount];
+        for (int r = 0; r < rules.size(); r++)
+            for (int dot = 0; dot <= rules.get(r).right.length; dot++) {
+                itemRule[ruleStart[r] + dot] = r;
+                itemDot[ruleStart[r] + dot] = dot;
+            }
+        itemActiveNonTerminal = new int[itemCount];
+        for (int item = 0; item < itemCount; item++) {
+            final Category repeated = getRepeatedCategory(item);
+            final Category active = repeated != null ? repeated : getActiveCategory(item);
+            itemActiveNonTerminal[item] = active instanceof NonTerminal && !(active instanceof NonLexicalToken)
+                    ? nonTerminalIndex.get(active)
+                    : -1;
+        }
+
+        // Build all states that can be reached from the prediction of any non-terminal
+        final Map<BitSet, Integer> stateIndex = new HashMap<>();
+        final List<BitSet> states = new ArrayList<>();
+        final List<Boolean> isKernel = new ArrayList<>();
+        final int nonTerminalCount = nonTerminalIndex.size();
+        predicting = new int[nonTerminalCount];
+        nonTerminalIndex.forEach((nonTerminal, i) -> {
+            final BitSet items = new BitSet();
+            for (final int r : getRules(nonTerminal)) items.set(ruleStart[r]);
+            predicting[i] = addState(closeNonKernel(items), false, stateIndex, states, isKernel);
+        });
+
+        final List<Integer> epsilonList = new ArrayList<>();
+        final List<int[]> gotoList = new ArrayList<>();
+        for (int s = 0; s < states.size(); s++) {
+            final BitSet items = states.get(s);
+            final Map<Category, BitSet> advanced = new HashMap<>();
+            final BitSet predicted = new BitSet();
+            for (int item = items.nextSetBit(0); item >= 0; item = items.nextSetBit(item + 1)) {
+                // A completed repetition X+ → X· is active on X as well, and moving the dot over X leads back to it
+                final Category repeated = getRepeatedCategory(item);
+                final Category active = repeated != null ? repeated : getActiveCategory(item);
+                if (active == null || active instanceof NonLexicalToken) continue;
+                advanced.computeIfAbsent(active, ignored -> new BitSet()).set(repeated != null ? item : item + 1);
+                if (isKernel.get(s) && active instanceof NonTerminal)
+                    for (final int r : getRules((NonTerminal) active)) predicted.set(ruleStart[r]);
+            }
+
+            epsilonList.add(predicted.isEmpty() ? -1 : addState(closeNonKernel(predicted), false, stateIndex, states, isKernel));
+            final int[] gotoNonTerminals = new int[nonTerminalCount];
+            Arrays.fill(gotoNonTerminals, -1);
+            final Map<Terminal<T>, Integer> gotoTerminals = new HashMap<>();
+            for (final Map.Entry<Category, BitSet> entry : advanced.entrySet()) {
+                final int next = addState(closeKernel(entry.getValue()), true, stateIndex, states, isKernel);
+                if (entry.getKey() instanceof NonTerminal)
+                    gotoNonTerminals[nonTerminalIndex.get(entry.getKey())] = next;
+                else {
+                    // Terminals in a Grammar<T> match tokens of type T
+                    @SuppressWarnings("unchecked") final Terminal<T> terminal = (Terminal<T>) entry.getKey();
+                    gotoTerminals.put(terminal, next);
+                }
+            }
+            gotoList.add(gotoNonTerminals);
+            gotoTerminal.add(gotoTerminals);
+        }
+
+        epsilon = new int[states.size()];
+        completed = new int[states.size()][];
+        gotoNonTerminal = gotoList.toArray(new int[states.size()][]);
+        this.items = new int[states.size()][];
+        for (int s = 0; s < states.size(); s++) {
+            epsilon[s] = epsilonList.get(s);
+            final BitSet items = states.get(s);
+            this.items[s] = items.stream().toArray();
+            final Set<Integer> lhs = new TreeSet<>();
+            for (int item = items.nextSetBit(0); item >= 0; item = items.nextSetBit(item + 1))
+                if (getActiveCategory(item) == null) lhs.add(nonTerminalIndex.get(rules.get(itemRule[item]).left));
+            completed[s] = lhs.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private int addState(final BitSet items, final boolean kernel, final Map<BitSet, Integer> stateIndex,
+                         final List<BitSet> states, final List<Boolean> isKernel) {
+        // Kernel and non-kernel states with the same items behave differently, so they get different keys
+        final BitSet key = (BitSet) items.clone();
+        if (kernel) key.set(itemRule.length);
+        final Integer existing = stateIndex.get(key);
+        if (existing != null) return existing;
+        stateIndex.put(key, states.size());
+        states.add(items);
+        isKernel.add(kernel);
+        return states.size() - 1;
+    }
+
+    /**
+     * @return Category after the dot of given item, or null if the item is completed
+     */
+    Category getActiveCategory(final int item) {
+        final Category[] right = rules.get(itemRule[item]).right;
+        return itemDot[item] < right.length ? right[itemDot[item]] : null;
+    }
+
+    /**
+     * @return The repeated category if given item is a completed {@link RepetitionRule}, or else null
+     */
+    private Category getRepeatedCategory(final int item) {
+        final Rule rule = rules.get(itemRule[item]);
+        return rule instanceof RepetitionRule && itemDot[item] == rule.right.length ? rule.right[0] : null;
+    }
+
+    /**
+     * @return Given items and the items that follow from them by moving the dot over nullable non-terminals
+     */
+    private BitSet closeKernel(final BitSet items) {
+        final BitSet closure = (BitSet) items.clone();
+        for (int item = closure.nextSetBit(0); item >= 0; item = closure.nextSetBit(item + 1))
+            if (nullable.contains(getActiveCategory(item))) closure.set(item + 1);
+        return closure;
+    }
+
+    /**
+     * @return Given predicted items, the items they predict in turn, and the items that follow from all of those by
+     * moving the dot over nullable non-terminals
+     */
+    private BitSet closeNonKernel(final BitSet items) {
+        final BitSet closure = (BitSet) items.clone();
+        final Deque<Integer> toVisit = new ArrayDeque<>();
+        for (int item = items.nextSetBit(0); item >= 0; item = items.nextSetBit(item + 1)) toVisit.push(item);
+        while (!toVisit.isEmpty()) {
+            final int item = toVisit.pop();
+            final Category active = getActiveCategory(item);
+            if (!(active instanceof NonTerminal)) continue;
+            for (final int r : getRules((NonTerminal) active)) visit(ruleStart[r], closure, toVisit);
+            if (nullable.contains(active)) visit(item + 1, closure, toVisit);
+        }
+        return closure;
+    }
+
+    private static void visit(final int item, final BitSet closure, final Deque<Integer> toVisit) {
+        if (!closure.get(item)) {
+            closure.set(item);
+            toVisit.push(item);
+        }
+    }
+
+    private List<Integer> getRules(final NonTerminal nonTerminal) {
+        return rulesFor.getOrDefault(nonTerminal, Collections.emptyList());
+    }
+
+    private int indexOf(final NonTerminal nonTerminal) {
+        return nonTerminalIndex.computeIfAbsent(nonTerminal, ignored -> nonTerminalIndex.size());
+    }
+
+    /**
+     * @return Index of given non-terminal, or -1 if it does not occur in the grammar
+     */
+    int getIndex(final NonTerminal nonTerminal) {
+        final Integer index = nonTerminalIndex.get(nonTerminal);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return The non-kernel state that predicts given non-terminal
+     */
+    int getPredictingState(final int nonTerminal) {
+        return predicting[nonTerminal];
+    }
+
+    /**
+     * @return State that follows from given state by moving the dot over given terminal, or -1 if there is none
+     */
+    int gotoTerminal(final int state, final Terminal<T> terminal) {
+        final Integer next = gotoTerminal.get(state).get(terminal);
+        return next == null ? -1 : next;
+    }
+
+    /**
+     * @return Index of the non-terminal that given item is active on, which for a completed {@link RepetitionRule} is
+     * the repeated category, or -1 if it is active on a terminal or completed
+     */
+    int getActiveNonTerminal(final int item) {
+        return itemActiveNonTerminal[item];
+    }
+
+    /**
+     * @return Item that follows from given item by moving the dot over its active category: the next item, or the
+     * same item for a completed {@link RepetitionRule}
+     */
+    int advance(final int item) {
+        return getRepeatedCategory(item) != null ? item : item + 1;
+    }
+
+    Rule getRule(final int item) {
+        return rules.get(itemRule[item]);
+    }
+
+    int getRuleIndex(final int item) {
+        return itemRule[item];
+    }
+
+    /**
+     * @return Index of given rule, or -1 if it is not in the automaton
+     */
+    int getRuleIndex(final Rule rule) {
+        final Integer index = ruleIndex.get(rule);
+        return index == null ? -1 : index;
+    }
+
+    int getDot(final int item) {
+        return itemDot[item];
+    }
+
+    /**
+     * @return Index of the non-terminal on the left side of the rule of given item
+     */
+    int getLeft(final int item) {
+        return ruleLeft[itemRule[item]];
+    }
+
+    /**
+     * @return Position of given item in the {@link #items} of given state, which must contain it
+     */
+    int indexOf(final int state, final int item) {
+        return Arrays.binarySearch(items[state], item);
+    }
+
+    int ruleCount() {
+        return rules.size();
+    }
+
+    int nonTerminalCount() {
+        return predicting.length;
+    }
+
+    int size() {
+        return epsilon.length;
+    }
+}
@@ -0,0 +1,567 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.leibnizcenter.cfg.algebra.semiring.dbl.DblSemiring;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.earleyparser.ParseTree;
+import org.leibnizcenter.cfg.earleyparser.ParseTreeWithScore;
+import org.leibnizcenter.cfg.earleyparser.Parser;
+import org.leibnizcenter.cfg.earleyparser.ProbabilisticParser;
+import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.grammar.NullProbabilities;
+import org.leibnizcenter.cfg.grammar.ScoresAsSemiringElements;
+import org.leibnizcenter.cfg.rule.RepetitionRule;
+import org.leibnizcenter.cfg.rule.Rule;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Probabilistic Earley parser on the states of an {@link LR0Automaton}, after Aycock and Horspool, "Practical Earley
+ * Parsing" (2002). Like in {@link LR0Recognizer}, a chart entry is a pair <code>(state, origin)</code>, but every entry
+ * also keeps the forward, inner and Viterbi score of every item in its state. These follow the recurrences of Stolcke
+ * that {@link Parser} uses, so both compute the same probabilities, prefix probabilities and Viterbi scores. When
+ * more than one parse has the highest probability, the two may return different ones of those.
+ * </p>
+ * <p>
+ * One item can be in more than one entry at a position. Copies in kernel entries stand for different derivations, so
+ * their scores add up. Predicted items are copied into every non-kernel entry that contains them with the same
+ * derivations, so only the first copy at a position gets scores, and the others stay zero.
+ * </p>
+ * Error rules are ignored, and tokens that are not in the lexicon end the parse. Instances are immutable and can be
+ * shared between threads.
+ */
+public class LR0Parser<T> implements ProbabilisticParser<T> {
+    // How an item got its Viterbi score
+    private static final byte NONE = 0;
+    private static final byte PREDICTED = 1;
+    private static final byte SCANNED = 2;
+    private static final byte COMPLETED = 3;
+    private static final byte NULLABLE = 4;
+
+    private final Grammar<T> grammar;
+    private final DblSemiring semiring;
+    private final LR0Automaton<T> automaton;
+    /**
+     * For every non-terminal Z, the rules <code>Y → v</code> that it predicts, and
+     * <code>R(Z =*L> Y) * P(Y → v)</code> for each of them. For a repetition, the probability of its first repetition
+     * takes the place of <code>P(Y → v)</code>.
+     */
+    private final int[][] predictedRules;
+    private final double[][] predictionScores;
+    /**
+     * For every non-terminal Y, the non-terminals Z such that <code>R(Z =*U> Y)</code> is non-zero, and that score
+     */
+    private final int[][] unitFrom;
+    private final double[][] unitScores;
+
+    public LR0Parser(final Grammar<T> grammar) {
+        this.grammar = grammar;
+        this.semiring = grammar.semiring;
+        this.automaton = new LR0Automaton<>(grammar);
+
+        final int nonTerminalCount = automaton.nonTerminalCount();
+        predictedRules = new int[nonTerminalCount][0];
+        predictionScores = new double[nonTerminalCount][0];
+        unitFrom = new int[nonTerminalCount][0];
+        unitScores = new double[nonTerminalCount][0];
+        final ScoresAsSemiringElements unitStar = grammar.unitStarScores;
+        for (final NonTerminal nonTerminal : grammar.getNonTerminals()) {
+            final int z = automaton.getIndex(nonTerminal);
+            if (z < 0) continue;
+
+            final List<Integer> rules = new ArrayList<>();
+            final List<Double> scores = new ArrayList<>();
+            for (final Rule rule : grammar.nonZeroLeftStartRules.getOrDefault(nonTerminal, Collections.emptySet())) {
+                final int r = automaton.getRuleIndex(rule);
+                if (r < 0) continue;
+                rules.add(r);
+                scores.add(semiring.times(
+                        grammar.getLeftStarScore(nonTerminal, rule.left),
+                        rule instanceof RepetitionRule
+                                ? ((RepetitionRule) rule).startProbabilityAsSemiringElement
+                                : rule.probabilityAsSemiringElement
+                ));
+            }
+            predictedRules[z] = rules.stream().mapToInt(Integer::intValue).toArray();
+            predictionScores[z] = scores.stream().mapToDouble(Double::doubleValue).toArray();
+
+            final int y = unitStar.indexOf(nonTerminal);
+            if (y < 0) continue;
+            final List<Integer> from = new ArrayList<>();
+            final List<Double> fromScores = new ArrayList<>();
+            for (int i = unitStar.reverseStart(y), end = unitStar.reverseEnd(y); i < end; i++) {
+                final int Z = automaton.getIndex(unitStar.getReverseFrom(i));
+                if (Z < 0) continue;
+                from.add(Z);
+                fromScores.add(unitStar.getReverseScore(i));
+            }
+            unitFrom[z] = from.stream().mapToInt(Integer::intValue).toArray();
+            unitScores[z] = fromScores.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    /**
+     * @param goal   Goal category, typically S for Sentence
+     * @param tokens list of tokens to parse
+     * @return Probability that given string of tokens matches given non-terminal, or 0 if it does not
+     */
+    @Override
+    public double recognize(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        final Chart chart = parse(goal, tokens);
+        if (!chart.isComplete()) return 0.0;
+        if (chart.tokens.isEmpty())
+            return grammar.nullProbabilities.isNullable(goal) ? grammar.nullProbabilities.getProbability(goal) : 0.0;
+        final double[] unitCompletions = getUnitCompletions(chart.columns.get(chart.tokens.size()), 0);
+        return unitCompletions == null ? 0.0 : semiring.toProbability(unitCompletions[chart.goal]);
+    }
+
+    /**
+     * @param goal   Goal category, typically S for Sentence
+     * @param tokens list of tokens to parse
+     * @return The most probable parse tree of given tokens, under a root with category {@link Category#START}
+     * @throws RuntimeException If the tokens do not match given non-terminal
+     */
+    @Override
+    public ParseTreeWithScore getViterbiParseWithScore(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        final Chart chart = parse(goal, tokens);
+        final ParseTree root = new ParseTree.NonLeaf(Category.START);
+        double best = semiring.zero();
+        if (chart.isComplete() && chart.tokens.isEmpty() && grammar.nullProbabilities.isNullable(goal)) {
+            best = grammar.nullProbabilities.getViterbiScore(goal);
+            Parser.addChild(root, Parser.getViterbiNullParse(goal, grammar.nullProbabilities));
+        } else if (chart.isComplete() && !chart.tokens.isEmpty()) {
+            final int position = chart.tokens.size();
+            final Column column = chart.columns.get(position);
+            int bestItem = -1;
+            for (int f = 0; f < column.itemCount; f++)
+                if (column.itemOrigins[f] == 0
+                        && automaton.getActiveCategory(column.items[f]) == null
+                        && automaton.getLeft(column.items[f]) == chart.goal
+                        && isBetter(best, column.viterbi[f])) {
+                    best = column.viterbi[f];
+                    bestItem = f;
+                }
+            if (bestItem >= 0) Parser.addChild(root, getViterbiParse(chart, position, bestItem));
+        }
+        if (!root.hasChildren()) throw new RuntimeException("Could not parse sentence with goal " + goal);
+        return new ParseTreeWithScore(root, new State.ViterbiScore(best, null, null, semiring), semiring);
+    }
+
+    /**
+     * @param goal   Goal category, typically S for Sentence
+     * @param tokens list of tokens to parse
+     * @return For every token that could be parsed, the probability that a string that matches given non-terminal
+     * starts with the tokens up to and including that one
+     */
+    public double[] getPrefixProbabilities(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        final Chart chart = parse(goal, tokens);
+        final double[] prefix = new double[chart.columns.size() - 1];
+        for (int position = 1; position < chart.columns.size(); position++) {
+            final Column column = chart.columns.get(position);
+            double sum = semiring.zero();
+            for (int f = 0; f < column.itemCount; f++) {
+                final int dot = automaton.getDot(column.items[f]);
+                if (dot > 0 && automaton.getRule(column.items[f]).right[dot - 1] instanceof Terminal)
+                    sum = semiring.plus(sum, column.forward[f]);
+            }
+            prefix[position - 1] = semiring.toProbability(sum);
+        }
+        return prefix;
+    }
+
+    private Chart parse(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        final List<Token<T>> tokenList = new ArrayList<>();
+        tokens.forEach(tokenList::add);
+        final Chart chart = new Chart(tokenList, automaton.getIndex(goal));
+        if (chart.goal < 0) return chart;
+
+        Column current = new Column();
+        add(current, automaton.getPredictingState(chart.goal), 0, 0);
+        predict(current, 0, chart.goal);
+        chart.columns.add(current);
+
+        for (int position = 0; position < tokenList.size(); position++) {
+            final Column next = scan(current, grammar.getCategories(tokenList.get(position)), position + 1);
+            if (next.size == 0) break;
+            chart.columns.add(next);
+            complete(chart.columns, position + 1);
+            predict(next, position + 1, -1);
+            current = next;
+        }
+        return chart;
+    }
+
+    /**
+     * Predicts at given position: gives every predicted item the sum of the forward scores of the items that predict
+     * it, and its rule probability as inner and Viterbi score. Only the first copy of each item gets these scores.
+     *
+     * @param goal Index of the goal category, which is predicted with a forward score of one at position 0, or -1
+     */
+    private void predict(final Column column, final int position, final int goal) {
+        final double zero = semiring.zero();
+        final double[] predicting = new double[automaton.nonTerminalCount()];
+        Arrays.fill(predicting, zero);
+        if (goal >= 0) predicting[goal] = semiring.one();
+        for (int e = 0; e < column.size; e++)
+            if (column.origins[e] < position)
+                for (int f = column.offsets[e], end = f + automaton.items[column.states[e]].length; f < end; f++) {
+                    final int z = automaton.getActiveNonTerminal(column.items[f]);
+                    if (z >= 0 && column.forward[f] != zero)
+                        predicting[z] = semiring.plus(predicting[z], semiring.times(column.forward[f], getContinueScore(column.items[f])));
+                }
+
+        final double[] ruleForward = new double[automaton.ruleCount()];
+        Arrays.fill(ruleForward, zero);
+        for (int z = 0; z < predicting.length; z++)
+            if (predicting[z] != zero)
+                for (int i = 0; i < predictedRules[z].length; i++) {
+                    final int r = predictedRules[z][i];
+                    ruleForward[r] = semiring.plus(ruleForward[r], semiring.times(predicting[z], predictionScores[z][i]));
+                }
+
+        final NullProbabilities nullProbabilities = grammar.nullProbabilities;
+        final BitSet seen = new BitSet();
+        for (int e = 0; e < column.size; e++)
+            if (column.origins[e] == position)
+                for (int f = column.offsets[e], end = f + automaton.items[column.states[e]].length; f < end; f++) {
+                    final int item = column.items[f];
+                    if (seen.get(item)) continue;
+                    seen.set(item);
+                    final int dot = automaton.getDot(item);
+                    if (dot == 0) {
+                        final Rule rule = automaton.getRule(item);
+                        column.forward[f] = ruleForward[automaton.getRuleIndex(item)];
+                        column.inner[f] = rule.probabilityAsSemiringElement;
+                        column.viterbi[f] = rule.probabilityAsSemiringElement;
+                        column.kinds[f] = PREDICTED;
+                    } else {
+                        // The previous item is in this entry as well, which is where it got its scores
+                        final Category skipped = automaton.getRule(item).right[dot - 1];
+                        column.forward[f] = semiring.times(column.forward[f - 1], nullProbabilities.getScore(skipped));
+                        column.inner[f] = semiring.times(column.inner[f - 1], nullProbabilities.getScore(skipped));
+                        column.viterbi[f] = semiring.times(column.viterbi[f - 1], nullProbabilities.getViterbiScore(skipped));
+                        column.kinds[f] = NULLABLE;
+                        column.backA[f] = f - 1;
+                    }
+                }
+    }
+
+    /**
+     * Moves the dot of all items at the current position over given terminals
+     */
+    private Column scan(final Column current, final Collection<Terminal<T>> terminals, final int nextPosition) {
+        final Column next = new Column();
+        for (int e = 0; e < current.size; e++)
+            for (final Terminal<T> terminal : terminals) {
+                final int state = automaton.gotoTerminal(current.states[e], terminal);
+                if (state < 0) continue;
+                final int entry = add(next, state, current.origins[e], nextPosition);
+                for (int f = current.offsets[e], end = f + automaton.items[current.states[e]].length; f < end; f++)
+                    if (current.viterbi[f] != semiring.zero() && terminal.equals(automaton.getActiveCategory(current.items[f])))
+                        advance(next, next.offsets[entry] + automaton.indexOf(state, current.items[f] + 1),
+                                current.forward[f], current.inner[f], true,
+                                current.viterbi[f], SCANNED, f, -1);
+            }
+        return next;
+    }
+
+    /**
+     * Completes all items at given position, for every origin from the last one to the first. Completion only adds
+     * items with the same origin as the items it advances, so all completed items with an origin are known by the time
+     * we get to it.
+     */
+    private void complete(final List<Column> chart, final int position) {
+        final Column column = chart.get(position);
+        for (int origin = position - 1; origin >= 0; origin--) {
+            final Column atOrigin = chart.get(origin);
+            final double[] unitCompletions = getUnitCompletions(column, origin);
+            if (unitCompletions == null) continue;
+            completeSums(column, atOrigin, origin, position, unitCompletions);
+            completeViterbi(column, atOrigin, origin, position);
+        }
+    }
+
+    /**
+     * @return For every non-terminal Z, the sum over all non-terminals Y of <code>R(Z =*U> Y)</code> times the inner
+     * score of the items <code>Y → v·</code> with given origin, leaving out the completions that act like unit
+     * productions. Null if there are no completed items with given origin.
+     */
+    private double[] getUnitCompletions(final Column column, final int origin) {
+        final double zero = semiring.zero();
+        double[] completed = null;
+        for (int f = 0; f < column.itemCount; f++)
+            if (column.itemOrigins[f] == origin && column.completerInner[f] != zero && automaton.getActiveCategory(column.items[f]) == null) {
+                if (completed == null) {
+                    completed = new double[automaton.nonTerminalCount()];
+                    Arrays.fill(completed, zero);
+                }
+                final int y = automaton.getLeft(column.items[f]);
+                completed[y] = semiring.plus(completed[y], column.completerInner[f]);
+            }
+        if (completed == null) return null;
+
+        final double[] unitCompletions = new double[completed.length];
+        Arrays.fill(unitCompletions, zero);
+        for (int y = 0; y < completed.length; y++)
+            if (completed[y] != zero)
+                for (int i = 0; i < unitFrom[y].length; i++) {
+                    final int z = unitFrom[y][i];
+                    unitCompletions[z] = semiring.plus(unitCompletions[z], semiring.times(unitScores[y][i], completed[y]));
+                }
+        return unitCompletions;
+    }
+
+    /**
+     * Adds the forward and inner scores of completing all items at the origin with the items that were completed
+     * since. Advancing a predicted item acts like a unit production, which the unit-star relation already accounts
+     * for, so it does not add to the inner score that the result completes other items with.
+     */
+    private void completeSums(final Column column, final Column atOrigin, final int origin, final int position,
+                              final double[] unitCompletions) {
+        for (int e = 0; e < atOrigin.size; e++) {
+            final int sourceState = atOrigin.states[e];
+            final boolean isUnitCompletion = atOrigin.origins[e] == origin;
+            for (int f = atOrigin.offsets[e], end = f + automaton.items[sourceState].length; f < end; f++) {
+                final int item = atOrigin.items[f];
+                final int z = automaton.getActiveNonTerminal(item);
+                if (z < 0 || unitCompletions[z] == semiring.zero() || atOrigin.viterbi[f] == semiring.zero()) continue;
+                final int state = automaton.gotoNonTerminal[sourceState][z];
+                final int entry = add(column, state, atOrigin.origins[e], position);
+                final double factor = semiring.times(unitCompletions[z], getContinueScore(item));
+                advance(column, column.offsets[entry] + automaton.indexOf(state, automaton.advance(item)),
+                        semiring.times(atOrigin.forward[f], factor), semiring.times(atOrigin.inner[f], factor),
+                        !isUnitCompletion, semiring.zero(), NONE, -1, -1);
+            }
+        }
+    }
+
+    /**
+     * Finds the Viterbi scores of completing items at the origin. The unit-star relation does not say which derivation
+     * is the best one, so this follows the completed items one by one, until no Viterbi score improves.
+     */
+    private void completeViterbi(final Column column, final Column atOrigin, final int origin, final int position) {
+        final Deque<Integer> completed = new ArrayDeque<>();
+        for (int f = 0; f < column.itemCount; f++)
+            if (column.itemOrigins[f] == origin && column.viterbi[f] != semiring.zero() && automaton.getActiveCategory(column.items[f]) == null)
+                completed.add(f);
+
+        while (!completed.isEmpty()) {
+            final int completedItem = completed.pop();
+            final int y = automaton.getLeft(column.items[completedItem]);
+            for (int e = 0; e < atOrigin.size; e++) {
+                final int sourceState = atOrigin.states[e];
+                final int state = automaton.gotoNonTerminal[sourceState][y];
+                if (state < 0) continue;
+                for (int f = atOrigin.offsets[e], end = f + automaton.items[sourceState].length; f < end; f++) {
+                    final int item = atOrigin.items[f];
+                    if (automaton.getActiveNonTerminal(item) != y || atOrigin.viterbi[f] == semiring.zero()) continue;
+                    final int entry = add(column, state, atOrigin.origins[e], position);
+                    final int reached = advance(column, column.offsets[entry] + automaton.indexOf(state, automaton.advance(item)),
+                            semiring.zero(), semiring.zero(), false,
+                            semiring.times(semiring.times(column.viterbi[completedItem], atOrigin.viterbi[f]), getContinueScore(item)),
+                            COMPLETED, completedItem, f);
+                    // Items with an earlier origin are completed when we get to that origin
+                    if (reached >= 0 && atOrigin.origins[e] == origin) completed.add(reached);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds given scores to given item, and moves the dot over the nullable categories that follow it. Forward and
+     * inner scores are added, and the Viterbi score is kept if it is better, in which case given back pointers are kept
+     * as well.
+     *
+     * @param addToCompleterInner Whether to add the inner score to the inner score that completes other items
+     * @return The completed item that was reached, if its Viterbi score improved, or else -1
+     */
+    private int advance(final Column column, int f, double forward, double inner, final boolean addToCompleterInner,
+                        double viterbi, byte kind, int backA, final int backB) {
+        final NullProbabilities nullProbabilities = grammar.nullProbabilities;
+        boolean improves = kind != NONE;
+        while (true) {
+            if (forward != semiring.zero()) {
+                column.forward[f] = semiring.plus(column.forward[f], forward);
+                column.inner[f] = semiring.plus(column.inner[f], inner);
+                if (addToCompleterInner) column.completerInner[f] = semiring.plus(column.completerInner[f], inner);
+            }
+            improves = improves && isBetter(column.viterbi[f], viterbi);
+            if (improves) {
+                column.viterbi[f] = viterbi;
+                column.kinds[f] = kind;
+                column.backA[f] = backA;
+                column.backB[f] = backB;
+            }
+
+            final Category active = automaton.getActiveCategory(column.items[f]);
+            if (active == null) return improves ? f : -1;
+            if (!nullProbabilities.isNullable(active) || (!improves && forward == semiring.zero())) return -1;
+            forward = semiring.times(forward, nullProbabilities.getScore(active));
+            inner = semiring.times(inner, nullProbabilities.getScore(active));
+            viterbi = semiring.times(viterbi, nullProbabilities.getViterbiScore(active));
+            kind = NULLABLE;
+            backA = f;
+            // The next item is in the same state, which keeps its items in order
+            f++;
+        }
+    }
+
+    /**
+     * Adds given entry and, if it is new, the entry for its non-kernel successor
+     *
+     * @return Index of the entry
+     */
+    private int add(final Column column, final int state, final int origin, final int position) {
+        final int existing = column.indexOf(state, origin);
+        if (existing >= 0) return existing;
+        final int entry = column.add(state, origin, automaton.items[state], semiring.zero());
+        final int predicted = automaton.epsilon[state];
+        if (predicted >= 0 && column.indexOf(predicted, position) < 0)
+            column.add(predicted, position, automaton.items[predicted], semiring.zero());
+        return entry;
+    }
+
+    /**
+     * @return Score for moving the dot of given item over its active category: one, except for a completed
+     * {@link RepetitionRule}, for which it is the probability of one more repetition
+     */
+    private double getContinueScore(final int item) {
+        return automaton.advance(item) == item
+                ? ((RepetitionRule) automaton.getRule(item)).continueProbabilityAsSemiringElement
+                : semiring.one();
+    }
+
+    private boolean isBetter(final double viterbi, final double newViterbi) {
+        return newViterbi != semiring.zero() && (viterbi == semiring.zero() || semiring.compare(viterbi, newViterbi) < 0);
+    }
+
+    /**
+     * Follows the Viterbi back pointers of given item, like {@link Parser#getViterbiParse(State,
+     * org.leibnizcenter.cfg.earleyparser.chart.Chart)} does for states
+     */
+    private ParseTree getViterbiParse(final Chart chart, final int position, final int f) {
+        final Column column = chart.columns.get(position);
+        final Rule rule = automaton.getRule(column.items[f]);
+        final int dot = automaton.getDot(column.items[f]);
+        switch (column.kinds[f]) {
+            case SCANNED: {
+                final ParseTree T = getViterbiParse(chart, position - 1, column.backA[f]);
+                Parser.addChild(T, new ParseTree.Leaf<>(chart.tokens.get(position - 1), rule.right[dot - 1]));
+                return T;
+            }
+            case NULLABLE: {
+                final ParseTree T = getViterbiParse(chart, position, column.backA[f]);
+                Parser.addChild(T, Parser.getViterbiNullParse((NonTerminal) rule.right[dot - 1], grammar.nullProbabilities));
+                return T;
+            }
+            case COMPLETED: {
+                final int completed = column.backA[f];
+                final ParseTree T = getViterbiParse(chart, column.itemOrigins[completed], column.backB[f]);
+                Parser.addChild(T, getViterbiParse(chart, position, completed));
+                return T;
+            }
+            default:
+                return new ParseTree.NonLeaf(rule.left);
+        }
+    }
+
+    /**
+     * Columns of a parse, one for every position up to the last token that could be scanned
+     */
+    private final class Chart {
+        final List<Token<T>> tokens;
+        final int goal;
+        final List<Column> columns = new ArrayList<>();
+
+        Chart(final List<Token<T>> tokens, final int goal) {
+            this.tokens = tokens;
+            this.goal = goal;
+        }
+
+        boolean isComplete() {
+            return columns.size() == tokens.size() + 1;
+        }
+    }
+
+    /**
+     * Entries of one position of the chart, in the order they were added, with the scores of the items of all entries
+     * one after the other
+     */
+    private static final class Column {
+        private final Map<Long, Integer> index = new HashMap<>();
+        int[] states = new int[16];
+        int[] origins = new int[16];
+        /**
+         * Index of the first item of every entry
+         */
+        int[] offsets = new int[16];
+        int size = 0;
+
+        int[] items = new int[64];
+        int[] itemOrigins = new int[64];
+        double[] forward = new double[64];
+        double[] inner = new double[64];
+        /**
+         * Inner scores without the completions that act like unit productions
+         */
+        double[] completerInner = new double[64];
+        double[] viterbi = new double[64];
+        byte[] kinds = new byte[64];
+        /**
+         * For a scanned item, the item before scanning at the previous position; for a completed item, the completed
+         * item at this position; for an item after a nullable category, the item before it
+         */
+        int[] backA = new int[64];
+        /**
+         * For a completed item, the item at the origin of the completed item that was advanced
+         */
+        int[] backB = new int[64];
+        int itemCount = 0;
+
+        /**
+         * @return Index of given entry, or -1 if it is not in this column
+         */
+        int indexOf(final int state, final int origin) {
+            final Integer entry = index.get(((long) state << 32) | origin);
+            return entry == null ? -1 : entry;
+        }
+
+        int add(final int state, final int origin, final int[] stateItems, final double zero) {
+            if (size == states.length) {
+                states = Arrays.copyOf(states, size * 2);
+                origins = Arrays.copyOf(origins, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            final int needed = itemCount + stateItems.length;
+            if (needed > items.length) {
+                final int capacity = Math.max(needed, items.length * 2);
+                items = Arrays.copyOf(items, capacity);
+                itemOrigins = Arrays.copyOf(itemOrigins, capacity);
+                forward = Arrays.copyOf(forward, capacity);
+                inner = Arrays.copyOf(inner, capacity);
+                completerInner = Arrays.copyOf(completerInner, capacity);
+                viterbi = Arrays.copyOf(viterbi, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+                backA = Arrays.copyOf(backA, capacity);
+                backB = Arrays.copyOf(backB, capacity);
+            }
+            System.arraycopy(stateItems, 0, items, itemCount, stateItems.length);
+            Arrays.fill(itemOrigins, itemCount, needed, origin);
+            Arrays.fill(forward, itemCount, needed, zero);
+            Arrays.fill(inner, itemCount, needed, zero);
+            Arrays.fill(completerInner, itemCount, needed, zero);
+            Arrays.fill(viterbi, itemCount, needed, zero);
+
+            index.put(((long) state << 32) | origin, size);
+            states[size] = state;
+            origins[size] = origin;
+            offsets[size] = itemCount;
+            itemCount = needed;
+            return size++;
+        }
+    }
+}
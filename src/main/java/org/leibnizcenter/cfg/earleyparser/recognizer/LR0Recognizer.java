@@ -0,0 +1,123 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.*;
+
+/**
+ * Earley recognizer on the states of an {@link LR0Automaton}, after Aycock and Horspool, "Practical Earley Parsing"
+ * (2002). A chart entry is a pair <code>(state, origin)</code>, so one entry stands for all dotted rules in the state,
+ * and prediction is a single ε-transition to a pre-computed state.
+ *
+ * Accepts the same strings as {@link BooleanRecognizer}, and finds the same longest viable prefix. Error rules are
+ * ignored.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class LR0Recognizer<T> implements Recognizer<T> {
+    private final Grammar<T> grammar;
+    private final LR0Automaton<T> automaton;
+
+    public LR0Recognizer(final Grammar<T> grammar) {
+        this.grammar = grammar;
+        this.automaton = new LR0Automaton<>(grammar);
+    }
+
+    @Override
+    public BooleanRecognizer.Result recognize(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        final int goalIndex = automaton.getIndex(goal);
+        if (goalIndex < 0) return new BooleanRecognizer.Result(false, 0);
+
+        final List<Entries> chart = new ArrayList<>();
+        Entries current = new Entries();
+        current.add(automaton.getPredictingState(goalIndex), 0);
+        chart.add(current);
+
+        int position = 0;
+        for (final Token<T> token : tokens) {
+            final Entries next = scan(current, grammar.getCategories(token), position + 1);
+            if (next.size == 0) return new BooleanRecognizer.Result(false, position);
+
+            position++;
+            chart.add(next);
+            complete(chart, position);
+            current = next;
+        }
+
+        for (int e = 0; e < current.size; e++)
+            if (current.origins[e] == 0 && contains(automaton.completed[current.states[e]], goalIndex))
+                return new BooleanRecognizer.Result(true, position);
+        return new BooleanRecognizer.Result(false, position);
+    }
+
+    private Entries scan(final Entries current, final Collection<Terminal<T>> terminals, final int nextPosition) {
+        final Entries next = new Entries();
+        for (int e = 0; e < current.size; e++)
+            for (final Terminal<T> terminal : terminals) {
+                final int state = automaton.gotoTerminal(current.states[e], terminal);
+                if (state >= 0) add(next, state, current.origins[e], nextPosition);
+            }
+        return next;
+    }
+
+    /**
+     * Complete all entries at given position, including the ones that completion adds
+     */
+    private void complete(final List<Entries> chart, final int position) {
+        final Entries entries = chart.get(position);
+        for (int e = 0; e < entries.size; e++) {
+            final int origin = entries.origins[e];
+            // The automaton already moved the dot over everything that derives the empty string
+            if (origin == position) continue;
+            final Entries atOrigin = chart.get(origin);
+            for (final int lhs : automaton.completed[entries.states[e]])
+                for (int p = 0; p < atOrigin.size; p++) {
+                    final int state = automaton.gotoNonTerminal[atOrigin.states[p]][lhs];
+                    if (state >= 0) add(entries, state, atOrigin.origins[p], position);
+                }
+        }
+    }
+
+    /**
+     * Adds given entry and, if it is new, the entry for its non-kernel successor
+     */
+    private void add(final Entries entries, final int state, final int origin, final int position) {
+        if (entries.add(state, origin)) {
+            final int predicted = automaton.epsilon[state];
+            if (predicted >= 0) entries.add(predicted, position);
+        }
+    }
+
+    private static boolean contains(final int[] values, final int value) {
+        for (final int v : values) if (v == value) return true;
+        return false;
+    }
+
+    /**
+     * Entries of one position of the chart, in the order they were added
+     */
+    private static final class Entries {
+        private final Set<Long> seen = new HashSet<>();
+        int[] states = new int[16];
+        int[] origins = new int[16];
+        int size = 0;
+
+        /**
+         * @return Whether the entry was new
+         */
+        boolean add(final int state, final int origin) {
+            if (!seen.add(((long) state << 32) | origin)) return false;
+            if (size == states.length) {
+                states = Arrays.copyOf(states, size * 2);
+                origins = Arrays.copyOf(origins, size * 2);
+            }
+            states[size] = state;
+            origins[size] = origin;
+            size++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.token.Token;
+
+/**
+ * Decides whether strings are in the language of a grammar, without computing any probabilities or parse trees.
+ * {@link BooleanRecognizer} keeps one bitset of dotted rules per origin, and {@link LR0Recognizer} keeps states of an
+ * LR(0) automaton; both accept the same strings.
+ */
+public interface Recognizer<T> {
+    /**
+     * @param goal   Goal category, typically S for Sentence
+     * @param tokens list of tokens to recognize
+     * @return Whether the tokens are in the language of given goal, and the longest prefix that could still be extended to
+     * a string in that language
+     */
+    BooleanRecognizer.Result recognize(NonTerminal goal, Iterable<Token<T>> tokens);
+
+    default boolean accepts(final NonTerminal goal, final Iterable<Token<T>> tokens) {
+        return recognize(goal, tokens).accepted;
+    }
+}
@@ -0,0 +1,192 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.CaseInsensitiveStringTerminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.RegexTerminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Compiles a fixed grammar ahead of time into the Java source of a {@link BooleanRecognizer} subclass. The prediction,
+ * completion and item tables of the grammar are string constants in the generated class, which are decoded once when
+ * the class is loaded, and tokens are matched against the terminals of the grammar with <code>switch</code> statements
+ * instead of trying every terminal. So neither the grammar nor its analysis is needed at runtime. The generated
+ * recognizer builds exactly the same chart as a {@link BooleanRecognizer} for the same grammar.
+ * </p>
+ * <p>
+ * Only {@link ExactStringTerminal}, {@link CaseInsensitiveStringTerminal} and {@link RegexTerminal} can be compiled,
+ * and grammars may have at most 65534 dotted items.
+ * </p>
+ * Run {@link #main(String[])} from a build script to generate the source together with the application.
+ */
+public final class RecognizerCompiler {
+    private static final String USAGE = "Usage: java " + RecognizerCompiler.class.getName() + " <grammar file> <fully qualified class name> <source directory>";
+    /**
+     * Number of array elements per line of generated code
+     */
+    private static final int ELEMENTS_PER_LINE = 8;
+
+    private RecognizerCompiler() {
+    }
+
+    /**
+     * Writes the recognizer for the grammar in the given file to the given source directory
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        final Grammar<String> grammar = Grammar.fromString(Paths.get(args[0]), StandardCharsets.UTF_8);
+        final String qualifiedName = args[1];
+        final int lastDot = qualifiedName.lastIndexOf('.');
+        final String packageName = lastDot < 0 ? null : qualifiedName.substring(0, lastDot);
+        final String className = qualifiedName.substring(lastDot + 1);
+
+        final Path file = Paths.get(args[2], qualifiedName.replace('.', '/') + ".java");
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        Files.write(file, compile(grammar, packageName, className).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param packageName Package of the generated class, or null for the default package
+     * @param className   Simple name of the generated class
+     * @return Java source of a recognizer for given grammar
+     * @throws IllegalArgumentException If the grammar contains a terminal that can not be compiled
+     */
+    public static String compile(final Grammar<String> grammar, final String packageName, final String className) {
+        final DottedItems<String> items = new DottedItems<>(grammar);
+        final List<Map.Entry<Terminal<String>, long[]>> terminals = new ArrayList<>(items.getActiveOnTerminal().entrySet());
+        // Sort terminals, so that the same grammar always gives the same source
+        terminals.sort(Comparator.comparing(entry -> entry.getKey().getClass().getName() + ' ' + entry.getKey()));
+        for (final Map.Entry<Terminal<String>, long[]> entry : terminals)
+            if (!(entry.getKey() instanceof ExactStringTerminal
+                    || entry.getKey() instanceof CaseInsensitiveStringTerminal
+                    || entry.getKey() instanceof RegexTerminal))
+                throw new IllegalArgumentException("Can only compile string, case insensitive string and regex terminals, but found " + entry.getKey());
+
+        final StringBuilder sb = new StringBuilder();
+        if (packageName != null && !packageName.isEmpty()) sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("import org.leibnizcenter.cfg.earleyparser.recognizer.BooleanRecognizer;\n")
+                .append("import org.leibnizcenter.cfg.token.Token;\n\n")
+                .append("import java.util.regex.Pattern;\n\n")
+                .append("/**\n * Generated by {@link org.leibnizcenter.cfg.earleyparser.recognizer.RecognizerCompiler}. Do not edit.\n */\n")
+                .append("public final class ").append(className).append(" extends BooleanRecognizer<String> {\n");
+
+        final NonTerminal[] nonTerminals = items.getNonTerminals();
+        sb.append("    private static final String[] NON_TERMINALS = {");
+        for (int i = 0; i < nonTerminals.length; i++) {
+            if (i > 0) sb.append(i % ELEMENTS_PER_LINE == 0 ? ",\n            " : ", ");
+            sb.append(literal(nonTerminals[i].name));
+        }
+        sb.append("};\n");
+
+        final TableCodec.Writer tables = new TableCodec.Writer();
+        items.write(tables);
+        appendChunks(sb, "TABLES", tables.toChunks());
+
+        final TableCodec.Writer terminalTables = new TableCodec.Writer();
+        terminalTables.write(terminals.size());
+        for (final Map.Entry<Terminal<String>, long[]> entry : terminals) terminalTables.write(entry.getValue());
+        appendChunks(sb, "TERMINAL_TABLES", terminalTables.toChunks());
+        sb.append("    private static final long[][] TERMINALS = decodeBitsets(TERMINAL_TABLES, ").append(items.words).append(");\n");
+
+        for (int t = 0; t < terminals.size(); t++) {
+            final Terminal<String> terminal = terminals.get(t).getKey();
+            if (terminal instanceof RegexTerminal) {
+                final Pattern pattern = ((RegexTerminal) terminal).pattern;
+                sb.append("    private static final Pattern PATTERN_").append(t).append(" = Pattern.compile(")
+                        .append(literal(pattern.pattern())).append(", ").append(pattern.flags()).append(");\n");
+            }
+        }
+
+        sb.append("\n    public ").append(className).append("() {\n")
+                .append("        super(NON_TERMINALS, TABLES);\n")
+                .append("    }\n\n");
+        appendGetActiveOn(sb, terminals);
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void appendGetActiveOn(final StringBuilder sb, final List<Map.Entry<Terminal<String>, long[]>> terminals) {
+        // Exact strings by their value; case insensitive strings by their length, which equalsIgnoreCase requires to be equal
+        final Map<String, List<Integer>> exact = new TreeMap<>();
+        final Map<Integer, List<Integer>> caseInsensitive = new TreeMap<>();
+        final List<Integer> regexes = new ArrayList<>();
+        for (int t = 0; t < terminals.size(); t++) {
+            final Terminal<String> terminal = terminals.get(t).getKey();
+            if (terminal instanceof ExactStringTerminal)
+                exact.computeIfAbsent(((ExactStringTerminal) terminal).string, ignored -> new ArrayList<>()).add(t);
+            else if (terminal instanceof CaseInsensitiveStringTerminal)
+                caseInsensitive.computeIfAbsent(((CaseInsensitiveStringTerminal) terminal).string.length(), ignored -> new ArrayList<>()).add(t);
+            else
+                regexes.add(t);
+        }
+
+        sb.append("    @Override\n")
+                .append("    protected long[] getActiveOn(final Token<String> token) {\n")
+                .append("        final String s = token.obj;\n")
+                .append("        long[] mask = null;\n");
+        if (!exact.isEmpty()) {
+            sb.append("        switch (s) {\n");
+            exact.forEach((string, ts) -> {
+                sb.append("            case ").append(literal(string)).append(":\n");
+                for (final int t : ts) sb.append("                mask = union(mask, TERMINALS[").append(t).append("]);\n");
+                sb.append("                break;\n");
+            });
+            sb.append("        }\n");
+        }
+        if (!caseInsensitive.isEmpty()) {
+            sb.append("        switch (s.length()) {\n");
+            caseInsensitive.forEach((length, ts) -> {
+                sb.append("            case ").append(length).append(":\n");
+                for (final int t : ts)
+                    sb.append("                if (s.equalsIgnoreCase(")
+                            .append(literal(((CaseInsensitiveStringTerminal) terminals.get(t).getKey()).string))
+                            .append(")) mask = union(mask, TERMINALS[").append(t).append("]);\n");
+                sb.append("                break;\n");
+            });
+            sb.append("        }\n");
+        }
+        for (final int t : regexes)
+            sb.append("        if (PATTERN_").append(t).append(".matcher(s).matches()) mask = union(mask, TERMINALS[").append(t).append("]);\n");
+        sb.append("        return mask;\n")
+                .append("    }\n");
+    }
+
+    private static void appendChunks(final StringBuilder sb, final String name, final List<String> chunks) {
+        sb.append("    private static final String[] ").append(name).append(" = {");
+        for (int i = 0; i < chunks.size(); i++) {
+            sb.append(i > 0 ? ",\n            " : "\n            ");
+            sb.append(literal(chunks.get(i)));
+        }
+        sb.append("\n    };\n");
+    }
+
+    /**
+     * @return Java string literal for given string
+     */
+    static String literal(final String s) {
+        final StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            // Unicode escapes are translated before strings are lexed, so line terminators need their own escape
+            else if (c == '\n') sb.append("\\n");
+            else if (c == '\r') sb.append("\\r");
+            else if (c >= 0x20 && c < 0x7f) sb.append(c);
+            else sb.append(String.format("\\u%04x", (int) c));
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,103 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the tables of {@link DottedItems} as strings and reads them back, for {@link RecognizerCompiler}. String
+ * constants live in the constant pool of a class rather than in its initializer, so they do not run into the 64 KB
+ * limit on byte code that array constants do.
+ *
+ * Every number is a single char. Bitsets are sparse: the number of set bits, followed by their indices.
+ */
+final class TableCodec {
+    /**
+     * Chars per string constant. Chars take at most 3 bytes in a class file, and a constant may take 65535 bytes.
+     */
+    static final int CHUNK_SIZE = 16384;
+    /**
+     * Largest number that fits in a char, after adding 1 so that -1 can be written
+     */
+    static final int MAX_VALUE = Character.MAX_VALUE - 1;
+
+    private TableCodec() {
+    }
+
+    static final class Writer {
+        private final StringBuilder sb = new StringBuilder();
+
+        void write(final int value) {
+            if (value < -1 || value > MAX_VALUE)
+                throw new IllegalArgumentException("Grammar too large to compile: can not write " + value);
+            sb.append((char) (value + 1));
+        }
+
+        void write(final int[] values) {
+            write(values.length);
+            for (final int value : values) write(value);
+        }
+
+        void write(final long[] bits) {
+            int count = 0;
+            for (final long word : bits) count += Long.bitCount(word);
+            write(count);
+            for (int w = 0; w < bits.length; w++) {
+                long word = bits[w];
+                while (word != 0L) {
+                    write((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        void write(final long[][] rows) {
+            write(rows.length);
+            for (final long[] row : rows) write(row);
+        }
+
+        /**
+         * @return Everything written so far, in chunks of at most {@link #CHUNK_SIZE} chars
+         */
+        List<String> toChunks() {
+            final List<String> chunks = new ArrayList<>();
+            for (int start = 0; start < sb.length(); start += CHUNK_SIZE)
+                chunks.add(sb.substring(start, Math.min(sb.length(), start + CHUNK_SIZE)));
+            return chunks;
+        }
+    }
+
+    static final class Reader {
+        private final String s;
+        private int position = 0;
+
+        Reader(final String[] chunks) {
+            this.s = String.join("", chunks);
+        }
+
+        int readInt() {
+            return s.charAt(position++) - 1;
+        }
+
+        int[] readInts() {
+            final int[] values = new int[readInt()];
+            for (int i = 0; i < values.length; i++) values[i] = readInt();
+            return values;
+        }
+
+        /**
+         * @param words Number of 64-bit words of the bitset
+         */
+        long[] readBits(final int words) {
+            final long[] bits = new long[words];
+            final int count = readInt();
+            for (int i = 0; i < count; i++) DottedItems.set(bits, readInt());
+            return bits;
+        }
+
+        long[][] readRows(final int words) {
+            final long[][] rows = new long[readInt()][];
+            for (int i = 0; i < rows.length; i++) rows[i] = readBits(words);
+            return rows;
+        }
+    }
+}
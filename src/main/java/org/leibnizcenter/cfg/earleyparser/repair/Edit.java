@@ -0,0 +1,65 @@
+package org.leibnizcenter.cfg.earleyparser.repair;
+
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.Objects;
+
+/**
+ * A change to the input that makes it grammatical
+ */
+public class Edit<T> {
+    public final Type type;
+    /**
+     * Index of the input token that was deleted or substituted, or the index of the input token before which a token
+     * was inserted
+     */
+    public final int position;
+    /**
+     * Input token that was deleted or substituted, or null for insertions
+     */
+    public final Token<T> token;
+    /**
+     * Category that was inserted or substituted for the input token, or null for deletions
+     */
+    public final Terminal<T> category;
+
+    public Edit(final Type type, final int position, final Token<T> token, final Terminal<T> category) {
+        this.type = type;
+        this.position = position;
+        this.token = token;
+        this.category = category;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final Edit<?> edit = (Edit<?>) o;
+        return position == edit.position && type == edit.type
+                && Objects.equals(token, edit.token) && Objects.equals(category, edit.category);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, position, token, category);
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case INSERTION:
+                return "insert " + category + " at " + position;
+            case DELETION:
+                return "delete " + token + " at " + position;
+            case SUBSTITUTION:
+                return "read " + token + " at " + position + " as " + category;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    public enum Type {
+        INSERTION, DELETION, SUBSTITUTION
+    }
+}
@@ -0,0 +1,47 @@
+package org.leibnizcenter.cfg.earleyparser.repair;
+
+/**
+ * Probabilities of the edits that {@link org.leibnizcenter.cfg.earleyparser.scan.ScanMode#REPAIR} may make to the
+ * input, and the maximum number of edits. The probability of a repaired parse is the product of the probability of
+ * the parse tree and the probabilities of all edits, so the lower the probability of an edit, the higher its cost.
+ * To find the repair with the fewest edits regardless of the grammar, make edits much less likely than any rule.
+ */
+public class RepairCosts {
+    public static final RepairCosts DEFAULT = new RepairCosts(0.01, 0.01, 0.01, 2);
+
+    /**
+     * Probability of inserting a token that is not in the input
+     */
+    public final double insertionProbability;
+    /**
+     * Probability of skipping a token of the input
+     */
+    public final double deletionProbability;
+    /**
+     * Probability of reading a token of the input as a category that it does not have
+     */
+    public final double substitutionProbability;
+    /**
+     * Maximum number of edits in a repair. The size of the chart grows linearly with this number.
+     */
+    public final int maxEdits;
+
+    public RepairCosts(final double insertionProbability,
+                       final double deletionProbability,
+                       final double substitutionProbability,
+                       final int maxEdits) {
+        if (maxEdits < 0) throw new IllegalArgumentException("Maximum number of edits must not be negative");
+        checkProbability(insertionProbability);
+        checkProbability(deletionProbability);
+        checkProbability(substitutionProbability);
+        this.insertionProbability = insertionProbability;
+        this.deletionProbability = deletionProbability;
+        this.substitutionProbability = substitutionProbability;
+        this.maxEdits = maxEdits;
+    }
+
+    private static void checkProbability(final double probability) {
+        if (!(probability >= 0.0 && probability <= 1.0))
+            throw new IllegalArgumentException("Not a probability: " + probability);
+    }
+}
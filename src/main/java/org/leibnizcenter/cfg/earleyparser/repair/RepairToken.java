@@ -0,0 +1,72 @@
+package org.leibnizcenter.cfg.earleyparser.repair;
+
+import org.leibnizcenter.cfg.token.Token;
+
+/**
+ * Token that is scanned while repairing the input. Remembers which input tokens it stands for, so that the edits can
+ * be read off the leaves of the parse tree.
+ */
+public final class RepairToken<T> extends Token<T> {
+    public final Kind kind;
+    /**
+     * Index of the first input token that was not consumed before this token was scanned
+     */
+    public final int from;
+    /**
+     * Index of the input token that was scanned, or -1 for insertions. Input tokens from {@link #from} up to this
+     * index were deleted.
+     */
+    public final int consumed;
+
+    private RepairToken(final T source, final Kind kind, final int from, final int consumed) {
+        super(source);
+        this.kind = kind;
+        this.from = from;
+        this.consumed = consumed;
+    }
+
+    private RepairToken(final int from) {
+        super();
+        this.kind = Kind.INSERTION;
+        this.from = from;
+        this.consumed = -1;
+    }
+
+    public static <T> RepairToken<T> match(final Token<T> token, final int from, final int consumed) {
+        return new RepairToken<>(token.obj, Kind.MATCH, from, consumed);
+    }
+
+    public static <T> RepairToken<T> substitution(final Token<T> token, final int from, final int consumed) {
+        return new RepairToken<>(token.obj, Kind.SUBSTITUTION, from, consumed);
+    }
+
+    public static <T> RepairToken<T> insertion(final int at) {
+        return new RepairToken<>(at);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final RepairToken<?> that = (RepairToken<?>) o;
+        return kind == that.kind && from == that.from && consumed == that.consumed
+                && (obj == null ? that.obj == null : obj.equals(that.obj));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = obj == null ? 0 : obj.hashCode();
+        result = 31 * result + kind.hashCode();
+        result = 31 * result + from;
+        return 31 * result + consumed;
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.INSERTION ? "<inserted>" : obj.toString();
+    }
+
+    public enum Kind {
+        MATCH, SUBSTITUTION, INSERTION
+    }
+}
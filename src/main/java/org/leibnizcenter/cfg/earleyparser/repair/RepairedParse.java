@@ -0,0 +1,71 @@
+package org.leibnizcenter.cfg.earleyparser.repair;
+
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.earleyparser.ParseTree;
+import org.leibnizcenter.cfg.earleyparser.ParseTreeWithScore;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Most likely parse of a repaired input, with the edits that were made to the input, in input order
+ */
+public class RepairedParse<T> {
+    /**
+     * Parse tree of the repaired input. Its leaves hold {@link RepairToken repair tokens}. Its score includes the
+     * probabilities of all edits except deletions after the last leaf.
+     */
+    public final ParseTreeWithScore parse;
+    public final List<Edit<T>> edits;
+    /**
+     * Probability of the parse tree times the probabilities of all edits
+     */
+    public final double probability;
+
+    public RepairedParse(final ParseTreeWithScore parse, final List<Edit<T>> edits, final double probability) {
+        this.parse = parse;
+        this.edits = Collections.unmodifiableList(edits);
+        this.probability = probability;
+    }
+
+    /**
+     * Reads the edits off the leaves of a parse tree of a repaired input
+     *
+     * @param tokens Input tokens
+     * @param end    Number of input tokens that the parse tree covers; the tokens after that were deleted
+     * @return Edits in input order
+     */
+    public static <T> List<Edit<T>> readEdits(final ParseTree tree, final List<Token<T>> tokens, final int end) {
+        final List<Edit<T>> edits = new ArrayList<>();
+        readEdits(tree, tokens, edits);
+        for (int i = end; i < tokens.size(); i++) edits.add(new Edit<>(Edit.Type.DELETION, i, tokens.get(i), null));
+        return edits;
+    }
+
+    private static <T> void readEdits(final ParseTree tree, final List<Token<T>> tokens, final List<Edit<T>> edits) {
+        if (tree instanceof ParseTree.Leaf) {
+            final Token<?> leafToken = ((ParseTree.Leaf<?>) tree).token;
+            if (!(leafToken instanceof RepairToken))
+                throw new IllegalArgumentException("Not a parse tree of a repaired input: " + leafToken);
+            final RepairToken<?> token = (RepairToken<?>) leafToken;
+            @SuppressWarnings("unchecked") final Terminal<T> category = (Terminal<T>) tree.category;
+            if (token.kind == RepairToken.Kind.INSERTION) {
+                edits.add(new Edit<>(Edit.Type.INSERTION, token.from, null, category));
+            } else {
+                for (int i = token.from; i < token.consumed; i++)
+                    edits.add(new Edit<>(Edit.Type.DELETION, i, tokens.get(i), null));
+                if (token.kind == RepairToken.Kind.SUBSTITUTION)
+                    edits.add(new Edit<>(Edit.Type.SUBSTITUTION, token.consumed, tokens.get(token.consumed), category));
+            }
+        } else if (tree.children != null) {
+            for (final ParseTree child : tree.children) readEdits(child, tokens, edits);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RepairedParse{probability = " + probability + ", edits = " + edits + ", parse = " + parse + '}';
+    }
+}
@@ -0,0 +1,169 @@
+package org.leibnizcenter.cfg.earleyparser.scan;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Records tokens that were not in the lexicon during a parse, and how they were handled. Records are kept as
+ * primitives, in the order of their token index, so noisy input does not cost an exception object (with its stack
+ * trace) per unknown token. Use {@link org.leibnizcenter.cfg.earleyparser.chart.ChartWithInputPosition#getIncidents()}
+ * if exceptions are needed after all.
+ * </p>
+ * Not thread-safe; belongs to a single parse.
+ */
+public class Diagnostics {
+    private static final Kind[] KINDS = Kind.values();
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] tokenIndices;
+    private int[] chartIndices;
+    private byte[] kinds;
+    /**
+     * Total number of records, including the ones in {@link #parent}
+     */
+    private int size = 0;
+    private final int[] counts = new int[KINDS.length];
+    /**
+     * Diagnostics that hold all records before {@link #base}, or null
+     */
+    private final Diagnostics parent;
+    private int base;
+    /**
+     * Records before this index are shared with forks, and may not change anymore
+     */
+    private int frozenBefore = 0;
+
+    public Diagnostics() {
+        tokenIndices = new int[INITIAL_CAPACITY];
+        chartIndices = new int[INITIAL_CAPACITY];
+        kinds = new byte[INITIAL_CAPACITY];
+        parent = null;
+        base = 0;
+    }
+
+    private Diagnostics(final Diagnostics parent) {
+        tokenIndices = new int[INITIAL_CAPACITY];
+        chartIndices = new int[INITIAL_CAPACITY];
+        kinds = new byte[INITIAL_CAPACITY];
+        this.parent = parent;
+        this.base = parent.size;
+        this.size = parent.size;
+        System.arraycopy(parent.counts, 0, counts, 0, counts.length);
+    }
+
+    /**
+     * Creates diagnostics that share all current records with these ones, and that can be added to independently.
+     * Runs in O(1). After forking, these diagnostics can no longer be truncated to before their current size.
+     */
+    public Diagnostics fork() {
+        frozenBefore = Math.max(frozenBefore, size);
+        return new Diagnostics(this);
+    }
+
+    /**
+     * @param tokenIndex Index of the token in the token stream. Must not be lower than that of the last record.
+     * @param chartIndex Chart position at which the token was encountered
+     */
+    public void add(final int tokenIndex, final int chartIndex, final Kind kind) {
+        if (size > 0 && tokenIndex < getTokenIndex(size - 1))
+            throw new IllegalArgumentException("Token index " + tokenIndex + " comes before last recorded token " + getTokenIndex(size - 1));
+        final int i = size - base;
+        if (i == tokenIndices.length) {
+            final int capacity = i * 2;
+            tokenIndices = Arrays.copyOf(tokenIndices, capacity);
+            chartIndices = Arrays.copyOf(chartIndices, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        tokenIndices[i] = tokenIndex;
+        chartIndices[i] = chartIndex;
+        kinds[i] = (byte) kind.ordinal();
+        size++;
+        counts[kind.ordinal()]++;
+    }
+
+    /**
+     * Forgets all records for tokens at or after given token index
+     *
+     * @throws IllegalStateException if that would forget records that are shared with a fork
+     */
+    public void truncate(final int tokenIndex) {
+        int newSize = size;
+        while (newSize > 0 && getTokenIndex(newSize - 1) >= tokenIndex) newSize--;
+        if (newSize < frozenBefore)
+            throw new IllegalStateException("Can not truncate to token " + tokenIndex + ", because earlier records are shared with a fork");
+        for (int i = newSize; i < size; i++) counts[getKind(i).ordinal()]--;
+        size = newSize;
+        // Records of the parent do not change anymore, so a fork can keep reading the ones before its new size
+        base = Math.min(base, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Number of records of given kind
+     */
+    public int count(final Kind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    public int getTokenIndex(final int i) {
+        checkIndex(i);
+        return i < base ? parent.getTokenIndex(i) : tokenIndices[i - base];
+    }
+
+    public int getChartIndex(final int i) {
+        checkIndex(i);
+        return i < base ? parent.getChartIndex(i) : chartIndices[i - base];
+    }
+
+    public Kind getKind(final int i) {
+        checkIndex(i);
+        return i < base ? parent.getKind(i) : KINDS[kinds[i - base]];
+    }
+
+    private void checkIndex(final int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(getKind(i)).append('@').append(getTokenIndex(i)).append('/').append(getChartIndex(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * What happened to a token that was not in the lexicon
+     */
+    public enum Kind {
+        /**
+         * The token was ignored
+         */
+        DROPPED,
+        /**
+         * The token was scanned as every terminal, see {@link ScanMode#WILDCARD}
+         */
+        WILDCARD,
+        /**
+         * The token was scanned as the terminals guessed from its signature, see {@link ScanMode#SIGNATURE}
+         */
+        GUESSED,
+        /**
+         * The token was handled by error recovery, see {@link ScanMode#SYNCHRONIZE}
+         */
+        SYNCHRONIZED,
+        /**
+         * The parse was aborted, see {@link ScanMode#STRICT}
+         */
+        REJECTED
+    }
+}
@@ -19,12 +19,26 @@ public enum ScanMode {
      * replace the unfound word with a wildcard that matches all categories
      */
     WILDCARD,
-    SYNCHRONIZE;
+    /**
+     * replace the unfound word with the terminals that the {@link org.leibnizcenter.cfg.grammar.UnknownWordModel} of
+     * the grammar guesses from its signature, weighted by their probabilities. Drops the word if the grammar has no
+     * such model, or the model can not guess anything.
+     */
+    SIGNATURE,
+    SYNCHRONIZE,
+    /**
+     * find the most likely repair of the input by weighted insertions, deletions and substitutions of tokens, see
+     * {@link org.leibnizcenter.cfg.earleyparser.Parser#getRepairedParse}. Needs the whole input at once, so it can not
+     * be used for parsing token by token.
+     */
+    REPAIR;
 
     private static final Pattern _WILDCARD = Pattern.compile("(?i)wild ?card");
     private static final Pattern _STRICT = Pattern.compile("(?i)strict");
     private static final Pattern _DROP = Pattern.compile("(?i)(drop|ignore)");
+    private static final Pattern _SIGNATURE = Pattern.compile("(?i)(signature|unknown ?words?)");
     private static final Pattern _SYNCHRONIZE = Pattern.compile("(?i)synchroni[zs](e|ation)");
+    private static final Pattern _REPAIR = Pattern.compile("(?i)repair");
 
     public static ScanMode fromString(final String scanMode) {
         if (_STRICT.matcher(scanMode).matches())
@@ -33,9 +47,13 @@ public enum ScanMode {
             return WILDCARD;
         else if (_DROP.matcher(scanMode).matches())
             return DROP;
+        else if (_SIGNATURE.matcher(scanMode).matches())
+            return SIGNATURE;
         else if (_SYNCHRONIZE.matcher(scanMode).matches())
             return SYNCHRONIZE;
+        else if (_REPAIR.matcher(scanMode).matches())
+            return REPAIR;
         else
-            throw new IllegalArgumentException("Illegal scan mode\"" + scanMode + "\". Choose from \"strict\", \"wildcard\" and \"drop\"");
+            throw new IllegalArgumentException("Illegal scan mode\"" + scanMode + "\". Choose from \"strict\", \"wildcard\", \"drop\", \"signature\", \"synchronize\" and \"repair\"");
     }
 }
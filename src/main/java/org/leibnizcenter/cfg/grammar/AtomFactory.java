@@ -9,6 +9,7 @@ import java.lang.ref.WeakReference;
 
 /**
  * For not re-creating atom objects all the time, a weak cache of atoms. Values might get garbage collected.
+ * Not thread-safe: every chart keeps its own, so that parsers that run in parallel do not contend for it.
  *
  * Created by maarten on 22/01/17.
  */
@@ -45,7 +46,8 @@ public class AtomFactory {
     private void cleanUpDeadReferences() {
         AtomWeakReference reference = (AtomWeakReference) referenceQueue.poll();
         while (reference != null) {
-            if (atoms.get(reference.value).get() == null) atoms.remove(reference.value);
+            final WeakReference<Atom> current = atoms.get(reference.value);
+            if (current != null && current.get() == null) atoms.remove(reference.value);
             //System.out.println("cleaning up " + dbl + "(" + atoms.size() + ")");
             reference = (AtomWeakReference) referenceQueue.poll();
         }
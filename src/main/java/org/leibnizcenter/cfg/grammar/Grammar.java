@@ -7,7 +7,9 @@ import org.leibnizcenter.cfg.algebra.semiring.dbl.LogSemiring;
 import org.leibnizcenter.cfg.category.Category;
 import org.leibnizcenter.cfg.category.nonterminal.NonLexicalToken;
 import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.nonterminal.Repetition;
 import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.rule.RepetitionRule;
 import org.leibnizcenter.cfg.rule.Rule;
 import org.leibnizcenter.cfg.rule.RuleFactory;
 import org.leibnizcenter.cfg.rule.RuleParser;
@@ -50,9 +52,20 @@ public final class Grammar<T> {
      */
     public final ScoresAsSemiringElements unitStarScores;
     public final ExpressionSemiring semiring;
-    public final AtomFactory atoms = new AtomFactory();
     public final Map<Category, Set<Rule>> nonZeroLeftStartRules;
     public final Set<Terminal<T>> terminals = new HashSet<>();
+    /**
+     * Guesses categories for tokens that are not in the lexicon, or null if this grammar has no such model
+     */
+    public final UnknownWordModel<T> unknownWordModel;
+    /**
+     * Probabilities of non-terminals deriving the empty string, for grammars with ε-rules
+     */
+    public final NullProbabilities nullProbabilities;
+    /**
+     * Whether this grammar has {@link RepetitionRule looping repetition rules}
+     */
+    public final boolean hasRepetitionRules;
     private final MyMultimap<NonTerminal, Rule> rules;
     /**
      * Two non-terminals X and Y are said to be in a left-corner relation
@@ -67,7 +80,10 @@ public final class Grammar<T> {
     private final ScoresAsSemiringElements leftStarCornersAsSemiringElements;
 
     private final Set<NonTerminal> nonTerminals = new HashSet<>();
-    private final Map<Token<T>, Set<Terminal<T>>> tokenToTerminalsCache = new WeakHashMap<>();
+    /**
+     * Synchronized, because one grammar may be used by several parsers in parallel
+     */
+    private final Map<Token<T>, Set<Terminal<T>>> tokenToTerminalsCache = Collections.synchronizedMap(new WeakHashMap<>());
 
     /**
      * Creates a grammar with the given name, and given rules.
@@ -80,6 +96,15 @@ public final class Grammar<T> {
      * @param semiring Semiring
      */
     public Grammar(final String name, final MyMultimap<NonTerminal, Rule> rules_, final ExpressionSemiring semiring) {
+        this(name, rules_, semiring, null);
+    }
+
+    /**
+     * @param unknownWords Vocabulary and weights for the {@link UnknownWordModel} of this grammar, which is computed
+     *                     once the rules are known. May be null.
+     * @see #Grammar(String, MyMultimap, ExpressionSemiring)
+     */
+    public Grammar(final String name, final MyMultimap<NonTerminal, Rule> rules_, final ExpressionSemiring semiring, final UnknownWordModel.Builder<T> unknownWords) {
         this.name = name;
         this.rules = rules_;
         this.semiring = semiring;
@@ -87,16 +112,19 @@ public final class Grammar<T> {
         rules.lock();
 
         collectTerminalsAndNonTerminals(rules.values());
+        hasRepetitionRules = rules.values().stream().anyMatch(rule -> rule instanceof RepetitionRule);
         final NonTerminal[] nonTerminalsArr = nonTerminals.toArray(new NonTerminal[nonTerminals.size()]);
 
 
-        leftCorners = new LeftCorners(rules, nonTerminalsArr);
+        nullProbabilities = new NullProbabilities(rules, nonTerminalsArr, semiring);
+        leftCorners = new LeftCorners(rules, nonTerminalsArr, nullProbabilities);
         final LeftCorners leftStarCorners = computeReflexiveTransitiveClosure(leftCorners, nonTerminalsArr);
 
         leftStarCornersAsSemiringElements = new ScoresAsSemiringElements(leftStarCorners, semiring);
-        unitStarScores = new ScoresAsSemiringElements(computeUnitStarCorners(this.rules, nonTerminalsArr), this.semiring);
+        unitStarScores = new ScoresAsSemiringElements(computeUnitStarCorners(this.rules, nonTerminalsArr, nullProbabilities), this.semiring);
         nonZeroLeftStartRules = findNonZeroLeftStartRules(leftStarCorners, nonTerminals, rules);
 
+        unknownWordModel = unknownWords == null ? null : unknownWords.build(this);
     }
 
     @SuppressWarnings("unchecked")
@@ -118,11 +146,11 @@ public final class Grammar<T> {
     @SuppressWarnings("WeakerAccess")
     public static Grammar<String> fromString(final String s, final Function<String, Category> parseCategory, final DblSemiring semiring) {
         final RuleParser parser = new RuleParser(parseCategory, semiring);
-        return new Builder<String>().addRules(Arrays.stream(GrammarParser.NEWLINE.split(s.trim()))
+        return new Builder<String>().addRules(GrammarParser.checkRepetitions(Arrays.stream(GrammarParser.NEWLINE.split(s.trim()))
                 .map(line -> TRAILING_COMMENT.matcher(line).replaceAll("").trim())
                 .filter(line -> !line.isEmpty())
                 .map(parser::fromString)
-                .collect(Collectors.toSet())).build();
+                .collect(Collectors.toSet()))).build();
     }
 
     public static Grammar<String> fromString(final Path path, final Charset charset) throws IOException {
@@ -132,11 +160,11 @@ public final class Grammar<T> {
     @SuppressWarnings("WeakerAccess")
     public static Grammar<String> fromString(final Path path, final Charset charset, final Function<String, Category> parseCategory, final DblSemiring semiring) throws IOException {
         final RuleParser ruleParser = new RuleParser(parseCategory, semiring);
-        return new Builder<String>().addRules(Files.lines(path, charset).parallel()
+        return new Builder<String>().addRules(GrammarParser.checkRepetitions(Files.lines(path, charset).parallel()
                 .map(line -> TRAILING_COMMENT.matcher(line).replaceAll("").trim())
                 .filter(line -> !line.isEmpty())
                 .map(ruleParser::fromString)
-                .collect(Collectors.toSet())).build();
+                .collect(Collectors.toSet()))).build();
     }
 
 
@@ -275,9 +303,14 @@ public final class Grammar<T> {
 
     public static class Builder<E> {
         private final MyMultimap<NonTerminal, Rule> rules = new MyMultimap<>();
+        /**
+         * Repetitions that occur in a right hand side, by name
+         */
+        private final Map<String, Repetition> repetitions = new LinkedHashMap<>();
         private String name;
         private ExpressionSemiring semiring = LogSemiring.get();
         private RuleFactory rf = new RuleFactory(semiring);
+        private UnknownWordModel.Builder<E> unknownWords = null;
 
         public Builder(final String name) {
             this.name = name;
@@ -293,6 +326,15 @@ public final class Grammar<T> {
             return this;
         }
 
+        /**
+         * Lets the grammar guess the categories of tokens that are not in its lexicon, for
+         * {@link org.leibnizcenter.cfg.earleyparser.scan.ScanMode#SIGNATURE}
+         */
+        public Builder<E> withUnknownWordModel(final UnknownWordModel.Builder<E> unknownWords) {
+            this.unknownWords = unknownWords;
+            return this;
+        }
+
         @SuppressWarnings("unused")
         public Builder<E> setName(final String name) {
             this.name = name;
@@ -300,21 +342,57 @@ public final class Grammar<T> {
         }
 
         /**
-         * Adds a production rule.
+         * Adds a production rule. The grammar will also get the rules that define the {@link Repetition repetitions}
+         * in its right hand side.
          *
          * @param rule The rule to add.
-         * @throws NullPointerException If <code>rule</code> is <code>null</code>.
+         * @throws NullPointerException     If <code>rule</code> is <code>null</code>.
+         * @throws IllegalArgumentException If the right hand side repeats a non-terminal that was repeated before with
+         *                                  another probability of one more repetition
          */
         public Builder<E> addRule(final Rule rule) {
             if (rule == null) throw new NullPointerException("null rule");
+            for (final Category category : rule.right)
+                if (category instanceof Repetition) {
+                    final Repetition X = (Repetition) category;
+                    final Repetition existing = repetitions.get(X.name);
+                    if (existing != null && !existing.equals(X))
+                        throw new IllegalArgumentException(X + " occurs with probabilities " + existing.continueProbability
+                                + " and " + X.continueProbability + " of one more repetition, but can only have one");
+                }
 //            if (rule instanceof LexicalErrorRule) {
 //                lexicalErrorRules.put(rule.left, rule);
 //            } else {
             rules.put(rule.left, rule);
 //            }
+            for (final Category category : rule.right)
+                if (category instanceof Repetition) repetitions.putIfAbsent(((Repetition) category).name, (Repetition) category);
             return this;
         }
 
+        /**
+         * Adds the rules that define the repetitions: the {@link RepetitionRule looping rule}, and for X* the rule
+         * <code>X* → ε</code>. If X derives the empty string, the dot of the looping rule could go round without
+         * reading anything, so then the repetition gets the left-recursive rules <code>X+ → X+ X (p) | X (1 - p)</code>
+         * or <code>X* → X* X (p) | ε (1 - p)</code> instead, which give the same probabilities.
+         */
+        private void addRepetitionRules(final MyMultimap<NonTerminal, Rule> rules) {
+            final Map<Repetition, Rule> looping = new HashMap<>();
+            for (final Repetition X : repetitions.values()) {
+                looping.put(X, RepetitionRule.create(semiring, X));
+                rules.put(X, looping.get(X));
+                if (X.allowEmpty) rules.put(X, rf.newRule(1.0 - X.continueProbability, X));
+            }
+
+            final Set<NonTerminal> nullable = NullProbabilities.findNullable(rules);
+            for (final Repetition X : repetitions.values())
+                if (nullable.contains(X.repeated)) {
+                    rules.remove(X, looping.get(X));
+                    rules.put(X, rf.newRule(X.continueProbability, X, X, X.repeated));
+                    if (!X.allowEmpty) rules.put(X, rf.newRule(1.0 - X.continueProbability, X, X.repeated));
+                }
+        }
+
         public Builder<E> addRule(final double probability, final NonTerminal left, final Category... right) {
             return addRule(rf.newRule(probability, left, right));
         }
@@ -348,8 +426,16 @@ public final class Grammar<T> {
             return build(true);
         }
 
+        /**
+         * @param makeProper Whether to normalize the probabilities of the rules for each non-terminal so that they sum
+         *                   to 1. The rules of repetitions are proper already, and left alone.
+         */
         public Grammar<E> build(final boolean makeProper) {
-            return new Grammar<>(name, makeProper ? normalizeRuleWeights(rules, semiring) : rules, semiring);
+            final MyMultimap<NonTerminal, Rule> rules = makeProper ? normalizeRuleWeights(this.rules, semiring) : new MyMultimap<>();
+            if (!makeProper) for (final Map.Entry<NonTerminal, Set<Rule>> entry : this.rules.entries())
+                rules.putAll(entry.getKey(), entry.getValue());
+            addRepetitionRules(rules);
+            return new Grammar<>(name, rules, semiring, unknownWords);
         }
 
         @SuppressWarnings({"unused", "WeakerAccess", "UnusedReturnValue"})
@@ -47,6 +47,10 @@ class GrammarAnalysis {
         }
     }
 
+    /**
+     * @return For every non-terminal Z, the rules Y → v such that R(Z =*L> Y) is non-zero. ε-rules are left out,
+     * because the parser moves the dot over nullable categories instead of predicting them.
+     */
     static Map<Category, Set<Rule>> findNonZeroLeftStartRules(final LeftCorners leftStarCorners,
                                                               final Set<NonTerminal> nonTerminals,
                                                               final MyMultimap<NonTerminal, Rule> rules) {
@@ -57,7 +61,7 @@ class GrammarAnalysis {
                 final Set<Rule> nonEmptyRules = new HashSet<>();
                 for (final NonTerminal rhsCategory : nonZeroScores) {
                     final Collection<Rule> rulesForY = rules.get(rhsCategory);
-                    if (rulesForY != null) nonEmptyRules.addAll(rulesForY);
+                    if (rulesForY != null) for (final Rule rule : rulesForY) if (!rule.isEmpty()) nonEmptyRules.add(rule);
                 }
                 nonZeroLeftStartRules_.put(lhsCategory, nonEmptyRules);
             }
@@ -70,15 +74,31 @@ class GrammarAnalysis {
      * Sum all probabilities for unit relations (form X -> Y)
      */
     static LeftCorners computeUnitStarCorners(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] nonterminalsArr) {
+        return computeUnitStarCorners(rules, nonterminalsArr, null);
+    }
+
+    /**
+     * Sum all probabilities for unit relations. Besides rules of the form X → Y, a rule X → λYμ counts as a unit
+     * relation from X to Y if λ and μ are nullable, with probability <code>P(X → λYμ) e(λ) e(μ)</code>
+     * (Stolcke 1995, 4.7.3).
+     *
+     * @param nullProbabilities Probabilities of deriving the empty string, or null if no category is nullable
+     */
+    static LeftCorners computeUnitStarCorners(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] nonterminalsArr, final NullProbabilities nullProbabilities) {
         final LeftCorners unitRuleProbabilities = new LeftCorners(nonterminalsArr);
         for (int i = 0; i < nonterminalsArr.length; i++) {
             final NonTerminal leftHandSide = nonterminalsArr[i];
             final Collection<Rule> rulesForCategory = rules.get(leftHandSide);
             if (rulesForCategory != null && !rulesForCategory.isEmpty()) {
-                for (final Rule unitProduction : rulesForCategory) {
-                    if (unitProduction.isUnitProduction()) {
+                for (final Rule rule : rulesForCategory) {
+                    if (rule.isUnitProduction()) {
                         unitRuleProbabilities.plusRawProbability(i,
-                                (NonTerminal) unitProduction.right[0], unitProduction.probability);
+                                (NonTerminal) rule.right[0], rule.probability);
+                    } else if (nullProbabilities != null && !nullProbabilities.isEmpty() && rule.right.length > 1) {
+                        for (int j = 0; j < rule.right.length; j++) {
+                            final double p = getProbabilityWithOthersEmpty(rule, j, nullProbabilities);
+                            if (p > 0.0) unitRuleProbabilities.plusRawProbability(i, (NonTerminal) rule.right[j], p);
+                        }
                     }
                 }
             }
@@ -87,4 +107,16 @@ class GrammarAnalysis {
         // R_U = (I - P_U)
         return computeReflexiveTransitiveClosure(unitRuleProbabilities, nonterminalsArr);
     }
+
+    /**
+     * @return Probability of given rule times the probabilities that all categories except the one at given index derive
+     * the empty string, or 0 if that category is not a non-terminal
+     */
+    private static double getProbabilityWithOthersEmpty(final Rule rule, final int index, final NullProbabilities nullProbabilities) {
+        if (!(rule.right[index] instanceof NonTerminal)) return 0.0;
+        double p = rule.probability;
+        for (int k = 0; k < rule.right.length && p > 0.0; k++)
+            if (k != index) p *= nullProbabilities.getProbability(rule.right[k]);
+        return p;
+    }
 }
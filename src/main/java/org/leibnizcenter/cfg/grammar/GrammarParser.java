@@ -4,6 +4,7 @@ import org.leibnizcenter.cfg.algebra.semiring.dbl.DblSemiring;
 import org.leibnizcenter.cfg.category.Category;
 import org.leibnizcenter.cfg.category.nonterminal.NonLexicalToken;
 import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.nonterminal.Repetition;
 import org.leibnizcenter.cfg.category.terminal.Terminal;
 import org.leibnizcenter.cfg.category.terminal.stringterminal.CaseInsensitiveStringTerminal;
 import org.leibnizcenter.cfg.rule.Rule;
@@ -16,6 +17,7 @@ import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
@@ -38,7 +40,28 @@ public class GrammarParser {
                 rules.add(ruleParser.fromString(line));
             line = reader.readLine();
         }
-        b.addRules(rules);
+        b.addRules(checkRepetitions(rules));
         return b.build(false);
     }
+
+    /**
+     * A non-terminal followed by '+' or '*' in a grammar file is a {@link Repetition}, so a repetition of a
+     * non-terminal that has no rules is most likely a non-terminal whose name happens to end in '+' or '*'.
+     *
+     * @return Given rules
+     * @throws IllegalArgumentException If a rule repeats a non-terminal that is not the left hand side of any rule
+     */
+    static Collection<Rule> checkRepetitions(final Collection<Rule> rules) {
+        final Set<NonTerminal> defined = new HashSet<>();
+        for (final Rule rule : rules) defined.add(rule.left);
+        for (final Rule rule : rules)
+            for (final Category category : rule.right)
+                if (category instanceof Repetition) {
+                    final Repetition repetition = (Repetition) category;
+                    if (!defined.contains(repetition.repeated))
+                        throw new IllegalArgumentException(repetition + " in rule " + rule + " is a repetition of "
+                                + repetition.repeated + ", which is not the left hand side of any rule");
+                }
+        return rules;
+    }
 }
@@ -4,6 +4,7 @@ import org.leibnizcenter.cfg.algebra.matrix.Matrix;
 import org.leibnizcenter.cfg.algebra.semiring.dbl.DblSemiring;
 import org.leibnizcenter.cfg.category.Category;
 import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.rule.RepetitionRule;
 import org.leibnizcenter.cfg.rule.Rule;
 import org.leibnizcenter.cfg.util.MyMultimap;
 
@@ -37,26 +38,42 @@ public class LeftCorners {
      * Compute left corner relations
      */
     LeftCorners(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] categories) {
+        this(rules, categories, null);
+    }
+
+    /**
+     * Compute left corner relations, where a non-terminal is also a left corner if everything before it is nullable
+     *
+     * @param nullProbabilities Probabilities of deriving the empty string, or null if no category is nullable
+     */
+    LeftCorners(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] categories, final NullProbabilities nullProbabilities) {
         mapToProb = new double[categories.length][categories.length];
         this.categories = categories;
         for (int i = 0, categoriesLength = categories.length; i < categoriesLength; i++)
             mapToIndex.put(categories[i], i);
 
-        sumLeftCornerProbabilities(rules, categories);
+        sumLeftCornerProbabilities(rules, categories, nullProbabilities);
     }
 
     /**
-     * Sum all probabilities for left corners
+     * Sum all probabilities for left corners. For a rule <code>X → Y1 ... Yn</code>, this adds
+     * <code>P(X → Y1 ... Yn) e(Y1) ... e(Y(i-1))</code> to <code>P_L(X, Yi)</code> for as long as the
+     * preceding categories are nullable, with e the probability of deriving the empty string (Stolcke 1995, 4.7.2).
+     * For a {@link RepetitionRule}, the repeated category is a left corner with the probability of the first repetition,
+     * whether more follow or not.
      */
-    private void sumLeftCornerProbabilities(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] categories) {
+    private void sumLeftCornerProbabilities(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] categories, final NullProbabilities nullProbabilities) {
         for (int i = 0, categoriesLength = categories.length; i < categoriesLength; i++) {
             final NonTerminal leftHandSide = categories[i];
             final Collection<Rule> rulesOnNonTerminal = rules.get(leftHandSide);
             if (rulesOnNonTerminal != null) {
                 for (final Rule yRule : rulesOnNonTerminal) {
-                    final boolean startsWithNonTerminal = yRule.right.length > 0 && yRule.right[0] instanceof NonTerminal;
-                    if (startsWithNonTerminal) {
-                        plusRawProbability(i, (NonTerminal) yRule.right[0], yRule.probability);
+                    double probability = yRule instanceof RepetitionRule ? ((RepetitionRule) yRule).startProbability : yRule.probability;
+                    for (int j = 0; j < yRule.right.length && yRule.right[j] instanceof NonTerminal; j++) {
+                        final NonTerminal Y = (NonTerminal) yRule.right[j];
+                        plusRawProbability(i, Y, probability);
+                        if (nullProbabilities == null || !nullProbabilities.isNullable(Y)) break;
+                        probability *= nullProbabilities.getProbability(Y);
                     }
                 }
             }
@@ -0,0 +1,193 @@
+package org.leibnizcenter.cfg.grammar;
+
+import org.leibnizcenter.cfg.algebra.semiring.dbl.DblSemiring;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.rule.Rule;
+import org.leibnizcenter.cfg.util.MyMultimap;
+
+import java.util.*;
+
+/**
+ * <p>
+ * For every non-terminal X, the probability that X derives the empty string, <code>P(X =*> ε)</code>, and the most
+ * probable single derivation of the empty string. The parser uses these to move the dot over nullable non-terminals as
+ * soon as it reaches them, instead of predicting and completing ε-rules (Aycock and Horspool, "Practical Earley
+ * Parsing", 2002). Following Stolcke (1995, section 4.7), the left-corner and unit-production relations of the grammar
+ * take these probabilities into account as well.
+ * </p>
+ * Immutable.
+ */
+public final class NullProbabilities {
+    /**
+     * Maximum number of iterations for the fixpoint of the summed probabilities, which only converges in the limit
+     * when a non-terminal has infinitely many derivations of the empty string
+     */
+    private static final int MAX_ITERATIONS = 10000;
+    private static final double TOLERANCE = 1E-15;
+
+    private final Map<Category, Integer> index = new HashMap<>();
+    private final double[] probability;
+    private final double[] score;
+    private final double[] viterbiScore;
+    private final Rule[] viterbiRule;
+
+    NullProbabilities(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] nonTerminals, final DblSemiring semiring) {
+        final boolean[] nullable = findNullable(rules, nonTerminals);
+        for (int i = 0; i < nonTerminals.length; i++) if (nullable[i]) index.put(nonTerminals[i], index.size());
+
+        final NonTerminal[] nullables = new NonTerminal[index.size()];
+        index.forEach((nonTerminal, i) -> nullables[i] = (NonTerminal) nonTerminal);
+
+        probability = sumProbabilities(rules, nullables);
+        viterbiRule = new Rule[nullables.length];
+        final double[] viterbiProbability = maxProbabilities(rules, nullables, viterbiRule);
+
+        score = new double[nullables.length];
+        viterbiScore = new double[nullables.length];
+        for (int i = 0; i < nullables.length; i++) {
+            score[i] = semiring.fromProbability(probability[i]);
+            viterbiScore[i] = semiring.fromProbability(viterbiProbability[i]);
+        }
+    }
+
+    /**
+     * @return The non-terminals that can derive the empty string with given rules
+     */
+    static Set<NonTerminal> findNullable(final MyMultimap<NonTerminal, Rule> rules) {
+        final Set<NonTerminal> nonTerminals = new HashSet<>(rules.keys());
+        for (final Rule rule : rules.values())
+            for (final Category category : rule.right) if (category instanceof NonTerminal) nonTerminals.add((NonTerminal) category);
+        final NonTerminal[] nonTerminalsArr = nonTerminals.toArray(new NonTerminal[nonTerminals.size()]);
+        final boolean[] nullable = findNullable(rules, nonTerminalsArr);
+
+        final Set<NonTerminal> result = new HashSet<>();
+        for (int i = 0; i < nonTerminalsArr.length; i++) if (nullable[i]) result.add(nonTerminalsArr[i]);
+        return result;
+    }
+
+    /**
+     * @return For every non-terminal, whether it can derive the empty string
+     */
+    private static boolean[] findNullable(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] nonTerminals) {
+        final Map<NonTerminal, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < nonTerminals.length; i++) indexOf.put(nonTerminals[i], i);
+        final boolean[] nullable = new boolean[nonTerminals.length];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < nonTerminals.length; i++)
+                if (!nullable[i]) {
+                    final Collection<Rule> rulesForX = rules.get(nonTerminals[i]);
+                    if (rulesForX != null) for (final Rule rule : rulesForX)
+                        if (rule.probability > 0.0 && allNullable(rule, indexOf, nullable)) {
+                            nullable[i] = true;
+                            changed = true;
+                            break;
+                        }
+                }
+        }
+        return nullable;
+    }
+
+    private static boolean allNullable(final Rule rule, final Map<NonTerminal, Integer> indexOf, final boolean[] nullable) {
+        for (final Category category : rule.right)
+            if (!(category instanceof NonTerminal) || !nullable[indexOf.get(category)]) return false;
+        return true;
+    }
+
+    /**
+     * Solves <code>e(X) = Σ P(X → Y1 ... Yn) e(Y1) ... e(Yn)</code> by fixpoint iteration, which converges from below
+     */
+    private double[] sumProbabilities(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] nullables) {
+        final double[] e = new double[nullables.length];
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double maxChange = 0.0;
+            for (int i = 0; i < nullables.length; i++) {
+                double sum = 0.0;
+                for (final Rule rule : rules.get(nullables[i])) sum += product(rule, e);
+                maxChange = Math.max(maxChange, Math.abs(sum - e[i]));
+                e[i] = sum;
+            }
+            if (maxChange <= TOLERANCE) break;
+        }
+        return e;
+    }
+
+    /**
+     * Solves <code>v(X) = max P(X → Y1 ... Yn) v(Y1) ... v(Yn)</code>. Best derivations never repeat a non-terminal on a
+     * path, so this takes at most as many rounds as there are nullable non-terminals.
+     */
+    private double[] maxProbabilities(final MyMultimap<NonTerminal, Rule> rules, final NonTerminal[] nullables, final Rule[] bestRules) {
+        final double[] v = new double[nullables.length];
+        boolean changed = true;
+        for (int round = 0; changed && round <= nullables.length; round++) {
+            changed = false;
+            for (int i = 0; i < nullables.length; i++)
+                for (final Rule rule : rules.get(nullables[i])) {
+                    final double p = product(rule, v);
+                    if (p > v[i]) {
+                        v[i] = p;
+                        bestRules[i] = rule;
+                        changed = true;
+                    }
+                }
+        }
+        return v;
+    }
+
+    /**
+     * @return Probability of the rule times the given probabilities of its right hand side, or 0 if the right hand
+     * side is not nullable
+     */
+    private double product(final Rule rule, final double[] probabilities) {
+        double p = rule.probability;
+        for (final Category category : rule.right) {
+            final Integer i = index.get(category);
+            if (i == null) return 0.0;
+            p *= probabilities[i];
+        }
+        return p;
+    }
+
+    /**
+     * @return Whether no non-terminal in the grammar derives the empty string
+     */
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    public boolean isNullable(final Category category) {
+        return index.containsKey(category);
+    }
+
+    /**
+     * @return <code>P(X =*> ε)</code>, or 0 if given category is not nullable
+     */
+    public double getProbability(final Category X) {
+        final Integer i = index.get(X);
+        return i == null ? 0.0 : probability[i];
+    }
+
+    /**
+     * @return <code>P(X =*> ε)</code> as semiring element. Given category must be nullable.
+     */
+    public double getScore(final Category X) {
+        return score[index.get(X)];
+    }
+
+    /**
+     * @return Probability of the most probable derivation of ε from X, as semiring element. Given category must be nullable.
+     */
+    public double getViterbiScore(final Category X) {
+        return viterbiScore[index.get(X)];
+    }
+
+    /**
+     * @return First rule of the most probable derivation of ε from X, of which all right hand side categories are
+     * nullable. Given category must be nullable.
+     */
+    public Rule getViterbiRule(final Category X) {
+        return viterbiRule[index.get(X)];
+    }
+}
@@ -7,6 +7,7 @@ import org.leibnizcenter.cfg.util.MyMultimap;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Contains probabilities as semiring elements
@@ -15,6 +16,15 @@ public class ScoresAsSemiringElements {
     private final double[][] mapToSemiringElements;
     private final MyMultimap<NonTerminal, NonTerminal> nonZeroNonTerminalScores;
     private final Map<Category, Integer> mapToIndex;
+    /**
+     * Reverse relation in compressed sparse row form: for the category with index <code>y</code>, the categories
+     * <code>Z</code> with a non-zero score to <code>y</code> are at
+     * <code>reverseFrom[reverseOffsets[y]] ... reverseFrom[reverseOffsets[y + 1] - 1]</code>, with their scores in
+     * {@link #reverseScores} at the same indices
+     */
+    private final int[] reverseOffsets;
+    private final NonTerminal[] reverseFrom;
+    private final double[] reverseScores;
 
     ScoresAsSemiringElements(final LeftCorners leftCorners, final DblSemiring semiring) {
         this.nonZeroNonTerminalScores = leftCorners.nonZeroScores;
@@ -29,6 +39,27 @@ public class ScoresAsSemiringElements {
                 toScore[catTo] = semiring.fromProbability(v);
             }
         }
+
+        final int n = mapToSemiringElements.length;
+        reverseOffsets = new int[n + 1];
+        final Set<Map.Entry<NonTerminal, Set<NonTerminal>>> nonZero = nonZeroNonTerminalScores.entries();
+        for (final Map.Entry<NonTerminal, Set<NonTerminal>> zToY : nonZero)
+            for (final NonTerminal Y : zToY.getValue()) reverseOffsets[mapToIndex.get(Y) + 1]++;
+        for (int y = 0; y < n; y++) reverseOffsets[y + 1] += reverseOffsets[y];
+        reverseFrom = new NonTerminal[reverseOffsets[n]];
+        reverseScores = new double[reverseOffsets[n]];
+        final int[] next = new int[n];
+        System.arraycopy(reverseOffsets, 0, next, 0, n);
+        for (final Map.Entry<NonTerminal, Set<NonTerminal>> zToY : nonZero) {
+            final NonTerminal Z = zToY.getKey();
+            final int z = mapToIndex.get(Z);
+            for (final NonTerminal Y : zToY.getValue()) {
+                final int y = mapToIndex.get(Y);
+                reverseFrom[next[y]] = Z;
+                reverseScores[next[y]] = mapToSemiringElements[z][y];
+                next[y]++;
+            }
+        }
     }
 
     private double[] getCategoryToScoreMap(final double zero, final int catFrom) {
@@ -49,6 +80,48 @@ public class ScoresAsSemiringElements {
         return nonZeroNonTerminalScores.get(Y);
     }
 
+    /**
+     * @return Index of given category in the reverse relation, or -1 if it has none
+     */
+    public int indexOf(final Category Y) {
+        final Integer index = mapToIndex.get(Y);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param y Index of category Y, as given by {@link #indexOf(Category)}
+     * @return First index of the categories Z with a non-zero score to Y
+     * @see #getReverseFrom(int)
+     */
+    public int reverseStart(final int y) {
+        return reverseOffsets[y];
+    }
+
+    /**
+     * @param y Index of category Y, as given by {@link #indexOf(Category)}
+     * @return Index after the last one of the categories Z with a non-zero score to Y
+     * @see #getReverseFrom(int)
+     */
+    public int reverseEnd(final int y) {
+        return reverseOffsets[y + 1];
+    }
+
+    /**
+     * @param i Index between {@link #reverseStart(int)} and {@link #reverseEnd(int)}
+     * @return Category Z with a non-zero score to Y
+     */
+    public NonTerminal getReverseFrom(final int i) {
+        return reverseFrom[i];
+    }
+
+    /**
+     * @param i Index between {@link #reverseStart(int)} and {@link #reverseEnd(int)}
+     * @return Score from {@link #getReverseFrom(int) Z} to Y, as semiring element
+     */
+    public double getReverseScore(final int i) {
+        return reverseScores[i];
+    }
+
     // todo param int not category?
     double get(final Category lhs, final Category rhs) {
         return mapToSemiringElements[mapToIndex.get(lhs)][mapToIndex.get(rhs)];
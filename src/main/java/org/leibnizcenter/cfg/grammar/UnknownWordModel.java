@@ -0,0 +1,209 @@
+package org.leibnizcenter.cfg.grammar;
+
+import org.leibnizcenter.cfg.algebra.semiring.dbl.ExpressionSemiring;
+import org.leibnizcenter.cfg.category.nonterminal.NonLexicalToken;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Guesses the categories of tokens that are not in the lexicon from their {@link WordShape signature}. Every signature
+ * maps to a small set of terminals, each with the probability that an unknown word with that signature is of that
+ * terminal type. Scanning an unknown token then only considers those terminals, instead of all terminals in the
+ * grammar like {@link org.leibnizcenter.cfg.earleyparser.scan.ScanMode#WILDCARD} does.
+ * </p>
+ * <p>
+ * The terminal sets and their probabilities are computed once, when the {@link Grammar} is built: from the categories
+ * of a vocabulary of known words, and from weights that are given explicitly for a signature. Unknown words with a
+ * signature that was never seen get the distribution over all known words.
+ * </p>
+ * Once the model is instantiated, it is immutable.
+ */
+public class UnknownWordModel<T> {
+    private final Function<Token<T>, String> signature;
+    private final Map<String, Guess<T>> guesses;
+    /**
+     * Guess for signatures that were never seen, or null if there is none
+     */
+    private final Guess<T> fallback;
+
+    private UnknownWordModel(final Function<Token<T>, String> signature, final Map<String, Guess<T>> guesses, final Guess<T> fallback) {
+        this.signature = signature;
+        this.guesses = guesses;
+        this.fallback = fallback;
+    }
+
+    public String getSignature(final Token<T> token) {
+        return signature.apply(token);
+    }
+
+    /**
+     * @return Terminals that given unknown token probably has, with their probabilities, or null if the model can not
+     * guess anything
+     */
+    public Guess<T> guess(final Token<T> token) {
+        final Guess<T> guess = guesses.get(getSignature(token));
+        return guess != null ? guess : fallback;
+    }
+
+    /**
+     * Terminals for a signature, with their probabilities as semiring elements of the grammar
+     */
+    public static class Guess<T> {
+        public final Set<Terminal<T>> categories;
+        private final List<Terminal<T>> terminals;
+        private final double[] probabilities;
+        private final double[] weights;
+
+        private Guess(final List<Terminal<T>> terminals, final double[] probabilities, final ExpressionSemiring semiring) {
+            this.terminals = Collections.unmodifiableList(terminals);
+            this.categories = Collections.unmodifiableSet(new HashSet<>(terminals));
+            this.probabilities = probabilities;
+            this.weights = new double[probabilities.length];
+            for (int i = 0; i < probabilities.length; i++) weights[i] = semiring.fromProbability(probabilities[i]);
+        }
+
+        public int size() {
+            return terminals.size();
+        }
+
+        public Terminal<T> getTerminal(final int i) {
+            return terminals.get(i);
+        }
+
+        public double getProbability(final int i) {
+            return probabilities[i];
+        }
+
+        /**
+         * @return Probability of the i'th terminal, as a semiring element
+         */
+        public double getWeight(final int i) {
+            return weights[i];
+        }
+
+        /**
+         * @return Probability of given terminal, or 0.0 if it is not guessed
+         */
+        public double getProbability(final Terminal<T> terminal) {
+            final int i = terminals.indexOf(terminal);
+            return i < 0 ? 0.0 : probabilities[i];
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i < terminals.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(terminals.get(i)).append('=').append(probabilities[i]);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    /**
+     * Collects the vocabulary and weights for an {@link UnknownWordModel}. Pass it to
+     * {@link Grammar.Builder#withUnknownWordModel(Builder)}; the model itself is built along with the grammar.
+     */
+    public static class Builder<T> {
+        private final List<Token<T>> vocabulary = new ArrayList<>();
+        private final Map<String, Map<Terminal<T>, Double>> explicitWeights = new LinkedHashMap<>();
+        private Function<Token<T>, String> signature = WordShape::of;
+        private int maxTerminalsPerSignature = Integer.MAX_VALUE;
+
+        /**
+         * @param signature Function that maps a token to its signature. Defaults to {@link WordShape#of(Token)}.
+         */
+        public Builder<T> withSignature(final Function<Token<T>, String> signature) {
+            this.signature = signature;
+            return this;
+        }
+
+        /**
+         * Adds known words. The categories of every word count towards the probabilities of the terminals for its
+         * signature, where a word with n categories contributes 1/n to each of them. Words that are not in the
+         * lexicon of the grammar are ignored.
+         */
+        public Builder<T> addWords(final Collection<Token<T>> words) {
+            vocabulary.addAll(words);
+            return this;
+        }
+
+        public Builder<T> addWord(final Token<T> word) {
+            vocabulary.add(word);
+            return this;
+        }
+
+        /**
+         * Adds given weight to given terminal for given signature, on top of what is counted from the vocabulary.
+         *
+         * @throws IllegalArgumentException if the weight is negative
+         */
+        public Builder<T> addWeight(final String signature, final Terminal<T> terminal, final double weight) {
+            if (weight < 0.0) throw new IllegalArgumentException("Weight must be non-negative, but was " + weight);
+            explicitWeights.computeIfAbsent(signature, ignored -> new LinkedHashMap<>()).merge(terminal, weight, Double::sum);
+            return this;
+        }
+
+        /**
+         * Keeps only the most likely terminals for each signature, so that scanning an unknown word stays cheap
+         */
+        public Builder<T> withMaxTerminalsPerSignature(final int maxTerminalsPerSignature) {
+            if (maxTerminalsPerSignature < 1)
+                throw new IllegalArgumentException("Need at least one terminal per signature, but got " + maxTerminalsPerSignature);
+            this.maxTerminalsPerSignature = maxTerminalsPerSignature;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a weight is given for a terminal that does not occur in the grammar
+         */
+        UnknownWordModel<T> build(final Grammar<T> grammar) {
+            final Map<String, Map<Terminal<T>, Double>> counts = new LinkedHashMap<>();
+            final Map<Terminal<T>, Double> allCounts = new LinkedHashMap<>();
+            for (final Token<T> word : vocabulary) {
+                final Set<Terminal<T>> categories = grammar.getCategories(word);
+                if (categories == null || categories.isEmpty()) continue;
+                final Map<Terminal<T>, Double> countsForSignature = counts.computeIfAbsent(signature.apply(word), ignored -> new LinkedHashMap<>());
+                final double share = 1.0 / categories.size();
+                for (final Terminal<T> category : categories) {
+                    countsForSignature.merge(category, share, Double::sum);
+                    allCounts.merge(category, share, Double::sum);
+                }
+            }
+            explicitWeights.forEach((sig, weights) -> weights.forEach((terminal, weight) -> {
+                if (!grammar.terminals.contains(terminal) || terminal instanceof NonLexicalToken)
+                    throw new IllegalArgumentException("Terminal " + terminal + " does not occur in the grammar");
+                counts.computeIfAbsent(sig, ignored -> new LinkedHashMap<>()).merge(terminal, weight, Double::sum);
+            }));
+
+            final Map<String, Guess<T>> guesses = new HashMap<>(counts.size() * 2);
+            counts.forEach((sig, countsForSignature) -> {
+                final Guess<T> guess = toGuess(countsForSignature, grammar.semiring);
+                if (guess != null) guesses.put(sig, guess);
+            });
+            return new UnknownWordModel<>(signature, guesses, toGuess(allCounts, grammar.semiring));
+        }
+
+        private Guess<T> toGuess(final Map<Terminal<T>, Double> counts, final ExpressionSemiring semiring) {
+            final List<Map.Entry<Terminal<T>, Double>> entries = new ArrayList<>(counts.entrySet());
+            entries.removeIf(e -> e.getValue() <= 0.0);
+            // Stable sort, so terminals with equal weight stay in the order they were counted in
+            entries.sort((e1, e2) -> Double.compare(e2.getValue(), e1.getValue()));
+            if (entries.size() > maxTerminalsPerSignature) entries.subList(maxTerminalsPerSignature, entries.size()).clear();
+            if (entries.isEmpty()) return null;
+
+            final double sum = entries.stream().mapToDouble(Map.Entry::getValue).sum();
+            final List<Terminal<T>> terminals = new ArrayList<>(entries.size());
+            final double[] probabilities = new double[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                terminals.add(entries.get(i).getKey());
+                probabilities[i] = entries.get(i).getValue() / sum;
+            }
+            return new Guess<>(terminals, probabilities, semiring);
+        }
+    }
+}
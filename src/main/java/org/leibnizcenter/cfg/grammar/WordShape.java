@@ -0,0 +1,66 @@
+package org.leibnizcenter.cfg.grammar;
+
+import org.leibnizcenter.cfg.token.Token;
+
+/**
+ * <p>
+ * Computes the shape of a word, such as <code>UNK-INITC-s:ed</code> for "Walked": a coarse signature of its
+ * capitalization, digits, dashes and suffix. Words that are not in the lexicon but share a shape tend to share their
+ * categories, which is what {@link UnknownWordModel} uses signatures for.
+ * </p>
+ * <p>
+ * This follows the unknown word classes of the Berkeley parser, simplified to a single suffix length.
+ * </p>
+ */
+public final class WordShape {
+    /**
+     * Number of characters of the suffix that is part of the signature
+     */
+    public static final int SUFFIX_LENGTH = 2;
+    /**
+     * Words shorter than this do not get a suffix in their signature, because their suffix says little about them
+     */
+    private static final int MIN_LENGTH_FOR_SUFFIX = 4;
+
+    private WordShape() {
+    }
+
+    /**
+     * @return Signature for the string representation of given token
+     */
+    public static <T> String of(final Token<T> token) {
+        return of(String.valueOf(token.obj));
+    }
+
+    public static String of(final String word) {
+        final StringBuilder sb = new StringBuilder("UNK");
+
+        int letters = 0;
+        int upperCase = 0;
+        boolean hasDigit = false;
+        boolean hasDash = false;
+        for (int i = 0; i < word.length(); i++) {
+            final char c = word.charAt(i);
+            if (Character.isLetter(c)) {
+                letters++;
+                if (Character.isUpperCase(c)) upperCase++;
+            } else if (Character.isDigit(c)) hasDigit = true;
+            else if (c == '-') hasDash = true;
+        }
+
+        if (letters > 0) {
+            if (upperCase == letters) sb.append("-CAPS");
+            else if (Character.isUpperCase(word.charAt(0))) sb.append("-INITC");
+            else if (upperCase > 0) sb.append("-MIXED");
+            else sb.append("-LC");
+        }
+        if (hasDigit) sb.append("-NUM");
+        if (hasDash) sb.append("-DASH");
+        if (word.length() >= MIN_LENGTH_FOR_SUFFIX) {
+            final char last = word.charAt(word.length() - 1);
+            if (Character.isLetter(last))
+                sb.append("-s:").append(word.substring(word.length() - SUFFIX_LENGTH).toLowerCase());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package org.leibnizcenter.cfg.rule;
+
+import org.leibnizcenter.cfg.algebra.semiring.dbl.DblSemiring;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.Repetition;
+import org.leibnizcenter.cfg.grammar.Grammar;
+
+/**
+ * <p>
+ * The looping rule <code>X+ → X</code> or <code>X* → X</code> of a {@link Repetition}. Its completed dotted rule
+ * <code>X+ → X·</code> is active on X as well, and moving the dot over one more X leaves it where it is. So all
+ * repetitions of X re-enter the same state, and they all end up as children of one node in the parse tree.
+ * </p>
+ * <p>
+ * With p the probability of one more repetition, a derivation with n repetitions has probability
+ * <code>(1 - p) p<sup>n - 1</sup></code> for X+ and <code>(1 - p) p<sup>n</sup></code> for X*, which also has the
+ * rule <code>X* → ε (1 - p)</code>. The probability of this rule is that of stopping after the first repetition,
+ * <code>(1 - p)</code> for X+ and <code>p (1 - p)</code> for X*, and every further repetition multiplies it by p.
+ * </p>
+ *
+ * @see Grammar.Builder
+ */
+public class RepetitionRule extends Rule {
+    public final Repetition repetition;
+    /**
+     * Probability of the first repetition, whether more follow or not: 1 for X+ and p for X*. This is the left-corner
+     * probability of X in X+ or X*, and the factor for the forward score of the predicted state.
+     */
+    public final double startProbability;
+    public final double startProbabilityAsSemiringElement;
+    /**
+     * Probability p of one more repetition, as semiring element
+     */
+    public final double continueProbabilityAsSemiringElement;
+
+    RepetitionRule(final DblSemiring semiring, final Repetition repetition) {
+        super(getProbability(repetition), semiring.fromProbability(getProbability(repetition)), repetition, repetition.repeated);
+        this.repetition = repetition;
+        this.startProbability = repetition.allowEmpty ? repetition.continueProbability : 1.0;
+        this.startProbabilityAsSemiringElement = semiring.fromProbability(startProbability);
+        this.continueProbabilityAsSemiringElement = semiring.fromProbability(repetition.continueProbability);
+    }
+
+    /**
+     * @param semiring Semiring to use, usually {@link org.leibnizcenter.cfg.algebra.semiring.dbl.LogSemiring LogSemiring}
+     * @return The looping rule for given repetition
+     */
+    public static RepetitionRule create(final DblSemiring semiring, final Repetition repetition) {
+        return new RepetitionRule(semiring, repetition);
+    }
+
+    private static double getProbability(final Repetition repetition) {
+        final double stop = 1.0 - repetition.continueProbability;
+        return repetition.allowEmpty ? repetition.continueProbability * stop : stop;
+    }
+
+    /**
+     * @return The repeated category, also if the dot is at the end
+     */
+    @Override
+    public Category getActiveCategory(final int dotPosition) {
+        return dotPosition == right.length ? right[0] : super.getActiveCategory(dotPosition);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof RepetitionRule && super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
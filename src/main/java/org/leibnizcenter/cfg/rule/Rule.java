@@ -18,9 +18,7 @@ import java.util.stream.Stream;
  * Rules contain a single {@link Category category} on the
  * {@link Rule#getLeft() left side} that produces the series of category on
  * the {@link Rule#getRight() right side}. Rules that license empty productions
- * (have an empty right side) can be specified with a rule that has a right
- * side of length <code>1</code> whose member is an empty string. A rule that
- * contains a terminal on the right must contain <em>only</em> that terminal.
+ * (ε-rules) have a right side of length <code>0</code>.
  *
  * Rules are immutable and cannot be changed once instantiated.
  *
@@ -52,7 +50,6 @@ public class Rule {
      * @throws IllegalArgumentException If
      *                                  <ol>
      *                                  <li>the specified left or right category are <code>null</code>,</li>
-     *                                  <li>the right series is zero-length,</li>
      *                                  <li>the right side contains a <code>null</code> category.</li>
      *                                  </ol>
      */
@@ -60,7 +57,7 @@ public class Rule {
         this.probabilityAsSemiringElement = probabilityAsSemiringElement == -0.0 ? 0.0 : probabilityAsSemiringElement;
         this.probability = (probability == -0.0) ? 0.0 : probability;
         if (left == null) throw new IllegalArgumentException("empty left category");
-        if (right == null || right.length == 0) throw new IllegalArgumentException("no right category");
+        if (right == null) throw new IllegalArgumentException("no right category");
 
         // check for nulls on right
         for (final Category r : right)
@@ -130,7 +127,7 @@ public class Rule {
      * dot position in the underlying rule's
      * {@link Rule#getRight() right side category sequence}. If this rule's
      * dot position is already at the end of the right side category sequence,
-     * returns <code>null</code>.
+     * returns <code>null</code>, except for a {@link RepetitionRule}, which is active on one more repetition.
      */
     public Category getActiveCategory(final int dotPosition) {
         if (dotPosition < 0 || dotPosition > right.length) throw new InvalidDotPosition(dotPosition, right);
@@ -208,6 +205,7 @@ public class Rule {
     public String toString() {
         final StringBuilder sb = new StringBuilder(left.toString());
         sb.append(" →");
+        if (right.length == 0) sb.append(" ε");
 
         for (final Category aRight : right) {
             sb.append(' '); // space between category
@@ -253,5 +251,14 @@ public class Rule {
         return right.length == 1 && right[0] instanceof NonTerminal;
     }
 
+    /**
+     * Runs in O(1)
+     *
+     * @return Whether this is an ε-rule, i.e. of form X → ε
+     */
+    public boolean isEmpty() {
+        return right.length == 0;
+    }
+
 
 }
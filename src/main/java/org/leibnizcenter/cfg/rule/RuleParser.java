@@ -4,6 +4,7 @@ import org.leibnizcenter.cfg.algebra.semiring.dbl.DblSemiring;
 import org.leibnizcenter.cfg.category.Category;
 import org.leibnizcenter.cfg.category.nonterminal.NonLexicalToken;
 import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.nonterminal.Repetition;
 import org.leibnizcenter.cfg.category.terminal.Terminal;
 import org.leibnizcenter.cfg.category.terminal.stringterminal.RegexTerminal;
 import org.leibnizcenter.cfg.earleyparser.ParseTree;
@@ -64,6 +65,12 @@ public class RuleParser {
     private static final Pattern RULE = Pattern.compile("\\s*([^\\s]+)\\s*(?:->|→)((?:\\s*[^\\s(]+\\s*)+)\\s*(?:\\(([0-9](?:[.,][0-9]+)?)\\))?\\s*");
 
     private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    /**
+     * Right hand side of an ε-rule
+     */
+    private static final String EMPTY_RHS = "ε";
+    private static final char ONE_OR_MORE = '+';
+    private static final char ZERO_OR_MORE = '*';
 
     private final Function<String, Category> parseCategory;
     private final DblSemiring semiring;
@@ -177,20 +184,44 @@ public class RuleParser {
         final boolean isRegex = parseTree.category.equals(REGEX);
         if (!isSimpleCategory && !isRegex) throw new IllegalStateException("Error while parsing grammar");
         //noinspection unchecked
-        return isRegex ? parseRegexTerminal(parseTree) : parseCategory.apply(parseTree.children.stream()
+        return isRegex ? parseRegexTerminal(parseTree) : parseSimpleCategory(parseTree.children.stream()
                 .map(t -> (ParseTree.Leaf<String>) t)
                 .map(t -> t.token.obj)
                 .collect(Collectors.joining()));
     }
 
+    /**
+     * @return The category for given string, where a non-terminal followed by '+' or '*' is a {@link Repetition}
+     */
+    private Category parseSimpleCategory(final String category) {
+        final char last = category.charAt(category.length() - 1);
+        if (category.length() > 1 && (last == ONE_OR_MORE || last == ZERO_OR_MORE)) {
+            final Category repeated = parseCategory.apply(category.substring(0, category.length() - 1));
+            if (repeated instanceof NonTerminal)
+                return new Repetition((NonTerminal) repeated, last == ZERO_OR_MORE, Repetition.DEFAULT_CONTINUE_PROBABILITY);
+        }
+        return parseCategory.apply(category);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the line is not a rule, or if its left hand side ends in '+' or '*', which
+     *                                  mark a repetition
+     */
     public Rule fromString(final String line) {
         final Matcher m = RULE.matcher(line);
         if (!m.matches())
             throw new IllegalArgumentException("String was not a valid rule: " + line);
         else {
-            final NonTerminal LHS = new NonTerminal(m.group(1));
-
-            final Category[] RHS = parseRHS(m.group(2).trim());
+            final String left = m.group(1);
+            final char last = left.charAt(left.length() - 1);
+            if (left.length() > 1 && (last == ONE_OR_MORE || last == ZERO_OR_MORE))
+                throw new IllegalArgumentException("Left hand side " + left + " ends in '" + last
+                        + "', which marks a repetition of " + left.substring(0, left.length() - 1)
+                        + " and can not be defined by rules: " + line);
+            final NonTerminal LHS = new NonTerminal(left);
+
+            final String rhs = m.group(2).trim();
+            final Category[] RHS = EMPTY_RHS.equals(rhs) ? new Category[0] : parseRHS(rhs);
 
             final String prob = m.group(3);
             final double probability = prob == null ? 1.0 : Double.parseDouble(prob);
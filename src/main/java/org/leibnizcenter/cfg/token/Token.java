@@ -21,6 +21,14 @@ public class Token<T> {
         this.obj = source;
     }
 
+    /**
+     * For subclasses that stand for a token that is not in the input, and that override {@link #toString()},
+     * {@link #equals(Object)} and {@link #hashCode()}
+     */
+    protected Token() {
+        this.obj = null;
+    }
+
     public static <T> Token<T> from(final T t) {
         if (t == null) return null;
         else return new Token<>(t);
@@ -0,0 +1,115 @@
+package org.leibnizcenter.cfg.token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Several candidate tokens for one input position, each with a probability, such as the output of a tagger that is
+ * not sure about a word. All alternatives are scanned at once, and the probability of an alternative is multiplied
+ * into the scores of the states that scan it.
+ * </p>
+ * Instances are immutable; use a {@link Builder} to create one.
+ */
+public class TokenAlternatives<T> {
+    private final List<Alternative<T>> alternatives;
+
+    private TokenAlternatives(final List<Alternative<T>> alternatives) {
+        this.alternatives = alternatives;
+    }
+
+    /**
+     * @return Alternatives for given tokens, which all have probability 1
+     */
+    @SafeVarargs
+    public static <T> TokenAlternatives<T> of(final Token<T>... tokens) {
+        final Builder<T> builder = new Builder<>();
+        for (final Token<T> token : tokens) builder.add(token);
+        return builder.build();
+    }
+
+    public List<Alternative<T>> getAlternatives() {
+        return alternatives;
+    }
+
+    /**
+     * @return The alternative with the highest probability (the first one if there is a tie)
+     */
+    public Alternative<T> getMostLikely() {
+        Alternative<T> best = alternatives.get(0);
+        for (final Alternative<T> alternative : alternatives)
+            if (alternative.probability > best.probability) best = alternative;
+        return best;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return alternatives.equals(((TokenAlternatives<?>) o).alternatives);
+    }
+
+    @Override
+    public int hashCode() {
+        return alternatives.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return alternatives.toString();
+    }
+
+    /**
+     * A token along with its probability
+     */
+    public static class Alternative<T> {
+        public final Token<T> token;
+        public final double probability;
+
+        public Alternative(final Token<T> token, final double probability) {
+            if (token == null) throw new NullPointerException("null token");
+            if (!(probability >= 0.0 && probability <= 1.0))
+                throw new IllegalArgumentException("Probability must be between 0 and 1, but got " + probability);
+            this.token = token;
+            this.probability = probability;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Alternative<?> that = (Alternative<?>) o;
+            return Double.compare(that.probability, probability) == 0 && token.equals(that.token);
+        }
+
+        @Override
+        public int hashCode() {
+            final long bits = Double.doubleToLongBits(probability);
+            return 31 * token.hashCode() + (int) (bits ^ (bits >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return token + " (" + probability + ')';
+        }
+    }
+
+    public static class Builder<T> {
+        private final List<Alternative<T>> alternatives = new ArrayList<>();
+
+        public Builder<T> add(final Token<T> token, final double probability) {
+            alternatives.add(new Alternative<>(token, probability));
+            return this;
+        }
+
+        public Builder<T> add(final Token<T> token) {
+            return add(token, 1.0);
+        }
+
+        public TokenAlternatives<T> build() {
+            if (alternatives.isEmpty()) throw new IllegalStateException("Need at least one alternative");
+            return new TokenAlternatives<>(Collections.unmodifiableList(new ArrayList<>(alternatives)));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.leibnizcenter.cfg.token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * A directed acyclic graph of weighted token hypotheses, such as a word lattice produced by a speech recognizer.
+ * Nodes are numbered <code>0..n</code> and correspond to chart positions: node 0 is the start of the input, node n is the end.
+ * Every edge goes from a lower to a higher node number, so the node numbering is a topological order.
+ * </p>
+ * <p>
+ * Every path from node 0 to node n is one tokenization of the input, and its probability is the product of the
+ * probabilities of its edges.
+ * </p>
+ * Lattices are immutable; use a {@link Builder} to create one.
+ */
+public class TokenLattice<T> {
+    private final List<List<Edge<T>>> outgoing;
+
+    private TokenLattice(final List<List<Edge<T>>> outgoing) {
+        this.outgoing = outgoing;
+    }
+
+    /**
+     * @return A lattice that contains exactly one path, which has given tokens with probability 1
+     */
+    public static <T> TokenLattice<T> fromTokens(final Iterable<Token<T>> tokens) {
+        final Builder<T> builder = new Builder<>();
+        int i = 0;
+        for (final Token<T> token : tokens) {
+            builder.addEdge(i, i + 1, token);
+            i++;
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return The last node, which all complete paths end in
+     */
+    public int getFinalNode() {
+        return outgoing.size() - 1;
+    }
+
+    /**
+     * @return All edges that start at given node
+     */
+    public List<Edge<T>> getOutgoing(final int node) {
+        return outgoing.get(node);
+    }
+
+    /**
+     * An edge in a {@link TokenLattice}
+     */
+    public static class Edge<T> {
+        public final int from;
+        public final int to;
+        public final Token<T> token;
+        public final double probability;
+
+        public Edge(final int from, final int to, final Token<T> token, final double probability) {
+            if (from < 0 || to <= from)
+                throw new IllegalArgumentException("Edges must go from a lower to a higher node, but got " + from + " → " + to);
+            if (token == null) throw new NullPointerException("null token on edge " + from + " → " + to);
+            if (!(probability >= 0.0 && probability <= 1.0))
+                throw new IllegalArgumentException("Probability must be between 0 and 1, but got " + probability);
+            this.from = from;
+            this.to = to;
+            this.token = token;
+            this.probability = probability;
+        }
+
+        @Override
+        public String toString() {
+            return from + " → " + to + ": " + token + " (" + probability + ')';
+        }
+    }
+
+    public static class Builder<T> {
+        private final List<Edge<T>> edges = new ArrayList<>();
+        private int finalNode = 0;
+
+        public Builder<T> addEdge(final int from, final int to, final Token<T> token, final double probability) {
+            edges.add(new Edge<>(from, to, token, probability));
+            finalNode = Math.max(finalNode, to);
+            return this;
+        }
+
+        public Builder<T> addEdge(final int from, final int to, final Token<T> token) {
+            return addEdge(from, to, token, 1.0);
+        }
+
+        public TokenLattice<T> build() {
+            final List<List<Edge<T>>> outgoing = new ArrayList<>(finalNode + 1);
+            for (int i = 0; i <= finalNode; i++) outgoing.add(new ArrayList<>());
+            edges.forEach(edge -> outgoing.get(edge.from).add(edge));
+            for (int i = 0; i <= finalNode; i++) outgoing.set(i, Collections.unmodifiableList(outgoing.get(i)));
+            return new TokenLattice<>(Collections.unmodifiableList(outgoing));
+        }
+    }
+}
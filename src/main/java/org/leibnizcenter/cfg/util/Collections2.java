@@ -152,6 +152,13 @@ public class Collections2 {
     }
 
 
+    /**
+     * Removes all elements at or after given size. Runs in time proportional to the number of removed elements.
+     */
+    public static void truncate(final List<?> list, final int size) {
+        if (list.size() > size) list.subList(size, list.size()).clear();
+    }
+
     public static boolean containsKey(final List<?> list, final int position) {
         return list.size() > position && list.get(position) != null;
     }
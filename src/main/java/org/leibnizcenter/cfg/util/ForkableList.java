@@ -0,0 +1,101 @@
+package org.leibnizcenter.cfg.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List that can be {@link #fork() forked} in O(1): a fork reads the elements that existed when it was created from
+ * this list, and keeps the elements that are added after that itself. Elements can only be added at the end.
+ * <p>
+ * After forking, the elements that the fork shares may no longer change in this list: they can not be set, and the
+ * list can not be truncated to before them. A fork may be truncated to before the elements it shares, because those
+ * do not change anymore.
+ */
+public class ForkableList<E> extends AbstractList<E> {
+    /**
+     * List that holds all elements before {@link #base}, or null
+     */
+    private final ForkableList<E> parent;
+    private final List<E> elements = new ArrayList<>();
+    private int base;
+    /**
+     * Elements before this index are shared with forks, and may not change anymore
+     */
+    private int frozenBefore = 0;
+
+    public ForkableList() {
+        this(null, 0);
+    }
+
+    private ForkableList(final ForkableList<E> parent, final int base) {
+        this.parent = parent;
+        this.base = base;
+    }
+
+    /**
+     * @return List with the same elements as this one, that can be changed independently from this one
+     */
+    public ForkableList<E> fork() {
+        frozenBefore = Math.max(frozenBefore, size());
+        return new ForkableList<>(this, size());
+    }
+
+    @Override
+    public E get(final int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        return index < base ? parent.get(index) : elements.get(index - base);
+    }
+
+    @Override
+    public int size() {
+        return base + elements.size();
+    }
+
+    @Override
+    public E set(final int index, final E element) {
+        if (index < frozenBefore || index < base)
+            throw new IllegalStateException("Can not change element " + index + ", because it is shared with a fork");
+        if (index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        return elements.set(index - base, element);
+    }
+
+    /**
+     * @param index Must be the size of this list
+     */
+    @Override
+    public void add(final int index, final E element) {
+        if (index != size()) throw new UnsupportedOperationException("Can only add elements at the end");
+        elements.add(element);
+        modCount++;
+    }
+
+    /**
+     * @param index Must be the last index of this list
+     */
+    @Override
+    public E remove(final int index) {
+        if (index != size() - 1) throw new UnsupportedOperationException("Can only remove the last element");
+        final E removed = get(index);
+        removeRange(index, size());
+        return removed;
+    }
+
+    /**
+     * Removes all elements from <code>fromIndex</code> on. Runs in time proportional to the number of removed
+     * elements that this list keeps itself.
+     *
+     * @param toIndex Must be the size of this list
+     */
+    @Override
+    protected void removeRange(final int fromIndex, final int toIndex) {
+        if (toIndex != size()) throw new UnsupportedOperationException("Can only remove elements at the end");
+        if (fromIndex < frozenBefore)
+            throw new IllegalStateException("Can not remove element " + fromIndex + ", because it is shared with a fork");
+        if (fromIndex < base) {
+            elements.clear();
+            base = fromIndex;
+        } else Collections2.truncate(elements, fromIndex - base);
+        modCount++;
+    }
+}
@@ -43,6 +43,20 @@ public class MyMultimap<T, T1> {
         values.addAll(v);
     }
 
+    /**
+     * Removes given value for given key. Runs in O(N) for N is the number of keys, because we need to check whether
+     * the value still occurs for another key.
+     *
+     * @return whether the value was present for the key
+     */
+    public boolean remove(final T k, final T1 v) {
+        final Set<T1> s = map.get(k);
+        if (s == null || !s.remove(v)) return false;
+        if (s.isEmpty()) map.remove(k);
+        if (map.values().stream().noneMatch(set -> set.contains(v))) values.remove(v);
+        return true;
+    }
+
     public boolean containsKey(final T s) {
         return map.containsKey(s);
     }
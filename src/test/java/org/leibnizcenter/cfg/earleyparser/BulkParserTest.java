@@ -0,0 +1,60 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkParserTest {
+    private static final NonTerminal S = Category.nonTerminal("S");
+    private static final Grammar<String> grammar = Grammar.fromString("S -> NP VP (1.0)\nNP -> i (0.5)\nNP -> \"ü\" (0.5)\nVP -> eat (0.5)\nVP -> \"sleep\" (0.5)");
+    private static final Parser<String> parser = new Parser<>(grammar);
+
+    private static void assertSameAsBatchMode(final String input, final int windowSize, final int unitSize) throws Exception {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        CommandLine.parseLines(parser, S, null, new BufferedReader(new StringReader(input)), new PrintStream(expected, true, "UTF-8"), null, 1);
+
+        final Path in = Files.createTempFile("bulk", ".txt");
+        final Path out = Files.createTempFile("bulk", ".jsonl");
+        try {
+            Files.write(in, input.getBytes(StandardCharsets.UTF_8));
+            new BulkParser(parser, S, null, 3, windowSize, unitSize).parse(in, out);
+            assertEquals(new String(expected.toByteArray(), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"),
+                    new String(Files.readAllBytes(out), StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    public void sameAsBatchMode() throws Exception {
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 40; i++) input.append(i % 5 == 4 ? "" : i % 3 == 2 ? "ü  dance" : i % 2 == 0 ? "i\teat" : " ü sleep\r").append('\n');
+        assertSameAsBatchMode(input.toString(), 64, 16);
+        assertSameAsBatchMode(input.toString(), 1 << 16, 1 << 10);
+        assertSameAsBatchMode(input + "i eat", 64, 16);
+        assertSameAsBatchMode("", 64, 16);
+    }
+
+    @Test
+    public void unterminatedLastLineLongerThanUnit() throws Exception {
+        assertSameAsBatchMode("i eat\ni eat i eat i eat", 64, 4);
+        assertSameAsBatchMode("i eat i eat i eat", 64, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lineLongerThanWindow() throws Exception {
+        assertSameAsBatchMode("i eat i eat i eat i eat\ni eat\n", 16, 8);
+    }
+}
@@ -0,0 +1,67 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.A;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.S;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.parser;
+
+public class CachingParserTest {
+    @Test
+    public void cachesResults() {
+        final CachingParser<String> cache = new CachingParser<>(parser, 10, 1000);
+        assertEquals(parser.recognize(S, Tokens.tokenize("a b a")), cache.recognize(S, Tokens.tokenize("a b a")), 0.0);
+        assertEquals(parser.recognize(S, Tokens.tokenize("a b a")), cache.recognize(S, Tokens.tokenize("a b a")), 0.0);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        final ParseTreeWithScore parse = cache.getViterbiParseWithScore(S, Tokens.tokenize("a b a"));
+        assertEquals(parser.getViterbiParseWithScore(S, Tokens.tokenize("a b a")), parse);
+        assertSame(parse, cache.getViterbiParseWithScore(S, Tokens.tokenize("a b a")));
+        assertSame(parse.parseTree, cache.getViterbiParse(S, Tokens.tokenize("a b a")));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        // Different goal is a different entry
+        cache.recognize(A, Tokens.tokenize("a b a"));
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final CachingParser<String> cache = new CachingParser<>(parser, 2, 1000);
+        cache.recognize(S, Tokens.tokenize("a"));
+        cache.recognize(S, Tokens.tokenize("a a"));
+        cache.recognize(S, Tokens.tokenize("a"));
+        cache.recognize(S, Tokens.tokenize("b a"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.recognize(S, Tokens.tokenize("a"));
+        assertEquals(2, cache.getHitCount());
+        cache.recognize(S, Tokens.tokenize("a a"));
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void boundsWeight() {
+        // <start> → S → A → a weighs 1 + 4
+        final CachingParser<String> cache = new CachingParser<>(parser, 100, 12);
+        cache.getViterbiParseWithScore(S, Tokens.tokenize("a"));
+        assertEquals(5, cache.getWeight());
+        cache.getViterbiParseWithScore(S, Tokens.tokenize("a a"));
+        assertEquals(1, cache.size());
+        assertEquals(9, cache.getWeight());
+        cache.recognize(S, Tokens.tokenize("a"));
+        assertEquals(10, cache.getWeight());
+
+        // Heavier than the whole cache: not cached
+        cache.getViterbiParseWithScore(S, Tokens.tokenize("a a a"));
+        assertEquals(10, cache.getWeight());
+        assertEquals(2, cache.size());
+    }
+}
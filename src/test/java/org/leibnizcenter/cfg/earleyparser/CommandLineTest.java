@@ -1,6 +1,16 @@
 package org.leibnizcenter.cfg.earleyparser;
 
 import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * Created by maarten on 8-2-17.
@@ -10,4 +20,46 @@ public class CommandLineTest {
     public void main() throws Exception {
     }
 
-}
\ No newline at end of file
+    @Test
+    public void parseLines() throws Exception {
+        final Grammar<String> grammar = Grammar.fromString("S -> NP VP (1.0)\nNP -> i (1.0)\nVP -> eat (0.5)\nVP -> \"sleep\" (0.5)");
+        final NonTerminal S = Category.nonTerminal("S");
+        final StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 50; i++) input.append(i % 3 == 2 ? "i dance" : i % 2 == 0 ? "i eat" : "i sleep").append('\n');
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(bytes, true, "UTF-8");
+        final long count = CommandLine.parseLines(new Parser<>(grammar), S, null,
+                new BufferedReader(new StringReader(input.toString())), out, null, 3);
+        assertEquals(50, count);
+
+        final String[] lines = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(50, lines.length);
+        assertEquals("{\"line\":0,\"probability\":0.5,\"tree\":{\"category\":\"<start>\",\"children\":[{\"category\":\"S\",\"children\":["
+                        + "{\"category\":\"NP\",\"children\":[{\"category\":\"i\",\"token\":\"i\"}]},"
+                        + "{\"category\":\"VP\",\"children\":[{\"category\":\"eat\",\"token\":\"eat\"}]}]}]}}",
+                lines[0]);
+        for (int i = 0; i < lines.length; i++) assertEquals(lines[i], true, lines[i].startsWith("{\"line\":" + i + ','));
+        assertEquals(true, lines[2].contains("\"tree\":null"));
+    }
+
+    @Test
+    public void batchFromStdinToOutputFile() throws Exception {
+        final File grammarFile = File.createTempFile("grammar", ".cfg");
+        final File outputFile = File.createTempFile("parses", ".jsonl");
+        final InputStream stdin = System.in;
+        try {
+            Files.write(grammarFile.toPath(), "S -> NP VP (1.0)\nNP -> i (1.0)\nVP -> eat (1.0)".getBytes(StandardCharsets.UTF_8));
+            System.setIn(new ByteArrayInputStream("i eat\ni eat\n".getBytes(StandardCharsets.UTF_8)));
+            CommandLine.main(new String[]{"-i", grammarFile.getPath(), "-goal", "S", "-threads", "1", "-batch", "-", "-o", outputFile.getPath()});
+
+            final List<String> lines = Files.readAllLines(outputFile.toPath(), StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertEquals(true, lines.get(1).startsWith("{\"line\":1,\"probability\":1.0,"));
+        } finally {
+            System.setIn(stdin);
+            Files.delete(grammarFile.toPath());
+            Files.delete(outputFile.toPath());
+        }
+    }
+}
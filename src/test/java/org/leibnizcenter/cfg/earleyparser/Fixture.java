@@ -3,6 +3,14 @@ package org.leibnizcenter.cfg.earleyparser;
 
 import org.leibnizcenter.cfg.category.Category;
 import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -19,4 +27,53 @@ public final class Fixture {
     public final static NonTerminal Y = Category.nonTerminal("Y");
     public final static NonTerminal Z = Category.nonTerminal("Z");
 
+    public final static NonTerminal S = Category.nonTerminal("S");
+    public final static Terminal<String> a = new ExactStringTerminal("a");
+    public final static Terminal<String> b = new ExactStringTerminal("b");
+
+    /**
+     * S → A (0.5) | S S (0.5), A → a (0.7) | B a (0.3), B → b (1.0)
+     */
+    public final static Grammar<String> grammar = new Grammar.Builder<String>()
+            .addRule(0.5, S, A)
+            .addRule(0.5, S, S, S)
+            .addRule(0.7, A, a)
+            .addRule(0.3, A, B, a)
+            .addRule(1.0, B, b)
+            .build();
+    public final static Parser<String> parser = new Parser<>(grammar);
+
+    /**
+     * S → A | S S, A → B | a, B → C | b S b, C → a b, for comparing recognizers
+     */
+    public final static Grammar<String> nestedGrammar = new Grammar.Builder<String>()
+            .addRule(0.5, S, A)
+            .addRule(0.5, S, S, S)
+            .addRule(0.5, A, B)
+            .addRule(0.5, A, a)
+            .addRule(0.5, B, C)
+            .addRule(0.5, B, b, S, b)
+            .addRule(1.0, C, a, b)
+            .build();
+
+    /**
+     * @return All strings of given words up to given length, shortest first, starting with the empty string
+     */
+    public static List<List<Token<String>>> allStrings(final int maxLength, final String... words) {
+        final List<List<Token<String>>> all = new ArrayList<>();
+        List<List<Token<String>>> strings = Collections.singletonList(new ArrayList<>());
+        for (int length = 0; length <= maxLength; length++) {
+            all.addAll(strings);
+            final List<List<Token<String>>> longer = new ArrayList<>();
+            for (final List<Token<String>> string : strings)
+                for (final String word : words) {
+                    final List<Token<String>> extended = new ArrayList<>(string);
+                    extended.add(new Token<>(word));
+                    longer.add(extended);
+                }
+            strings = longer;
+        }
+        return all;
+    }
+
 }
@@ -0,0 +1,110 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseBudget;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.S;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.parser;
+
+public class ParseBudgetTest {
+    private static ParseOptions<String> options(final ParseBudget budget) {
+        return new ParseOptions.Builder<String>().withBudget(budget).build();
+    }
+
+    private static ParseBudgetExceededException parseExpectingFailure(final String sentence, final ParseOptions<String> options) {
+        try {
+            parser.getViterbiParseWithScore(S, Tokens.tokenize(sentence), options);
+        } catch (final ParseBudgetExceededException e) {
+            return e;
+        }
+        throw new AssertionError("Expected parse to exceed its budget");
+    }
+
+    @Test
+    public void withinBudget() {
+        final ParseBudget budget = new ParseBudget.Builder()
+                .withMaxStates(10000)
+                .withMaxExpressionNodes(10000)
+                .withTimeout(1, TimeUnit.MINUTES)
+                .withCancellation(new AtomicBoolean(false))
+                .build();
+        assertEquals(
+                parser.getViterbiParseWithScore(S, Tokens.tokenize("a b a a")),
+                parser.getViterbiParseWithScore(S, Tokens.tokenize("a b a a"), options(budget))
+        );
+    }
+
+    @Test
+    public void maxStates() {
+        final ParseBudgetExceededException e = parseExpectingFailure("a a a a a a",
+                options(new ParseBudget.Builder().withMaxStates(20).build()));
+        assertEquals(ParseBudgetExceededException.Reason.MAX_STATES, e.reason);
+        assertTrue(e.stateCount > 20);
+        assertTrue(e.lastCompletePosition < 6);
+        assertNotNull(e.chart);
+    }
+
+    @Test
+    public void maxExpressionNodes() {
+        final ParseBudgetExceededException e = parseExpectingFailure("a a a a a a",
+                options(new ParseBudget.Builder().withMaxExpressionNodes(10).build()));
+        assertEquals(ParseBudgetExceededException.Reason.MAX_EXPRESSION_NODES, e.reason);
+        assertTrue(e.expressionNodeCount > 10);
+    }
+
+    @Test
+    public void cancellation() {
+        final ParseBudgetExceededException e = parseExpectingFailure("a a",
+                options(new ParseBudget.Builder().withCancellation(() -> true).build()));
+        assertEquals(ParseBudgetExceededException.Reason.CANCELLED, e.reason);
+        assertEquals(0, e.lastCompletePosition);
+    }
+
+    @Test
+    public void timeout() {
+        final ParseOptions<String> options = new ParseOptions.Builder<String>()
+                .withBudget(new ParseBudget.Builder().withTimeout(1, TimeUnit.MILLISECONDS).build())
+                .onPostScan((position, token, chart) -> {
+                    try {
+                        Thread.sleep(5);
+                    } catch (final InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                })
+                .build();
+        final ParseBudgetExceededException e = parseExpectingFailure("a a a", options);
+        assertEquals(ParseBudgetExceededException.Reason.TIMEOUT, e.reason);
+        assertTrue(e.elapsedNanos > TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void partialResult() {
+        // Cancel right after completing position 2
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final ParseOptions<String> options = new ParseOptions.Builder<String>()
+                .withBudget(new ParseBudget.Builder().withCancellation(cancelled).returnPartialResult().build())
+                .onPostComplete((position, token, chart) -> {
+                    if (position == 1) cancelled.set(true);
+                })
+                .build();
+
+        final ParseTreeWithScore partial = parser.getViterbiParseWithScore(S, Tokens.tokenize("a a a a"), options);
+        assertEquals(parser.getViterbiParseWithScore(S, Tokens.tokenize("a a")), partial);
+        assertEquals(0.06125, partial.score.getProbability(), 1E-9);
+
+        // No prefix is a sentence
+        cancelled.set(false);
+        final ParseBudgetExceededException e = parseExpectingFailure("b a a",
+                new ParseOptions.Builder<String>()
+                        .withBudget(new ParseBudget.Builder().withCancellation(cancelled).returnPartialResult().build())
+                        .onPostScan((position, token, chart) -> cancelled.set(true))
+                        .build());
+        assertEquals(ParseBudgetExceededException.Reason.CANCELLED, e.reason);
+    }
+}
@@ -0,0 +1,128 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.recognizer.BooleanRecognizer;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParseEmptyRulesTest {
+    private static final NonTerminal S = Category.nonTerminal("S");
+    private static final NonTerminal A = Category.nonTerminal("A");
+    private static final NonTerminal B = Category.nonTerminal("B");
+    private static final NonTerminal X = Category.nonTerminal("X");
+    private static final NonTerminal T = Category.nonTerminal("T");
+    private static final ExactStringTerminal a = new ExactStringTerminal("a");
+    private static final ExactStringTerminal b = new ExactStringTerminal("b");
+    private static final List<Token<String>> empty = Collections.emptyList();
+
+    /**
+     * Both parts of S are optional
+     */
+    private static final Grammar<String> optional = new Grammar.Builder<String>()
+            .addRule(1.0, S, A, B)
+            .addRule(0.6, A, a)
+            .addRule(0.4, A)
+            .addRule(0.7, B, b)
+            .addRule(0.3, B)
+            .build();
+
+    /**
+     * S completes itself through an empty X, so a single S has infinitely many derivations
+     */
+    private static final Grammar<String> cyclic = new Grammar.Builder<String>()
+            .addRule(0.5, S, S, X)
+            .addRule(0.5, S, a)
+            .addRule(0.5, X)
+            .addRule(0.5, X, b)
+            .build();
+
+    @Test
+    public void nullProbabilities() {
+        assertEquals(0.4, optional.nullProbabilities.getProbability(A), 1E-12);
+        assertEquals(0.12, optional.nullProbabilities.getProbability(S), 1E-12);
+        assertEquals(0.0, cyclic.nullProbabilities.getProbability(S), 0.0);
+        assertFalse(cyclic.nullProbabilities.isNullable(S));
+        assertTrue(new Grammar.Builder<String>().addRule(1.0, S, a).build().nullProbabilities.isEmpty());
+    }
+
+    @Test
+    public void optionalCategories() {
+        final Parser<String> parser = new Parser<>(optional);
+        assertEquals(0.42, parser.recognize(S, Tokens.tokenize("a b")), 1E-9);
+        assertEquals(0.18, parser.recognize(S, Tokens.tokenize("a")), 1E-9);
+        assertEquals(0.28, parser.recognize(S, Tokens.tokenize("b")), 1E-9);
+        assertEquals(0.12, parser.recognize(S, empty), 1E-9);
+        assertEquals(0.0, parser.recognize(S, Tokens.tokenize("b a")), 0.0);
+
+        final ParseTreeWithScore viterbi = parser.getViterbiParseWithScore(S, Tokens.tokenize("b"));
+        assertEquals(0.28, viterbi.getProbability(), 1E-9);
+        // S → A B, where A derives the empty string
+        final ParseTree s = viterbi.parseTree.getChildren().get(0);
+        assertEquals(S, s.category);
+        assertEquals(2, s.getChildren().size());
+        assertEquals(A, s.getChildren().get(0).category);
+        assertTrue(s.getChildren().get(0).getChildren().isEmpty());
+        assertEquals(B, s.getChildren().get(1).category);
+        assertEquals(b, s.getChildren().get(1).getChildren().get(0).category);
+    }
+
+    @Test
+    public void cycleThroughEmptyCategory() {
+        final Parser<String> parser = new Parser<>(cyclic);
+        // 0.5 * (1 + 0.25 + 0.25^2 + ...)
+        assertEquals(2.0 / 3.0, parser.recognize(S, Tokens.tokenize("a")), 1E-9);
+        // 0.5 * 0.5 * P(a) * (1 + 0.25 + 0.25^2 + ...)
+        assertEquals(2.0 / 9.0, parser.recognize(S, Tokens.tokenize("a b")), 1E-9);
+        assertEquals(0.5, parser.getViterbiParseWithScore(S, Tokens.tokenize("a")).getProbability(), 1E-9);
+        assertEquals(0.125, parser.getViterbiParseWithScore(S, Tokens.tokenize("a b")).getProbability(), 1E-9);
+    }
+
+    @Test
+    public void completedWithAndWithoutEmptyCategories() {
+        // S → A A spans "a a" as (aa, ε), (a, a) and (ε, aa). Only (a, a) may complete T through S itself;
+        // the other two reach T through the unit-production relation from A to S.
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(1.0, T, S, b)
+                .addRule(1.0, S, A, A)
+                .addRule(0.5, A, a, A)
+                .addRule(0.5, A)
+                .build();
+        assertEquals(0.125 * 0.5 + 0.25 * 0.25 + 0.5 * 0.125, new Parser<>(grammar).recognize(T, Tokens.tokenize("a a b")), 1E-9);
+    }
+
+    @Test
+    public void viterbiOnly() {
+        final ParseOptions<String> viterbiOnly = new ParseOptions.Builder<String>().viterbiOnly().build();
+        assertEquals(0.28, new Parser<>(optional).getViterbiParseWithScore(S, Tokens.tokenize("b"), viterbiOnly).getProbability(), 1E-9);
+        assertEquals(0.125, new Parser<>(cyclic).getViterbiParseWithScore(S, Tokens.tokenize("a b"), viterbiOnly).getProbability(), 1E-9);
+    }
+
+    @Test
+    public void fromString() {
+        final Grammar<String> grammar = Grammar.fromString("S -> A b\nA -> a (0.5)\nA -> ε (0.5)");
+        assertTrue(grammar.nullProbabilities.isNullable(A));
+        assertEquals(0.5, new Parser<>(grammar).recognize(S, Tokens.tokenize("b")), 1E-9);
+        assertEquals(0.5, new Parser<>(grammar).recognize(S, Tokens.tokenize("a b")), 1E-9);
+    }
+
+    @Test
+    public void booleanRecognizer() {
+        final BooleanRecognizer<String> recognizer = new BooleanRecognizer<>(optional);
+        assertTrue(recognizer.accepts(S, Tokens.tokenize("a b")));
+        assertTrue(recognizer.accepts(S, Tokens.tokenize("a")));
+        assertTrue(recognizer.accepts(S, Tokens.tokenize("b")));
+        assertTrue(recognizer.accepts(S, empty));
+        assertFalse(recognizer.accepts(S, Tokens.tokenize("b a")));
+        assertTrue(new BooleanRecognizer<>(cyclic).accepts(S, Tokens.tokenize("a b b")));
+    }
+}
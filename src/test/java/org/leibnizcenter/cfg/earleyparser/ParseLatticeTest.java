@@ -0,0 +1,76 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.TokenLattice;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.S;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.parser;
+
+public class ParseLatticeTest {
+    /**
+     * Paths: "a a" (0.6 * 0.5), "b a" (0.4 * 0.5), "b x" (0.4 * 0.5, unparsable) and "a" (0.2)
+     */
+    private static final TokenLattice<String> lattice = new TokenLattice.Builder<String>()
+            .addEdge(0, 1, new Token<>("a"), 0.6)
+            .addEdge(0, 1, new Token<>("b"), 0.4)
+            .addEdge(0, 3, new Token<>("a"), 0.2)
+            .addEdge(1, 3, new Token<>("a"), 0.5)
+            .addEdge(1, 2, new Token<>("x"), 0.5)
+            .addEdge(2, 3, new Token<>("a"))
+            .build();
+
+    @Test
+    public void singlePath() {
+        final List<Token<String>> tokens = Tokens.tokenize("a b a a");
+        final TokenLattice<String> lattice = TokenLattice.fromTokens(tokens);
+
+        assertEquals(parser.recognize(S, tokens), parser.recognize(S, lattice), 0.0000001);
+        final ParseTreeWithScore expected = parser.getViterbiParseWithScore(S, tokens);
+        final ParseTreeWithScore actual = parser.getViterbiParseWithScore(S, lattice, null);
+        assertEquals(expected.getParseTree(), actual.getParseTree());
+        assertEquals(expected.getProbability(), actual.getProbability(), 0.0000001);
+    }
+
+    @Test
+    public void sumsOverPaths() {
+        final double expected = 0.6 * 0.5 * parser.recognize(S, Tokens.tokenize("a a"))
+                + 0.4 * 0.5 * parser.recognize(S, Tokens.tokenize("b a"))
+                + 0.2 * parser.recognize(S, Tokens.tokenize("a"));
+        assertEquals(expected, parser.recognize(S, lattice), 0.0000001);
+    }
+
+    @Test
+    public void viterbiPicksBestPath() {
+        final ParseTreeWithScore aa = parser.getViterbiParseWithScore(S, Tokens.tokenize("a a"));
+        final ParseTreeWithScore ba = parser.getViterbiParseWithScore(S, Tokens.tokenize("b a"));
+        final ParseTreeWithScore single = parser.getViterbiParseWithScore(S, Tokens.tokenize("a"));
+        // 0.2 * 0.35 > 0.2 * 0.15 > 0.3 * 0.06125
+        assertEquals(0.2 * single.getProbability(), Math.max(0.3 * aa.getProbability(), Math.max(0.2 * ba.getProbability(), 0.2 * single.getProbability())), 0.0);
+
+        for (final ParseOptions<String> options : Arrays.asList(null, new ParseOptions.Builder<String>().viterbiOnly().build())) {
+            final ParseTreeWithScore best = parser.getViterbiParseWithScore(S, lattice, options);
+            assertEquals(single.getParseTree(), best.getParseTree());
+            assertEquals(0.2 * single.getProbability(), best.getProbability(), 0.0000001);
+        }
+    }
+
+    @Test
+    public void viterbiPicksBestPathOverLongerEdge() {
+        final TokenLattice<String> lattice = new TokenLattice.Builder<String>()
+                .addEdge(0, 1, new Token<>("b"), 0.9)
+                .addEdge(0, 2, new Token<>("a"), 0.1)
+                .addEdge(1, 2, new Token<>("a"))
+                .build();
+        final ParseTreeWithScore ba = parser.getViterbiParseWithScore(S, Tokens.tokenize("b a"));
+        final ParseTreeWithScore best = parser.getViterbiParseWithScore(S, lattice, null);
+        assertEquals(ba.getParseTree(), best.getParseTree());
+        assertEquals(0.9 * ba.getProbability(), best.getProbability(), 0.0000001);
+    }
+}
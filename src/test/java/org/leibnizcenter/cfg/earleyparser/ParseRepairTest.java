@@ -0,0 +1,119 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.chart.ChartWithInputPosition;
+import org.leibnizcenter.cfg.earleyparser.repair.Edit;
+import org.leibnizcenter.cfg.earleyparser.repair.RepairCosts;
+import org.leibnizcenter.cfg.earleyparser.repair.RepairedParse;
+import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.A;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.B;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.C;
+
+public class ParseRepairTest {
+    private static final NonTerminal S = Category.nonTerminal("S");
+    private static final Terminal<String> a = new ExactStringTerminal("a");
+    private static final Terminal<String> b = new ExactStringTerminal("b");
+    private static final Terminal<String> c = new ExactStringTerminal("c");
+
+    private static final Grammar<String> grammar = new Grammar.Builder<String>()
+            .addRule(0.5, S, A, B)
+            .addRule(0.5, S, C, C, C)
+            .addRule(1.0, A, a)
+            .addRule(1.0, B, b)
+            .addRule(1.0, C, c)
+            .build();
+    private static final Parser<String> parser = new Parser<>(grammar);
+    private static final ParseOptions<String> options = new ParseOptions.Builder<String>()
+            .withScanMode(ScanMode.REPAIR)
+            .withRepairCosts(new RepairCosts(0.1, 0.2, 0.3, 2))
+            .build();
+
+    private static RepairedParse<String> repair(final String sentence) {
+        return parser.getRepairedParse(S, Tokens.tokenize(sentence), options);
+    }
+
+    private static Edit<String> edit(final Edit.Type type, final int position, final String token, final Terminal<String> category) {
+        return new Edit<>(type, position, token == null ? null : new Token<>(token), category);
+    }
+
+    @Test
+    public void grammaticalInputNeedsNoEdits() {
+        final RepairedParse<String> repaired = repair("a b");
+        assertEquals(Collections.emptyList(), repaired.edits);
+        assertEquals(0.5, repaired.probability, 1E-9);
+        assertEquals(0.5, repaired.parse.getProbability(), 1E-9);
+    }
+
+    @Test
+    public void deletion() {
+        final RepairedParse<String> repaired = repair("a x b");
+        assertEquals(Collections.singletonList(edit(Edit.Type.DELETION, 1, "x", null)), repaired.edits);
+        assertEquals(0.5 * 0.2, repaired.probability, 1E-9);
+
+        final RepairedParse<String> leading = repair("x a b");
+        assertEquals(Collections.singletonList(edit(Edit.Type.DELETION, 0, "x", null)), leading.edits);
+
+        // Trailing deletions are not part of the parse tree, but are part of the probability
+        final RepairedParse<String> trailing = repair("a b x");
+        assertEquals(Collections.singletonList(edit(Edit.Type.DELETION, 2, "x", null)), trailing.edits);
+        assertEquals(0.5 * 0.2, trailing.probability, 1E-9);
+        assertEquals(0.5, trailing.parse.getProbability(), 1E-9);
+    }
+
+    @Test
+    public void insertion() {
+        final RepairedParse<String> repaired = repair("a");
+        assertEquals(Collections.singletonList(edit(Edit.Type.INSERTION, 1, null, b)), repaired.edits);
+        assertEquals(0.5 * 0.1, repaired.probability, 1E-9);
+    }
+
+    @Test
+    public void substitution() {
+        final RepairedParse<String> repaired = repair("c b");
+        assertEquals(Collections.singletonList(edit(Edit.Type.SUBSTITUTION, 0, "c", a)), repaired.edits);
+        assertEquals(0.5 * 0.3, repaired.probability, 1E-9);
+    }
+
+    @Test
+    public void editBound() {
+        final RepairedParse<String> repaired = repair("x y a b");
+        assertEquals(Arrays.asList(edit(Edit.Type.DELETION, 0, "x", null), edit(Edit.Type.DELETION, 1, "y", null)), repaired.edits);
+        assertEquals(0.5 * 0.2 * 0.2, repaired.probability, 1E-9);
+
+        final ParseOptions<String> oneEdit = new ParseOptions.Builder<String>()
+                .withRepairCosts(new RepairCosts(0.1, 0.2, 0.3, 1))
+                .build();
+        assertNull(parser.getRepairedParse(S, Tokens.tokenize("x y a b"), oneEdit));
+        assertNull(parser.getRepairedParse(S, Tokens.tokenize("x y a b"), new ParseOptions.Builder<String>()
+                .withRepairCosts(new RepairCosts(0.1, 0.2, 0.3, 0))
+                .build()));
+        assertNotNull(parser.getRepairedParse(S, Tokens.tokenize("a x b"), oneEdit));
+    }
+
+    @Test
+    public void scanMode() {
+        final List<Token<String>> tokens = Tokens.tokenize("a x b");
+        assertEquals(parser.getRepairedParse(S, tokens, options).parse, parser.getViterbiParseWithScore(S, tokens, options));
+        assertEquals(ScanMode.REPAIR, ScanMode.fromString("repair"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void tokenByToken() {
+        new ChartWithInputPosition<>(grammar, S, options).next(new Token<>("a"));
+    }
+}
@@ -0,0 +1,211 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.nonterminal.Repetition;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.earleyparser.chart.Chart;
+import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.earleyparser.recognizer.BooleanRecognizer;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.allStrings;
+
+public class ParseRepetitionTest {
+    private static final NonTerminal S = Category.nonTerminal("S");
+    private static final NonTerminal A = Category.nonTerminal("A");
+    private static final NonTerminal B = Category.nonTerminal("B");
+    private static final ExactStringTerminal a = new ExactStringTerminal("a");
+    private static final ExactStringTerminal b = new ExactStringTerminal("b");
+    private static final NonTerminal Aplus = Category.nonTerminal("Aplus");
+    private static final NonTerminal Astar = Category.nonTerminal("Astar");
+
+    private static final Grammar<String> oneOrMore = new Grammar.Builder<String>()
+            .addRule(1.0, S, Repetition.oneOrMore(A))
+            .addRule(1.0, A, a)
+            .build();
+
+    private static final Grammar<String> zeroOrMore = new Grammar.Builder<String>()
+            .addRule(1.0, S, A, Repetition.zeroOrMore(B, 0.25))
+            .addRule(1.0, A, a)
+            .addRule(1.0, B, b)
+            .build();
+
+    @Test
+    public void oneOrMore() {
+        final Parser<String> parser = new Parser<>(oneOrMore);
+        assertEquals(0.5, parser.recognize(S, Tokens.tokenize("a")), 1E-9);
+        assertEquals(0.125, parser.recognize(S, Tokens.tokenize("a a a")), 1E-9);
+        assertEquals(0.0, parser.recognize(S, Collections.<Token<String>>emptyList()), 0.0);
+
+        final ParseTreeWithScore viterbi = parser.getViterbiParseWithScore(S, Tokens.tokenize("a a a"));
+        assertEquals(0.125, viterbi.getProbability(), 1E-9);
+        final ParseTree repetition = viterbi.parseTree.getChildren().get(0).getChildren().get(0);
+        assertEquals(Repetition.oneOrMore(A), repetition.category);
+        assertEquals(3, repetition.getChildren().size());
+        for (final ParseTree child : repetition.getChildren()) assertEquals(A, child.category);
+    }
+
+    @Test
+    public void zeroOrMore() {
+        final Parser<String> parser = new Parser<>(zeroOrMore);
+        assertEquals(0.75, parser.recognize(S, Tokens.tokenize("a")), 1E-9);
+        assertEquals(0.25 * 0.25 * 0.75, parser.recognize(S, Tokens.tokenize("a b b")), 1E-9);
+        assertEquals(0.0, parser.recognize(S, Tokens.tokenize("b")), 0.0);
+
+        final ParseTree s = parser.getViterbiParse(S, Tokens.tokenize("a b b")).getChildren().get(0);
+        assertEquals(A, s.getChildren().get(0).category);
+        final ParseTree repetition = s.getChildren().get(1);
+        assertEquals(Repetition.zeroOrMore(B, 0.25), repetition.category);
+        assertEquals(2, repetition.getChildren().size());
+        for (final ParseTree child : repetition.getChildren()) assertEquals(B, child.category);
+
+        assertTrue(parser.getViterbiParse(S, Tokens.tokenize("a")).getChildren().get(0).getChildren().get(1).getChildren().isEmpty());
+    }
+
+    @Test
+    public void fromString() {
+        final Grammar<String> grammar = Grammar.fromString("S -> A+ B*\nA -> a\nB -> b");
+        final Parser<String> parser = new Parser<>(grammar);
+        assertEquals(0.5 * 0.5, parser.recognize(S, Tokens.tokenize("a")), 1E-9);
+        assertEquals(0.25 * 0.125, parser.recognize(S, Tokens.tokenize("a a b b")), 1E-9);
+        assertEquals(1, grammar.getRules(Repetition.oneOrMore(A)).size());
+        assertEquals(2, grammar.getRules(Repetition.zeroOrMore(B)).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromStringWithoutRulesForRepeated() {
+        Grammar.fromString("S -> NP+\nNPs -> a");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromStringWithRepetitionOnLeft() {
+        Grammar.fromString("S -> NP+\nNP+ -> NP NP\nNP -> a");
+    }
+
+    @Test
+    public void booleanRecognizer() {
+        final BooleanRecognizer<String> recognizer = new BooleanRecognizer<>(zeroOrMore);
+        assertTrue(recognizer.accepts(S, Tokens.tokenize("a")));
+        assertTrue(recognizer.accepts(S, Tokens.tokenize("a b b b")));
+        assertFalse(recognizer.accepts(S, Tokens.tokenize("a b a")));
+    }
+    /**
+     * Grammar with repetitions that are ambiguous, nested in unit chains, and that repeat a recursive category
+     */
+    private static final Grammar<String> withRepetitions = new Grammar.Builder<String>()
+            .addRule(0.6, S, Repetition.oneOrMore(A, 0.4))
+            .addRule(0.4, S, S, b, Repetition.zeroOrMore(A, 0.7))
+            .addRule(0.5, A, a)
+            .addRule(0.2, A, A, A)
+            .addRule(0.3, A, B)
+            .addRule(0.7, B, b)
+            .addRule(0.3, B, Repetition.oneOrMore(A, 0.4), b)
+            .build();
+
+    /**
+     * Same as {@link #withRepetitions}, with the repetitions written out as left-recursive rules
+     */
+    private static final Grammar<String> leftRecursive = new Grammar.Builder<String>()
+            .addRule(0.6, S, Aplus)
+            .addRule(0.4, S, S, b, Astar)
+            .addRule(0.5, A, a)
+            .addRule(0.2, A, A, A)
+            .addRule(0.3, A, B)
+            .addRule(0.7, B, b)
+            .addRule(0.3, B, Aplus, b)
+            .addRule(0.4, Aplus, Aplus, A)
+            .addRule(0.6, Aplus, A)
+            .addRule(0.7, Astar, Astar, A)
+            .addRule(0.3, Astar)
+            .build();
+
+    /**
+     * @return For every position after the first, the prefix probability: the sum of the forward scores of the states
+     * that just scanned a token
+     */
+    private static double[] getPrefixProbabilities(final Grammar<String> grammar, final List<Token<String>> tokens) {
+        final Chart<String> chart = new Parser<>(grammar).parseAndCountTokens(S, tokens, null).chart;
+        final double[] prefix = new double[tokens.size()];
+        for (int i = 1; i <= tokens.size(); i++) {
+            double sum = grammar.semiring.zero();
+            for (final State state : chart.getStates(i))
+                if (state.ruleDotPosition > 0 && state.rule.right[state.ruleDotPosition - 1] instanceof Terminal)
+                    sum = grammar.semiring.plus(sum, chart.getForwardScore(state));
+            prefix[i - 1] = grammar.semiring.toProbability(sum);
+        }
+        return prefix;
+    }
+
+    private static int countStates(final Grammar<String> grammar, final List<Token<String>> tokens) {
+        return new Parser<>(grammar).parse(S, tokens).countStates();
+    }
+
+    @Test
+    public void sameProbabilitiesAsLeftRecursiveRules() {
+        final Parser<String> loop = new Parser<>(withRepetitions);
+        final Parser<String> recursive = new Parser<>(leftRecursive);
+        for (final List<Token<String>> tokens : allStrings(6, "a", "b")) {
+            final String string = tokens.toString();
+            final double probability = recursive.recognize(S, tokens);
+            assertEquals(string, probability, loop.recognize(S, tokens), 1E-12);
+            if (probability > 0.0) assertEquals(string,
+                    recursive.getViterbiParseWithScore(S, tokens).getProbability(),
+                    loop.getViterbiParseWithScore(S, tokens).getProbability(),
+                    1E-12);
+            assertArrayEquals(string, getPrefixProbabilities(leftRecursive, tokens), getPrefixProbabilities(withRepetitions, tokens), 1E-12);
+        }
+    }
+
+    @Test
+    public void fewerStatesThanLeftRecursiveRules() {
+        final Grammar<String> recursive = new Grammar.Builder<String>()
+                .addRule(1.0, S, Aplus)
+                .addRule(0.5, Aplus, Aplus, A)
+                .addRule(0.5, Aplus, A)
+                .addRule(1.0, A, a)
+                .build();
+        final List<Token<String>> tokens = new ArrayList<>();
+        for (int i = 0; i < 100; i++) tokens.add(new Token<>("a"));
+        assertTrue(countStates(oneOrMore, tokens) < countStates(recursive, tokens));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void conflictingProbabilities() {
+        new Grammar.Builder<String>()
+                .addRule(0.5, S, Repetition.oneOrMore(A, 0.4))
+                .addRule(0.5, S, Repetition.oneOrMore(A, 0.6))
+                .addRule(1.0, A, a);
+    }
+
+    @Test
+    public void nullableRepeatedCategory() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(1.0, S, Repetition.oneOrMore(A))
+                .addRule(0.5, A, a)
+                .addRule(0.5, A)
+                .build();
+        final Grammar<String> recursive = new Grammar.Builder<String>()
+                .addRule(1.0, S, Aplus)
+                .addRule(0.5, Aplus, Aplus, A)
+                .addRule(0.5, Aplus, A)
+                .addRule(0.5, A, a)
+                .addRule(0.5, A)
+                .build();
+        for (final List<Token<String>> tokens : allStrings(4, "a"))
+            assertEquals(tokens.toString(), new Parser<>(recursive).recognize(S, tokens), new Parser<>(grammar).recognize(S, tokens), 1E-12);
+
+        final ParseTree repetition = new Parser<>(grammar).getViterbiParse(S, Tokens.tokenize("a a")).getChildren().get(0).getChildren().get(0);
+        assertEquals(Repetition.oneOrMore(A), repetition.category);
+        for (final ParseTree child : repetition.getChildren()) assertEquals(A, child.category);
+    }
+}
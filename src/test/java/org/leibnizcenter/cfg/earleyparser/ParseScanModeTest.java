@@ -94,6 +94,44 @@ public class ParseScanModeTest {
         assertEquals(.2 * .2 * 0.8 * 0.6 * Math.pow(.4, 2) * .6, parse.getProbability(), 0.00001);
     }
 
+    @Test
+    public void scanModeSynchronizeSeveralErrors() throws Exception {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(0.8, S, A)
+                .addRule(0.2, S, S, A)
+                .addRule(0.6, A, a, a, period)
+                .addRule(0.4, A, b, b, NonLexicalToken.INSTANCE, period)
+                .build();
+        // Panic mode is entered four times; error states from earlier regions are not advanced again
+        final List<Token<String>> tokens = Tokens.tokenize("a a . b b z a . b b y a . a a . b b q q q . b b w .");
+
+        final ParseOptions<String> cb = new ParseOptions.Builder<String>().withScanMode(ScanMode.SYNCHRONIZE).build();
+        final ParseTreeWithScore parse = new Parser<>(grammar).getViterbiParseWithScore(S, tokens, cb);
+
+        // Every error region costs the rule probability for each token it skips
+        assertEquals(Math.pow(.2, 5) * .8 * Math.pow(.6, 2) * Math.pow(.4, 2 + 2 + 3 + 1), parse.getProbability(), 1E-12);
+    }
+
+    @Test
+    public void scanModeSynchronizeScanProbability() throws Exception {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(0.8, S, A)
+                .addRule(0.2, S, S, A)
+                .addRule(0.6, A, a, a, period)
+                .addRule(0.4, A, b, b, NonLexicalToken.INSTANCE, period)
+                .build();
+        final List<Token<String>> tokens = Tokens.tokenize("a a . b b z a . b b y a . a a . b b q q q . b b w .");
+
+        // Every token costs another half, whether it is scanned as an error or not
+        final ParseOptions<String> cb = new ParseOptions.Builder<String>()
+                .withScanMode(ScanMode.SYNCHRONIZE)
+                .withScanProbability((position, token) -> grammar.semiring.fromProbability(0.5))
+                .build();
+        final ParseTreeWithScore parse = new Parser<>(grammar).getViterbiParseWithScore(S, tokens, cb);
+
+        assertEquals(Math.pow(.2, 5) * .8 * Math.pow(.6, 2) * Math.pow(.4, 2 + 2 + 3 + 1) * Math.pow(.5, tokens.size()), parse.getProbability(), 1E-25);
+    }
+
 // TODO
 //    @Test
 //    public void scanModeSynchronizeTokens() throws Exception {
@@ -0,0 +1,148 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.earleyparser.chart.ChartWithInputPosition;
+import org.leibnizcenter.cfg.earleyparser.scan.TokenNotInLexiconException;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.S;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.parser;
+
+public class ParseSessionTest {
+    @Test
+    public void parsesOnExecutor() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+            final ParseSession<String> session = parser.openSession(S, null, executor, 2,
+                    (index, token, chart) -> progress.add(index));
+            final List<Token<String>> tokens = Tokens.tokenize("a b a a b a");
+            for (final Token<String> token : tokens) assertTrue(session.submit(token));
+            session.close();
+
+            final ChartWithInputPosition<String> chart = session.getResult().get(10, TimeUnit.SECONDS);
+            assertEquals(tokens, chart.getTokens());
+            assertEquals(parser.parseAndCountTokens(S, tokens, null).chart.getStates(6), chart.chart.getStates(6));
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), progress);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void backpressure() {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+        final ParseSession<String> session = parser.openSession(S, null, tasks::add, 2, null);
+        assertTrue(session.offer(new Token<>("a")));
+        assertTrue(session.offer(new Token<>("b")));
+        assertFalse(session.offer(new Token<>("a")));
+        assertEquals(1, tasks.size());
+
+        tasks.poll().run();
+        assertEquals(0, session.getPendingCount());
+        assertTrue(session.offer(new Token<>("a")));
+        session.close();
+        while (!tasks.isEmpty()) tasks.poll().run();
+        assertTrue(session.getResult().isDone());
+        assertEquals(Tokens.tokenize("a b a"), session.getResult().join().getTokens());
+    }
+
+    @Test
+    public void failsOnUnknownToken() throws InterruptedException {
+        final ParseSession<String> session = parser.openSession(S, null, Runnable::run, 4, null);
+        assertTrue(session.submit(new Token<>("a")));
+        assertTrue(session.submit(new Token<>("x")));
+        assertFalse(session.submit(new Token<>("a")));
+        try {
+            session.getResult().get();
+            fail();
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof TokenNotInLexiconException);
+        }
+    }
+
+    @Test
+    public void failsWhenExecutorRejects() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        final ParseSession<String> session = parser.openSession(S, null, executor, 4, null);
+        try {
+            session.submit(new Token<>("a"));
+            fail();
+        } catch (final RejectedExecutionException ignored) {
+        }
+        assertEquals(0, session.getPendingCount());
+        assertFalse(session.submit(new Token<>("a")));
+        try {
+            session.getResult().get();
+            fail();
+        } catch (final ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void blockedSubmitFailsWithSession() throws Exception {
+        final CountDownLatch parsing = new CountDownLatch(1);
+        final CountDownLatch fail = new CountDownLatch(1);
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        final ParseSession<String> session = parser.openSession(S, null, tasks::add, 1, (index, token, chart) -> {
+            parsing.countDown();
+            try {
+                fail.await();
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            throw new IllegalStateException("Callback failed");
+        });
+        assertTrue(session.submit(new Token<>("a")));
+        final Thread drain = new Thread(tasks.poll());
+        drain.start();
+        parsing.await();
+        // The queue is full while the first token is being parsed
+        assertTrue(session.submit(new Token<>("b")));
+
+        final ExecutorService submitter = Executors.newSingleThreadExecutor();
+        try {
+            final AtomicReference<Thread> submitting = new AtomicReference<>();
+            final Future<Boolean> submitted = submitter.submit(() -> {
+                submitting.set(Thread.currentThread());
+                return session.submit(new Token<>("a"));
+            });
+            while (submitting.get() == null || submitting.get().getState() != Thread.State.WAITING) Thread.sleep(1);
+
+            fail.countDown();
+            drain.join();
+            assertFalse(submitted.get());
+            assertEquals(0, session.getPendingCount());
+            assertTrue(session.getResult().isCompletedExceptionally());
+        } finally {
+            submitter.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noTokensAfterClose() {
+        final ParseSession<String> session = parser.openSession(S, null, Runnable::run, 4, null);
+        session.close();
+        session.offer(new Token<>("a"));
+    }
+}
@@ -0,0 +1,70 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.chart.ChartWithInputPosition;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.TokenAlternatives;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.S;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.grammar;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.parser;
+
+public class ParseTokenAlternativesTest {
+    private static final List<TokenAlternatives<String>> positions = Arrays.asList(
+            new TokenAlternatives.Builder<String>().add(new Token<>("a"), 0.6).add(new Token<>("b"), 0.4).build(),
+            new TokenAlternatives.Builder<String>().add(new Token<>("a")).add(new Token<>("x"), 0.3).build()
+    );
+
+    @Test
+    public void sumsOverAlternatives() {
+        final double expected = 0.6 * parser.recognize(S, Tokens.tokenize("a a"))
+                + 0.4 * parser.recognize(S, Tokens.tokenize("b a"));
+        assertEquals(expected, parser.recognizeAlternatives(S, positions), 0.0000001);
+    }
+
+    @Test
+    public void viterbiPicksBestAlternative() {
+        // 0.4 * 0.15 > 0.6 * 0.06125
+        final ParseTreeWithScore ba = parser.getViterbiParseWithScore(S, Tokens.tokenize("b a"));
+        for (final ParseOptions<String> options : Arrays.asList(null, new ParseOptions.Builder<String>().viterbiOnly().build())) {
+            final ParseTreeWithScore best = parser.getViterbiParseWithScoreOfAlternatives(S, positions, options);
+            assertEquals(ba.getParseTree(), best.getParseTree());
+            assertEquals(0.4 * ba.getProbability(), best.getProbability(), 0.0000001);
+        }
+    }
+
+    @Test
+    public void editBeforeAlternatives() {
+        final ChartWithInputPosition<String> chart = new ChartWithInputPosition<>(grammar, S, null);
+        chart.next(new Token<>("b"));
+        positions.forEach(chart::next);
+        chart.replace(0, new Token<>("a"));
+
+        final ChartWithInputPosition<String> fresh = new ChartWithInputPosition<>(grammar, S, null);
+        fresh.next(new Token<>("a"));
+        positions.forEach(fresh::next);
+        assertEquals(fresh.chart.getStates(fresh.chartIndex), chart.chart.getStates(chart.chartIndex));
+        assertEquals(Tokens.tokenize("a a a"), chart.getTokens());
+    }
+
+    @Test
+    public void scanCallbacksGetMostLikelyAlternativeInLexicon() {
+        final List<Token<String>> beforeScan = new ArrayList<>();
+        final List<Token<String>> afterScan = new ArrayList<>();
+        final ParseOptions<String> options = new ParseOptions.Builder<String>()
+                .onPreScan((index, token, chart) -> beforeScan.add(token.token))
+                .onPostScan((index, token, chart) -> afterScan.add(token.token))
+                .build();
+        final ChartWithInputPosition<String> chart = new ChartWithInputPosition<>(grammar, S, options);
+        positions.forEach(chart::next);
+        assertEquals(Tokens.tokenize("a a"), beforeScan);
+        assertEquals(Tokens.tokenize("a a"), afterScan);
+    }
+}
@@ -0,0 +1,115 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.RegexTerminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.grammar.UnknownWordModel;
+import org.leibnizcenter.cfg.grammar.WordShape;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ParseUnknownWordsTest {
+    private static final NonTerminal S = Category.nonTerminal("S");
+    private static final NonTerminal N = Category.nonTerminal("N");
+    private static final NonTerminal V = Category.nonTerminal("V");
+    private static final Terminal<String> name = new RegexTerminal("John|Mary");
+    private static final Terminal<String> noun = new RegexTerminal("dogs|cats|walks");
+    private static final Terminal<String> verb = new RegexTerminal("walks|sleeps|walked|barked");
+
+    private static Grammar<String> grammar(final UnknownWordModel.Builder<String> unknownWords) {
+        return new Grammar.Builder<String>()
+                .addRule(1.0, S, N, V)
+                .addRule(0.5, N, name)
+                .addRule(0.5, N, noun)
+                .addRule(1.0, V, verb)
+                .withUnknownWordModel(unknownWords)
+                .build();
+    }
+
+    private static UnknownWordModel.Builder<String> vocabulary() {
+        return new UnknownWordModel.Builder<String>()
+                .addWords(Arrays.asList(new Token<>("walked"), new Token<>("barked"), new Token<>("walks"), new Token<>("John"), new Token<>("unknown")));
+    }
+
+    private static final ParseOptions<String> signature = new ParseOptions.Builder<String>().withScanMode(ScanMode.SIGNATURE).build();
+
+    @Test
+    public void wordShape() {
+        assertEquals("UNK-INITC-s:ed", WordShape.of("Walked"));
+        assertEquals("UNK-LC", WordShape.of("run"));
+        assertEquals("UNK-CAPS", WordShape.of("USA"));
+        assertEquals("UNK-MIXED-s:ne", WordShape.of("iPhone"));
+        assertEquals("UNK-NUM-DASH", WordShape.of("12-3"));
+        assertEquals("UNK-LC-NUM-DASH-s:ar", WordShape.of("2-year"));
+    }
+
+    @Test
+    public void guessFromVocabulary() {
+        final UnknownWordModel<String> model = grammar(vocabulary()).unknownWordModel;
+
+        final UnknownWordModel.Guess<String> ed = model.guess(new Token<>("jumped"));
+        assertEquals(1, ed.size());
+        assertEquals(1.0, ed.getProbability(verb), 1E-9);
+
+        // "walks" is both a noun and a verb
+        final UnknownWordModel.Guess<String> ks = model.guess(new Token<>("talks"));
+        assertEquals(2, ks.size());
+        assertEquals(0.5, ks.getProbability(noun), 1E-9);
+        assertEquals(0.5, ks.getProbability(verb), 1E-9);
+
+        // Unseen signature: distribution over all known words
+        final UnknownWordModel.Guess<String> unseen = model.guess(new Token<>("Zed"));
+        assertEquals(2.5 / 4.0, unseen.getProbability(verb), 1E-9);
+        assertEquals(0.5 / 4.0, unseen.getProbability(noun), 1E-9);
+        assertEquals(1.0 / 4.0, unseen.getProbability(name), 1E-9);
+    }
+
+    @Test
+    public void explicitWeightsAndMaxTerminals() {
+        final UnknownWordModel<String> model = grammar(vocabulary()
+                .addWeight("UNK-INITC", name, 3.0)
+                .addWeight("UNK-INITC", noun, 1.0)
+                .withMaxTerminalsPerSignature(1)
+        ).unknownWordModel;
+
+        final UnknownWordModel.Guess<String> initCap = model.guess(new Token<>("Bob"));
+        assertEquals(1, initCap.size());
+        assertEquals(1.0, initCap.getProbability(name), 1E-9);
+        assertEquals(1.0, model.guess(new Token<>("Zed-2")).getProbability(verb), 1E-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void weightForTerminalNotInGrammar() {
+        grammar(vocabulary().addWeight("UNK-LC", new ExactStringTerminal("the"), 1.0));
+    }
+
+    @Test
+    public void parse() {
+        final Parser<String> parser = new Parser<>(grammar(vocabulary().addWeight("UNK-INITC", name, 1.0)));
+
+        assertEquals(0.5, parser.getViterbiParseWithScore(S, Tokens.tokenize("Bob jumped"), signature).getProbability(), 1E-9);
+        assertEquals(0.25, parser.getViterbiParseWithScore(S, Tokens.tokenize("dogs talks"), signature).getProbability(), 1E-9);
+        // Known words are scanned as usual
+        assertEquals(
+                parser.getViterbiParseWithScore(S, Tokens.tokenize("John walks")),
+                parser.getViterbiParseWithScore(S, Tokens.tokenize("John walks"), signature)
+        );
+        assertEquals(ScanMode.SIGNATURE, ScanMode.fromString("signature"));
+    }
+
+    @Test
+    public void withoutModelUnknownWordsAreDropped() {
+        final Parser<String> parser = new Parser<>(grammar(null));
+        assertEquals(0.5, parser.getViterbiParseWithScore(S, Tokens.tokenize("John Bob walks"), signature).getProbability(), 1E-9);
+    }
+}
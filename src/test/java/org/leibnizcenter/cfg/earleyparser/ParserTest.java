@@ -9,11 +9,16 @@ import org.leibnizcenter.cfg.category.terminal.Terminal;
 import org.leibnizcenter.cfg.category.terminal.stringterminal.CaseInsensitiveStringTerminal;
 import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
 import org.leibnizcenter.cfg.category.terminal.stringterminal.StringTerminal;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
 import org.leibnizcenter.cfg.earleyparser.scan.TokenNotInLexiconException;
 import org.leibnizcenter.cfg.grammar.Grammar;
 import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.TokenAlternatives;
+import org.leibnizcenter.cfg.token.TokenLattice;
 import org.leibnizcenter.cfg.token.Tokens;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -149,6 +154,79 @@ public class ParserTest {
         Assert.assertEquals(parse.getProbability(), 0.01, 0.0001);
     }
 
+    @Test
+    public void viterbiOnly() throws Exception {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .withSemiring(LogSemiring.get())
+                .addRule(0.9, S, A)
+                .addRule(0.1, S, S, S)
+                .addRule(0.2, A, B)
+                .addRule(0.8, A, D)
+                .addRule(0.6, B, C)
+                .addRule(0.4, B, a)
+                .addRule(0.6, C, D)
+                .addRule(0.4, C, a)
+                .addRule(1.0, D, a)
+                .build();
+        final Parser<String> parser = new Parser<>(grammar);
+        final ParseOptions<String> viterbiOnly = new ParseOptions.Builder<String>().viterbiOnly().build();
+
+        for (final String sentence : new String[]{"a", "a a", "a a a", "a a a a a"}) {
+            final List<Token<String>> tokens = Tokens.tokenize(sentence);
+            final ParseTreeWithScore full = parser.getViterbiParseWithScore(S, tokens);
+            final ParseTreeWithScore onlyViterbi = parser.getViterbiParseWithScore(S, tokens, viterbiOnly);
+
+            Assert.assertNotNull(onlyViterbi);
+            assertEquals(full.getProbability(), onlyViterbi.getProbability(), 0.0000001);
+            assertEquals(full.getParseTree(), onlyViterbi.getParseTree());
+        }
+
+        // Dropped tokens
+        final List<Token<String>> tokens = Tokens.tokenize("a b a");
+        final ParseTreeWithScore full = parser.getViterbiParseWithScore(S, tokens, new ParseOptions.Builder<String>().withScanMode(ScanMode.DROP).build());
+        final ParseTreeWithScore onlyViterbi = parser.getViterbiParseWithScore(S, tokens, new ParseOptions.Builder<String>().withScanMode(ScanMode.DROP).viterbiOnly().build());
+        assertEquals(full.getProbability(), onlyViterbi.getProbability(), 0.0000001);
+        assertEquals(full.getParseTree(), onlyViterbi.getParseTree());
+    }
+
+    @Test
+    public void viterbiScanAfterAmbiguousPrefix() throws Exception {
+        // X derives "b" in two ways, so the inner score of S → X · a is the sum 1.0, but its Viterbi score is 0.6
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(1.0, S, A, a)
+                .addRule(0.6, A, B)
+                .addRule(0.4, A, C)
+                .addRule(1.0, B, b)
+                .addRule(1.0, C, b)
+                .build();
+        final Parser<String> parser = new Parser<>(grammar);
+        final List<Token<String>> tokens = Tokens.tokenize("b a");
+
+        final ParseTreeWithScore full = parser.getViterbiParseWithScore(S, tokens);
+        assertEquals(0.6, full.getProbability(), 0.0000001);
+
+        final ParseTreeWithScore onlyViterbi = parser.getViterbiParseWithScore(S, tokens, new ParseOptions.Builder<String>().viterbiOnly().build());
+        final ParseTreeWithScore alternatives = parser.getViterbiParseWithScoreOfAlternatives(S, Arrays.asList(
+                TokenAlternatives.of(new Token<>("b")),
+                TokenAlternatives.of(new Token<>("a"))
+        ), null);
+        final ParseTreeWithScore lattice = parser.getViterbiParseWithScore(S, TokenLattice.fromTokens(tokens), null);
+        for (final ParseTreeWithScore other : Arrays.asList(onlyViterbi, alternatives, lattice)) {
+            assertEquals(full.getProbability(), other.getProbability(), 0.0000001);
+            assertEquals(full.getParseTree(), other.getParseTree());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recognizeNeedsForwardScores() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(0.5, S, a)
+                .addRule(0.5, S, S, S)
+                .build();
+        // With Viterbi scores only, this would be the probability of the best derivation instead of all derivations
+        new Parser<>(grammar).recognize(S, Tokens.tokenize("a a a"), new ParseOptions.Builder<String>().viterbiOnly().build());
+    }
+
 
     @Test
     public final void ambiguous() {
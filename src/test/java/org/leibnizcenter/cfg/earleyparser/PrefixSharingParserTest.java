@@ -0,0 +1,116 @@
+package org.leibnizcenter.cfg.earleyparser;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseBudget;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.S;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.parser;
+
+public class PrefixSharingParserTest {
+    private static final List<List<Token<String>>> sentences = new ArrayList<>();
+
+    static {
+        for (final String sentence : new String[]{
+                "a b a a", "a b a", "a b a b a", "a b a a", "b a", "a b a b", "b a a b a", "a", "a x a", "a x b"
+        })
+            sentences.add(Tokens.tokenize(sentence));
+    }
+
+    @Test
+    public void sameAsIndependentParses() {
+        final ParseOptions<String> options = new ParseOptions.Builder<String>().withScanMode(ScanMode.DROP).build();
+        final PrefixSharingParser<String> prefixSharingParser = new PrefixSharingParser<>(parser);
+
+        final List<ParseTreeWithScore> parses = prefixSharingParser.getViterbiParsesWithScore(S, sentences, options);
+        for (int i = 0; i < sentences.size(); i++) {
+            // "a x b" is "a b" after dropping x
+            if (i == 5 || i == 9) assertNull(parses.get(i));
+            else assertEquals(parser.getViterbiParseWithScore(S, sentences.get(i), options), parses.get(i));
+        }
+    }
+
+    @Test
+    public void repairEverySentence() {
+        final ParseOptions<String> options = new ParseOptions.Builder<String>().withScanMode(ScanMode.REPAIR).build();
+        final List<ParseTreeWithScore> parses = new PrefixSharingParser<>(parser).getViterbiParsesWithScore(S, sentences, options);
+        for (int i = 0; i < sentences.size(); i++)
+            assertEquals(parser.getViterbiParseWithScore(S, sentences.get(i), options), parses.get(i));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void repairNeedsWholeSentences() {
+        final ParseOptions<String> options = new ParseOptions.Builder<String>().withScanMode(ScanMode.REPAIR).build();
+        new PrefixSharingParser<>(parser).parse(S, sentences, options, chart -> chart.chartIndex);
+    }
+
+    @Test
+    public void recognize() {
+        final List<List<Token<String>>> strictSentences = sentences.subList(0, 8);
+        final double[] probabilities = new PrefixSharingParser<>(parser).recognize(S, strictSentences);
+        for (int i = 0; i < strictSentences.size(); i++)
+            assertEquals(parser.recognize(S, strictSentences.get(i)), probabilities[i], 0.0000001);
+    }
+
+    @Test
+    public void budgetPerSentence() {
+        for (final boolean partial : new boolean[]{false, true}) {
+            final ParseBudget.Builder budget = new ParseBudget.Builder().withMaxStates(25);
+            if (partial) budget.returnPartialResult();
+            final ParseOptions<String> options = new ParseOptions.Builder<String>().withScanMode(ScanMode.DROP).withBudget(budget.build()).build();
+
+            final List<ParseTreeWithScore> parses = new PrefixSharingParser<>(parser).getViterbiParsesWithScore(S, sentences, options);
+            int exceeded = 0;
+            for (int i = 0; i < sentences.size(); i++) {
+                ParseTreeWithScore expected;
+                try {
+                    expected = parser.getViterbiParseWithScore(S, sentences.get(i), options);
+                } catch (final ParseBudgetExceededException e) {
+                    expected = null;
+                    exceeded++;
+                } catch (final RuntimeException e) {
+                    // Does not match S
+                    expected = null;
+                }
+                assertEquals(sentences.get(i).toString(), expected, parses.get(i));
+            }
+            if (!partial) assertTrue(exceeded > 0 && exceeded < sentences.size());
+        }
+    }
+
+    @Test
+    public void timeoutPerSentence() {
+        final List<List<Token<String>>> allSentences = new ArrayList<>();
+        for (final String first : new String[]{"a", "b"}) {
+            allSentences.add(Tokens.tokenize(first));
+            for (final String second : new String[]{"a", "b"}) {
+                allSentences.add(Tokens.tokenize(first + " " + second));
+                for (final String third : new String[]{"a", "b"})
+                    allSentences.add(Tokens.tokenize(first + " " + second + " " + third));
+            }
+        }
+        final ParseOptions<String> options = new ParseOptions.Builder<String>()
+                .withBudget(new ParseBudget.Builder().withTimeout(150, TimeUnit.MILLISECONDS).build())
+                .build();
+
+        // Together, the sentences take longer than the timeout, but every sentence on its own stays well within it
+        final List<Integer> lengths = new PrefixSharingParser<>(parser).parse(S, allSentences, options, chart -> {
+            try {
+                Thread.sleep(20);
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return chart.chartIndex;
+        });
+        for (int i = 0; i < allSentences.size(); i++)
+            assertEquals(Integer.valueOf(allSentences.get(i).size()), lengths.get(i));
+    }
+}
@@ -1,36 +1,75 @@
 package org.leibnizcenter.cfg.earleyparser.callbacks;
 
 import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.earleyparser.Parser;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
 
 public class ParseOptionsTest {
+    private final List<String> called = new ArrayList<>();
+    private final ParseOptions<String> options = new ParseOptions.Builder<String>()
+            .onPrePredict((position, token, chart) -> called.add("prePredict " + position))
+            .onPostPredict((position, token, chart) -> called.add("postPredict " + position))
+            .onPreScan((position, token, chart) -> called.add("preScan " + position))
+            .onPostScan((position, token, chart) -> called.add("postScan " + position))
+            .onPreComplete((position, token, chart) -> called.add("preComplete " + position))
+            .onPostComplete((position, token, chart) -> called.add("postComplete " + position))
+            .build();
+
     @Test
     public void onPredict() throws Exception {
-
+        options.onPredict(1, null, null);
+        assertEquals(Collections.singletonList("postPredict 1"), called);
     }
 
     @Test
     public void onScan() throws Exception {
-
+        options.onScan(1, null, null);
+        assertEquals(Collections.singletonList("postScan 1"), called);
     }
 
     @Test
     public void onComplete() throws Exception {
-
+        options.onComplete(1, null, null);
+        assertEquals(Collections.singletonList("postComplete 1"), called);
     }
 
     @Test
     public void beforePredict() throws Exception {
-
+        options.beforePredict(1, null, null);
+        assertEquals(Collections.singletonList("prePredict 1"), called);
     }
 
     @Test
     public void beforeScan() throws Exception {
-
+        options.beforeScan(1, null, null);
+        assertEquals(Collections.singletonList("preScan 1"), called);
     }
 
     @Test
     public void beforeComplete() throws Exception {
-
+        options.beforeComplete(1, null, null);
+        assertEquals(Collections.singletonList("preComplete 1"), called);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void callbacksDuringParse() throws Exception {
+        final NonTerminal S = Category.nonTerminal("S");
+        final Grammar<String> grammar = Grammar.fromString("S -> a (1.0)");
+        new Parser<>(grammar).parse(S, Tokens.tokenize("a"), options);
+        assertEquals(Arrays.asList(
+                "prePredict 0", "postPredict 0",
+                "preScan 0", "postScan 0",
+                "preComplete 0", "postComplete 0"
+        ), called);
+    }
+}
@@ -0,0 +1,199 @@
+package org.leibnizcenter.cfg.earleyparser.chart;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.earleyparser.Parser;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.earleyparser.scan.Diagnostics;
+import org.leibnizcenter.cfg.earleyparser.scan.ScanMode;
+import org.leibnizcenter.cfg.earleyparser.scan.TokenNotInLexiconException;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.S;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.grammar;
+
+public class ChartWithInputPositionTest {
+    private static ChartWithInputPosition<String> parse(final String tokens, final ScanMode scanMode) {
+        final ChartWithInputPosition<String> chart = new ChartWithInputPosition<>(grammar, S, new ParseOptions.Builder<String>().withScanMode(scanMode).build());
+        if (!tokens.isEmpty()) Tokens.tokenize(tokens).forEach(chart::next);
+        return chart;
+    }
+
+    /**
+     * Asserts that given chart contains the same states and scores as a chart that was parsed from scratch
+     */
+    private static void assertSameAsFreshParse(final ChartWithInputPosition<String> edited, final String tokens, final ScanMode scanMode) {
+        final ChartWithInputPosition<String> fresh = parse(tokens, scanMode);
+        assertEquals(fresh.tokenIndex, edited.tokenIndex);
+        assertEquals(fresh.chartIndex, edited.chartIndex);
+        assertEquals(fresh.diagnostics.toString(), edited.diagnostics.toString());
+        assertEquals(fresh.chart.countStates(), edited.chart.countStates());
+        for (int i = 0; i <= fresh.chartIndex; i++) {
+            assertEquals(fresh.chart.getStates(i), edited.chart.getStates(i));
+            for (final State state : fresh.chart.getStates(i)) {
+                assertEquals(fresh.chart.getForwardScore(state), edited.chart.getForwardScore(state), 0.0000001);
+                assertEquals(fresh.chart.getInnerScore(state), edited.chart.getInnerScore(state), 0.0000001);
+                assertEquals(fresh.chart.getViterbiScore(state).probabilityAsSemiringElement, edited.chart.getViterbiScore(state).probabilityAsSemiringElement, 0.0000001);
+            }
+        }
+
+        final Collection<State> completed = edited.chart.stateSets.completedStates.getCompletedStates(edited.chartIndex, Category.START);
+        assertEquals(fresh.chart.stateSets.completedStates.getCompletedStates(fresh.chartIndex, Category.START), completed);
+        if (!completed.isEmpty()) {
+            final State finalState = completed.iterator().next();
+            assertEquals(Parser.getViterbiParse(finalState, fresh.chart), Parser.getViterbiParse(finalState, edited.chart));
+        }
+    }
+
+    @Test
+    public void edits() {
+        final ChartWithInputPosition<String> chart = parse("a b a a b a", ScanMode.STRICT);
+        chart.insert(2, new Token<>("a"));
+        assertSameAsFreshParse(chart, "a b a a a b a", ScanMode.STRICT);
+
+        chart.delete(1);
+        assertSameAsFreshParse(chart, "a a a a b a", ScanMode.STRICT);
+
+        chart.replace(1, new Token<>("b"));
+        assertSameAsFreshParse(chart, "a b a a b a", ScanMode.STRICT);
+
+        chart.insert(6, new Token<>("a"));
+        assertSameAsFreshParse(chart, "a b a a b a a", ScanMode.STRICT);
+
+        chart.edit(1, 4, Arrays.asList(new Token<>("b"), new Token<>("a")));
+        assertSameAsFreshParse(chart, "a b a a a", ScanMode.STRICT);
+
+        chart.truncate(0);
+        assertSameAsFreshParse(chart, "", ScanMode.STRICT);
+    }
+
+    @Test
+    public void editsWithDroppedTokens() {
+        final ChartWithInputPosition<String> chart = parse("a x a x b a", ScanMode.DROP);
+        chart.replace(1, new Token<>("a"));
+        assertSameAsFreshParse(chart, "a a a x b a", ScanMode.DROP);
+
+        chart.replace(3, new Token<>("y"));
+        assertSameAsFreshParse(chart, "a a a y b a", ScanMode.DROP);
+
+        chart.delete(4);
+        assertSameAsFreshParse(chart, "a a a y a", ScanMode.DROP);
+
+        final List<Token<String>> tokens = chart.getTokens();
+        assertEquals(Tokens.tokenize("a a a y a"), tokens);
+    }
+
+    @Test
+    public void forks() {
+        final ChartWithInputPosition<String> chart = parse("a b a", ScanMode.STRICT);
+        final ChartWithInputPosition<String> fork1 = chart.fork();
+        final ChartWithInputPosition<String> fork2 = chart.fork();
+
+        Tokens.tokenize("b a a").forEach(fork1::next);
+        Tokens.tokenize("a").forEach(fork2::next);
+        final ChartWithInputPosition<String> fork3 = fork2.fork();
+        Tokens.tokenize("a b").forEach(chart::next);
+        Tokens.tokenize("b a").forEach(fork3::next);
+        Tokens.tokenize("a").forEach(fork2::next);
+
+        assertSameAsFreshParse(chart, "a b a a b", ScanMode.STRICT);
+        assertSameAsFreshParse(fork1, "a b a b a a", ScanMode.STRICT);
+        assertSameAsFreshParse(fork2, "a b a a a", ScanMode.STRICT);
+        assertSameAsFreshParse(fork3, "a b a a b a", ScanMode.STRICT);
+
+        // Forks can be edited after the position they were forked at
+        fork1.replace(4, new Token<>("b"));
+        fork1.replace(4, new Token<>("a"));
+        assertSameAsFreshParse(fork1, "a b a b a a", ScanMode.STRICT);
+        // ... and the parent can be truncated back to the fork position
+        chart.truncate(3);
+        assertSameAsFreshParse(chart, "a b a", ScanMode.STRICT);
+        assertSameAsFreshParse(fork3, "a b a a b a", ScanMode.STRICT);
+    }
+
+    @Test
+    public void forksWithDroppedTokens() {
+        final ChartWithInputPosition<String> chart = parse("a x", ScanMode.DROP);
+        final ChartWithInputPosition<String> fork = chart.fork();
+        Tokens.tokenize("y a").forEach(fork::next);
+        assertSameAsFreshParse(fork, "a x y a", ScanMode.DROP);
+        assertEquals(Tokens.tokenize("a x y a"), fork.getTokens());
+
+        // The fork shares the dropped token with its parent, but may still truncate to before it
+        fork.truncate(1);
+        assertSameAsFreshParse(fork, "a", ScanMode.DROP);
+        Tokens.tokenize("z b a").forEach(fork::next);
+        assertSameAsFreshParse(fork, "a z b a", ScanMode.DROP);
+        assertSameAsFreshParse(chart, "a x", ScanMode.DROP);
+        assertEquals(Tokens.tokenize("a x"), chart.getTokens());
+
+        try {
+            chart.truncate(1);
+            fail();
+        } catch (final IllegalStateException ignored) {
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noTruncatingSharedPositions() {
+        final ChartWithInputPosition<String> chart = parse("a b a", ScanMode.STRICT);
+        chart.fork();
+        chart.truncate(2);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void noEditsInSynchronizeMode() {
+        parse("a b a", ScanMode.SYNCHRONIZE).replace(1, new Token<>("a"));
+    }
+
+    @Test
+    public void diagnostics() {
+        final List<String> reported = new ArrayList<>();
+        final ChartWithInputPosition<String> chart = new ChartWithInputPosition<>(grammar, S, new ParseOptions.Builder<String>()
+                .withScanMode(ScanMode.DROP)
+                .onDiagnostic((tokenIndex, chartIndex, kind, token) -> reported.add(token.obj + "@" + tokenIndex))
+                .build());
+        Tokens.tokenize("a x a y b a").forEach(chart::next);
+
+        final Diagnostics diagnostics = chart.diagnostics;
+        assertEquals(2, diagnostics.size());
+        assertEquals(2, diagnostics.count(Diagnostics.Kind.DROPPED));
+        assertEquals(0, diagnostics.count(Diagnostics.Kind.WILDCARD));
+        assertEquals(3, diagnostics.getTokenIndex(1));
+        assertEquals(2, diagnostics.getChartIndex(1));
+        assertEquals(Arrays.asList("x@1", "y@3"), reported);
+
+        final List<Throwable> incidents = chart.getIncidents();
+        assertEquals(2, incidents.size());
+        assertEquals(new Token<>("y"), ((TokenNotInLexiconException) incidents.get(1)).token);
+
+        chart.truncate(2);
+        assertEquals(1, diagnostics.size());
+        assertEquals(1, diagnostics.count(Diagnostics.Kind.DROPPED));
+
+        final ChartWithInputPosition<String> wildcard = parse("a x a", ScanMode.WILDCARD);
+        assertEquals(Diagnostics.Kind.WILDCARD, wildcard.diagnostics.getKind(0));
+    }
+
+    @Test
+    public void rejectedDiagnostic() {
+        final ChartWithInputPosition<String> chart = new ChartWithInputPosition<>(grammar, S, new ParseOptions.Builder<String>().withScanMode(ScanMode.STRICT).build());
+        chart.next(new Token<>("a"));
+        try {
+            chart.next(new Token<>("x"));
+            fail();
+        } catch (final TokenNotInLexiconException ignored) {
+        }
+        assertEquals(Diagnostics.Kind.REJECTED, chart.diagnostics.getKind(0));
+        assertEquals(new Token<>("x"), ((TokenNotInLexiconException) chart.getIncidents().get(0)).token);
+    }
+}
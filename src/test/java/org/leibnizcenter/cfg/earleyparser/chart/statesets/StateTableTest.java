@@ -0,0 +1,64 @@
+package org.leibnizcenter.cfg.earleyparser.chart.statesets;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.algebra.semiring.dbl.LogSemiring;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.rule.Rule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StateTableTest {
+    private static final NonTerminal S = Category.nonTerminal("S");
+    private static final NonTerminal A = Category.nonTerminal("A");
+    private static final Rule rule1 = Rule.create(LogSemiring.get(), 0.5, S, A, A);
+    private static final Rule rule2 = Rule.create(LogSemiring.get(), 0.5, S, A);
+
+    @Test
+    public void addGetRemove() {
+        final StateTable table = new StateTable();
+        final List<State> states = new ArrayList<>();
+        for (int position = 0; position < 40; position++)
+            for (int start = 0; start <= position; start++)
+                for (int dot = 0; dot <= 2; dot++) {
+                    final State state = State.create(position, start, dot, rule1);
+                    assertSame(state, table.add(state));
+                    states.add(state);
+                }
+        assertEquals(states.size(), table.size());
+
+        for (final State state : states) {
+            assertSame(state, table.get(state.position, state.ruleStartPosition, state.ruleDotPosition, state.rule));
+            assertSame(state, table.add(State.create(state.position, state.ruleStartPosition, state.ruleDotPosition, state.rule)));
+            assertNull(table.get(state.position, state.ruleStartPosition, state.ruleDotPosition, rule2));
+        }
+
+        for (int i = 0; i < states.size(); i += 2) assertTrue(table.remove(states.get(i)));
+        assertFalse(table.remove(states.get(0)));
+        assertEquals(states.size() / 2, table.size());
+        for (int i = 0; i < states.size(); i++)
+            if (i % 2 == 0) assertNull(table.get(states.get(i)));
+            else assertSame(states.get(i), table.get(states.get(i)));
+    }
+
+    @Test
+    public void canonicalStates() {
+        final Grammar<String> grammar = new Grammar.Builder<String>().addRule(rule1).addRule(rule2).build();
+        final StateSets<String> stateSets = new StateSets<>(grammar);
+        final State state = stateSets.getOrCreate(3, 1, 1, rule1);
+
+        assertSame(state, stateSets.getOrCreate(3, 1, 1, rule1));
+        assertSame(state, stateSets.getOrCreate(State.create(3, 1, 1, rule1)));
+        assertSame(state, stateSets.getCanonical(3, 1, 1, rule1));
+        assertNull(stateSets.get(3, 1, 2, rule1));
+        assertFalse(stateSets.contains(stateSets.getCanonical(3, 1, 2, rule1)));
+
+        final StateSets<String> fork = stateSets.fork(4);
+        assertSame(state, fork.get(3, 1, 1, rule1));
+    }
+}
@@ -0,0 +1,74 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.earleyparser.Parser;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.*;
+
+public class BooleanRecognizerTest {
+    private static void assertSameLanguage(final Grammar<String> grammar, final NonTerminal goal, final int maxLength) {
+        final Parser<String> parser = new Parser<>(grammar);
+        final BooleanRecognizer<String> recognizer = new BooleanRecognizer<>(grammar);
+        for (final List<Token<String>> string : allStrings(maxLength, "a", "b"))
+            assertEquals(string.toString(), parser.recognize(goal, string) > 0.0, recognizer.accepts(goal, string));
+    }
+
+    @Test
+    public void sameLanguageAsParser() {
+        assertSameLanguage(nestedGrammar, S, 7);
+        assertSameLanguage(nestedGrammar, B, 6);
+    }
+
+    @Test
+    public void manyItems() {
+        // More than 64 items, so that advancing the dot crosses word boundaries
+        final Grammar.Builder<String> builder = new Grammar.Builder<String>()
+                .addRule(0.5, S, X, X)
+                .addRule(0.5, S, a);
+        final NonTerminal[] chain = new NonTerminal[30];
+        for (int i = 0; i < chain.length; i++) chain[i] = Category.nonTerminal("N" + i);
+        builder.addRule(0.5, X, chain[0], b);
+        builder.addRule(0.5, X, a, b, a);
+        for (int i = 0; i + 1 < chain.length; i++) builder.addRule(0.5, chain[i], a, chain[i + 1]).addRule(0.5, chain[i], b);
+        builder.addRule(1.0, chain[chain.length - 1], a);
+        assertSameLanguage(builder.build(), S, 8);
+    }
+
+    @Test
+    public void longestViablePrefix() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(1.0, S, a, S, b)
+                .addRule(1.0, S, a, b)
+                .build();
+        final BooleanRecognizer<String> recognizer = new BooleanRecognizer<>(grammar);
+
+        final BooleanRecognizer.Result accepted = recognizer.recognize(S, Tokens.tokenize("a a b b"));
+        assertTrue(accepted.accepted);
+        assertEquals(4, accepted.longestViablePrefix);
+
+        final BooleanRecognizer.Result incomplete = recognizer.recognize(S, Tokens.tokenize("a a b"));
+        assertFalse(incomplete.accepted);
+        assertEquals(3, incomplete.longestViablePrefix);
+
+        final BooleanRecognizer.Result rejected = recognizer.recognize(S, Tokens.tokenize("a a b b b a"));
+        assertFalse(rejected.accepted);
+        assertEquals(4, rejected.longestViablePrefix);
+
+        final BooleanRecognizer.Result unknownToken = recognizer.recognize(S, Tokens.tokenize("a c"));
+        assertFalse(unknownToken.accepted);
+        assertEquals(1, unknownToken.longestViablePrefix);
+
+        assertFalse(new Parser<>(grammar).accepts(Category.nonTerminal("unknown"), Tokens.tokenize("a b")));
+        assertTrue(new Parser<>(grammar).accepts(S, Tokens.tokenize("a b")));
+    }
+}
@@ -0,0 +1,188 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.algebra.semiring.dbl.ProbabilitySemiring;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.nonterminal.Repetition;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.earleyparser.ParseTree;
+import org.leibnizcenter.cfg.earleyparser.ParseTreeWithScore;
+import org.leibnizcenter.cfg.earleyparser.Parser;
+import org.leibnizcenter.cfg.earleyparser.ProbabilisticParser;
+import org.leibnizcenter.cfg.earleyparser.callbacks.ParseOptions;
+import org.leibnizcenter.cfg.earleyparser.chart.Chart;
+import org.leibnizcenter.cfg.earleyparser.chart.state.State;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.*;
+
+public class LR0ParserTest {
+    /**
+     * @return Prefix probabilities from the forward scores of the scanned states in the chart of {@link Parser}, up to
+     * the last position that it parsed
+     */
+    private static double[] getPrefixProbabilities(final Grammar<String> grammar, final NonTerminal goal, final List<Token<String>> tokens) {
+        final Chart<String> chart = new Parser<>(grammar).parseAndCountTokens(goal, tokens, null).chart;
+        final double[] prefix = new double[tokens.size()];
+        for (int i = 1; i <= tokens.size(); i++) {
+            final Collection<State> states;
+            try {
+                states = chart.getStates(i);
+            } catch (final IndexOutOfBoundsException e) {
+                break;
+            }
+            double sum = grammar.semiring.zero();
+            for (final State state : states)
+                if (state.ruleDotPosition > 0 && state.rule.right[state.ruleDotPosition - 1] instanceof Terminal)
+                    sum = grammar.semiring.plus(sum, chart.getForwardScore(state));
+            prefix[i - 1] = grammar.semiring.toProbability(sum);
+        }
+        return prefix;
+    }
+
+    /**
+     * @return Product of the probabilities of the rules in given parse tree, which must not contain repetitions
+     */
+    private static double getProbability(final Grammar<String> grammar, final ParseTree tree) {
+        if (tree instanceof ParseTree.Leaf) return 1.0;
+        final List<ParseTree> children = tree.getChildren() == null ? Collections.emptyList() : tree.getChildren();
+        double probability = 1.0;
+        if (!Category.START.equals(tree.category)) {
+            final Category[] right = children.stream().map(child -> child.category).toArray(Category[]::new);
+            probability = grammar.getRules((NonTerminal) tree.category).stream()
+                    .filter(rule -> Arrays.equals(rule.right, right))
+                    .findAny().orElseThrow(() -> new AssertionError("No rule for " + tree)).probability;
+        }
+        for (final ParseTree child : children) probability *= getProbability(grammar, child);
+        return probability;
+    }
+
+    private static void addTokens(final ParseTree tree, final List<Token<?>> tokens) {
+        if (tree instanceof ParseTree.Leaf) tokens.add(((ParseTree.Leaf<?>) tree).token);
+        else if (tree.getChildren() != null) for (final ParseTree child : tree.getChildren()) addTokens(child, tokens);
+    }
+
+    /**
+     * Checks that both parsers give the same probabilities, prefix probabilities and Viterbi probabilities for all
+     * strings over {a, b} up to given length. The Viterbi parses are compared with both the default and the
+     * Viterbi-only mode of {@link Parser}.
+     *
+     * @param sameTrees Whether both parsers must find the same Viterbi parse. Grammars in which more than one parse can
+     *                  have the highest probability may give different parses; then the parse of {@link LR0Parser}
+     *                  only has to derive the string with the highest probability.
+     */
+    private static void assertSameResults(final Grammar<String> grammar, final NonTerminal goal, final int maxLength,
+                                          final boolean sameTrees) {
+        final ProbabilisticParser<String> expected = new Parser<>(grammar);
+        final ParseOptions<String> viterbiOnly = new ParseOptions.Builder<String>().viterbiOnly().build();
+        final LR0Parser<String> actual = new LR0Parser<>(grammar);
+        for (final List<Token<String>> string : allStrings(maxLength, "a", "b")) {
+            final double probability = expected.recognize(goal, string);
+            assertEquals(string.toString(), probability, actual.recognize(goal, string), 1E-12);
+
+            final double[] expectedPrefix = getPrefixProbabilities(grammar, goal, string);
+            final double[] actualPrefix = actual.getPrefixProbabilities(goal, string);
+            for (int i = 0; i < expectedPrefix.length; i++)
+                assertEquals(string + " at " + i, expectedPrefix[i], i < actualPrefix.length ? actualPrefix[i] : 0.0, 1E-12);
+
+            if (probability > 0.0) {
+                final ParseTreeWithScore actualParse = actual.getViterbiParseWithScore(goal, string);
+                for (final ParseTreeWithScore expectedParse : Arrays.asList(
+                        expected.getViterbiParseWithScore(goal, string),
+                        new Parser<>(grammar).getViterbiParseWithScore(goal, string, viterbiOnly))) {
+                    assertEquals(string.toString(), expectedParse.score.getProbability(), actualParse.score.getProbability(), 1E-12);
+                    if (sameTrees) assertEquals(string.toString(), expectedParse.parseTree, actualParse.parseTree);
+                    else {
+                        final List<Token<?>> parsed = new ArrayList<>();
+                        addTokens(actualParse.parseTree, parsed);
+                        assertEquals(string, parsed);
+                        assertEquals(string.toString(), expectedParse.score.getProbability(), getProbability(grammar, actualParse.parseTree), 1E-12);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameResultsAsParser() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(0.6, S, A)
+                .addRule(0.4, S, S, S)
+                .addRule(0.7, A, B)
+                .addRule(0.3, A, a)
+                .addRule(0.2, B, C)
+                .addRule(0.8, B, b, S, b)
+                .addRule(1.0, C, a, b)
+                .build();
+        assertSameResults(grammar, S, 6, false);
+        assertSameResults(grammar, B, 6, false);
+    }
+
+    @Test
+    public void ambiguousPrefixBeforeTerminal() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(1.0, S, A, b)
+                .addRule(0.6, A, a)
+                .addRule(0.4, A, B)
+                .addRule(1.0, B, a)
+                .build();
+        assertSameResults(grammar, S, 4, true);
+    }
+
+    @Test
+    public void emptyRulesAndUnitCycles() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(0.6, S, A, S, B)
+                .addRule(0.3, S, C)
+                .addRule(0.1, S, A, C)
+                .addRule(0.7, A, a)
+                .addRule(0.3, A)
+                .addRule(0.6, B, b)
+                .addRule(0.4, B, A, A)
+                .addRule(0.2, C, B, a)
+                .addRule(0.3, C, S)
+                .addRule(0.5, C)
+                .build();
+        assertSameResults(grammar, S, 6, false);
+        assertSameResults(grammar, C, 5, false);
+    }
+
+    @Test
+    public void repetitions() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .withSemiring(ProbabilitySemiring.get())
+                .addRule(0.8, S, Repetition.oneOrMore(A, 0.3), Repetition.zeroOrMore(B))
+                .addRule(0.2, S, B, S)
+                .addRule(1.0, A, a)
+                .addRule(0.6, B, b)
+                .addRule(0.4, B, A, b)
+                .build();
+        assertSameResults(grammar, S, 7, true);
+    }
+
+    @Test
+    public void emptyString() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(0.5, S, A, A)
+                .addRule(0.5, S, a)
+                .addRule(0.4, A, b)
+                .addRule(0.6, A)
+                .build();
+        final LR0Parser<String> parser = new LR0Parser<>(grammar);
+        assertEquals(0.18, parser.recognize(S, new ArrayList<>()), 1E-12);
+        assertEquals(new Parser<>(grammar).getViterbiParseWithScore(S, new ArrayList<>()).parseTree,
+                parser.getViterbiParseWithScore(S, new ArrayList<>()).parseTree);
+        assertEquals(0.0, parser.recognize(S, Tokens.tokenize("b a")), 0.0);
+        assertEquals(0.0, parser.recognize(Category.nonTerminal("unknown"), Tokens.tokenize("a")), 0.0);
+    }
+}
@@ -0,0 +1,71 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.nonterminal.Repetition;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.leibnizcenter.cfg.earleyparser.Fixture.*;
+
+public class LR0RecognizerTest {
+    /**
+     * Checks that both recognizers give the same result for all strings over {a, b, c} up to given length
+     */
+    private static void assertSameResults(final Grammar<String> grammar, final NonTerminal goal, final int maxLength) {
+        final Recognizer<String> expected = new BooleanRecognizer<>(grammar);
+        final Recognizer<String> actual = new LR0Recognizer<>(grammar);
+        for (final List<Token<String>> string : allStrings(maxLength, "a", "b", "c")) {
+            final BooleanRecognizer.Result e = expected.recognize(goal, string);
+            final BooleanRecognizer.Result r = actual.recognize(goal, string);
+            assertEquals(string.toString(), e.accepted, r.accepted);
+            assertEquals(string.toString(), e.longestViablePrefix, r.longestViablePrefix);
+        }
+    }
+
+    @Test
+    public void sameResultsAsBooleanRecognizer() {
+        assertSameResults(nestedGrammar, S, 6);
+        assertSameResults(nestedGrammar, B, 6);
+    }
+
+    @Test
+    public void emptyRules() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(0.5, S, A, S, B)
+                .addRule(0.5, S, C)
+                .addRule(0.5, A, a)
+                .addRule(0.5, A)
+                .addRule(0.5, B, b)
+                .addRule(0.5, B, A, A)
+                .addRule(0.5, C, B, a)
+                .addRule(0.5, C)
+                .build();
+        assertSameResults(grammar, S, 6);
+        assertSameResults(grammar, C, 5);
+        assertTrue(new LR0Recognizer<>(grammar).accepts(S, new ArrayList<>()));
+    }
+
+    @Test
+    public void repetition() {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(1.0, S, Repetition.oneOrMore(A), Repetition.zeroOrMore(B))
+                .addRule(1.0, A, a)
+                .addRule(0.5, B, b)
+                .addRule(0.5, B, A, b)
+                .build();
+        assertSameResults(grammar, S, 6);
+        final LR0Recognizer<String> recognizer = new LR0Recognizer<>(grammar);
+        assertTrue(recognizer.accepts(S, Tokens.tokenize("a a b a b")));
+        assertFalse(recognizer.accepts(S, Tokens.tokenize("b a")));
+        assertFalse(recognizer.accepts(Category.nonTerminal("unknown"), Tokens.tokenize("a")));
+    }
+}
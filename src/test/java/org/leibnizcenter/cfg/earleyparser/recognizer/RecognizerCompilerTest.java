@@ -0,0 +1,105 @@
+package org.leibnizcenter.cfg.earleyparser.recognizer;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.Terminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+import org.leibnizcenter.cfg.token.Tokens;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecognizerCompilerTest {
+    private static final NonTerminal S = Category.nonTerminal("S");
+
+    private static final Grammar<String> grammar = Grammar.fromString("S -> NP VP\n" +
+            "NP -> Det N+\n" +
+            "Det -> the (0.5)\n" +
+            "Det -> ε (0.5)\n" +
+            "N -> dog\n" +
+            "N -> /[0-9]+/\n" +
+            "N -> /\"q[0-9]/i\n" +
+            "VP -> barks\n" +
+            "VP -> VP and VP");
+
+    /**
+     * Compiles given source with the system Java compiler, which must not warn about it, or skips the test if there is none
+     */
+    public static BooleanRecognizer<String> load(final String className, final String source) throws Exception {
+        final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(javac);
+
+        final Path dir = Files.createTempDirectory("compiled-recognizer");
+        final Path file = dir.resolve(className + ".java");
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, javac.run(null, null, null,
+                "-encoding", "UTF-8",
+                "-Xlint:all,-path", "-Werror",
+                "-cp", System.getProperty("java.class.path"),
+                "-d", dir.toString(),
+                file.toString()));
+
+        final URLClassLoader classLoader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, RecognizerCompilerTest.class.getClassLoader());
+        //noinspection unchecked
+        return (BooleanRecognizer<String>) classLoader.loadClass(className).newInstance();
+    }
+
+    @Test
+    public void sameResultsAsInterpreter() throws Exception {
+        final BooleanRecognizer<String> compiled = load("CompiledTestRecognizer", RecognizerCompiler.compile(grammar, null, "CompiledTestRecognizer"));
+        final BooleanRecognizer<String> interpreted = new BooleanRecognizer<>(grammar);
+
+        final List<List<Token<String>>> sentences = new ArrayList<>();
+        for (final String sentence : new String[]{
+                "the dog barks",
+                "THE Dog barks",
+                "dog 42 barks and barks",
+                "\"q1 barks",
+                "\"Q2 dog barks",
+                "the barks",
+                "the dog",
+                "dog Barks",
+                "barks",
+                "the dog barks and"
+        })
+            sentences.add(Tokens.tokenize(sentence));
+        sentences.add(new ArrayList<>());
+
+        for (final List<Token<String>> sentence : sentences) {
+            final BooleanRecognizer.Result expected = interpreted.recognize(S, sentence);
+            final BooleanRecognizer.Result actual = compiled.recognize(S, sentence);
+            assertEquals(sentence.toString(), expected.accepted, actual.accepted);
+            assertEquals(sentence.toString(), expected.longestViablePrefix, actual.longestViablePrefix);
+        }
+        assertTrue(compiled.accepts(S, Tokens.tokenize("the dog 7 barks")));
+    }
+
+    @Test
+    public void packageAndLiterals() {
+        final String source = RecognizerCompiler.compile(grammar, "org.example", "Recognizer");
+        assertTrue(source.startsWith("package org.example;"));
+        assertEquals("\"a\\\"b\\\\c\\n\\u00e9\"", RecognizerCompiler.literal("a\"b\\c\né"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyStringTerminals() {
+        RecognizerCompiler.compile(new Grammar.Builder<String>()
+                .addRule(S, new ExactStringTerminal("a"))
+                .addRule(S, (Terminal<String>) token -> token.obj.isEmpty())
+                .build(), null, "Recognizer");
+    }
+}
@@ -0,0 +1,51 @@
+package org.leibnizcenter.cfg.grammar;
+
+import org.junit.Test;
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ScoresAsSemiringElementsTest {
+    private static final NonTerminal S = Category.nonTerminal("S");
+    private static final NonTerminal A = Category.nonTerminal("A");
+    private static final NonTerminal B = Category.nonTerminal("B");
+
+    @Test
+    public void reverseUnitStar() throws Exception {
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(0.5, S, A)
+                .addRule(0.5, S, B, B)
+                .addRule(0.4, A, B)
+                .addRule(0.6, A, new ExactStringTerminal("a"))
+                .addRule(1.0, B, new ExactStringTerminal("b"))
+                .build();
+        final ScoresAsSemiringElements unitStar = grammar.unitStarScores;
+
+        for (final NonTerminal Y : new NonTerminal[]{S, A, B}) {
+            final int y = unitStar.indexOf(Y);
+            assertTrue(y >= 0);
+
+            final Set<NonTerminal> from = new HashSet<>();
+            for (int i = unitStar.reverseStart(y); i < unitStar.reverseEnd(y); i++) {
+                final NonTerminal Z = unitStar.getReverseFrom(i);
+                assertTrue(from.add(Z));
+                assertEquals(grammar.getUnitStarScore(Z, Y), unitStar.getReverseScore(i), 0.0);
+            }
+
+            final Set<NonTerminal> expected = new HashSet<>();
+            for (final NonTerminal Z : new NonTerminal[]{S, A, B})
+                if (unitStar.getNonZeroNonTerminals(Z) != null && unitStar.getNonZeroNonTerminals(Z).contains(Y))
+                    expected.add(Z);
+            assertEquals(expected, from);
+        }
+
+        // B is reachable from S, A and B itself through unit productions
+        assertEquals(3, unitStar.reverseEnd(unitStar.indexOf(B)) - unitStar.reverseStart(unitStar.indexOf(B)));
+        assertEquals(-1, unitStar.indexOf(Category.nonTerminal("C")));
+    }
+}
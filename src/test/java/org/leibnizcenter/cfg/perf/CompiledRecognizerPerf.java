@@ -0,0 +1,70 @@
+package org.leibnizcenter.cfg.perf;
+
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.earleyparser.recognizer.BooleanRecognizer;
+import org.leibnizcenter.cfg.earleyparser.recognizer.RecognizerCompiler;
+import org.leibnizcenter.cfg.earleyparser.recognizer.RecognizerCompilerTest;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time per sentence of a {@link BooleanRecognizer} that interprets a grammar with that of the recognizer
+ * that {@link RecognizerCompiler} generates for it, for a grammar with a lexicon of a few hundred words. Prints the
+ * sentence length and the average number of microseconds per sentence for both.
+ */
+class CompiledRecognizerPerf {
+    private static final int WORDS = 300;
+    private static final int WARM_UP = 2000;
+    private static final int SENTENCES = 20000;
+
+    public static void main(final String[] ignored) throws Exception {
+        final NonTerminal S = Category.nonTerminal("S");
+        final NonTerminal NP = Category.nonTerminal("NP");
+        final NonTerminal VP = Category.nonTerminal("VP");
+        final NonTerminal N = Category.nonTerminal("N");
+        final NonTerminal V = Category.nonTerminal("V");
+        final Grammar.Builder<String> builder = new Grammar.Builder<String>()
+                .addRule(1.0, S, NP, VP)
+                .addRule(0.6, NP, N)
+                .addRule(0.4, NP, NP, NP)
+                .addRule(0.7, VP, V)
+                .addRule(0.3, VP, V, NP);
+        for (int i = 0; i < WORDS; i++) {
+            builder.addRule(1.0, N, new ExactStringTerminal("noun" + i));
+            builder.addRule(1.0, V, new ExactStringTerminal("verb" + i));
+        }
+        final Grammar<String> grammar = builder.build();
+
+        final BooleanRecognizer<String> interpreted = new BooleanRecognizer<>(grammar);
+        final BooleanRecognizer<String> compiled = RecognizerCompilerTest.load("CompiledPerfRecognizer",
+                RecognizerCompiler.compile(grammar, null, "CompiledPerfRecognizer"));
+
+        for (int length = 2; length <= 20; length += 2) {
+            final List<Token<String>> tokens = sentence(length);
+            System.out.println(length + "\t" + time(interpreted, S, tokens) + "\t" + time(compiled, S, tokens));
+        }
+    }
+
+    private static double time(final BooleanRecognizer<String> recognizer, final NonTerminal goal, final List<Token<String>> tokens) {
+        for (int i = 0; i < WARM_UP; i++) recognizer.accepts(goal, tokens);
+        final long start = System.nanoTime();
+        for (int i = 0; i < SENTENCES; i++) recognizer.accepts(goal, tokens);
+        return (System.nanoTime() - start) / 1000.0 / SENTENCES;
+    }
+
+    /**
+     * @return A noun, a verb and as many nouns as needed to get given length, each time with new token objects
+     */
+    private static List<Token<String>> sentence(final int length) {
+        final List<Token<String>> tokens = new ArrayList<>(length);
+        tokens.add(new Token<>("noun" + 1));
+        tokens.add(new Token<>("verb" + 2));
+        while (tokens.size() < length) tokens.add(new Token<>("noun" + (tokens.size() * 7 % WORDS)));
+        return tokens;
+    }
+}
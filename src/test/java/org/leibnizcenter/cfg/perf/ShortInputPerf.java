@@ -0,0 +1,72 @@
+package org.leibnizcenter.cfg.perf;
+
+import org.leibnizcenter.cfg.category.Category;
+import org.leibnizcenter.cfg.category.nonterminal.NonTerminal;
+import org.leibnizcenter.cfg.category.terminal.stringterminal.ExactStringTerminal;
+import org.leibnizcenter.cfg.earleyparser.Parser;
+import org.leibnizcenter.cfg.grammar.Grammar;
+import org.leibnizcenter.cfg.token.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time per parse for inputs of 1 to 20 tokens, where fixed setup and teardown cost of a chart matters
+ * most. Prints the input length and the median over several rounds of the average number of microseconds per parse.
+ * All lengths are warmed up before any is measured, and every round measures all lengths, so that the JIT compiler
+ * does not favour the lengths that happen to be measured last.
+ */
+class ShortInputPerf {
+    private static final int WARM_UP = 2000;
+    private static final int PARSES = 5000;
+    private static final int ROUNDS = 7;
+    private static final int MAX_LENGTH = 20;
+
+    public static void main(final String[] ignored) {
+        final NonTerminal S = Category.nonTerminal("S");
+        final NonTerminal NP = Category.nonTerminal("NP");
+        final NonTerminal VP = Category.nonTerminal("VP");
+        final NonTerminal N = Category.nonTerminal("N");
+        final NonTerminal V = Category.nonTerminal("V");
+        final Grammar<String> grammar = new Grammar.Builder<String>()
+                .addRule(1.0, S, NP, VP)
+                .addRule(0.6, NP, N)
+                .addRule(0.4, NP, NP, NP)
+                .addRule(0.7, VP, V)
+                .addRule(0.3, VP, V, NP)
+                .addRule(1.0, N, new ExactStringTerminal("dogs"))
+                .addRule(1.0, V, new ExactStringTerminal("bark"))
+                .build();
+        final Parser<String> parser = new Parser<>(grammar);
+
+        final List<List<Token<String>>> sentences = new ArrayList<>(MAX_LENGTH);
+        for (int length = 1; length <= MAX_LENGTH; length++) sentences.add(sentence(length));
+        for (int i = 0; i < WARM_UP; i++)
+            for (final List<Token<String>> tokens : sentences) parser.parseAndCountTokens(S, tokens, null);
+
+        final double[][] micros = new double[MAX_LENGTH][ROUNDS];
+        for (int round = 0; round < ROUNDS; round++)
+            for (int length = 1; length <= MAX_LENGTH; length++) {
+                final List<Token<String>> tokens = sentences.get(length - 1);
+                final long start = System.nanoTime();
+                for (int i = 0; i < PARSES; i++) parser.parseAndCountTokens(S, tokens, null);
+                micros[length - 1][round] = (System.nanoTime() - start) / 1000.0 / PARSES;
+            }
+        for (int length = 1; length <= MAX_LENGTH; length++) {
+            Arrays.sort(micros[length - 1]);
+            System.out.println(length + "\t" + micros[length - 1][ROUNDS / 2]);
+        }
+    }
+
+    /**
+     * @return "dogs bark", followed by as many "dogs" as needed to get given length (or just "dogs" for length 1)
+     */
+    private static List<Token<String>> sentence(final int length) {
+        final List<Token<String>> tokens = new ArrayList<>(length);
+        tokens.add(new Token<>("dogs"));
+        if (length > 1) tokens.add(new Token<>("bark"));
+        while (tokens.size() < length) tokens.add(new Token<>("dogs"));
+        return tokens;
+    }
+}
@@ -0,0 +1,55 @@
+package org.leibnizcenter.cfg.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ */
+public class ForkableListTest {
+    @Test
+    public void forks() throws Exception {
+        final ForkableList<String> list = new ForkableList<>();
+        list.addAll(Arrays.asList("a", "b"));
+        final ForkableList<String> fork = list.fork();
+        fork.add("c");
+        list.add("d");
+        final ForkableList<String> forkOfFork = fork.fork();
+        forkOfFork.add("e");
+
+        assertEquals(Arrays.asList("a", "b", "d"), list);
+        assertEquals(Arrays.asList("a", "b", "c"), fork);
+        assertEquals(Arrays.asList("a", "b", "c", "e"), forkOfFork);
+    }
+
+    @Test
+    public void truncateForkBeforeSharedElements() throws Exception {
+        final ForkableList<String> list = new ForkableList<>();
+        list.addAll(Arrays.asList("a", "b"));
+        final ForkableList<String> fork = list.fork();
+        fork.add("c");
+        Collections2.truncate(fork, 1);
+        fork.add("d");
+
+        assertEquals(Arrays.asList("a", "d"), fork);
+        assertEquals(Arrays.asList("a", "b"), list);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noTruncatingSharedElements() throws Exception {
+        final ForkableList<String> list = new ForkableList<>();
+        list.addAll(Arrays.asList("a", "b"));
+        list.fork();
+        Collections2.truncate(list, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noSettingSharedElements() throws Exception {
+        final ForkableList<String> list = new ForkableList<>();
+        list.add("a");
+        list.fork();
+        list.set(0, "b");
+    }
+}